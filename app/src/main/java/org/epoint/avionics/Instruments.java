@@ -1,25 +1,105 @@
 package org.epoint.avionics;
 
 import android.app.Activity;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.hardware.Sensor;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.location.Criteria;
 import android.location.LocationListener;
 import android.location.LocationManager;
+import android.os.BatteryManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 
+import org.epoint.avionics.log.ChannelOutputStream;
+import org.epoint.avionics.log.PackedLog;
+import org.epoint.avionics.log.Recorder;
+import org.epoint.avionics.log.SensorLog.Channel;
+import org.epoint.avionics.sensor.Barometric;
+import org.epoint.avionics.sensor.CalibrationStore;
+import org.epoint.avionics.sensor.Checkpoint;
+import org.epoint.avionics.sensor.Decimator;
+import org.epoint.avionics.sensor.Handoff;
 import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.LocationWrapper;
+import org.epoint.avionics.sensor.MagnetometerCalibrator;
+import org.epoint.avionics.sensor.RateController;
+import org.epoint.avionics.sensor.SamplingProfile;
 import org.epoint.avionics.sensor.SensorEventWrapper;
-import org.epoint.avionics.view.InertialView;
+import org.epoint.avionics.view.InstrumentDisplay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:nagydani@epoint.org">Daniel A. Nagy</a>
  */
 public class Instruments extends Activity {
 
+    private static final String TAG = "Instruments";
+    private static final String PROFILE = "profile";
+    private static final String OPENGL = "opengl";
+    /**
+     * Estimator state kept across restarts
+     */
+    private static final String CHECKPOINT = "estimator.ckpt";
+    /**
+     * Learned sensor calibration
+     */
+    private static final String CALIBRATION = "calibration.db";
+    /**
+     * Gyroscope drift measurements in a session before its drift estimate is stored
+     */
+    private static final int MIN_CALIBRATIONS = 3;
+    /**
+     * Display refresh period in milliseconds
+     */
+    private static final long FRAME_PERIOD = 20;
+    /**
+     * Samples waiting to be written by the recorder, several seconds at the fastest rates
+     */
+    private static final int RECORDER_QUEUE = 4096;
+    /**
+     * Recorder write size in bytes
+     */
+    private static final int RECORDER_BUFFER = 1 << 18;
+    /**
+     * Longest wait in milliseconds for sensor threads to finish pending events
+     */
+    private static final long DRAIN_TIMEOUT = 1000;
+
+    /**
+     * Fusion: gyroscope and accelerometer events, and every update of the estimator
+     */
+    final HandlerThread fusionThread = new HandlerThread("Fusion",
+            Process.THREAD_PRIORITY_DISPLAY);
+    /**
+     * Magnetometer calibration, geomagnetic model and barometer, off the fusion thread
+     */
+    final HandlerThread sensorThread = new HandlerThread("Sensors");
+    Handler fusionHandler;
+    Handler sensorHandler;
+    ThreadLoad mainLoad, fusionLoad, sensorLoad;
     SensorManager sm;
     LocationManager lm;
     Sensor accelerometer;
@@ -28,8 +108,22 @@ public class Instruments extends Activity {
     SensorEventListener mag;
     Sensor gyroscope;
     SensorEventListener gyr;
+    Sensor pressure;
+    SensorEventListener prs;
     LocationListener loc;
-    InertialView iv;
+    Inertial inertial;
+    Barometric barometric;
+    CalibrationStore calibration;
+    final ExecutorService calibrationSolver = Executors.newSingleThreadExecutor();
+    MagnetometerCalibrator magnetometerCalibrator;
+    int storedCalibrations = 0;
+    InstrumentDisplay iv;
+    Decimator decimator;
+    RateController rateController;
+    final Recorder recorder = new Recorder(RECORDER_QUEUE, Recorder.Policy.DROP);
+    ChannelOutputStream recording;
+    boolean started = false;
+    int gyroscopePeriod;
 
     final static Criteria criteria = new Criteria();
 
@@ -40,18 +134,85 @@ public class Instruments extends Activity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_instruments);
-        iv = (InertialView) findViewById(R.id.inertial);
+        setContentView(getPreferences(MODE_PRIVATE).getBoolean(OPENGL, false)
+                ? R.layout.activity_instruments_gl : R.layout.activity_instruments);
+        iv = (InstrumentDisplay) findViewById(R.id.inertial);
         lm = (LocationManager) getSystemService(LOCATION_SERVICE);
         sm = (SensorManager) getSystemService(SENSOR_SERVICE);
-        Inertial inertial = new Inertial(iv.getModel());
+        fusionThread.start();
+        sensorThread.start();
+        fusionHandler = new Handler(fusionThread.getLooper());
+        sensorHandler = new Handler(sensorThread.getLooper());
+        Executor fusion = new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                fusionHandler.post(r);
+            }
+        };
+        mainLoad = new ThreadLoad(Process.myPid());
+        fusionLoad = new ThreadLoad(fusionThread.getThreadId());
+        sensorLoad = new ThreadLoad(sensorThread.getThreadId());
+        decimator = new Decimator(iv.getModel(), Decimator.COALESCE);
+        inertial = new Inertial(decimator, Inertial.Precision.DOUBLE);
         accelerometer = sm.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        acc = new SensorEventWrapper(inertial.accelerometer);
+        acc = new SensorEventWrapper(recorder.tee(Channel.ACCELEROMETER, inertial.accelerometer));
         magnetometer = sm.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
-        mag = new SensorEventWrapper(inertial.magnetometer);
+        magnetometerCalibrator = new MagnetometerCalibrator(inertial,
+                new Handoff(inertial.magnetometer, fusion, 3), calibrationSolver);
+        mag = new SensorEventWrapper(recorder.tee(Channel.MAGNETOMETER, magnetometerCalibrator));
         gyroscope = sm.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-        gyr = new SensorEventWrapper(inertial.gyroscope);
-        loc = inertial.loc;
+        gyr = new SensorEventWrapper(recorder.tee(Channel.GYROSCOPE, inertial.gyroscope));
+        barometric = new Barometric(iv.getModel());
+        pressure = sm.getDefaultSensor(Sensor.TYPE_PRESSURE);
+        prs = new SensorEventWrapper(recorder.tee(Channel.PRESSURE, barometric));
+        loc = new LocationWrapper(inertial, recorder, fusion);
+        loadCalibration();
+        SamplingProfile profile = SamplingProfile.BALANCED;
+        try {
+            profile = SamplingProfile.valueOf(getPreferences(MODE_PRIVATE)
+                    .getString(PROFILE, profile.name()));
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+        rateController = new RateController(profile, new RateController.Listener() {
+            @Override
+            public void setGyroscopePeriod(int period) {
+                reregisterGyroscope(period);
+            }
+        });
+    }
+
+    private void reregisterGyroscope(int period) {
+        synchronized (sm) {
+            if (!started || gyroscope == null) return;
+            logConsumption();
+            sm.unregisterListener(gyr, gyroscope);
+            sm.registerListener(gyr, gyroscope, gyroscopePeriod = period, fusionHandler);
+        }
+    }
+
+    private long lastCpuTime = 0;
+    private long lastRealtime = 0;
+
+    /**
+     * Log CPU load and battery level since the previous call, for comparing sampling rates.
+     * The first call after registering listeners only sets the baseline.
+     */
+    private void logConsumption() {
+        long cpuTime = Process.getElapsedCpuTime(), realtime = SystemClock.elapsedRealtime();
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        int level = battery == null ? -1 : battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery == null ? -1 : battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        double main = mainLoad.sample(), fusion = fusionLoad.sample(),
+                sensors = sensorLoad.sample();
+        if (lastRealtime != 0 && realtime > lastRealtime)
+            Log.i(TAG, String.format("%s, gyroscope %d us: CPU %.1f%% (main %.1f%%,"
+                            + " fusion %.1f%%, sensors %.1f%%), battery %d/%d",
+                    rateController.getProfile(), gyroscopePeriod,
+                    100.0 * (cpuTime - lastCpuTime) / (realtime - lastRealtime), main, fusion,
+                    sensors, level, scale));
+        lastCpuTime = cpuTime;
+        lastRealtime = realtime;
     }
 
     private volatile GraphicsThread graphicsThread = null;
@@ -60,10 +221,16 @@ public class Instruments extends Activity {
 
         @Override
         public void run() {
+            long next = SystemClock.uptimeMillis();
             while (graphicsThread != null) {
+                decimator.flush();
                 iv.drawStuff();
+                rateController.update(iv.getModel().rateOfTurn, System.nanoTime());
+                // keep the period regardless of drawing time, without catching up missed frames
+                long now = SystemClock.uptimeMillis();
+                next = Math.max(next + FRAME_PERIOD, now);
                 try {
-                    sleep(20);
+                    sleep(next - now);
                 } catch (InterruptedException e) {
                     graphicsThread = null;
                     e.printStackTrace();
@@ -83,31 +250,269 @@ public class Instruments extends Activity {
         }
     }
 
+    /**
+     * Wait for the sensor threads to process the events already delivered, so that the
+     * estimator can be used from this thread.
+     */
+    private void drainSensorThreads() {
+        // the sensor thread hands off to the fusion thread, so it goes first
+        for (Handler h : new Handler[]{sensorHandler, fusionHandler}) {
+            final CountDownLatch done = new CountDownLatch(1);
+            h.post(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+            try {
+                if (!done.await(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS))
+                    Log.w(TAG, "Sensor thread not drained");
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     @Override
     protected void onStop() {
-        if(lm != null)
-            lm.removeUpdates(loc);
-        if (gyroscope != null) sm.unregisterListener(gyr);
-        if (accelerometer != null) sm.unregisterListener(acc);
-        if (magnetometer != null) sm.unregisterListener(mag);
+        unregisterListeners();
+        drainSensorThreads();
+        saveCheckpoint();
+        saveCalibration();
+        stopRecording();
         stopGraphicsThread();
+        iv.onPause();
         super.onStop();
     }
 
+    /**
+     * Replace a private file atomically.
+     */
+    private void save(String name, ByteArrayOutputStream data) throws IOException {
+        File tmp = new File(getFilesDir(), name + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            data.writeTo(out);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(new File(getFilesDir(), name)))
+            throw new IOException("Cannot rename " + tmp);
+    }
+
+    private void saveCheckpoint() {
+        try {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            Checkpoint.of(System.currentTimeMillis(), inertial, barometric).write(data);
+            save(CHECKPOINT, data);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot save estimator state", e);
+        }
+    }
+
+    /**
+     * @return battery temperature in degrees Celsius, as a proxy for sensor temperature;
+     * <code>NaN</code> if unknown
+     */
+    private float temperature() {
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        int t = battery == null ? Integer.MIN_VALUE
+                : battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, Integer.MIN_VALUE);
+        return t == Integer.MIN_VALUE ? Float.NaN : t / 10f;
+    }
+
+    private static String identity(Sensor s) {
+        return s.getVendor() + "/" + s.getName() + "/" + s.getVersion();
+    }
+
+    /**
+     * Seed the estimator with the calibration learned at the current temperature. Runs once per
+     * process; a valid checkpoint, restored on every start, then replaces the gyroscope drift
+     * (see {@link #restoreCheckpoint()}).
+     */
+    private void loadCalibration() {
+        calibration = new CalibrationStore();
+        try {
+            FileInputStream in = new FileInputStream(new File(getFilesDir(), CALIBRATION));
+            try {
+                calibration = CalibrationStore.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot load calibration", e);
+            return;
+        }
+        float t = temperature();
+        double[] drift = gyroscope == null ? null : calibration.get(identity(gyroscope), t);
+        if (drift != null && drift.length == 3 && inertial.setGyroscopeDrift(drift))
+            Log.i(TAG, String.format("Gyroscope drift at %.1f C: %.5f %.5f %.5f rad/s",
+                    t, drift[0], drift[1], drift[2]));
+        double[] correction = magnetometer == null ? null
+                : calibration.get(identity(magnetometer), t);
+        if (correction != null && correction.length == 12)
+            inertial.setMagnetometerCorrection(correction);
+    }
+
+    /**
+     * Merge what this session learned into the calibration store.
+     */
+    private void saveCalibration() {
+        float t = temperature();
+        boolean changed = false;
+        if (gyroscope != null
+                && inertial.getCalibrations() - storedCalibrations >= MIN_CALIBRATIONS) {
+            calibration.put(identity(gyroscope), t, inertial.getGyroscopeDrift(), 1);
+            storedCalibrations = inertial.getCalibrations();
+            changed = true;
+        }
+        double[] correction = inertial.getMagnetometerCorrection();
+        if (magnetometer != null && correction != null && magnetometerCalibrator.getFits() > 0) {
+            Log.i(TAG, String.format("Magnetometer calibrated in %d fits, residual %.4f",
+                    magnetometerCalibrator.getFits(), magnetometerCalibrator.getResidual()));
+            calibration.put(identity(magnetometer), t, correction, 1);
+            changed = true;
+        }
+        if (!changed) return;
+        try {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            calibration.write(data);
+            save(CALIBRATION, data);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot save calibration", e);
+        }
+    }
+
+    /**
+     * Resume the previous session's estimate if it ended recently. Its gyroscope drift takes
+     * precedence over the one from {@link #loadCalibration()}: it was estimated minutes ago at
+     * nearly the same temperature, whereas the store averages sessions. The magnetometer
+     * correction is not part of the checkpoint and stays as loaded.
+     */
+    private void restoreCheckpoint() {
+        File f = new File(getFilesDir(), CHECKPOINT);
+        try {
+            FileInputStream in = new FileInputStream(f);
+            try {
+                Checkpoint c = Checkpoint.read(in);
+                if (c.isValid(System.currentTimeMillis())) {
+                    c.restore(inertial, barometric);
+                    Log.i(TAG, "Estimator state restored");
+                }
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException e) {
+            // first start
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot restore estimator state", e);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        calibrationSolver.shutdown();
+        sensorThread.quit();
+        fusionThread.quit();
+        super.onDestroy();
+    }
+
+    private void startRecording() {
+        // report and reap a recording ended by a write error
+        if (recorder.getError() != null) stopRecording();
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        File f = new File(dir, new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US)
+                .format(new Date()) + ".avsl");
+        ChannelOutputStream out = null;
+        try {
+            out = new ChannelOutputStream(new FileOutputStream(f).getChannel(), RECORDER_BUFFER);
+            recorder.start(new PackedLog.Writer(out,
+                    new FileOutputStream(PackedLog.Index.of(f))));
+            recording = out;
+            Log.i(TAG, "Recording to " + f);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot record to " + f, e);
+            try {
+                if (out != null) out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void stopRecording() {
+        if (!recorder.isRecording() && recorder.getError() == null) return;
+        try {
+            recorder.stop();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        if (recorder.getError() != null) Log.e(TAG, "Recording failed", recorder.getError());
+        Log.i(TAG, String.format("Recording stopped: %d samples written, %d dropped,"
+                        + " queue depth max %d; %d bytes in %d writes, mean %.2f ms, max %.2f ms",
+                recorder.getWritten(), recorder.getDropped(), recorder.getMaxQueueDepth(),
+                recording.getBytes(), recording.getWrites(),
+                1e-6 * recording.getMeanWriteTime(), 1e-6 * recording.getMaxWriteTime()));
+    }
+
     @Override
     protected void onStart() {
         super.onStart();
+        iv.onResume();
         stopGraphicsThread();
         graphicsThread = new GraphicsThread();
         graphicsThread.start();
-        if (magnetometer != null)
-            sm.registerListener(mag, magnetometer, SensorManager.SENSOR_DELAY_GAME);
-        if (accelerometer != null)
-            sm.registerListener(acc, accelerometer, SensorManager.SENSOR_DELAY_GAME);
-        if (gyroscope != null)
-            sm.registerListener(gyr, gyroscope, SensorManager. SENSOR_DELAY_FASTEST);
-        if (lm != null)
-            lm.requestLocationUpdates(lm.getBestProvider(criteria, true), 0, 0, loc);
+        restoreCheckpoint();
+        registerListeners();
+    }
+
+    private void unregisterListeners() {
+        synchronized (sm) {
+            if (started) logConsumption();
+            started = false;
+            lastRealtime = 0;
+            if(lm != null)
+                lm.removeUpdates(loc);
+            if (gyroscope != null) sm.unregisterListener(gyr);
+            if (accelerometer != null) sm.unregisterListener(acc);
+            if (magnetometer != null) sm.unregisterListener(mag);
+            if (pressure != null) sm.unregisterListener(prs);
+        }
+    }
+
+    private void registerListeners() {
+        synchronized (sm) {
+            SamplingProfile profile = rateController.getProfile();
+            if (magnetometer != null)
+                sm.registerListener(mag, magnetometer, profile.magnetometer, sensorHandler);
+            if (pressure != null)
+                sm.registerListener(prs, pressure, profile.pressure, sensorHandler);
+            if (accelerometer != null)
+                sm.registerListener(acc, accelerometer, profile.accelerometer, fusionHandler);
+            if (gyroscope != null)
+                sm.registerListener(gyr, gyroscope,
+                        gyroscopePeriod = rateController.getGyroscopePeriod(), fusionHandler);
+            if (lm != null)
+                lm.requestLocationUpdates(lm.getBestProvider(criteria, true),
+                        profile.locationTime, profile.locationDistance, loc,
+                        sensorThread.getLooper());
+            started = true;
+            logConsumption();
+        }
+    }
+
+    private void setProfile(SamplingProfile profile) {
+        if (profile == rateController.getProfile()) return;
+        getPreferences(MODE_PRIVATE).edit().putString(PROFILE, profile.name()).apply();
+        synchronized (sm) {
+            boolean restart = started;
+            if (restart) unregisterListeners();
+            rateController.setProfile(profile);
+            if (restart) registerListeners();
+        }
     }
 
     @Override
@@ -117,6 +522,25 @@ public class Instruments extends Activity {
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        switch (rateController.getProfile()) {
+            case HIGH_PERFORMANCE:
+                menu.findItem(R.id.action_high_performance).setChecked(true);
+                break;
+            case BALANCED:
+                menu.findItem(R.id.action_balanced).setChecked(true);
+                break;
+            case POWER_SAVER:
+                menu.findItem(R.id.action_power_saver).setChecked(true);
+                break;
+        }
+        menu.findItem(R.id.action_record).setChecked(recorder.isRecording());
+        menu.findItem(R.id.action_opengl).setChecked(
+                getPreferences(MODE_PRIVATE).getBoolean(OPENGL, false));
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // Handle action bar item clicks here. The action bar will
@@ -128,6 +552,28 @@ public class Instruments extends Activity {
         if (id == R.id.action_settings) {
             return true;
         }
+        if (id == R.id.action_high_performance) {
+            setProfile(SamplingProfile.HIGH_PERFORMANCE);
+            return true;
+        }
+        if (id == R.id.action_balanced) {
+            setProfile(SamplingProfile.BALANCED);
+            return true;
+        }
+        if (id == R.id.action_power_saver) {
+            setProfile(SamplingProfile.POWER_SAVER);
+            return true;
+        }
+        if (id == R.id.action_record) {
+            if (recorder.isRecording()) stopRecording();
+            else startRecording();
+            return true;
+        }
+        if (id == R.id.action_opengl) {
+            getPreferences(MODE_PRIVATE).edit().putBoolean(OPENGL, !item.isChecked()).apply();
+            recreate();
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
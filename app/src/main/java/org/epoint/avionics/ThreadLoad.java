@@ -0,0 +1,62 @@
+package org.epoint.avionics;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * CPU load of a thread of this process, read from <code>/proc</code> so that it can be measured
+ * from any thread. Sensor events reach their looper without passing through its messages, so
+ * thread CPU time is the measure of how much of a looper thread they occupy.
+ */
+class ThreadLoad {
+
+    /**
+     * Kernel clock ticks per second, in which thread CPU times are reported
+     */
+    private static final long USER_HZ = 100;
+
+    private final String stat;
+    private long lastTicks = -1, lastTime;
+
+    /**
+     * @param tid Linux thread id
+     */
+    ThreadLoad(int tid) {
+        stat = "/proc/self/task/" + tid + "/stat";
+    }
+
+    /**
+     * @return user and system CPU time of the thread in clock ticks, -1 if unavailable
+     */
+    private long ticks() {
+        try {
+            BufferedReader in = new BufferedReader(new FileReader(stat));
+            try {
+                String line = in.readLine();
+                // the command name may contain spaces; fields are counted after it
+                String[] f = line.substring(line.lastIndexOf(')') + 2).split(" ");
+                return Long.parseLong(f[11]) + Long.parseLong(f[12]);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return percentage of a CPU the thread used since the previous call, <code>NaN</code> on
+     * the first call or if unavailable
+     */
+    double sample() {
+        long ticks = ticks(), time = System.nanoTime();
+        double load = lastTicks < 0 || ticks < 0 || time == lastTime ? Double.NaN
+                : 100.0 * 1e9 * (ticks - lastTicks) / USER_HZ / (time - lastTime);
+        lastTicks = ticks;
+        lastTime = time;
+        return load;
+    }
+}
@@ -0,0 +1,101 @@
+package org.epoint.avionics.sensor;
+
+import android.hardware.GeomagneticField;
+import android.location.Location;
+import android.location.LocationListener;
+import android.os.Build;
+import android.os.Bundle;
+
+import org.epoint.avionics.log.Recorder;
+import org.epoint.avionics.log.SensorLog.Channel;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Feed location updates to {@link Inertial}: geomagnetic field model and ground track. The
+ * field model is evaluated on the delivering thread; the estimator may be updated on its own.
+ */
+public class LocationWrapper implements LocationListener {
+
+    private final Inertial inertial;
+    private final Recorder recorder;
+    private final Executor executor;
+    private final float[] field = new float[Channel.FIELD.size];
+    private final float[] track = new float[Channel.TRACK.size];
+
+    public LocationWrapper(Inertial i) {
+        this(i, null);
+    }
+
+    /**
+     * @param i estimator
+     * @param r recorder of the estimator's inputs, or <code>null</code>
+     */
+    public LocationWrapper(Inertial i, Recorder r) {
+        this(i, r, null);
+    }
+
+    /**
+     * @param i estimator
+     * @param r recorder of the estimator's inputs, or <code>null</code>
+     * @param e serial executor to update the estimator on, <code>null</code> for the
+     *          delivering thread
+     */
+    public LocationWrapper(Inertial i, Recorder r, Executor e) {
+        inertial = i;
+        recorder = r;
+        executor = e;
+    }
+
+    @Override
+    public void onLocationChanged(Location location) {
+        GeomagneticField g = new GeomagneticField(
+                (float) location.getLatitude(),
+                (float) location.getLongitude(),
+                (float) location.getAltitude(),
+                location.getTime());
+        // same time base as sensor events, where available
+        long timestamp = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                ? location.getElapsedRealtimeNanos() : location.getTime() * 1000000L;
+        field[0] = g.getX();
+        field[1] = g.getY();
+        field[2] = g.getZ();
+        field[3] = g.getDeclination();
+        track[0] = location.hasSpeed() ? location.getSpeed() : Float.NaN;
+        track[1] = location.hasBearing() ? location.getBearing() : Float.NaN;
+        if(recorder != null) {
+            recorder.record(Channel.FIELD, timestamp, field);
+            recorder.record(Channel.TRACK, timestamp, track);
+        }
+        if(executor == null) {
+            inertial.setMagneticField(field[0], field[1], field[2], field[3]);
+            inertial.setTrack(timestamp, track[0], track[1]);
+            return;
+        }
+        final float north = field[0], east = field[1], down = field[2], declination = field[3];
+        final float speed = track[0], bearing = track[1];
+        final long t = timestamp;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                inertial.setMagneticField(north, east, down, declination);
+                inertial.setTrack(t, speed, bearing);
+            }
+        });
+    }
+
+    @Override
+    public void onStatusChanged(String provider, int status, Bundle extras) {
+
+    }
+
+    @Override
+    public void onProviderEnabled(String provider) {
+
+    }
+
+    @Override
+    public void onProviderDisabled(String provider) {
+
+    }
+}
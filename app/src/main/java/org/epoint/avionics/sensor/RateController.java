@@ -0,0 +1,83 @@
+package org.epoint.avionics.sensor;
+
+/**
+ * Adaptive gyroscope rate control: fast sampling during manoeuvres, slow sampling in steady flight.
+ */
+public class RateController {
+
+    public interface Listener {
+        /**
+         * Gyroscope sampling period has changed.
+         * @param period new sampling period in microseconds
+         */
+        void setGyroscopePeriod(int period);
+    }
+
+    /**
+     * Rate of turn in radians per second above which a manoeuvre begins (half standard rate)
+     */
+    private static final float MANOEUVRE_RATE = (float) Math.toRadians(1.5);
+
+    /**
+     * Rate of turn in radians per second below which a manoeuvre may end
+     */
+    private static final float STEADY_RATE = (float) Math.toRadians(0.75);
+
+    /**
+     * Time in nanoseconds spent below {@link #STEADY_RATE} before lowering the sampling rate
+     */
+    private static final long HOLD_TIME = (long) 3e9;
+
+    private final Listener listener;
+    private SamplingProfile profile;
+    private boolean manoeuvre = false;
+    private long lastManoeuvre = 0;
+
+    public RateController(SamplingProfile p, Listener l) {
+        profile = p;
+        listener = l;
+    }
+
+    public synchronized SamplingProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(SamplingProfile p) {
+        int period;
+        synchronized (this) {
+            if(p == profile) return;
+            profile = p;
+            period = getGyroscopePeriod();
+        }
+        listener.setGyroscopePeriod(period);
+    }
+
+    /**
+     * @return gyroscope sampling period in microseconds for the current state
+     */
+    public synchronized int getGyroscopePeriod() {
+        return manoeuvre ? profile.gyroscopeManoeuvre : profile.gyroscopeSteady;
+    }
+
+    /**
+     * Feed the latest rate of turn. The listener is notified outside of the lock.
+     * @param rateOfTurn rate of turn in radians per second
+     * @param timestamp time in nanoseconds
+     */
+    public void update(float rateOfTurn, long timestamp) {
+        int period;
+        synchronized (this) {
+            float rate = Math.abs(rateOfTurn);
+            if(rate > (manoeuvre ? STEADY_RATE : MANOEUVRE_RATE)) {
+                lastManoeuvre = timestamp;
+                if(manoeuvre) return;
+                manoeuvre = true;
+            } else if(manoeuvre && timestamp - lastManoeuvre > HOLD_TIME) {
+                manoeuvre = false;
+            } else return;
+            if(profile.gyroscopeManoeuvre == profile.gyroscopeSteady) return;
+            period = getGyroscopePeriod();
+        }
+        listener.setGyroscopePeriod(period);
+    }
+}
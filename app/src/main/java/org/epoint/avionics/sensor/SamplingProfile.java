@@ -0,0 +1,52 @@
+package org.epoint.avionics.sensor;
+
+/**
+ * Named sensor sampling profiles, trading responsiveness for power consumption.
+ * Sensor periods are in microseconds, as accepted by
+ * {@link android.hardware.SensorManager#registerListener(android.hardware.SensorEventListener,
+ * android.hardware.Sensor, int)}.
+ */
+public enum SamplingProfile {
+    HIGH_PERFORMANCE(20000, 20000, 40000, 0, 0, 0, 0),
+    BALANCED(20000, 20000, 40000, 0, 10000, 1000, 0),
+    POWER_SAVER(60000, 60000, 200000, 10000, 40000, 5000, 10);
+
+    /**
+     * Accelerometer sampling period
+     */
+    public final int accelerometer;
+    /**
+     * Magnetometer sampling period
+     */
+    public final int magnetometer;
+    /**
+     * Barometer sampling period
+     */
+    public final int pressure;
+    /**
+     * Gyroscope sampling period during manoeuvres
+     */
+    public final int gyroscopeManoeuvre;
+    /**
+     * Gyroscope sampling period in steady flight
+     */
+    public final int gyroscopeSteady;
+    /**
+     * Minimal time between location updates in milliseconds
+     */
+    public final long locationTime;
+    /**
+     * Minimal distance between location updates in meters
+     */
+    public final float locationDistance;
+
+    private SamplingProfile(int a, int m, int p, int gm, int gs, long lt, float ld) {
+        accelerometer = a;
+        magnetometer = m;
+        pressure = p;
+        gyroscopeManoeuvre = gm;
+        gyroscopeSteady = gs;
+        locationTime = lt;
+        locationDistance = ld;
+    }
+}
@@ -5,17 +5,17 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 
 /**
- * Wrap SensorEventListener to prevent concurrent execution of event processing.
+ * Wrap SampleListener to prevent concurrent execution of event processing.
  * Why on Earth should the application programmer do this?!
  */
 public class SensorEventWrapper implements SensorEventListener {
 
-    private final SensorEventListener sensorEventListener;
+    private final SampleListener sampleListener;
 
     private volatile int lock = 0;
 
-    public SensorEventWrapper(SensorEventListener l) {
-        sensorEventListener = l;
+    public SensorEventWrapper(SampleListener l) {
+        sampleListener = l;
     }
 
     /**
@@ -25,12 +25,12 @@ public class SensorEventWrapper implements SensorEventListener {
     @Override
     public void onSensorChanged(SensorEvent event) {
         if(lock++ > 0) return; // TAS
-        sensorEventListener.onSensorChanged(event);
+        sampleListener.onSample(event.timestamp, event.values);
         lock = 0;
     }
 
     @Override
     public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        sensorEventListener.onAccuracyChanged(sensor, accuracy);
+
     }
 }
@@ -0,0 +1,182 @@
+package org.epoint.avionics.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.render.Altimeter;
+import org.epoint.avionics.render.Compass;
+import org.epoint.avionics.render.Horizon;
+import org.epoint.avionics.render.Inclinometer;
+import org.epoint.avionics.render.Palette;
+import org.epoint.avionics.render.RenderTarget;
+import org.epoint.avionics.render.Scene;
+import org.epoint.avionics.render.Tile;
+import org.epoint.avionics.render.TurnIndicator;
+
+/**
+ * Software rendering of the instruments on a {@link Canvas}. Each tile is recorded as a
+ * display list when its state changes. Cached tiles are played back to a bitmap of their own
+ * at that time and composited every frame; the others are played back every frame.
+ */
+public class CanvasRenderer implements InstrumentRenderer {
+
+    /**
+     * Largest number of state variables of an instrument
+     */
+    private static final int STATE = 11;
+
+    /**
+     * Recording and surface of a tile
+     */
+    private static class Surface {
+        final Scene scene = new Scene(STATE);
+        final float[] bounds = new float[4];
+        Tile.Instrument instrument;
+        Bitmap bitmap;
+        Canvas canvas;
+
+        /**
+         * Make the surface fit the tile, recording it again if anything changed.
+         */
+        void fit(Tile t, float w, float h) {
+            if(t.instrument != instrument) {
+                instrument = t.instrument;
+                scene.invalidate();
+            }
+            if(!t.cached) {
+                release();
+                return;
+            }
+            float left = bounds[0], top = bounds[1], right = bounds[2], bottom = bounds[3];
+            t.bounds(w, h, bounds);
+            if(bitmap != null && left == bounds[0] && top == bounds[1] && right == bounds[2]
+                    && bottom == bounds[3]) return;
+            release();
+            int width = (int) (bounds[2] - bounds[0]), height = (int) (bounds[3] - bounds[1]);
+            if(width <= 0 || height <= 0) return;
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            canvas = new Canvas(bitmap);
+            canvas.translate(-bounds[0], -bounds[1]);
+            scene.invalidate();
+        }
+
+        void release() {
+            if(bitmap == null) return;
+            bitmap.recycle();
+            bitmap = null;
+            canvas = null;
+        }
+    }
+
+    private final CanvasTarget target = new CanvasTarget();
+    private final CanvasTarget surfaceTarget = new CanvasTarget();
+    private Surface[] surfaces = new Surface[0];
+    private Surface surface;
+    private Canvas canvas;
+
+    /**
+     * @param c canvas to draw the following frame on
+     */
+    public void setCanvas(Canvas c) {
+        canvas = c;
+        target.setCanvas(c);
+    }
+
+    @Override
+    public void tile(int i, Tile t, float w, float h) {
+        if(i >= surfaces.length) {
+            Surface[] s = new Surface[i + 1];
+            System.arraycopy(surfaces, 0, s, 0, surfaces.length);
+            surfaces = s;
+        }
+        if(surfaces[i] == null) surfaces[i] = new Surface();
+        surface = surfaces[i];
+        surface.fit(t, w, h);
+    }
+
+    /**
+     * Show the current tile, as recorded.
+     * @param stale whether it has just been recorded
+     */
+    private void show(boolean stale) {
+        Surface s = surface;
+        if(s.bitmap == null) {
+            s.scene.list.play(target);
+            return;
+        }
+        if(stale) {
+            s.bitmap.eraseColor(0);
+            surfaceTarget.setCanvas(s.canvas);
+            s.scene.list.play(surfaceTarget);
+        }
+        canvas.drawBitmap(s.bitmap, s.bounds[0], s.bounds[1], null);
+    }
+
+    @Override
+    public void horizon(Attitude up, float left, float right, float top, float bottom, float y,
+                        float d, int fov, boolean antiAlias) {
+        Scene horizon = surface.scene;
+        boolean stale = horizon.set(0, (float) up.upX()).set(1, (float) up.upY())
+                .set(2, (float) up.pitchSin()).set(3, left).set(4, right).set(5, top)
+                .set(6, bottom).set(7, y).set(8, d).set(9, fov).set(10, antiAlias ? 1 : 0)
+                .isStale();
+        if(stale) Horizon.draw(horizon.list, up, left, right, top, bottom, y, d, fov, antiAlias);
+        show(stale);
+    }
+
+    @Override
+    public void compass(float bearing, float heading, float x, float y, float r, int labels) {
+        Scene compass = surface.scene;
+        boolean stale = compass.set(0, bearing).set(1, heading).set(2, x).set(3, y).set(4, r)
+                .set(5, labels).isStale();
+        if(stale) {
+            Palette.scale(compass.list);
+            Compass.draw(compass.list, bearing, heading, x, y, r, labels);
+        }
+        show(stale);
+    }
+
+    @Override
+    public void altimeter(float altitude, float tick, String unit, float x, float y, float s) {
+        Scene altimeter = surface.scene;
+        // the hash of the unit stands for it
+        boolean stale = altimeter.set(0, altitude).set(1, tick).set(2, unit.hashCode())
+                .set(3, x).set(4, y).set(5, s).isStale();
+        if(stale) {
+            Palette.scale(altimeter.list);
+            Altimeter.draw(altimeter.list, altitude, tick, unit, x, y, s);
+        }
+        show(stale);
+    }
+
+    @Override
+    public void inclinometer(float slip, float x, float y, float r) {
+        Scene inclinometer = surface.scene;
+        boolean stale = inclinometer.set(0, slip).set(1, x).set(2, y).set(3, r).isStale();
+        if(stale) {
+            Palette.scale(inclinometer.list);
+            Inclinometer.draw(inclinometer.list, slip, x, y, r);
+        }
+        show(stale);
+    }
+
+    @Override
+    public void turnIndicator(float rate, float x, float y, float r) {
+        Scene turnIndicator = surface.scene;
+        boolean stale = turnIndicator.set(0, rate).set(1, x).set(2, y).set(3, r).isStale();
+        if(stale) {
+            Palette.scale(turnIndicator.list);
+            TurnIndicator.draw(turnIndicator.list, rate, x, y, r);
+        }
+        show(stale);
+    }
+
+    @Override
+    public void debug(String text) {
+        target.setColor(Palette.WARNING);
+        target.setStyle(RenderTarget.Style.FILL);
+        target.setTextSize(Palette.TEXT_SIZE);
+        target.text(text, 0, 0, RenderTarget.Align.LEFT, RenderTarget.Anchor.TOP);
+    }
+}
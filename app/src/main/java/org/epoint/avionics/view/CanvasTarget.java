@@ -0,0 +1,137 @@
+package org.epoint.avionics.view;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import org.epoint.avionics.render.RenderTarget;
+
+/**
+ * Playback of drawing primitives on a {@link Canvas}, with a single paint.
+ */
+public class CanvasTarget implements RenderTarget {
+
+    private final Paint paint = new Paint();
+    private final Paint.FontMetrics metrics = new Paint.FontMetrics();
+    private final Path path = new Path();
+    private final Matrix matrix = new Matrix();
+    private final float[] values = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+    private final RectF oval = new RectF();
+    private Canvas canvas;
+
+    /**
+     * @param c canvas to draw on from now on
+     */
+    public void setCanvas(Canvas c) {
+        canvas = c;
+    }
+
+    @Override
+    public void save() {
+        canvas.save();
+    }
+
+    @Override
+    public void restore() {
+        canvas.restore();
+    }
+
+    @Override
+    public void concat(float[] t) {
+        values[0] = t[0];
+        values[1] = t[2];
+        values[2] = t[4];
+        values[3] = t[1];
+        values[4] = t[3];
+        values[5] = t[5];
+        matrix.setValues(values);
+        canvas.concat(matrix);
+    }
+
+    @Override
+    public void setColor(int argb) {
+        paint.setColor(argb);
+    }
+
+    @Override
+    public void setStyle(Style s) {
+        switch(s) {
+            case FILL:
+                paint.setStyle(Paint.Style.FILL);
+                break;
+            case STROKE:
+                paint.setStyle(Paint.Style.STROKE);
+                break;
+            case FILL_AND_STROKE:
+                paint.setStyle(Paint.Style.FILL_AND_STROKE);
+                break;
+        }
+    }
+
+    @Override
+    public void setAntiAlias(boolean a) {
+        paint.setAntiAlias(a);
+    }
+
+    @Override
+    public void setStrokeWidth(float w) {
+        paint.setStrokeWidth(w);
+    }
+
+    @Override
+    public void setTextSize(float s) {
+        paint.setTextSize(s);
+    }
+
+    @Override
+    public void paint() {
+        canvas.drawPaint(paint);
+    }
+
+    @Override
+    public void lines(float[] pts, int offset, int count) {
+        canvas.drawLines(pts, offset, count, paint);
+    }
+
+    @Override
+    public void polygon(float[] pts, int offset, int count) {
+        path.reset();
+        path.moveTo(pts[offset], pts[offset + 1]);
+        for(int i = offset + 2; i + 1 < offset + count; i += 2) path.lineTo(pts[i], pts[i + 1]);
+        path.close();
+        canvas.drawPath(path, paint);
+    }
+
+    @Override
+    public void circle(float x, float y, float r) {
+        canvas.drawCircle(x, y, r, paint);
+    }
+
+    @Override
+    public void arc(float x, float y, float r, float start, float sweep) {
+        oval.set(x - r, y - r, x + r, y + r);
+        canvas.drawArc(oval, start, sweep, false, paint);
+    }
+
+    @Override
+    public void text(String s, float x, float y, Align align, Anchor anchor) {
+        switch(align) {
+            case LEFT:
+                paint.setTextAlign(Paint.Align.LEFT);
+                break;
+            case CENTER:
+                paint.setTextAlign(Paint.Align.CENTER);
+                break;
+            case RIGHT:
+                paint.setTextAlign(Paint.Align.RIGHT);
+                break;
+        }
+        if(anchor != Anchor.BASELINE) {
+            paint.getFontMetrics(metrics);
+            y -= anchor == Anchor.TOP ? metrics.top : metrics.bottom;
+        }
+        canvas.drawText(s, x, y, paint);
+    }
+}
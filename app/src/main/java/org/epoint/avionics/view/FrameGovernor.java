@@ -0,0 +1,144 @@
+package org.epoint.avionics.view;
+
+/**
+ * Frame time budget governor. Keeps moving averages of the draw time of each instrument and of
+ * whole frames. When frames exceed the budget, the most expensive instrument that can still be
+ * simplified loses a level of detail; when frames stay well within the budget, detail is
+ * restored in reverse order. Restoring detail that soon breaks the budget again doubles the
+ * wait before the next attempt. Used from the drawing thread only.
+ */
+public class FrameGovernor {
+
+    public enum Instrument {
+        /**
+         * Pitch ladder narrowed, then earth drawn without anti-aliasing
+         */
+        HORIZON(2),
+        /**
+         * Labels every 30 degrees, then cardinal points only
+         */
+        COMPASS(2),
+        ALTIMETER(0),
+        TURN_INDICATOR(0),
+        INCLINOMETER(0);
+
+        /**
+         * Number of detail reductions available
+         */
+        public final int levels;
+
+        private Instrument(int l) {
+            levels = l;
+        }
+    }
+
+    /**
+     * Weight of the newest frame in the moving averages
+     */
+    private static final double SMOOTHING = 0.1;
+
+    /**
+     * Fraction of the budget below which detail is restored
+     */
+    private static final double HEADROOM = 0.6;
+
+    /**
+     * Minimal time in nanoseconds between changes, for the averages to settle
+     */
+    private static final long COOLDOWN = 500000000L;
+
+    /**
+     * Initial and maximal time in nanoseconds frames must stay within the headroom before
+     * restoring detail
+     */
+    private static final long HOLD = 2000000000L, MAX_HOLD = 32000000000L;
+
+    private static final Instrument[] INSTRUMENTS = Instrument.values();
+
+    private final long budget;
+    private final double[] drawTime = new double[INSTRUMENTS.length];
+    private final int[] level = new int[INSTRUMENTS.length];
+    /**
+     * Instruments in the order their detail was reduced
+     */
+    private final int[] reduced;
+    private int depth = 0;
+    private double frameTime = 0;
+    private boolean started = false;
+    private long lastChange = 0, lastRestore = 0, within = 0, hold = HOLD;
+
+    /**
+     * @param b frame time budget in nanoseconds
+     */
+    public FrameGovernor(long b) {
+        budget = b;
+        int n = 0;
+        for(Instrument i : INSTRUMENTS) n += i.levels;
+        reduced = new int[n];
+    }
+
+    /**
+     * @return detail reductions currently applied to the instrument
+     */
+    public int getLevel(Instrument i) {
+        return level[i.ordinal()];
+    }
+
+    /**
+     * @return moving average of the instrument's draw time in nanoseconds
+     */
+    public long getDrawTime(Instrument i) {
+        return (long) drawTime[i.ordinal()];
+    }
+
+    /**
+     * @return moving average of the frame time in nanoseconds
+     */
+    public long getFrameTime() {
+        return (long) frameTime;
+    }
+
+    /**
+     * @param i instrument drawn
+     * @param nanos time it took
+     */
+    public void record(Instrument i, long nanos) {
+        int o = i.ordinal();
+        drawTime[o] += (nanos - drawTime[o]) * (started ? SMOOTHING : 1);
+    }
+
+    /**
+     * Account for a whole frame, adjusting the detail levels if needed.
+     * @param nanos time the frame took
+     * @param now current time in nanoseconds
+     * @return whether a detail level changed
+     */
+    public boolean endFrame(long nanos, long now) {
+        frameTime += (nanos - frameTime) * (started ? SMOOTHING : 1);
+        started = true;
+        if(frameTime > budget) {
+            within = 0;
+            if(now - lastChange < COOLDOWN) return false;
+            int worst = -1;
+            for(int i = 0; i < INSTRUMENTS.length; i++)
+                if(level[i] < INSTRUMENTS[i].levels
+                        && (worst < 0 || drawTime[i] > drawTime[worst])) worst = i;
+            if(worst < 0) return false;
+            level[worst]++;
+            reduced[depth++] = worst;
+            hold = lastRestore != 0 && now - lastRestore < hold ? Math.min(2 * hold, MAX_HOLD)
+                    : HOLD;
+            lastChange = now;
+            return true;
+        }
+        if(frameTime < HEADROOM * budget && depth > 0) {
+            if(within == 0) within = now;
+            if(now - within >= hold && now - lastChange >= COOLDOWN) {
+                level[reduced[--depth]]--;
+                lastRestore = lastChange = within = now;
+                return true;
+            }
+        } else within = 0;
+        return false;
+    }
+}
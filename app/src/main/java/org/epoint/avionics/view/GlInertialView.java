@@ -0,0 +1,59 @@
+package org.epoint.avionics.view;
+
+import android.content.Context;
+import android.opengl.GLSurfaceView;
+import android.util.AttributeSet;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * Instrument panel rendered with OpenGL ES 2. Frames are drawn on the GL thread on request;
+ * the frame time accounted to the governor is the CPU time of issuing them.
+ */
+public class GlInertialView extends GLSurfaceView implements InstrumentDisplay {
+
+    private final GlInstrumentRenderer renderer = new GlInstrumentRenderer();
+    private final InstrumentPanel panel = new InstrumentPanel();
+
+    public GlInertialView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        setEGLContextClientVersion(2);
+        setRenderer(new Renderer() {
+            @Override
+            public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+                renderer.init();
+            }
+
+            @Override
+            public void onSurfaceChanged(GL10 gl, int width, int height) {
+                renderer.setSize(width, height);
+            }
+
+            @Override
+            public void onDrawFrame(GL10 gl) {
+                long start = System.nanoTime();
+                renderer.begin();
+                panel.draw(renderer, renderer.getWidth(), renderer.getHeight());
+                renderer.end();
+                panel.endFrame(start);
+            }
+        });
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+    }
+
+    @Override
+    public InertialVisualization getModel() {
+        return panel.getModel();
+    }
+
+    @Override
+    public FrameGovernor getGovernor() {
+        return panel.getGovernor();
+    }
+
+    @Override
+    public void drawStuff() {
+        requestRender();
+    }
+}
@@ -0,0 +1,357 @@
+package org.epoint.avionics.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.render.Altimeter;
+import org.epoint.avionics.render.Compass;
+import org.epoint.avionics.render.Geometry;
+import org.epoint.avionics.render.GlyphAtlas;
+import org.epoint.avionics.render.Horizon;
+import org.epoint.avionics.render.Inclinometer;
+import org.epoint.avionics.render.Palette;
+import org.epoint.avionics.render.PitchLadder;
+import org.epoint.avionics.render.Tile;
+import org.epoint.avionics.render.TurnIndicator;
+import org.epoint.avionics.render.VertexBatch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * OpenGL ES 2 rendering of the instruments. Geometry is collected into batches during the
+ * frame and drawn by {@link #end} in a handful of draw calls: the horizon as a single strip
+ * textured with sky and earth, the compass rose as a rotated texture rendered once, all lines,
+ * then all text from a glyph atlas. Tiles are not kept on surfaces of their own: collecting
+ * their geometry costs little, and the whole frame is drawn in the same few calls anyway.
+ * Must be used on the GL thread.
+ */
+public class GlInstrumentRenderer implements InstrumentRenderer {
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 projection;\n" +
+            "attribute vec2 position;\n" +
+            "attribute vec2 texture;\n" +
+            "varying vec2 uv;\n" +
+            "void main() {\n" +
+            "    uv = texture;\n" +
+            "    gl_Position = projection * vec4(position, 0.0, 1.0);\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform sampler2D sampler;\n" +
+            "uniform vec4 color;\n" +
+            "varying vec2 uv;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = color * texture2D(sampler, uv);\n" +
+            "}\n";
+
+    private static final int CIRCLE_SEGMENTS = 32;
+
+    /**
+     * Pitch ladder labels from -90 to 90 degrees
+     */
+    private static final String[] LADDER = new String[180 / PitchLadder.TICK + 1];
+
+    static {
+        for(int i = 0; i < LADDER.length; i++)
+            LADDER[i] = Integer.toString(PitchLadder.TICK * i - 90);
+    }
+
+    private final Paint scalePaint = new Paint();
+    private final Paint.FontMetrics metrics;
+    private final CanvasTarget target = new CanvasTarget();
+    private final VertexBatch horizonQuad = new VertexBatch(8);
+    private final VertexBatch roseQuad = new VertexBatch(4);
+    private final VertexBatch lines = new VertexBatch(256);
+    private final VertexBatch text = new VertexBatch(256);
+    private final VertexBatch debug = new VertexBatch(256);
+    private final float[] projection = new float[16];
+    private final float[] rotation = new float[6];
+    private final int[] pitch = new int[PitchLadder.capacity(Horizon.PITCH_FOV)];
+    private final float[] offset = new float[pitch.length];
+    private final int[] altitudes = new int[Altimeter.capacity()];
+    private final float[] altitudeOffsets = new float[altitudes.length];
+    private FloatBuffer buffer;
+    private GlyphAtlas atlas;
+    private int program, position, texture, projectionLocation, color, sampler;
+    private int horizonTexture, atlasTexture, roseTexture;
+    private boolean antiAlias;
+    /**
+     * Radius and label interval the rose texture was rendered with
+     */
+    private float roseRadius;
+    private int roseLabels;
+    private int width, height;
+
+    public GlInstrumentRenderer() {
+        scalePaint.setColor(Palette.SCALE);
+        scalePaint.setTextSize(Palette.TEXT_SIZE);
+        scalePaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+        metrics = scalePaint.getFontMetrics();
+    }
+
+    /**
+     * Create GL objects, on a new GL context.
+     */
+    public void init() {
+        program = link(VERTEX_SHADER, FRAGMENT_SHADER);
+        position = GLES20.glGetAttribLocation(program, "position");
+        texture = GLES20.glGetAttribLocation(program, "texture");
+        projectionLocation = GLES20.glGetUniformLocation(program, "projection");
+        color = GLES20.glGetUniformLocation(program, "color");
+        sampler = GLES20.glGetUniformLocation(program, "sampler");
+        int[] t = new int[3];
+        GLES20.glGenTextures(3, t, 0);
+        horizonTexture = t[0];
+        atlasTexture = t[1];
+        roseTexture = t[2];
+        roseRadius = 0;
+
+        // sky above earth, blended over a pixel by linear filtering
+        ByteBuffer sky = ByteBuffer.allocateDirect(8);
+        for(int c : new int[]{Palette.SKY, Palette.EARTH})
+            sky.put((byte) Color.red(c)).put((byte) Color.green(c)).put((byte) Color.blue(c))
+                    .put((byte) Color.alpha(c));
+        sky.position(0);
+        bind(horizonTexture, GLES20.GL_LINEAR);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, 1, 2, 0, GLES20.GL_RGBA,
+                GLES20.GL_UNSIGNED_BYTE, sky);
+        antiAlias = true;
+
+        atlas = atlas();
+        atlas.solid(lines);
+
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA); // premultiplied
+        GLES20.glClearColor(0, 0, 0, 1);
+    }
+
+    /**
+     * @param w surface width in pixels
+     * @param h surface height in pixels
+     */
+    public void setSize(int w, int h) {
+        width = w;
+        height = h;
+        GLES20.glViewport(0, 0, w, h);
+        Geometry.ortho(projection, w, h);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Start collecting a frame.
+     */
+    public void begin() {
+        horizonQuad.clear();
+        roseQuad.clear();
+        lines.clear();
+        text.clear();
+        debug.clear();
+    }
+
+    /**
+     * Draw the frame collected since {@link #begin}.
+     */
+    public void end() {
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glUseProgram(program);
+        GLES20.glUniformMatrix4fv(projectionLocation, 1, false, projection, 0);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glUniform1i(sampler, 0);
+        GLES20.glEnableVertexAttribArray(position);
+        GLES20.glEnableVertexAttribArray(texture);
+        draw(horizonQuad, GLES20.GL_TRIANGLE_STRIP, horizonTexture, Color.WHITE);
+        draw(roseQuad, GLES20.GL_TRIANGLE_STRIP, roseTexture, Palette.SCALE);
+        draw(lines, GLES20.GL_LINES, atlasTexture, Palette.SCALE);
+        draw(text, GLES20.GL_TRIANGLES, atlasTexture, Palette.SCALE);
+        draw(debug, GLES20.GL_TRIANGLES, atlasTexture, Palette.WARNING);
+    }
+
+    @Override
+    public void tile(int i, Tile t, float w, float h) {
+    }
+
+    @Override
+    public void horizon(Attitude up, float left, float right, float top, float bottom, float y,
+                        float d, int fov, boolean antiAlias) {
+        if(antiAlias != this.antiAlias) {
+            bind(horizonTexture, antiAlias ? GLES20.GL_LINEAR : GLES20.GL_NEAREST);
+            this.antiAlias = antiAlias;
+        }
+        Geometry.horizon(horizonQuad, up, left, right, top, bottom, y, d, rotation);
+        float x = 0.5f * (left + right);
+        int n = PitchLadder.marks(up, y, d, fov, pitch, offset);
+        int l = lines.size(), t = text.size();
+        for(int i = 0; i < n; i++) {
+            lines.lines(Horizon.pitchMark(pitch[i], offset[i], left, right));
+            if(pitch[i] != 0)
+                atlas.text(text, LADDER[(pitch[i] + 90) / PitchLadder.TICK], x, offset[i], 0.5f);
+        }
+        lines.transform(l, rotation);
+        text.transform(t, rotation);
+        lines.lines(Horizon.symbol(left, right, y));
+        lines.circle(x, y, 1, 4);
+    }
+
+    @Override
+    public void compass(float bearing, float heading, float x, float y, float r, int labels) {
+        if(r != roseRadius || labels != roseLabels) rose(r, labels);
+        Geometry.quad(roseQuad, x, y, (float) Math.ceil(r) + 2,
+                Geometry.rotation(rotation, -heading, x, y), 0, 0, 1, 1);
+        lines.outline(Compass.PLANE, x, y, r * Compass.PLANE_RADIUS);
+        Geometry.rotation(rotation, bearing - heading, x, y);
+        int l = lines.size(), t = text.size();
+        lines.line(x - Compass.MARK_WIDTH * r, y - r * Compass.MARK_RADIUS, x, y - r);
+        lines.line(x, y - r, x + Compass.MARK_WIDTH * r, y - r * Compass.MARK_RADIUS);
+        atlas.text(text, Compass.bearingLabel(bearing), x,
+                y - r * Compass.MARK_RADIUS - metrics.bottom, 0.5f);
+        lines.transform(l, rotation);
+        text.transform(t, rotation);
+    }
+
+    @Override
+    public void altimeter(float altitude, float tick, String unit, float x, float y, float s) {
+        lines.lines(Altimeter.tape(altitude, tick, x, y, s));
+        float lx = Altimeter.labelX(x, s);
+        for(int i = Altimeter.labels(altitude, tick, y, s, altitudes, altitudeOffsets); i-- > 0;)
+            atlas.text(text, Integer.toString(altitudes[i]), lx,
+                    altitudeOffsets[i] + Altimeter.LABEL_BASELINE, 1);
+        atlas.text(text, Altimeter.readout(altitude, unit), x, y + s - metrics.top, 0.5f);
+    }
+
+    @Override
+    public void inclinometer(float slip, float x, float y, float r) {
+        lines.lines(Inclinometer.tube(x, y, r));
+        lines.circle(Inclinometer.ball(slip, x, r), y, r, CIRCLE_SEGMENTS);
+    }
+
+    @Override
+    public void turnIndicator(float rate, float x, float y, float r) {
+        lines.lines(TurnIndicator.marks(x, y, r));
+        int l = lines.size();
+        lines.lines(TurnIndicator.symbol(x, y, r));
+        lines.transform(l, Geometry.rotation(rotation, TurnIndicator.angle(rate), x, y));
+    }
+
+    @Override
+    public void debug(String s) {
+        atlas.text(debug, s, 0, atlas.cellHeight, 0);
+    }
+
+    /**
+     * Render the compass rose into its texture.
+     */
+    private void rose(float r, int labels) {
+        int side = 2 * ((int) Math.ceil(r) + 2);
+        Bitmap b = Bitmap.createBitmap(side, side, Bitmap.Config.ARGB_8888);
+        target.setCanvas(new Canvas(b));
+        Palette.scale(target);
+        Compass.rose(target, 0.5f * side, 0.5f * side, r, labels);
+        bind(roseTexture, GLES20.GL_LINEAR);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, b, 0);
+        b.recycle();
+        roseRadius = r;
+        roseLabels = labels;
+    }
+
+    /**
+     * Rasterize printable ASCII and the degree sign into the atlas texture.
+     */
+    private GlyphAtlas atlas() {
+        StringBuilder chars = new StringBuilder();
+        for(char c = ' '; c <= '~'; c++) chars.append(c);
+        chars.append('°');
+        Paint p = new Paint(scalePaint);
+        p.setStyle(Paint.Style.FILL);
+        p.setTextAlign(Paint.Align.LEFT);
+        float w = 0;
+        for(int i = 0; i < chars.length(); i++)
+            w = Math.max(w, p.measureText(String.valueOf(chars.charAt(i))));
+        GlyphAtlas a = new GlyphAtlas(chars.toString(), (int) Math.ceil(w) + 2,
+                (int) Math.ceil(metrics.bottom - metrics.top) + 2, 1, 1 - metrics.top);
+        Bitmap b = Bitmap.createBitmap(a.width, a.height, Bitmap.Config.ARGB_8888);
+        Canvas c = new Canvas(b);
+        c.drawRect(0, 0, a.cellWidth, a.cellHeight, p);
+        for(int i = 1; i < a.cells(); i++) {
+            String s = String.valueOf(a.charAt(i));
+            c.drawText(s, a.cellX(i) + a.originX, a.cellY(i) + a.baseline, p);
+            a.setAdvance(a.charAt(i), p.measureText(s));
+        }
+        bind(atlasTexture, GLES20.GL_LINEAR);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, b, 0);
+        b.recycle();
+        return a;
+    }
+
+    private static void bind(int t, int filter) {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, t);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S,
+                GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T,
+                GLES20.GL_CLAMP_TO_EDGE);
+    }
+
+    private void draw(VertexBatch b, int mode, int t, int c) {
+        int n = b.size();
+        if(n == 0) return;
+        int floats = n * VertexBatch.STRIDE;
+        if(buffer == null || buffer.capacity() < floats)
+            buffer = ByteBuffer.allocateDirect(4 * Math.max(floats, 1024))
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.clear();
+        buffer.put(b.data(), 0, floats);
+        buffer.position(0);
+        GLES20.glVertexAttribPointer(position, 2, GLES20.GL_FLOAT, false,
+                4 * VertexBatch.STRIDE, buffer);
+        buffer.position(2);
+        GLES20.glVertexAttribPointer(texture, 2, GLES20.GL_FLOAT, false,
+                4 * VertexBatch.STRIDE, buffer);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, t);
+        GLES20.glUniform4f(color, Color.red(c) / 255f, Color.green(c) / 255f,
+                Color.blue(c) / 255f, Color.alpha(c) / 255f);
+        GLES20.glDrawArrays(mode, 0, n);
+    }
+
+    private static int compile(int type, String source) {
+        int s = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(s, source);
+        GLES20.glCompileShader(s);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(s, GLES20.GL_COMPILE_STATUS, status, 0);
+        if(status[0] == 0) {
+            String log = GLES20.glGetShaderInfoLog(s);
+            GLES20.glDeleteShader(s);
+            throw new IllegalStateException("Shader: " + log);
+        }
+        return s;
+    }
+
+    private static int link(String vertex, String fragment) {
+        int p = GLES20.glCreateProgram();
+        GLES20.glAttachShader(p, compile(GLES20.GL_VERTEX_SHADER, vertex));
+        GLES20.glAttachShader(p, compile(GLES20.GL_FRAGMENT_SHADER, fragment));
+        GLES20.glLinkProgram(p);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(p, GLES20.GL_LINK_STATUS, status, 0);
+        if(status[0] == 0) throw new IllegalStateException("Program: " +
+                GLES20.glGetProgramInfoLog(p));
+        return p;
+    }
+}
@@ -2,10 +2,11 @@ package org.epoint.avionics.view;
 
 import org.epoint.avionics.Units;
 import org.epoint.avionics.Units.*;
-import org.epoint.avionics.math.Vec3D;
+import org.epoint.avionics.math.Attitude;
 import org.epoint.avionics.math.Versor;
 import org.epoint.avionics.sensor.Barometric;
 import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.Predictor;
 
 /**
  * Inertial and Barometric instrument model
@@ -17,9 +18,13 @@ public class InertialVisualization implements Barometric.Listener, Inertial.List
      */
     public volatile String debug = null;
     /**
-     * Unit vector pointing upwards
+     * Up vector and heading direction, updated in place
      */
-    public volatile Vec3D up = new Vec3D(1);
+    private final Attitude attitude = new Attitude();
+    /**
+     * Orientation extrapolated to display time
+     */
+    private final Predictor predictor = new Predictor();
     /**
      * Direction of movement in degrees (geographic)
      */
@@ -72,10 +77,35 @@ public class InertialVisualization implements Barometric.Listener, Inertial.List
         debug = d;
     }
 
+    /**
+     * Copy the current attitude without allocation.
+     * @param a attitude to be updated
+     * @return <code>a</code> after update
+     */
+    public synchronized Attitude getAttitude(Attitude a) {
+        return a.set(attitude);
+    }
+
+    /**
+     * Extrapolate the current attitude with the latest angular rate.
+     * @param a attitude to be updated
+     * @param t {@link System#nanoTime} at which the attitude will be seen
+     * @return <code>a</code> after update
+     */
+    public Attitude getAttitude(Attitude a, long t) {
+        getAttitude(a);
+        return predictor.predict(a, t);
+    }
+
+    @Override
+    public void setAngularRate(float x, float y, float z) {
+        predictor.setAngularRate(x, y, z);
+    }
+
     @Override
-    public synchronized void setOrientation(Versor aircraftToWorld) {
-        up = aircraftToWorld.rot(1);
-        float h = (float) -aircraftToWorld.inv().yaw();
+    public synchronized void setOrientation(double r, double i, double j, double k) {
+        predictor.setOrientation(r, i, j, k, System.nanoTime());
+        float h = (float) Versor.attitude(r, i, j, k, attitude).heading();
         bearing += h - heading;
         if(bearing > 360) bearing -= 360;
         else if(bearing < 0) bearing += 360;
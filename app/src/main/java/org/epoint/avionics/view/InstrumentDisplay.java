@@ -0,0 +1,26 @@
+package org.epoint.avionics.view;
+
+/**
+ * View showing the instrument panel, whatever the rendering backend.
+ */
+public interface InstrumentDisplay {
+
+    InertialVisualization getModel();
+
+    FrameGovernor getGovernor();
+
+    /**
+     * Draw a frame of the current model.
+     */
+    void drawStuff();
+
+    /**
+     * Called when the activity becomes visible.
+     */
+    void onResume();
+
+    /**
+     * Called when the activity is no longer visible.
+     */
+    void onPause();
+}
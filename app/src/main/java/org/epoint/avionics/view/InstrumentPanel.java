@@ -0,0 +1,164 @@
+package org.epoint.avionics.view;
+
+import android.util.Log;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.render.Horizon;
+import org.epoint.avionics.render.Layout;
+import org.epoint.avionics.render.Schedule;
+import org.epoint.avionics.render.Tile;
+import org.epoint.avionics.view.FrameGovernor.Instrument;
+
+/**
+ * Instruments drawn through any {@link InstrumentRenderer} as laid out by a {@link Layout}.
+ * Each tile shows the model as sampled at its own update rate, with the detail of each
+ * instrument set by the frame governor. The horizon is extrapolated to the time the frame is
+ * expected to be seen.
+ */
+public class InstrumentPanel {
+
+    private static final String TAG = "InstrumentPanel";
+    /**
+     * Drawing time budget of a frame in nanoseconds, leaving most of the 20 ms frame period
+     * to sensor fusion and the UI
+     */
+    private static final long FRAME_BUDGET = 12000000L;
+    /**
+     * Compass label intervals in tens of degrees, by detail reduction
+     */
+    private static final int[] COMPASS_LABELS = {1, 3, 9};
+    /**
+     * Resolution of the compass in degrees, so that it is not drawn again for noise
+     */
+    private static final float COMPASS_RESOLUTION = 0.1f;
+    /**
+     * Time in nanoseconds from posting a frame until it is seen: composition and scan-out,
+     * about a refresh period at 60 Hz
+     */
+    private static final long DISPLAY_LATENCY = 16700000L;
+
+    /**
+     * State of the model shown by a tile
+     */
+    private static class Sample {
+        final Attitude attitude = new Attitude();
+        float bearing, heading, slip, rateOfTurn, altitude;
+    }
+
+    private final InertialVisualization iv = new InertialVisualization();
+    private final FrameGovernor governor = new FrameGovernor(FRAME_BUDGET);
+    private final Layout layout;
+    private final Schedule schedule;
+    private final Sample[] samples;
+    private final Instrument[] instruments;
+
+    public InstrumentPanel() {
+        this(Layout.DEFAULT);
+    }
+
+    public InstrumentPanel(Layout l) {
+        layout = l;
+        schedule = new Schedule(l);
+        samples = new Sample[l.size()];
+        instruments = new Instrument[l.size()];
+        for(int i = 0; i < l.size(); i++) {
+            samples[i] = new Sample();
+            instruments[i] = Instrument.valueOf(l.get(i).instrument.name());
+        }
+    }
+
+    public InertialVisualization getModel() {
+        return iv;
+    }
+
+    public FrameGovernor getGovernor() {
+        return governor;
+    }
+
+    private static float quantize(float v, float q) {
+        return q * (float) Math.floor(0.5 + v / q);
+    }
+
+    /**
+     * @param now start of the frame in nanoseconds
+     */
+    private void sample(Tile t, Sample s, long now) {
+        switch(t.instrument) {
+            case HORIZON:
+                // the frame is seen after it is drawn, which takes about the average frame time
+                iv.getAttitude(s.attitude, now + governor.getFrameTime() + DISPLAY_LATENCY);
+                break;
+            case COMPASS:
+                s.bearing = quantize(iv.bearing, COMPASS_RESOLUTION);
+                s.heading = quantize(iv.heading, COMPASS_RESOLUTION);
+                break;
+            case ALTIMETER:
+                s.altitude = iv.altitude;
+                break;
+            case TURN_INDICATOR:
+                s.rateOfTurn = iv.rateOfTurn;
+                break;
+            case INCLINOMETER:
+                s.slip = iv.slip;
+                break;
+        }
+    }
+
+    /**
+     * @param r rendering backend
+     * @param w panel width in pixels
+     * @param h panel height in pixels
+     */
+    public void draw(InstrumentRenderer r, float w, float h) {
+        long now = System.nanoTime();
+        for(int i = 0; i < layout.size(); i++) {
+            Tile t = layout.get(i);
+            Sample s = samples[i];
+            if(schedule.due(i, now)) sample(t, s, now);
+            float x = t.x * w, y = t.y * h, size = t.size * h;
+            r.tile(i, t, w, h);
+            switch(t.instrument) {
+                case HORIZON:
+                    int horizon = governor.getLevel(Instrument.HORIZON);
+                    r.horizon(s.attitude, 0, w, 0, h, y, t.size * w,
+                            horizon == 0 ? Horizon.PITCH_FOV : Horizon.PITCH_FOV / 2,
+                            horizon < 2);
+                    break;
+                case COMPASS:
+                    r.compass(s.bearing, s.heading, x, y, size,
+                            COMPASS_LABELS[governor.getLevel(Instrument.COMPASS)]);
+                    break;
+                case ALTIMETER:
+                    r.altimeter(s.altitude * iv.altitudeUnit.inMeter, iv.altitudeUnit.tick,
+                            iv.altitudeUnit.abbr, x, y, size);
+                    break;
+                case TURN_INDICATOR:
+                    r.turnIndicator(s.rateOfTurn, x, y, size);
+                    break;
+                case INCLINOMETER:
+                    r.inclinometer(s.slip, x, y, size);
+                    break;
+            }
+            long end = System.nanoTime();
+            governor.record(instruments[i], end - now);
+            now = end;
+        }
+        if(iv.debug != null) {
+            // DEBUG: just in case
+            r.debug(iv.debug);
+        }
+    }
+
+    /**
+     * Account for a finished frame. Call when drawing is done, before the frame is posted, so
+     * that only the drawing is timed.
+     * @param start {@link System#nanoTime} when drawing was started
+     */
+    public void endFrame(long start) {
+        long end = System.nanoTime();
+        if(governor.endFrame(end - start, end))
+            Log.i(TAG, String.format("Frame %.1f ms: horizon %d, compass %d",
+                    1e-6 * governor.getFrameTime(), governor.getLevel(Instrument.HORIZON),
+                    governor.getLevel(Instrument.COMPASS)));
+    }
+}
@@ -0,0 +1,60 @@
+package org.epoint.avionics.view;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.render.Tile;
+
+/**
+ * Drawing backend of the instrument panel. Coordinates are in pixels, with the origin at the
+ * top left corner of the panel. Calls are made from a single drawing thread, within a frame;
+ * each instrument is drawn after the {@link #tile} it belongs to.
+ */
+public interface InstrumentRenderer {
+
+    /**
+     * Start a tile of the layout.
+     * @param i index of the tile in the layout
+     * @param w panel width in pixels
+     * @param h panel height in pixels
+     */
+    void tile(int i, Tile t, float w, float h);
+
+    /**
+     * @param up attitude
+     * @param y screen y coordinate of the line of sight
+     * @param d focal distance in pixels
+     * @param fov pitch ladder extent in degrees
+     * @param antiAlias whether the horizon is anti-aliased
+     * @see org.epoint.avionics.render.Horizon#draw
+     */
+    void horizon(Attitude up, float left, float right, float top, float bottom, float y, float d,
+                 int fov, boolean antiAlias);
+
+    /**
+     * @param labels interval between labels in tens of degrees
+     * @see org.epoint.avionics.render.Compass#draw
+     */
+    void compass(float bearing, float heading, float x, float y, float r, int labels);
+
+    /**
+     * @param altitude altitude in display units
+     * @param tick interval between ticks in display units
+     * @param unit display unit
+     * @see org.epoint.avionics.render.Altimeter#draw
+     */
+    void altimeter(float altitude, float tick, String unit, float x, float y, float s);
+
+    /**
+     * @see org.epoint.avionics.render.Inclinometer#draw
+     */
+    void inclinometer(float slip, float x, float y, float r);
+
+    /**
+     * @see org.epoint.avionics.render.TurnIndicator#draw
+     */
+    void turnIndicator(float rate, float x, float y, float r);
+
+    /**
+     * @param text debug message, shown at the top left
+     */
+    void debug(String text);
+}
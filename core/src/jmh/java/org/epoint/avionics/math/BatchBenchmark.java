@@ -0,0 +1,98 @@
+package org.epoint.avionics.math;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rotating a recorded series of vectors by per-sample versors: per-object {@link Versor#rot(Vec3D)}
+ * loop versus {@link Batch} over packed arrays, sequential and fork-join.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchBenchmark {
+
+    @Param({"4096", "1048576"})
+    public int samples;
+
+    private Versor[] versors;
+    private Vec3D[] vectors;
+    private double[] q, v, out;
+    private float[] qf, vf, outf;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        versors = new Versor[samples];
+        vectors = new Vec3D[samples];
+        q = new double[4 * samples];
+        v = new double[3 * samples];
+        out = new double[3 * samples];
+        qf = new float[4 * samples];
+        vf = new float[3 * samples];
+        outf = new float[3 * samples];
+        for (int n = 0; n < samples; n++) {
+            versors[n] = new Versor(360 * random.nextDouble(), 180 * random.nextDouble() - 90,
+                    360 * random.nextDouble());
+            vectors[n] = new Vec3D(random.nextGaussian(), random.nextGaussian(),
+                    random.nextGaussian());
+            for (int c = 0; c < 4; c++) {
+                qf[4 * n + c] = (float) (q[4 * n + c] = versors[n].v(c));
+            }
+            for (int c = 0; c < 3; c++) {
+                vf[3 * n + c] = (float) (v[3 * n + c] = vectors[n].v(c));
+            }
+        }
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public double objectLoop() {
+        double sum = 0;
+        for (int n = 0; n < samples; n++) {
+            sum += versors[n].rot(new Vec3D(vectors[n])).y();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] batchDouble() {
+        Batch.rot(q, v, out, 0, samples);
+        return out;
+    }
+
+    @Benchmark
+    public float[] batchFloat() {
+        Batch.rot(qf, vf, outf, 0, samples);
+        return outf;
+    }
+
+    @Benchmark
+    public double[] parallelDouble() {
+        Batch.rot(pool, q, v, out);
+        return out;
+    }
+
+    @Benchmark
+    public float[] parallelFloat() {
+        Batch.rot(pool, qf, vf, outf);
+        return outf;
+    }
+}
@@ -0,0 +1,70 @@
+package org.epoint.avionics.math;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gyroscope integration step (spin, compose, rotate) in the array-backed generic classes
+ * versus the field-based double and float specializations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VersorBenchmark {
+
+    private static final int SAMPLES = 1024;
+    private static final double DT = 1e-3;
+
+    private final float[] rate = new float[3 * SAMPLES];
+    private int index = 0;
+    private Versor generic;
+    private DoubleVersor fieldDouble;
+    private FloatVersor fieldFloat;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < rate.length; i++) {
+            rate[i] = (float) random.nextGaussian();
+        }
+        generic = new Versor(10, 20, 30);
+        fieldDouble = new DoubleVersor(generic);
+        fieldFloat = new FloatVersor(generic);
+    }
+
+    private int next() {
+        int i = index;
+        index = (i + 3) % rate.length;
+        return i;
+    }
+
+    @Benchmark
+    public double genericStep() {
+        int i = next();
+        generic = new Versor(new Vec3D(rate[i], rate[i + 1], rate[i + 2]), DT).mul(generic);
+        return generic.rot(new Vec3D(0, 0, -1)).y();
+    }
+
+    @Benchmark
+    public double doubleStep() {
+        int i = next();
+        fieldDouble = DoubleVersor.spin(rate[i], rate[i + 1], rate[i + 2], DT).mul(fieldDouble);
+        return fieldDouble.rot(new DoubleVec3D(0, 0, -1)).y();
+    }
+
+    @Benchmark
+    public float floatStep() {
+        int i = next();
+        fieldFloat = FloatVersor.spin(rate[i], rate[i + 1], rate[i + 2], (float) DT)
+                .mul(fieldFloat);
+        return fieldFloat.rot(new FloatVec3D(0, 0, -1)).y();
+    }
+}
@@ -0,0 +1,125 @@
+package org.epoint.avionics.sensor;
+
+import org.epoint.avionics.math.Vec3D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering one second of gyroscope, accelerometer and magnetometer samples at 1 kHz: the
+ * object-based damper that {@link DamperBank} replaced, one instance per sensor, versus one
+ * bank for all three. Run with <code>-prof gc</code> for allocation per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DamperBenchmark {
+
+    private static final int SAMPLES = 1000;
+    private static final long PERIOD = 1000000;
+
+    /**
+     * Former Inertial.Damper, allocating a vector per sample and another for the stability
+     * test
+     */
+    private static class ObjectDamper implements SampleListener {
+        private final double time;
+        private final double stableRadius2;
+        long lastTimestamp = 0;
+        Vec3D vector;
+        double variance = 0;
+        private Vec3D stableVector;
+        long firstStableTimestamp = 0;
+
+        ObjectDamper(double t, double r) {
+            time = t;
+            stableRadius2 = r * r;
+        }
+
+        private void setStable() {
+            stableVector = new Vec3D(vector);
+            firstStableTimestamp = lastTimestamp;
+        }
+
+        @Override
+        public void onSample(long timestamp, float[] values) {
+            double t = (double)(timestamp - lastTimestamp) / time;
+            Vec3D d = new Vec3D(values[0], values[1], values[2]);
+            if(t >= 1 || vector == null) {
+                vector = d;
+                setStable();
+            } else {
+                d.sub(vector);
+                double dv = d.dot(d) - variance;
+                vector.add(d.scale(t));
+                variance += dv * t;
+            }
+            lastTimestamp = timestamp;
+            if(stableRadius2 > 0) {
+                Vec3D r = new Vec3D(vector).sub(stableVector);
+                if(r.dot(r) > stableRadius2)
+                    setStable();
+            } else setStable();
+        }
+    }
+
+    private final float[][] gyroscope = new float[SAMPLES][3];
+    private final float[][] accelerometer = new float[SAMPLES][3];
+    private final float[][] magnetometer = new float[SAMPLES][3];
+    private ObjectDamper[] objects;
+    private DamperBank bank;
+    private long timestamp;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for(int n = 0; n < SAMPLES; n++) {
+            for(int i = 0; i < 3; i++) {
+                gyroscope[n][i] = (float) (0.01 * random.nextGaussian());
+                accelerometer[n][i] = (float) ((i == 1 ? 9.81 : 0) + 0.05 * random.nextGaussian());
+                magnetometer[n][i] = (float) ((i == 1 ? -40 : 20) + 0.3 * random.nextGaussian());
+            }
+        }
+        Tuning t = Tuning.DEFAULT;
+        objects = new ObjectDamper[]{new ObjectDamper(t.gyroscopeTime, 0),
+                new ObjectDamper(t.accelerometerTime, t.stableRadius),
+                new ObjectDamper(t.magnetometerTime, 0)};
+        bank = new DamperBank(3);
+        bank.add(t.gyroscopeTime, 0, null);
+        bank.add(t.accelerometerTime, t.stableRadius, null);
+        bank.add(t.magnetometerTime, 0, null);
+        timestamp = PERIOD;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3 * SAMPLES)
+    public ObjectDamper[] objectDampers() {
+        for(int n = 0; n < SAMPLES; n++) {
+            timestamp += PERIOD;
+            objects[0].onSample(timestamp, gyroscope[n]);
+            objects[1].onSample(timestamp, accelerometer[n]);
+            objects[2].onSample(timestamp, magnetometer[n]);
+        }
+        return objects;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3 * SAMPLES)
+    public DamperBank damperBank() {
+        for(int n = 0; n < SAMPLES; n++) {
+            timestamp += PERIOD;
+            bank.onSample(0, timestamp, gyroscope[n]);
+            bank.onSample(1, timestamp, accelerometer[n]);
+            bank.onSample(2, timestamp, magnetometer[n]);
+        }
+        return bank;
+    }
+}
@@ -0,0 +1,108 @@
+package org.epoint.avionics.log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output stream collecting bytes in a direct buffer and writing them to a file channel in
+ * large sequential writes. Keeps count of the writes and the time spent in them.
+ */
+public class ChannelOutputStream extends OutputStream {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private volatile long writes = 0;
+    private volatile long bytes = 0;
+    private volatile long writeTime = 0;
+    private volatile long maxWriteTime = 0;
+
+    /**
+     * @param c destination channel, closed with the stream
+     * @param size buffer size in bytes
+     */
+    public ChannelOutputStream(FileChannel c, int size) {
+        channel = c;
+        buffer = ByteBuffer.allocateDirect(size);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if(!buffer.hasRemaining()) drain();
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0) {
+            if(!buffer.hasRemaining()) drain();
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        if(buffer.hasRemaining()) {
+            long start = System.nanoTime();
+            int n = 0;
+            while(buffer.hasRemaining()) n += channel.write(buffer);
+            long t = System.nanoTime() - start;
+            writes++;
+            bytes += n;
+            writeTime += t;
+            if(t > maxWriteTime) maxWriteTime = t;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Write out the buffer; does not force the channel to the storage device.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return number of channel writes
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return number of bytes written to the channel
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return mean time of a channel write in nanoseconds
+     */
+    public long getMeanWriteTime() {
+        long w = writes;
+        return w == 0 ? 0 : writeTime / w;
+    }
+
+    /**
+     * @return longest channel write in nanoseconds
+     */
+    public long getMaxWriteTime() {
+        return maxWriteTime;
+    }
+}
@@ -0,0 +1,381 @@
+package org.epoint.avionics.log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Columnar binary log of fused state. Rows are collected into blocks of at most
+ * {@link #BLOCK} rows; within a block, each column is stored separately as zig-zag encoded
+ * variable-length deltas (floats losslessly, as order-preserving integers). Each block starts
+ * from zero, so blocks and columns decode independently. An index of block offsets, column
+ * lengths and column minima and maxima at the end of the file lets readers skip blocks and
+ * columns they do not need.
+ * <pre>
+ * header:  MAGIC, VERSION, column count
+ * block:   column 0 bytes, column 1 bytes, ...
+ * index:   block count, then per block: offset, rows,
+ *          per column: length, minimum, maximum
+ * trailer: index offset, MAGIC
+ * </pre>
+ * Minima and maxima are longs for {@link Column#TIMESTAMP} and floats, ignoring
+ * <code>NaN</code>, for the rest.
+ */
+public final class FusedLog {
+
+    public static final int MAGIC = 0x41564643; // "AVFC"
+
+    public static final int VERSION = 1;
+
+    /**
+     * Maximal number of rows in a block
+     */
+    public static final int BLOCK = 4096;
+
+    private FusedLog() {}
+
+    public enum Column {
+        /**
+         * Time in nanoseconds
+         */
+        TIMESTAMP,
+        /**
+         * Aircraft to world versor coordinates
+         */
+        R, I, J, K,
+        /**
+         * Heading in degrees
+         */
+        HEADING,
+        /**
+         * Rate of turn in radians per second
+         */
+        RATE_OF_TURN,
+        /**
+         * Lateral acceleration in meters per second squared
+         */
+        SLIP,
+        /**
+         * Direction of movement in degrees
+         */
+        BEARING,
+        /**
+         * Magnetic declination in degrees
+         */
+        DECLINATION,
+        /**
+         * Altitude in meters
+         */
+        ALTITUDE,
+        /**
+         * Vertical speed in meters per second
+         */
+        VERTICAL_SPEED;
+
+        /**
+         * Number of float columns, following {@link #TIMESTAMP}
+         */
+        public static final int FLOATS = values().length - 1;
+    }
+
+    /**
+     * Order-preserving mapping between floats and ints; its own inverse.
+     */
+    static int sortable(int bits) {
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    /**
+     * Growable byte buffer with variable-length encoding
+     */
+    private static class Bytes {
+        byte[] data = new byte[BLOCK];
+        int length = 0;
+        int position = 0;
+
+        void putVarLong(long delta) {
+            long v = (delta << 1) ^ (delta >> 63);
+            if(length + 10 > data.length) {
+                byte[] d = new byte[data.length * 2];
+                System.arraycopy(data, 0, d, 0, length);
+                data = d;
+            }
+            while((v & ~0x7fL) != 0) {
+                data[length++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            data[length++] = (byte) v;
+        }
+
+        long getVarLong() throws IOException {
+            long v = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                if(position >= length) throw new IOException("Truncated column");
+                byte b = data[position++];
+                v |= (long) (b & 0x7f) << shift;
+                if(b >= 0) return (v >>> 1) ^ -(v & 1);
+            }
+            throw new IOException("Malformed column");
+        }
+    }
+
+    /**
+     * Streaming writer; memory use is bounded by one block.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final long[] timestamps = new long[BLOCK];
+        private final float[][] values = new float[Column.FLOATS][BLOCK];
+        private final Bytes[] columns = new Bytes[Column.FLOATS + 1];
+        private int rows = 0;
+        private long offset;
+        /**
+         * Index, buffered until the end
+         */
+        private final Bytes index = new Bytes();
+        private final DataOutputStream indexOut;
+        private int blocks = 0;
+
+        public Writer(File f) throws IOException {
+            this(new FileOutputStream(f));
+        }
+
+        public Writer(OutputStream o) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(o, 1 << 16));
+            for(int c = 0; c < columns.length; c++) columns[c] = new Bytes();
+            indexOut = new DataOutputStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    if(index.length == index.data.length) {
+                        byte[] d = new byte[index.data.length * 2];
+                        System.arraycopy(index.data, 0, d, 0, index.length);
+                        index.data = d;
+                    }
+                    index.data[index.length++] = (byte) b;
+                }
+            });
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns.length);
+            offset = 12;
+        }
+
+        /**
+         * @param timestamp time in nanoseconds
+         * @param v values of the float columns, in {@link Column} order
+         * @throws IOException on write error
+         */
+        public void write(long timestamp, float[] v) throws IOException {
+            timestamps[rows] = timestamp;
+            for(int c = 0; c < Column.FLOATS; c++) values[c][rows] = v[c];
+            if(++rows == BLOCK) flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if(rows == 0) return;
+            indexOut.writeLong(offset);
+            indexOut.writeInt(rows);
+            Bytes b = columns[0];
+            b.length = 0;
+            long last = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for(int n = 0; n < rows; n++) {
+                long t = timestamps[n];
+                b.putVarLong(t - last);
+                last = t;
+                if(t < min) min = t;
+                if(t > max) max = t;
+            }
+            indexOut.writeInt(b.length);
+            indexOut.writeLong(min);
+            indexOut.writeLong(max);
+            for(int c = 0; c < Column.FLOATS; c++) {
+                b = columns[c + 1];
+                b.length = 0;
+                float[] v = values[c];
+                long previous = 0;
+                float fMin = Float.NaN, fMax = Float.NaN;
+                for(int n = 0; n < rows; n++) {
+                    long s = sortable(Float.floatToRawIntBits(v[n]));
+                    b.putVarLong(s - previous);
+                    previous = s;
+                    if(Float.isNaN(v[n])) continue;
+                    if(!(v[n] >= fMin)) fMin = v[n];
+                    if(!(v[n] <= fMax)) fMax = v[n];
+                }
+                indexOut.writeInt(b.length);
+                indexOut.writeFloat(fMin);
+                indexOut.writeFloat(fMax);
+            }
+            for(Bytes column : columns) {
+                out.write(column.data, 0, column.length);
+                offset += column.length;
+            }
+            blocks++;
+            rows = 0;
+        }
+
+        /**
+         * Write the last block, the index and the trailer.
+         * @throws IOException on write error
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+                out.writeInt(blocks);
+                out.write(index.data, 0, index.length);
+                out.writeLong(offset);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Random access reader. Only the index is kept in memory; columns of a block are read
+     * on demand.
+     */
+    public static class Reader implements Closeable {
+        private final RandomAccessFile file;
+        private final long[] offsets;
+        private final int[] rows;
+        private final int[][] lengths;
+        private final long[] timeMin, timeMax;
+        private final float[][] min, max;
+        private final Bytes bytes = new Bytes();
+
+        public Reader(File f) throws IOException {
+            file = new RandomAccessFile(f, "r");
+            try {
+                if(file.readInt() != MAGIC) throw new IOException("Not a fused log");
+                if(file.readInt() != VERSION) throw new IOException("Unsupported version");
+                if(file.readInt() != Column.FLOATS + 1) throw new IOException("Column mismatch");
+                file.seek(file.length() - 12);
+                long indexOffset = file.readLong();
+                if(file.readInt() != MAGIC) throw new IOException("Truncated fused log");
+                file.seek(indexOffset);
+                int blocks = file.readInt();
+                offsets = new long[blocks];
+                rows = new int[blocks];
+                lengths = new int[blocks][Column.FLOATS + 1];
+                timeMin = new long[blocks];
+                timeMax = new long[blocks];
+                min = new float[blocks][Column.FLOATS];
+                max = new float[blocks][Column.FLOATS];
+                for(int b = 0; b < blocks; b++) {
+                    offsets[b] = file.readLong();
+                    rows[b] = file.readInt();
+                    lengths[b][0] = file.readInt();
+                    timeMin[b] = file.readLong();
+                    timeMax[b] = file.readLong();
+                    for(int c = 0; c < Column.FLOATS; c++) {
+                        lengths[b][c + 1] = file.readInt();
+                        min[b][c] = file.readFloat();
+                        max[b][c] = file.readFloat();
+                    }
+                }
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        public int blocks() {
+            return rows.length;
+        }
+
+        public int rows(int block) {
+            return rows[block];
+        }
+
+        public long timeMin(int block) {
+            return timeMin[block];
+        }
+
+        public long timeMax(int block) {
+            return timeMax[block];
+        }
+
+        /**
+         * @return minimum of a float column in a block, <code>NaN</code> if all values are
+         */
+        public float min(int block, Column c) {
+            return min[block][c.ordinal() - 1];
+        }
+
+        /**
+         * @return maximum of a float column in a block, <code>NaN</code> if all values are
+         */
+        public float max(int block, Column c) {
+            return max[block][c.ordinal() - 1];
+        }
+
+        /**
+         * @param timestamp time in nanoseconds
+         * @return first block that may contain rows at or after <code>timestamp</code>,
+         * {@link #blocks()} if none; assumes nondecreasing timestamps
+         */
+        public int find(long timestamp) {
+            int lo = 0, hi = rows.length;
+            while(lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if(timeMax[mid] < timestamp) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private void read(int block, int column) throws IOException {
+            long o = offsets[block];
+            for(int c = 0; c < column; c++) o += lengths[block][c];
+            int n = lengths[block][column];
+            if(bytes.data.length < n) bytes.data = new byte[n];
+            file.seek(o);
+            file.readFully(bytes.data, 0, n);
+            bytes.length = n;
+            bytes.position = 0;
+        }
+
+        /**
+         * @param block block number
+         * @param into array of at least {@link #rows(int)} elements
+         * @return <code>into</code>, filled with the block's timestamps
+         * @throws IOException on read error
+         */
+        public long[] timestamps(int block, long[] into) throws IOException {
+            read(block, 0);
+            long t = 0;
+            for(int n = 0; n < rows[block]; n++) into[n] = t += bytes.getVarLong();
+            return into;
+        }
+
+        /**
+         * @param block block number
+         * @param c float column
+         * @param into array of at least {@link #rows(int)} elements
+         * @return <code>into</code>, filled with the block's values of the column
+         * @throws IOException on read error
+         */
+        public float[] column(int block, Column c, float[] into) throws IOException {
+            if(c == Column.TIMESTAMP) throw new IllegalArgumentException("Not a float column");
+            read(block, c.ordinal());
+            long s = 0;
+            for(int n = 0; n < rows[block]; n++) {
+                s += bytes.getVarLong();
+                into[n] = Float.intBitsToFloat(sortable((int) s));
+            }
+            return into;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package org.epoint.avionics.log;
+
+import org.epoint.avionics.log.SensorLog.Channel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compressed binary sensor log, after Pelkonen et al., <i>Gorilla: a fast, scalable, in-memory
+ * time series database</i>. Each channel keeps its own state: timestamps are stored as
+ * variable-length deltas of deltas, values as the meaningful bits of the XOR with the previous
+ * value of the same axis. Records are framed into independently decodable blocks of at most
+ * {@link #BLOCK} records or {@link #BLOCK_TIME}, listed in an optional {@link Index}.
+ * <pre>
+ * header: MAGIC, VERSION
+ * block:  SYNC, records, first timestamp, last timestamp, length in bytes, bits
+ * record: channel ordinal (3 bits), timestamp, values
+ * </pre>
+ * Timestamp delta of delta: <code>0</code> for none, otherwise <code>10</code>,
+ * <code>110</code>, <code>1110</code> or <code>1111</code> followed by 14, 24, 32 or 64 bits.
+ * Value XOR: <code>0</code> for same value, <code>10</code> and the bits in the previous
+ * window, or <code>11</code>, 5 bits of leading zeros, 5 bits of length minus one and the
+ * meaningful bits. At the start of each block, previous timestamps are the block's first
+ * timestamp and previous values are zero.
+ */
+public final class PackedLog {
+
+    public static final int MAGIC = 0x4156534c; // "AVSL"
+
+    public static final int VERSION = 1;
+
+    /**
+     * Block header marker
+     */
+    public static final int SYNC = 0x424c4f4b; // "BLOK"
+
+    /**
+     * Maximal number of records in a block
+     */
+    public static final int BLOCK = 4096;
+
+    /**
+     * Maximal time span of a block in nanoseconds
+     */
+    public static final long BLOCK_TIME = 1000000000;
+
+    /**
+     * Size of the block header in bytes
+     */
+    public static final int HEADER = 28;
+
+    /**
+     * Index file marker
+     */
+    public static final int INDEX_MAGIC = 0x41565349; // "AVSI"
+
+    private static final int CHANNEL_BITS = 3;
+
+    private static final int[] DOD_BITS = {14, 24, 32, 64};
+
+    private PackedLog() {}
+
+    /**
+     * Encoder and decoder state of one channel
+     */
+    private static class State {
+        long timestamp, delta;
+        final int[] bits;
+        final int[] leading;
+        final int[] trailing;
+
+        State(Channel c) {
+            bits = new int[c.size];
+            leading = new int[c.size];
+            trailing = new int[c.size];
+        }
+
+        void reset(long t) {
+            timestamp = t;
+            delta = 0;
+            for(int i = 0; i < bits.length; i++) {
+                bits[i] = 0;
+                leading[i] = -1;
+            }
+        }
+    }
+
+    private static State[] states() {
+        State[] s = new State[Channel.values().length];
+        for(Channel c : Channel.values()) s[c.ordinal()] = new State(c);
+        return s;
+    }
+
+    /**
+     * Streaming encoder. Memory use is bounded by one block.
+     */
+    public static class Writer implements SensorLog.Output {
+        private final DataOutputStream out;
+        private final DataOutputStream index;
+        /**
+         * Offset of the next block in the log
+         */
+        private long offset = 8;
+        private final State[] states = states();
+        private byte[] data = new byte[1 << 16];
+        private int length = 0;
+        private long buffer = 0;
+        private int count = 0;
+        private int records = 0;
+        private long first, last;
+
+        public Writer(OutputStream o) throws IOException {
+            this(o, null);
+        }
+
+        /**
+         * @param o log destination
+         * @param i index destination, or <code>null</code>
+         * @throws IOException on write error
+         */
+        public Writer(OutputStream o, OutputStream i) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(o, 1 << 16));
+            index = i == null ? null : new DataOutputStream(new BufferedOutputStream(i, 4096));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            if(index != null) {
+                index.writeInt(INDEX_MAGIC);
+                index.writeInt(VERSION);
+            }
+        }
+
+        private void put(long v, int n) {
+            if(n > 32) {
+                put(v >>> 32, n - 32);
+                n = 32;
+            }
+            buffer = (buffer << n) | (v & ((1L << n) - 1));
+            count += n;
+            while(count >= 8) {
+                if(length == data.length) {
+                    byte[] d = new byte[data.length * 2];
+                    System.arraycopy(data, 0, d, 0, length);
+                    data = d;
+                }
+                count -= 8;
+                data[length++] = (byte) (buffer >>> count);
+            }
+        }
+
+        @Override
+        public void write(Channel c, long timestamp, float[] values) throws IOException {
+            if(records == 0) {
+                first = timestamp;
+                for(State s : states) s.reset(timestamp);
+            }
+            last = timestamp;
+            State s = states[c.ordinal()];
+            put(c.ordinal(), CHANNEL_BITS);
+
+            long delta = timestamp - s.timestamp;
+            long dod = delta - s.delta;
+            s.timestamp = timestamp;
+            s.delta = delta;
+            if(dod == 0) put(0, 1);
+            else {
+                int b = 0;
+                while(b < DOD_BITS.length - 1 && (dod >> (DOD_BITS[b] - 1)) != (dod >> 63)) b++;
+                if(b < DOD_BITS.length - 1) put(((1L << (b + 1)) - 1) << 1, b + 2);
+                else put(15, 4);
+                put(dod, DOD_BITS[b]);
+            }
+
+            for(int i = 0; i < c.size; i++) {
+                int bits = Float.floatToRawIntBits(values[i]);
+                int x = bits ^ s.bits[i];
+                s.bits[i] = bits;
+                if(x == 0) {
+                    put(0, 1);
+                    continue;
+                }
+                int leading = Integer.numberOfLeadingZeros(x);
+                int trailing = Integer.numberOfTrailingZeros(x);
+                if(s.leading[i] >= 0 && leading >= s.leading[i] && trailing >= s.trailing[i]) {
+                    put(2, 2);
+                    put(x >>> s.trailing[i], 32 - s.leading[i] - s.trailing[i]);
+                } else {
+                    int n = 32 - leading - trailing;
+                    put(3, 2);
+                    put(leading, 5);
+                    put(n - 1, 5);
+                    put(x >>> trailing, n);
+                    s.leading[i] = leading;
+                    s.trailing[i] = trailing;
+                }
+            }
+            if(++records == BLOCK || timestamp - first >= BLOCK_TIME) flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if(records == 0) return;
+            if(count > 0) put(0, 8 - count);
+            out.writeInt(SYNC);
+            out.writeInt(records);
+            out.writeLong(first);
+            out.writeLong(last);
+            out.writeInt(length);
+            out.write(data, 0, length);
+            if(index != null) {
+                index.writeLong(first);
+                index.writeLong(offset);
+            }
+            offset += HEADER + length;
+            records = 0;
+            length = 0;
+        }
+
+        /**
+         * Terminate the current block, making everything written so far decodable.
+         * @throws IOException on write error
+         */
+        @Override
+        public void flush() throws IOException {
+            flushBlock();
+            out.flush();
+            if(index != null) index.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+            } finally {
+                out.close();
+                if(index != null) index.close();
+            }
+        }
+    }
+
+    /**
+     * Sequential decoder
+     */
+    public static class Reader implements SensorLog.Input {
+        private final DataInputStream in;
+        private final State[] states = states();
+        private final float[][] values = new float[Channel.values().length][];
+        private byte[] data = new byte[1 << 16];
+        private int length = 0;
+        private int position = 0;
+        private long buffer = 0;
+        private int count = 0;
+        private int records = 0;
+        private Channel channel;
+        private long firstTimestamp, lastTimestamp;
+
+        public Reader(InputStream i) throws IOException {
+            this(i, true);
+        }
+
+        /**
+         * @param i log, positioned at the file header or at a block
+         * @param header whether to expect the file header
+         * @throws IOException on read error
+         */
+        private Reader(InputStream i, boolean header) throws IOException {
+            in = i instanceof DataInputStream ? (DataInputStream) i : new DataInputStream(i);
+            if(header) {
+                if(in.readInt() != MAGIC) throw new IOException("Not a packed sensor log");
+                if(in.readInt() != VERSION) throw new IOException("Unsupported version");
+            }
+            for(Channel c : Channel.values()) values[c.ordinal()] = new float[c.size];
+        }
+
+        private long get(int n) throws IOException {
+            if(n > 32) return (get(n - 32) << 32) | get(32);
+            while(count < n) {
+                if(position == length) throw new IOException("Truncated block");
+                buffer = (buffer << 8) | (data[position++] & 0xff);
+                count += 8;
+            }
+            count -= n;
+            return (buffer >>> count) & ((1L << n) - 1);
+        }
+
+        private static long signed(long v, int n) {
+            return (v << (64 - n)) >> (64 - n);
+        }
+
+        /**
+         * Read the next block header and contents.
+         * @return <code>false</code> at the end of the log
+         * @throws IOException on read error
+         */
+        private boolean nextBlock() throws IOException {
+            int sync;
+            try {
+                sync = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if(sync != SYNC) throw new IOException("Lost block synchronization");
+            records = in.readInt();
+            firstTimestamp = in.readLong();
+            lastTimestamp = in.readLong();
+            length = in.readInt();
+            if(records <= 0 || length < 0) throw new IOException("Malformed block header");
+            if(data.length < length) data = new byte[length];
+            in.readFully(data, 0, length);
+            position = 0;
+            count = 0;
+            for(State s : states) s.reset(firstTimestamp);
+            return true;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if(records == 0 && !nextBlock()) return false;
+            records--;
+            int ordinal = (int) get(CHANNEL_BITS);
+            if(ordinal >= states.length) throw new IOException("Unknown channel " + ordinal);
+            channel = Channel.values()[ordinal];
+            State s = states[ordinal];
+
+            int b = 0;
+            while(b < DOD_BITS.length && get(1) == 1) b++;
+            if(b > 0) {
+                int n = DOD_BITS[b - 1];
+                s.delta += signed(get(n), n);
+            }
+            s.timestamp += s.delta;
+
+            float[] v = values[ordinal];
+            for(int i = 0; i < v.length; i++) {
+                if(get(1) == 1) {
+                    if(get(1) == 1) {
+                        s.leading[i] = (int) get(5);
+                        s.trailing[i] = 32 - s.leading[i] - (int) get(5) - 1;
+                    }
+                    int n = 32 - s.leading[i] - s.trailing[i];
+                    s.bits[i] ^= (int) get(n) << s.trailing[i];
+                }
+                v[i] = Float.intBitsToFloat(s.bits[i]);
+            }
+            return true;
+        }
+
+        @Override
+        public Channel channel() {
+            return channel;
+        }
+
+        @Override
+        public long timestamp() {
+            return states[channel.ordinal()].timestamp;
+        }
+
+        @Override
+        public float[] values() {
+            return values[channel.ordinal()];
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Open a log at a block.
+     * @param log packed log
+     * @param offset block offset, from the {@link Index}
+     * @return reader positioned before the first record of the block
+     * @throws IOException on read error
+     */
+    public static Reader open(File log, long offset) throws IOException {
+        FileChannel c = new RandomAccessFile(log, "r").getChannel();
+        try {
+            c.position(offset);
+            return new Reader(new BufferedInputStream(Channels.newInputStream(c), 1 << 16),
+                    offset == 0);
+        } catch (IOException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sparse time index of a log: first timestamp and offset of each block, memory-mapped.
+     * Lookup assumes nondecreasing block timestamps.
+     * <pre>
+     * INDEX_MAGIC, VERSION, then per block: first timestamp, offset
+     * </pre>
+     */
+    public static class Index implements Closeable {
+        private final RandomAccessFile file;
+        private final LongBuffer entries;
+        private final int size;
+
+        public Index(File f) throws IOException {
+            file = new RandomAccessFile(f, "r");
+            try {
+                ByteBuffer b = file.getChannel()
+                        .map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                if(b.remaining() < 8 || b.getInt() != INDEX_MAGIC)
+                    throw new IOException("Not a packed log index");
+                if(b.getInt() != VERSION) throw new IOException("Unsupported version");
+                entries = b.slice().asLongBuffer();
+                size = entries.remaining() / 2;
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return index file of a log, by naming convention
+         */
+        public static File of(File log) {
+            return new File(log.getPath() + ".idx");
+        }
+
+        /**
+         * Index an existing log by reading block headers only.
+         * @param log packed log
+         * @param index index file to write
+         * @throws IOException on read or write error
+         */
+        public static void build(File log, File index) throws IOException {
+            RandomAccessFile in = new RandomAccessFile(log, "r");
+            DataOutputStream out = null;
+            try {
+                if(in.readInt() != MAGIC) throw new IOException("Not a packed sensor log");
+                if(in.readInt() != VERSION) throw new IOException("Unsupported version");
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)));
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(VERSION);
+                long offset = 8, length = in.length();
+                while(offset + HEADER <= length) {
+                    in.seek(offset);
+                    if(in.readInt() != SYNC) throw new IOException("Lost block synchronization");
+                    in.readInt();
+                    long first = in.readLong();
+                    in.readLong();
+                    int bytes = in.readInt();
+                    if(offset + HEADER + bytes > length) break; // truncated recording
+                    out.writeLong(first);
+                    out.writeLong(offset);
+                    offset += HEADER + bytes;
+                }
+            } finally {
+                in.close();
+                if(out != null) out.close();
+            }
+        }
+
+        /**
+         * @return number of blocks
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return first timestamp of a block in nanoseconds
+         */
+        public long timestamp(int block) {
+            return entries.get(2 * block);
+        }
+
+        /**
+         * @return offset of a block in the log
+         */
+        public long offset(int block) {
+            return entries.get(2 * block + 1);
+        }
+
+        /**
+         * @param timestamp time in nanoseconds
+         * @return last block starting at or before <code>timestamp</code>, or the first block
+         */
+        public int find(long timestamp) {
+            int lo = 0, hi = size - 1;
+            while(lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if(timestamp(mid) <= timestamp) lo = mid;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org.epoint.avionics.log;
+
+import org.epoint.avionics.log.SensorLog.Channel;
+import org.epoint.avionics.sensor.SampleListener;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sensor recorder. Samples are copied on the delivering thread into a preallocated lock-free
+ * ring and encoded and written in batches on a dedicated thread, so that encoding and I/O never
+ * delay the estimator. When the ring is full, samples are either dropped and counted or the
+ * delivering thread waits, according to the {@link Policy}.
+ * <p>
+ * The ring is a bounded multi-producer queue after D. Vyukov: each slot carries a sequence
+ * number telling producers and the consumer whose turn it is.
+ */
+public class Recorder {
+
+    /**
+     * Backpressure policy
+     */
+    public enum Policy {
+        /**
+         * Drop samples that do not fit, never delaying the delivering thread
+         */
+        DROP,
+        /**
+         * Wait for room, losing no samples while the writer keeps up on average
+         */
+        BLOCK
+    }
+
+    /**
+     * Writer poll period in nanoseconds when the ring is empty
+     */
+    private static final long POLL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Producer back-off in nanoseconds when the ring is full
+     */
+    private static final long BACKOFF = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final int MAX_SIZE;
+
+    static {
+        int m = 0;
+        for(Channel c : Channel.values()) m = Math.max(m, c.size);
+        MAX_SIZE = m;
+    }
+
+    private final Policy policy;
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final byte[] channels;
+    private final long[] timestamps;
+    private final float[] values;
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Next slot to be written; advanced by the writer only
+     */
+    private volatile long head = 0;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private volatile long written = 0;
+    private volatile int maxDepth = 0;
+    private volatile SensorLog.Output output = null;
+    private volatile boolean stopping = false;
+    private volatile IOException error = null;
+    private volatile Thread writer = null;
+
+    /**
+     * @param capacity number of samples the ring can hold, rounded up to a power of two
+     * @param p behavior when the ring is full
+     */
+    public Recorder(int capacity, Policy p) {
+        if(capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity");
+        int n = Integer.highestOneBit(capacity);
+        if(n < capacity) n <<= 1;
+        mask = n - 1;
+        policy = p;
+        sequence = new AtomicLongArray(n);
+        channels = new byte[n];
+        timestamps = new long[n];
+        values = new float[n * MAX_SIZE];
+        for(int i = 0; i < n; i++) sequence.set(i, i);
+    }
+
+    public boolean isRecording() {
+        return output != null;
+    }
+
+    /**
+     * @return number of samples dropped since the recording started
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return time in nanoseconds delivering threads waited for room since the recording
+     * started
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    /**
+     * @return number of samples written since the recording started
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return number of samples waiting to be written
+     */
+    public int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * @return highest number of samples waiting to be written, as seen by the writer
+     */
+    public int getMaxQueueDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return write error that ended the last recording, <code>null</code> if none
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Start recording, unless already recording. A recording ended by a write error need not
+     * be stopped first.
+     * @param o destination, closed when the recording stops
+     */
+    public synchronized void start(final SensorLog.Output o) {
+        if(writer != null) {
+            if(output != null) return;
+            // ended by a write error: reap the writer, which no longer touches the ring
+            reap();
+        }
+        discard();
+        error = null;
+        dropped.set(0);
+        blocked.set(0);
+        written = 0;
+        maxDepth = 0;
+        stopping = false;
+        writer = new Thread("Recorder") {
+            @Override
+            public void run() {
+                try {
+                    try {
+                        drain(o);
+                    } finally {
+                        output = null;
+                        o.close();
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        };
+        output = o;
+        writer.start();
+    }
+
+    /**
+     * Stop recording and wait for the queued samples to be written.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void stop() throws InterruptedException {
+        if(writer == null) return;
+        output = null;
+        stopping = true;
+        LockSupport.unpark(writer);
+        writer.join();
+        writer = null;
+    }
+
+    /**
+     * Wait for a writer that has given up to finish, without being interrupted.
+     */
+    private void reap() {
+        boolean interrupted = false;
+        while(writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+        writer = null;
+    }
+
+    /**
+     * Release samples left over from a recording ended by an error.
+     */
+    private void discard() {
+        long h = head;
+        for(int slot = (int) h & mask; sequence.get(slot) == h + 1; slot = (int) h & mask) {
+            sequence.lazySet(slot, h + mask + 1);
+            h++;
+        }
+        head = h;
+    }
+
+    /**
+     * Writer loop: write everything queued, then wait for more.
+     */
+    private void drain(SensorLog.Output o) throws IOException {
+        float[][] v = new float[Channel.values().length][];
+        for(Channel c : Channel.values()) v[c.ordinal()] = new float[c.size];
+        Channel[] all = Channel.values();
+        while(true) {
+            int depth = getQueueDepth();
+            if(depth > maxDepth) maxDepth = depth;
+            long n = written, h = head;
+            for(int slot = (int) h & mask; sequence.get(slot) == h + 1; slot = (int) h & mask) {
+                Channel c = all[channels[slot]];
+                float[] w = v[c.ordinal()];
+                System.arraycopy(values, slot * MAX_SIZE, w, 0, c.size);
+                o.write(c, timestamps[slot], w);
+                sequence.lazySet(slot, h + mask + 1);
+                head = ++h;
+                n++;
+            }
+            written = n;
+            if(stopping && tail.get() == head) return;
+            LockSupport.parkNanos(this, POLL);
+        }
+    }
+
+    /**
+     * Queue a sample for writing, if recording.
+     * @param c channel
+     * @param timestamp time in nanoseconds
+     * @param v copied before returning
+     */
+    public void record(Channel c, long timestamp, float[] v) {
+        long start = 0;
+        while(output != null) {
+            long t = tail.get();
+            int slot = (int) t & mask;
+            long d = sequence.get(slot) - t;
+            if(d == 0) {
+                if(!tail.compareAndSet(t, t + 1)) continue;
+                channels[slot] = (byte) c.ordinal();
+                timestamps[slot] = timestamp;
+                System.arraycopy(v, 0, values, slot * MAX_SIZE, c.size);
+                sequence.lazySet(slot, t + 1);
+                break;
+            } else if(d < 0) {
+                // full
+                if(policy == Policy.DROP) {
+                    dropped.incrementAndGet();
+                    break;
+                }
+                if(start == 0) {
+                    // wake the writer rather than wait for its poll
+                    start = System.nanoTime();
+                    Thread w = writer;
+                    if(w != null) LockSupport.unpark(w);
+                }
+                LockSupport.parkNanos(BACKOFF);
+            }
+        }
+        if(start != 0) blocked.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * @param c channel to record samples on
+     * @param l listener to pass samples through to
+     * @return listener recording samples before passing them through
+     */
+    public SampleListener tee(final Channel c, final SampleListener l) {
+        return new SampleListener() {
+            @Override
+            public void onSample(long timestamp, float[] values) {
+                record(c, timestamp, values);
+                l.onSample(timestamp, values);
+            }
+        };
+    }
+}
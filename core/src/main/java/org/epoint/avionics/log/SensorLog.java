@@ -0,0 +1,233 @@
+package org.epoint.avionics.log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Recorded sensor log, one record per line: channel tag, timestamp in nanoseconds and the
+ * values, separated by whitespace. Lines starting with <code>#</code> are comments.
+ * <pre>
+ * G 1042000000 0.0012 -0.0301 0.0007
+ * </pre>
+ * For the compact binary form, see {@link PackedLog}.
+ */
+public final class SensorLog {
+
+    private SensorLog() {}
+
+    /**
+     * Sequential source of records
+     */
+    public interface Input extends Closeable {
+        /**
+         * Advance to the next record.
+         * @return <code>false</code> at the end of the log
+         * @throws IOException on read error or malformed record
+         */
+        boolean next() throws IOException;
+
+        Channel channel();
+
+        /**
+         * @return timestamp in nanoseconds
+         */
+        long timestamp();
+
+        /**
+         * @return values of the current record, overwritten by the next one on the same channel
+         */
+        float[] values();
+    }
+
+    /**
+     * Sequential sink of records
+     */
+    public interface Output extends Closeable, Flushable {
+        /**
+         * @param c channel
+         * @param timestamp time in nanoseconds
+         * @param values at least {@link Channel#size} values
+         * @throws IOException on write error
+         */
+        void write(Channel c, long timestamp, float[] values) throws IOException;
+    }
+
+    /**
+     * Open a recorded log in either form.
+     * @param f text or {@link PackedLog} file
+     * @return input positioned before the first record
+     * @throws IOException on read error
+     */
+    public static Input open(File f) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(f), 1 << 16);
+        try {
+            in.mark(4);
+            int magic = new DataInputStream(in).readInt();
+            in.reset();
+            if(magic == PackedLog.MAGIC) return new PackedLog.Reader(in);
+        } catch (IOException e) {
+            // shorter than the magic number: text
+            in.reset();
+        }
+        return new Reader(new InputStreamReader(in, "US-ASCII"));
+    }
+
+    /**
+     * Recorded input of the estimator, or ground truth
+     */
+    public enum Channel {
+        /**
+         * Acceleration in device coordinates, meters per second squared
+         */
+        ACCELEROMETER('A', 3),
+        /**
+         * Magnetic field in device coordinates, microtesla
+         */
+        MAGNETOMETER('M', 3),
+        /**
+         * Angular velocity in device coordinates, radians per second
+         */
+        GYROSCOPE('G', 3),
+        /**
+         * Atmospheric pressure in hectopascal
+         */
+        PRESSURE('P', 1),
+        /**
+         * Modelled geomagnetic field: north, east, down and declination in degrees
+         */
+        FIELD('F', 4),
+        /**
+         * Ground speed in meters per second and track in degrees, <code>NaN</code> if unknown
+         */
+        TRACK('T', 2),
+        /**
+         * Ground truth from a reference system: aircraft to world versor r, i, j, k and
+         * altitude in meters. Not fed to the estimator.
+         */
+        REFERENCE('R', 5);
+
+        public final char tag;
+        public final int size;
+
+        private Channel(char t, int s) {
+            tag = t;
+            size = s;
+        }
+
+        /**
+         * @param t channel tag
+         * @return channel with the given tag, <code>null</code> if none
+         */
+        public static Channel of(char t) {
+            for(Channel c : values()) if(c.tag == t) return c;
+            return null;
+        }
+    }
+
+    /**
+     * Sequential reader. Values are returned in a buffer reused for each channel.
+     */
+    public static class Reader implements Input {
+        private final BufferedReader in;
+        private final float[][] values = new float[Channel.values().length][];
+        private Channel channel;
+        private long timestamp;
+        private int line = 0;
+
+        public Reader(java.io.Reader r) {
+            in = r instanceof BufferedReader ? (BufferedReader) r : new BufferedReader(r);
+            for(Channel c : Channel.values()) values[c.ordinal()] = new float[c.size];
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            String s;
+            do {
+                s = in.readLine();
+                if(s == null) return false;
+                line++;
+                s = s.trim();
+            } while(s.isEmpty() || s.charAt(0) == '#');
+            String[] f = s.split("\\s+");
+            channel = f[0].length() == 1 ? Channel.of(f[0].charAt(0)) : null;
+            if(channel == null) throw new IOException("Line " + line + ": unknown channel " + f[0]);
+            if(f.length != channel.size + 2)
+                throw new IOException("Line " + line + ": " + channel + " takes "
+                        + channel.size + " values");
+            float[] v = values[channel.ordinal()];
+            try {
+                timestamp = Long.parseLong(f[1]);
+                for(int i = 0; i < v.length; i++) v[i] = Float.parseFloat(f[i + 2]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + line + ": " + e.getMessage());
+            }
+            return true;
+        }
+
+        @Override
+        public Channel channel() {
+            return channel;
+        }
+
+        @Override
+        public long timestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public float[] values() {
+            return values[channel.ordinal()];
+        }
+
+        /**
+         * @return line number of the current record
+         */
+        public int line() {
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Sequential writer.
+     */
+    public static class Writer implements Output {
+        private final java.io.Writer out;
+        private final StringBuilder buffer = new StringBuilder(64);
+
+        public Writer(java.io.Writer w) {
+            out = w;
+        }
+
+        @Override
+        public void write(Channel c, long timestamp, float[] values) throws IOException {
+            buffer.setLength(0);
+            buffer.append(c.tag).append(' ').append(timestamp);
+            for(int i = 0; i < c.size; i++) buffer.append(' ').append(values[i]);
+            buffer.append('\n');
+            out.append(buffer);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
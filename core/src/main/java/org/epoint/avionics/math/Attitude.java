@@ -0,0 +1,102 @@
+package org.epoint.avionics.math;
+
+/**
+ * Attitude derived from a {@link Versor}: up vector and heading direction. Mutable, so that it can
+ * be updated repeatedly without allocation.
+ *
+ * @see Versor#attitude(Attitude)
+ */
+public final class Attitude extends Vec {
+
+    /**
+     * Level attitude, heading north.
+     */
+    public Attitude() {
+        super(new double[] {0, 1, 0, 0, 1 });
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param o other attitude
+     */
+    public Attitude(final Attitude o) {
+        super(o);
+    }
+
+    /**
+     * Set all components at once.
+     *
+     * @param upX up vector x coordinate
+     * @param upY up vector y coordinate
+     * @param upZ up vector z coordinate
+     * @param headingY heading direction, eastward component (not normalized)
+     * @param headingX heading direction, northward component (not normalized)
+     * @return this attitude, after update
+     */
+    Attitude set(double upX, double upY, double upZ, double headingY, double headingX) {
+        coord[0] = upX;
+        coord[1] = upY;
+        coord[2] = upZ;
+        coord[3] = headingY;
+        coord[4] = headingX;
+        return this;
+    }
+
+    /**
+     * Copy another attitude into this one.
+     *
+     * @param o other attitude
+     * @return this attitude, after update
+     */
+    public Attitude set(final Attitude o) {
+        super.set(o);
+        return this;
+    }
+
+    public double upX() {
+        return coord[0];
+    }
+
+    public double upY() {
+        return coord[1];
+    }
+
+    public double upZ() {
+        return coord[2];
+    }
+
+    /**
+     * Inner product of the up vector with another vector. Allocation-free.
+     *
+     * @param v other vector
+     * @return inner product
+     */
+    public double upDot(final Vec3D v) {
+        return coord[0] * v.x() + coord[1] * v.y() + coord[2] * v.z();
+    }
+
+    /**
+     * Sine of pitch: the up vector's component perpendicular to the screen.
+     */
+    public double pitchSin() {
+        return coord[2];
+    }
+
+    /**
+     * Cosine of pitch: the length of the up vector's projection onto the screen.
+     */
+    public double pitchCos() {
+        return Math.sqrt(coord[0] * coord[0] + coord[1] * coord[1]);
+    }
+
+    /**
+     * Heading in degrees. The only trigonometric function evaluated on attitude, to be called
+     * at the consumer's rate.
+     *
+     * @return heading angle in degrees, between -180 and 180
+     */
+    public double heading() {
+        return Math.toDegrees(Math.atan2(coord[3], coord[4]));
+    }
+}
@@ -0,0 +1,215 @@
+package org.epoint.avionics.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Versor operations over packed primitive arrays, for replay and analysis of recorded data.
+ * Quaternions are packed as consecutive (r, i, j, k) quadruples, vectors as (x, y, z) triples;
+ * ranges are given in elements, not array indices. Loop bodies are straight-line arithmetic
+ * without calls or branches, so that the JIT can unroll and vectorize them.
+ * <p>
+ * The parallel variants split the range with fork-join; on Android these require API level 21.
+ */
+public final class Batch {
+
+    /**
+     * Minimal number of elements processed by a single fork-join task
+     */
+    static final int THRESHOLD = 1 << 13;
+
+    private Batch() {
+    }
+
+    /**
+     * Compose rotations pairwise: <code>out[n] = a[n] * b[n]</code>. No renormalization.
+     *
+     * @param a left operands
+     * @param b right operands
+     * @param out results, may be the same array as <code>a</code> or <code>b</code>
+     * @param from first element, inclusive
+     * @param to last element, exclusive
+     * @see Versor#mul(Versor)
+     */
+    public static void mul(final double[] a, final double[] b, final double[] out,
+            final int from, final int to) {
+        for (int n = 4 * from, e = 4 * to; n < e; n += 4) {
+            double ar = a[n], ai = a[n + 1], aj = a[n + 2], ak = a[n + 3];
+            double br = b[n], bi = b[n + 1], bj = b[n + 2], bk = b[n + 3];
+            out[n] = ar * br - ai * bi - aj * bj - ak * bk;
+            out[n + 1] = ar * bi + ai * br + aj * bk - ak * bj;
+            out[n + 2] = ar * bj + aj * br + ak * bi - ai * bk;
+            out[n + 3] = ar * bk + ak * br + ai * bj - aj * bi;
+        }
+    }
+
+    /**
+     * @see #mul(double[], double[], double[], int, int)
+     */
+    public static void mul(final float[] a, final float[] b, final float[] out,
+            final int from, final int to) {
+        for (int n = 4 * from, e = 4 * to; n < e; n += 4) {
+            float ar = a[n], ai = a[n + 1], aj = a[n + 2], ak = a[n + 3];
+            float br = b[n], bi = b[n + 1], bj = b[n + 2], bk = b[n + 3];
+            out[n] = ar * br - ai * bi - aj * bj - ak * bk;
+            out[n + 1] = ar * bi + ai * br + aj * bk - ak * bj;
+            out[n + 2] = ar * bj + aj * br + ak * bi - ai * bk;
+            out[n + 3] = ar * bk + ak * br + ai * bj - aj * bi;
+        }
+    }
+
+    /**
+     * Rotate vectors by per-element versors: <code>out[n] = q[n] v[n] q[n]*</code>.
+     *
+     * @param q rotations
+     * @param v vectors
+     * @param out rotated vectors, may be the same array as <code>v</code>
+     * @param from first element, inclusive
+     * @param to last element, exclusive
+     * @see Versor#rot(Vec3D)
+     */
+    public static void rot(final double[] q, final double[] v, final double[] out,
+            final int from, final int to) {
+        for (int n = from; n < to; n++) {
+            int m = 4 * n, o = 3 * n;
+            double r = q[m], i = q[m + 1], j = q[m + 2], k = q[m + 3];
+            double x = v[o], y = v[o + 1], z = v[o + 2];
+            double cx = j * z - k * y + r * x;
+            double cy = k * x - i * z + r * y;
+            double cz = i * y - j * x + r * z;
+            out[o] = x + 2.0 * (j * cz - k * cy);
+            out[o + 1] = y + 2.0 * (k * cx - i * cz);
+            out[o + 2] = z + 2.0 * (i * cy - j * cx);
+        }
+    }
+
+    /**
+     * @see #rot(double[], double[], double[], int, int)
+     */
+    public static void rot(final float[] q, final float[] v, final float[] out,
+            final int from, final int to) {
+        for (int n = from; n < to; n++) {
+            int m = 4 * n, o = 3 * n;
+            float r = q[m], i = q[m + 1], j = q[m + 2], k = q[m + 3];
+            float x = v[o], y = v[o + 1], z = v[o + 2];
+            float cx = j * z - k * y + r * x;
+            float cy = k * x - i * z + r * y;
+            float cz = i * y - j * x + r * z;
+            out[o] = x + 2f * (j * cz - k * cy);
+            out[o + 1] = y + 2f * (k * cx - i * cz);
+            out[o + 2] = z + 2f * (i * cy - j * cx);
+        }
+    }
+
+    /**
+     * Normalize quaternions in place.
+     *
+     * @param q quaternions
+     * @param from first element, inclusive
+     * @param to last element, exclusive
+     */
+    public static void normalize(final double[] q, final int from, final int to) {
+        for (int n = 4 * from, e = 4 * to; n < e; n += 4) {
+            double s = 1.0 / Math.sqrt(q[n] * q[n] + q[n + 1] * q[n + 1]
+                    + q[n + 2] * q[n + 2] + q[n + 3] * q[n + 3]);
+            q[n] *= s;
+            q[n + 1] *= s;
+            q[n + 2] *= s;
+            q[n + 3] *= s;
+        }
+    }
+
+    /**
+     * @see #normalize(double[], int, int)
+     */
+    public static void normalize(final float[] q, final int from, final int to) {
+        for (int n = 4 * from, e = 4 * to; n < e; n += 4) {
+            float s = (float) (1.0 / Math.sqrt(q[n] * q[n] + q[n + 1] * q[n + 1]
+                    + q[n + 2] * q[n + 2] + q[n + 3] * q[n + 3]));
+            q[n] *= s;
+            q[n + 1] *= s;
+            q[n + 2] *= s;
+            q[n + 3] *= s;
+        }
+    }
+
+    public static void mul(final ForkJoinPool pool, final double[] a, final double[] b,
+            final double[] out) {
+        pool.invoke(new Task(Op.MUL, a, b, out, 0, out.length / 4));
+    }
+
+    public static void mul(final ForkJoinPool pool, final float[] a, final float[] b,
+            final float[] out) {
+        pool.invoke(new Task(Op.MUL, a, b, out, 0, out.length / 4));
+    }
+
+    public static void rot(final ForkJoinPool pool, final double[] q, final double[] v,
+            final double[] out) {
+        pool.invoke(new Task(Op.ROT, q, v, out, 0, out.length / 3));
+    }
+
+    public static void rot(final ForkJoinPool pool, final float[] q, final float[] v,
+            final float[] out) {
+        pool.invoke(new Task(Op.ROT, q, v, out, 0, out.length / 3));
+    }
+
+    public static void normalize(final ForkJoinPool pool, final double[] q) {
+        pool.invoke(new Task(Op.NORMALIZE, null, null, q, 0, q.length / 4));
+    }
+
+    public static void normalize(final ForkJoinPool pool, final float[] q) {
+        pool.invoke(new Task(Op.NORMALIZE, null, null, q, 0, q.length / 4));
+    }
+
+    private enum Op { MUL, ROT, NORMALIZE }
+
+    /**
+     * Range of one of the operations above, split in halves until below {@link #THRESHOLD}.
+     */
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Op op;
+        private final Object a, b, out;
+        private final int from, to;
+
+        Task(Op op, Object a, Object b, Object out, int from, int to) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Task(op, a, b, out, from, mid), new Task(op, a, b, out, mid, to));
+            } else if (out instanceof double[]) {
+                switch (op) {
+                case MUL:
+                    mul((double[]) a, (double[]) b, (double[]) out, from, to);
+                    break;
+                case ROT:
+                    rot((double[]) a, (double[]) b, (double[]) out, from, to);
+                    break;
+                default:
+                    normalize((double[]) out, from, to);
+                }
+            } else {
+                switch (op) {
+                case MUL:
+                    mul((float[]) a, (float[]) b, (float[]) out, from, to);
+                    break;
+                case ROT:
+                    rot((float[]) a, (float[]) b, (float[]) out, from, to);
+                    break;
+                default:
+                    normalize((float[]) out, from, to);
+                }
+            }
+        }
+    }
+}
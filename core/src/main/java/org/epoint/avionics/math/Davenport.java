@@ -0,0 +1,204 @@
+package org.epoint.avionics.math;
+
+/**
+ * Weighted least squares attitude from vector observations (Wahba's problem), solved with
+ * Davenport's q-method: the optimal versor is the eigenvector of Davenport's symmetric 4x4
+ * matrix K belonging to its largest eigenvalue. The eigenvalue is found by Newton iteration on
+ * the characteristic polynomial, starting from the sum of weights (QUEST). The eigenvector is
+ * taken from the largest column of the adjugate of <code>K - &lambda;I</code>, which is
+ * well-conditioned for all orientations, unlike the Gibbs vector of QUEST near 180 degrees.
+ * <p>
+ * Works on primitives only; an instance can be reused without allocation.
+ */
+public final class Davenport {
+
+    private static final int MAX_ITERATIONS = 10;
+    private static final double EPSILON = 1e-12;
+
+    /**
+     * Attitude profile matrix, sum of weighted outer products of observations
+     */
+    private double b00, b01, b02, b10, b11, b12, b20, b21, b22;
+    private double weight;
+    /**
+     * <code>K - &lambda;I</code>, row-major
+     */
+    private final double[] m = new double[16];
+
+    /**
+     * Remove all observations.
+     *
+     * @return this solver, after update
+     */
+    public Davenport reset() {
+        b00 = b01 = b02 = b10 = b11 = b12 = b20 = b21 = b22 = weight = 0;
+        return this;
+    }
+
+    /**
+     * Add an observation: a pair of unit(!) vectors to be matched.
+     *
+     * @param w weight
+     * @param fx source vector x coordinate
+     * @param fy source vector y coordinate
+     * @param fz source vector z coordinate
+     * @param tx target vector x coordinate
+     * @param ty target vector y coordinate
+     * @param tz target vector z coordinate
+     * @return this solver, after update
+     */
+    public Davenport add(double w, double fx, double fy, double fz,
+            double tx, double ty, double tz) {
+        b00 += w * fx * tx; b01 += w * fx * ty; b02 += w * fx * tz;
+        b10 += w * fy * tx; b11 += w * fy * ty; b12 += w * fy * tz;
+        b20 += w * fz * tx; b21 += w * fz * ty; b22 += w * fz * tz;
+        weight += w;
+        return this;
+    }
+
+    /**
+     * Add an observation, normalizing both vectors.
+     *
+     * @param w weight
+     * @param from source vector
+     * @param to target vector
+     * @return this solver, after update
+     */
+    public Davenport add(double w, Vec3D from, Vec3D to) {
+        double f = 1.0 / from.abs(), t = 1.0 / to.abs();
+        return add(w, from.x() * f, from.y() * f, from.z() * f,
+                to.x() * t, to.y() * t, to.z() * t);
+    }
+
+    /**
+     * Add the observations of {@link Versor#matchingRotation(Vec3D, Vec3D, Vec3D, Vec3D, double)}:
+     * the weighted mean direction of A and B, and the normal of their plane. Both pairs are
+     * perpendicular, so the solution matches them exactly for any consistent input. Vectors
+     * should be unit(!) for the weight to be meaningful.
+     *
+     * @param fromA source vector A
+     * @param fromB source vector B
+     * @param toA target vector A
+     * @param toB target vector B
+     * @param a weight of vector A (weight of vector B is 1-a, respectively)
+     * @return this solver, after update
+     */
+    public Davenport add(Vec3D fromA, Vec3D fromB, Vec3D toA, Vec3D toB, double a) {
+        double b = 1.0 - a;
+        double fx = fromA.x() * a + fromB.x() * b, fy = fromA.y() * a + fromB.y() * b,
+                fz = fromA.z() * a + fromB.z() * b;
+        double tx = toA.x() * a + toB.x() * b, ty = toA.y() * a + toB.y() * b,
+                tz = toA.z() * a + toB.z() * b;
+        double f = 1.0 / Math.sqrt(fx * fx + fy * fy + fz * fz);
+        double t = 1.0 / Math.sqrt(tx * tx + ty * ty + tz * tz);
+        add(1.0, fx * f, fy * f, fz * f, tx * t, ty * t, tz * t);
+        fx = fromA.y() * fromB.z() - fromA.z() * fromB.y();
+        fy = fromA.z() * fromB.x() - fromA.x() * fromB.z();
+        fz = fromA.x() * fromB.y() - fromA.y() * fromB.x();
+        tx = toA.y() * toB.z() - toA.z() * toB.y();
+        ty = toA.z() * toB.x() - toA.x() * toB.z();
+        tz = toA.x() * toB.y() - toA.y() * toB.x();
+        f = 1.0 / Math.sqrt(fx * fx + fy * fy + fz * fz);
+        t = 1.0 / Math.sqrt(tx * tx + ty * ty + tz * tz);
+        return add(1.0, fx * f, fy * f, fz * f, tx * t, ty * t, tz * t);
+    }
+
+    /**
+     * Largest eigenvalue of Davenport's matrix, by Newton iteration on its characteristic
+     * polynomial <code>&lambda;^4 - (a + b)&lambda;^2 - c&lambda; + (ab + c&sigma; - d)</code>.
+     *
+     * @return largest eigenvalue, at most the sum of weights
+     */
+    public double maxEigenvalue() {
+        double s00 = 2.0 * b00, s11 = 2.0 * b11, s22 = 2.0 * b22;
+        double s01 = b01 + b10, s02 = b02 + b20, s12 = b12 + b21;
+        double sigma = b00 + b11 + b22;
+        double zx = b21 - b12, zy = b02 - b20, zz = b10 - b01;
+        double kappa = s11 * s22 - s12 * s12 + s00 * s22 - s02 * s02 + s00 * s11 - s01 * s01;
+        double delta = s00 * (s11 * s22 - s12 * s12) - s01 * (s01 * s22 - s12 * s02)
+                + s02 * (s01 * s12 - s11 * s02);
+        double sx = s00 * zx + s01 * zy + s02 * zz, sy = s01 * zx + s11 * zy + s12 * zz,
+                sz = s02 * zx + s12 * zy + s22 * zz;
+        double a = sigma * sigma - kappa;
+        double b = sigma * sigma + zx * zx + zy * zy + zz * zz;
+        double c = delta + zx * sx + zy * sy + zz * sz;
+        double d = sx * sx + sy * sy + sz * sz;
+        double e = a * b + c * sigma - d;
+        double lambda = weight;
+        for (int n = 0; n < MAX_ITERATIONS; n++) {
+            double l2 = lambda * lambda;
+            double f = (l2 - a) * (l2 - b) - c * lambda + e - a * b;
+            double df = 2.0 * lambda * (2.0 * l2 - a - b) - c;
+            if (df == 0.0) break;
+            double step = f / df;
+            lambda -= step;
+            if (Math.abs(step) < EPSILON * weight) break;
+        }
+        return lambda;
+    }
+
+    /**
+     * Optimal rotation without allocation.
+     *
+     * @param q target array for the versor coordinates (r, i, j, k)
+     * @return <code>false</code> if the observations do not determine the rotation
+     */
+    public boolean solve(double[] q) {
+        double lambda = maxEigenvalue();
+        double sigma = b00 + b11 + b22;
+        m[0] = sigma - lambda;
+        m[1] = m[4] = b21 - b12;
+        m[2] = m[8] = b02 - b20;
+        m[3] = m[12] = b10 - b01;
+        m[5] = 2.0 * b00 - sigma - lambda;
+        m[10] = 2.0 * b11 - sigma - lambda;
+        m[15] = 2.0 * b22 - sigma - lambda;
+        m[6] = m[9] = b01 + b10;
+        m[7] = m[13] = b02 + b20;
+        m[11] = m[14] = b12 + b21;
+        int c = 0;
+        double max = 0;
+        for (int i = 0; i < 4; i++) {
+            double d = Math.abs(minor(i, i));
+            if (d > max) {
+                max = d;
+                c = i;
+            }
+        }
+        // zero but for rounding when the observations are all parallel
+        if (max <= EPSILON * weight * weight * weight) return false;
+        double norm = 0;
+        for (int i = 0; i < 4; i++) {
+            q[i] = ((i + c) % 2 == 0 ? 1.0 : -1.0) * minor(i, c);
+            norm += q[i] * q[i];
+        }
+        norm = (q[0] < 0 ? -1.0 : 1.0) / Math.sqrt(norm);
+        for (int i = 0; i < 4; i++) {
+            q[i] *= norm;
+        }
+        return true;
+    }
+
+    /**
+     * Optimal rotation.
+     *
+     * @return versor <code>q</code> for which <code>q.rot(to)</code> best matches
+     *         <code>from</code>, or <code>null</code> if undetermined
+     */
+    public Versor solve() {
+        double[] q = new double[4];
+        return solve(q) ? new Versor(q[0], q[1], q[2], q[3]) : null;
+    }
+
+    /**
+     * Determinant of the 3x3 submatrix of {@link #m} without the given row and column.
+     */
+    private double minor(int row, int col) {
+        int r0 = row == 0 ? 1 : 0, r1 = row <= 1 ? 2 : 1, r2 = row <= 2 ? 3 : 2;
+        int c0 = col == 0 ? 1 : 0, c1 = col <= 1 ? 2 : 1, c2 = col <= 2 ? 3 : 2;
+        r0 *= 4; r1 *= 4; r2 *= 4;
+        return m[r0 + c0] * (m[r1 + c1] * m[r2 + c2] - m[r1 + c2] * m[r2 + c1])
+                - m[r0 + c1] * (m[r1 + c0] * m[r2 + c2] - m[r1 + c2] * m[r2 + c0])
+                + m[r0 + c2] * (m[r1 + c0] * m[r2 + c1] - m[r1 + c1] * m[r2 + c0]);
+    }
+}
@@ -0,0 +1,85 @@
+package org.epoint.avionics.math;
+
+/**
+ * Immutable 3D vector with x, y, z coordinates in fields. No backing array, no virtual dispatch;
+ * short-lived instances are subject to scalar replacement by the JIT.
+ *
+ * @see Vec3D
+ */
+public final class DoubleVec3D {
+
+    public static final DoubleVec3D ZERO = new DoubleVec3D(0, 0, 0);
+
+    private final double x, y, z;
+
+    /**
+     * Create 3D vector from coordinates.
+     *
+     * @param x coordinate
+     * @param y coordinate
+     * @param z coordinate
+     */
+    public DoubleVec3D(final double x, final double y, final double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Conversion from generic vector.
+     *
+     * @param v generic vector
+     */
+    public DoubleVec3D(final Vec3D v) {
+        this(v.x(), v.y(), v.z());
+    }
+
+    public double x() {
+        return x;
+    }
+
+    public double y() {
+        return y;
+    }
+
+    public double z() {
+        return z;
+    }
+
+    public DoubleVec3D add(final DoubleVec3D o) {
+        return new DoubleVec3D(x + o.x, y + o.y, z + o.z);
+    }
+
+    public DoubleVec3D sub(final DoubleVec3D o) {
+        return new DoubleVec3D(x - o.x, y - o.y, z - o.z);
+    }
+
+    public DoubleVec3D scale(final double s) {
+        return new DoubleVec3D(x * s, y * s, z * s);
+    }
+
+    public double dot(final DoubleVec3D o) {
+        return x * o.x + y * o.y + z * o.z;
+    }
+
+    public DoubleVec3D cross(final DoubleVec3D o) {
+        return new DoubleVec3D(y * o.z - z * o.y, z * o.x - x * o.z, x * o.y - y * o.x);
+    }
+
+    public double abs() {
+        return Math.sqrt(dot(this));
+    }
+
+    public DoubleVec3D unit() {
+        return scale(1.0 / abs());
+    }
+
+    /**
+     * Conversion to generic vector.
+     *
+     * @return new generic vector with the same coordinates
+     */
+    public Vec3D toVec3D() {
+        return new Vec3D(x, y, z);
+    }
+}
@@ -0,0 +1,182 @@
+package org.epoint.avionics.math;
+
+/**
+ * Unit quaternion representing a rotation, with r, i, j, k coordinates in fields. Immutable.
+ * No backing array, no virtual dispatch; short-lived instances are subject to scalar replacement
+ * by the JIT.
+ *
+ * @see Versor
+ */
+public final class DoubleVersor {
+
+    /**
+     * Identity.
+     */
+    public static final DoubleVersor I = new DoubleVersor(1, 0, 0, 0);
+
+    private final double r, i, j, k;
+
+    /**
+     * Construct versor from coordinates. No normalization; coordinates must represent a unit
+     * quaternion.
+     *
+     * @param r real part
+     * @param i first imaginary coordinate
+     * @param j second imaginary coordinate
+     * @param k third imaginary coordinate
+     */
+    public DoubleVersor(final double r, final double i, final double j, final double k) {
+        this.r = r;
+        this.i = i;
+        this.j = j;
+        this.k = k;
+    }
+
+    /**
+     * Conversion from generic versor.
+     *
+     * @param v generic versor
+     */
+    public DoubleVersor(final Versor v) {
+        this(v.r(), v.v(1), v.v(2), v.v(3));
+    }
+
+    /**
+     * Construct versor from angular velocity and time.
+     *
+     * @param x angular velocity around X
+     * @param y angular velocity around Y
+     * @param z angular velocity around Z
+     * @param t time
+     * @return corresponding rotation
+     */
+    public static DoubleVersor spin(final double x, final double y, final double z,
+            final double t) {
+        double rabs = Math.sqrt(x * x + y * y + z * z);
+        if (rabs == 0.0) {
+            return I;
+        }
+        double a = 0.5 * rabs * t;
+        double s = Math.sin(a) / rabs;
+        return new DoubleVersor(Math.cos(a), x * s, y * s, z * s);
+    }
+
+    public double r() {
+        return r;
+    }
+
+    public double i() {
+        return i;
+    }
+
+    public double j() {
+        return j;
+    }
+
+    public double k() {
+        return k;
+    }
+
+    /**
+     * Compose two rotations, with first-order renormalization. Does not alter either.
+     *
+     * @param o other rotation
+     * @return the composition of <code>this</code> rotation with <code>o</code>
+     * @see Versor#mul(Versor)
+     */
+    public DoubleVersor mul(final DoubleVersor o) {
+        return compose(o).renormalize();
+    }
+
+    /**
+     * Compose two rotations without renormalization. Does not alter either.
+     *
+     * @param o other rotation
+     * @return the composition of <code>this</code> rotation with <code>o</code>
+     * @see #normError()
+     */
+    public DoubleVersor compose(final DoubleVersor o) {
+        return new DoubleVersor(r * o.r - i * o.i - j * o.j - k * o.k,
+                r * o.i + i * o.r + j * o.k - k * o.j,
+                r * o.j + j * o.r + k * o.i - i * o.k,
+                r * o.k + k * o.r + i * o.j - j * o.i);
+    }
+
+    /**
+     * Accumulated round-off: deviation of the squared norm from one. Cheap enough to be tracked
+     * after every composition.
+     *
+     * @return <code>1 - |q|^2</code>
+     */
+    public double normError() {
+        return 1.0 - (r * r + i * i + j * j + k * k);
+    }
+
+    /**
+     * First-order renormalization, without square root. Accurate for small norm errors.
+     *
+     * @return versor scaled by <code>1 + normError() / 2</code>
+     */
+    public DoubleVersor renormalize() {
+        double s = 1.0 + 0.5 * normError();
+        return new DoubleVersor(r * s, i * s, j * s, k * s);
+    }
+
+    /**
+     * Inverse rotation.
+     *
+     * @return inverse of <code>this</code> rotation.
+     */
+    public DoubleVersor inv() {
+        return new DoubleVersor(r, -i, -j, -k);
+    }
+
+    /**
+     * Rotate a vector.
+     *
+     * @param v vector to be rotated
+     * @return rotated vector
+     * @see Versor#rot(Vec3D)
+     */
+    public DoubleVec3D rot(final DoubleVec3D v) {
+        double cx = j * v.z() - k * v.y() + r * v.x();
+        double cy = k * v.x() - i * v.z() + r * v.y();
+        double cz = i * v.y() - j * v.x() + r * v.z();
+        return new DoubleVec3D(v.x() + 2.0 * (j * cz - k * cy), v.y() + 2.0 * (k * cx - i * cz),
+                v.z() + 2.0 * (i * cy - j * cx));
+    }
+
+    /**
+     * Inner product of the second row of the rotation matrix (the up vector) with a vector.
+     *
+     * @param x coordinate
+     * @param y coordinate
+     * @param z coordinate
+     * @return inner product
+     * @see Versor#rot(int)
+     */
+    public double upDot(final double x, final double y, final double z) {
+        return 2.0 * (i * j - r * k) * x + (r * r - i * i + j * j - k * k) * y
+                + 2.0 * (j * k + r * i) * z;
+    }
+
+    /**
+     * Aircraft attitude without allocation.
+     *
+     * @param a attitude to be updated
+     * @return <code>a</code> after update
+     * @see Versor#attitude(Attitude)
+     */
+    public Attitude attitude(final Attitude a) {
+        return Versor.attitude(r, i, j, k, a);
+    }
+
+    /**
+     * Conversion to generic versor.
+     *
+     * @return new generic versor with the same coordinates
+     */
+    public Versor toVersor() {
+        return new Versor(r, i, j, k);
+    }
+}
@@ -0,0 +1,85 @@
+package org.epoint.avionics.math;
+
+/**
+ * Immutable single precision 3D vector with x, y, z coordinates in fields. No backing array, no virtual dispatch;
+ * short-lived instances are subject to scalar replacement by the JIT.
+ *
+ * @see Vec3D
+ */
+public final class FloatVec3D {
+
+    public static final FloatVec3D ZERO = new FloatVec3D(0, 0, 0);
+
+    private final float x, y, z;
+
+    /**
+     * Create 3D vector from coordinates.
+     *
+     * @param x coordinate
+     * @param y coordinate
+     * @param z coordinate
+     */
+    public FloatVec3D(final float x, final float y, final float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Conversion from generic vector.
+     *
+     * @param v generic vector
+     */
+    public FloatVec3D(final Vec3D v) {
+        this((float) v.x(), (float) v.y(), (float) v.z());
+    }
+
+    public float x() {
+        return x;
+    }
+
+    public float y() {
+        return y;
+    }
+
+    public float z() {
+        return z;
+    }
+
+    public FloatVec3D add(final FloatVec3D o) {
+        return new FloatVec3D(x + o.x, y + o.y, z + o.z);
+    }
+
+    public FloatVec3D sub(final FloatVec3D o) {
+        return new FloatVec3D(x - o.x, y - o.y, z - o.z);
+    }
+
+    public FloatVec3D scale(final float s) {
+        return new FloatVec3D(x * s, y * s, z * s);
+    }
+
+    public float dot(final FloatVec3D o) {
+        return x * o.x + y * o.y + z * o.z;
+    }
+
+    public FloatVec3D cross(final FloatVec3D o) {
+        return new FloatVec3D(y * o.z - z * o.y, z * o.x - x * o.z, x * o.y - y * o.x);
+    }
+
+    public float abs() {
+        return (float) Math.sqrt(dot(this));
+    }
+
+    public FloatVec3D unit() {
+        return scale(1f / abs());
+    }
+
+    /**
+     * Conversion to generic vector.
+     *
+     * @return new generic vector with the same coordinates
+     */
+    public Vec3D toVec3D() {
+        return new Vec3D(x, y, z);
+    }
+}
@@ -0,0 +1,171 @@
+package org.epoint.avionics.math;
+
+/**
+ * Single precision unit quaternion representing a rotation, with r, i, j, k coordinates in fields. Immutable.
+ * No backing array, no virtual dispatch; short-lived instances are subject to scalar replacement
+ * by the JIT.
+ *
+ * @see Versor
+ */
+public final class FloatVersor {
+
+    /**
+     * Identity.
+     */
+    public static final FloatVersor I = new FloatVersor(1, 0, 0, 0);
+
+    private final float r, i, j, k;
+
+    /**
+     * Construct versor from coordinates. No normalization; coordinates must represent a unit
+     * quaternion.
+     *
+     * @param r real part
+     * @param i first imaginary coordinate
+     * @param j second imaginary coordinate
+     * @param k third imaginary coordinate
+     */
+    public FloatVersor(final float r, final float i, final float j, final float k) {
+        this.r = r;
+        this.i = i;
+        this.j = j;
+        this.k = k;
+    }
+
+    /**
+     * Conversion from generic versor.
+     *
+     * @param v generic versor
+     */
+    public FloatVersor(final Versor v) {
+        this((float) v.r(), (float) v.v(1), (float) v.v(2), (float) v.v(3));
+    }
+
+    /**
+     * Construct versor from angular velocity and time.
+     *
+     * @param x angular velocity around X
+     * @param y angular velocity around Y
+     * @param z angular velocity around Z
+     * @param t time
+     * @return corresponding rotation
+     */
+    public static FloatVersor spin(final float x, final float y, final float z,
+            final float t) {
+        float rabs = (float) Math.sqrt(x * x + y * y + z * z);
+        if (rabs == 0.0) {
+            return I;
+        }
+        float a = 0.5f * rabs * t;
+        float s = (float) Math.sin(a) / rabs;
+        return new FloatVersor((float) Math.cos(a), x * s, y * s, z * s);
+    }
+
+    public float r() {
+        return r;
+    }
+
+    public float i() {
+        return i;
+    }
+
+    public float j() {
+        return j;
+    }
+
+    public float k() {
+        return k;
+    }
+
+    /**
+     * Compose two rotations, with first-order renormalization. Does not alter either.
+     *
+     * @param o other rotation
+     * @return the composition of <code>this</code> rotation with <code>o</code>
+     * @see Versor#mul(Versor)
+     */
+    public FloatVersor mul(final FloatVersor o) {
+        return compose(o).renormalize();
+    }
+
+    /**
+     * Compose two rotations without renormalization. Does not alter either.
+     *
+     * @param o other rotation
+     * @return the composition of <code>this</code> rotation with <code>o</code>
+     * @see #normError()
+     */
+    public FloatVersor compose(final FloatVersor o) {
+        return new FloatVersor(r * o.r - i * o.i - j * o.j - k * o.k,
+                r * o.i + i * o.r + j * o.k - k * o.j,
+                r * o.j + j * o.r + k * o.i - i * o.k,
+                r * o.k + k * o.r + i * o.j - j * o.i);
+    }
+
+    /**
+     * Accumulated round-off: deviation of the squared norm from one. Cheap enough to be tracked
+     * after every composition.
+     *
+     * @return <code>1 - |q|^2</code>
+     */
+    public float normError() {
+        return 1f - (r * r + i * i + j * j + k * k);
+    }
+
+    /**
+     * First-order renormalization, without square root. Accurate for small norm errors.
+     *
+     * @return versor scaled by <code>1 + normError() / 2</code>
+     */
+    public FloatVersor renormalize() {
+        float s = 1f + 0.5f * normError();
+        return new FloatVersor(r * s, i * s, j * s, k * s);
+    }
+
+    /**
+     * Inverse rotation.
+     *
+     * @return inverse of <code>this</code> rotation.
+     */
+    public FloatVersor inv() {
+        return new FloatVersor(r, -i, -j, -k);
+    }
+
+    /**
+     * Rotate a vector.
+     *
+     * @param v vector to be rotated
+     * @return rotated vector
+     * @see Versor#rot(Vec3D)
+     */
+    public FloatVec3D rot(final FloatVec3D v) {
+        float cx = j * v.z() - k * v.y() + r * v.x();
+        float cy = k * v.x() - i * v.z() + r * v.y();
+        float cz = i * v.y() - j * v.x() + r * v.z();
+        return new FloatVec3D(v.x() + 2f * (j * cz - k * cy), v.y() + 2f * (k * cx - i * cz),
+                v.z() + 2f * (i * cy - j * cx));
+    }
+
+    /**
+     * Inner product of the second row of the rotation matrix (the up vector) with a vector.
+     *
+     * @param x coordinate
+     * @param y coordinate
+     * @param z coordinate
+     * @return inner product
+     * @see Versor#rot(int)
+     */
+    public float upDot(final float x, final float y, final float z) {
+        return 2f * (i * j - r * k) * x + (r * r - i * i + j * j - k * k) * y
+                + 2f * (j * k + r * i) * z;
+    }
+
+    /**
+     * Conversion to generic versor.
+     *
+     * @return new generic versor with the same coordinates
+     */
+    public Versor toVersor() {
+        return new Versor(r, i, j, k);
+    }
+}
@@ -69,6 +69,17 @@ public class Vec {
         return new Vec(d, a);
     }
 
+    /**
+     * Copy another vector into this one.
+     *
+     * @param b vector to copy. Must be the same length as this one.
+     * @return this vector, after update
+     */
+    protected Vec set(final Vec b) {
+        System.arraycopy(b.coord, 0, coord, 0, coord.length);
+        return this;
+    }
+
     /**
      * Add another vector.
      *
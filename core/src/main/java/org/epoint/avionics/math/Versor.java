@@ -47,26 +47,6 @@ public final class Versor extends Vec {
                 sinRoll * cosPitch * cosYaw - cosRoll * sinPitch * sinYaw};
     }
 
-    /**
-     * Versor coordinates from (orthonormal) rotational matrix
-     * @param qx Basis vector x
-     * @param qy Basis vector y
-     * @param qz Basis vector z
-     * @return corresponding Versor coordinates
-     */
-    private static double[] fromRotation(Vec3D qx, Vec3D qy, Vec3D qz) {
-        double t = qx.x() + qy.y() + qz.z(); // trace
-        double r = Math.sqrt(1.0 + t);
-        return new double[] {
-                0.5 * r,
-                (qz.y() > qy.z() ? 0.5 : -0.5)
-                * Math.sqrt(1 + qx.x() - qy.y() - qz.z()),
-                (qx.z() > qz.x() ? 0.5 : -0.5)
-                * Math.sqrt(1 - qx.x() + qy.y() - qz.z()),
-                (qy.x() > qx.y() ? 0.5 : -0.5)
-                * Math.sqrt(1 - qx.x() - qy.y() + qz.z()) };
-    }
-
     /**
      * Construct versor from rotation vector.
      *
@@ -137,6 +117,18 @@ public final class Versor extends Vec {
         super(new double[] {r, i.x(), i.y(), i.z() });
     }
 
+    /**
+     * Construct versor from coordinates. No normalization, no array copy.
+     *
+     * @param r real part
+     * @param i first imaginary coordinate
+     * @param j second imaginary coordinate
+     * @param k third imaginary coordinate
+     */
+    Versor(double r, double i, double j, double k) {
+        super(new double[] {r, i, j, k });
+    }
+
     /**
      * Identity constructor.
      */
@@ -209,18 +201,36 @@ public final class Versor extends Vec {
     }
 
     /**
-     * Construct versor from an orthonormal (rotation) matrix.
+     * Aircraft attitude in one pass over the coordinates, without allocation or trigonometry.
+     * The up vector equals <code>rot(1)</code>, the heading direction corresponds to
+     * <code>-inv().yaw()</code>.
+     *
+     * @param a attitude to be updated
+     * @return <code>a</code> after update
+     */
+    public Attitude attitude(Attitude a) {
+        return attitude(coord[0], coord[1], coord[2], coord[3], a);
+    }
+
+    /**
+     * Aircraft attitude from versor coordinates, for orientations passed around as primitives.
      *
-     * @param qx image of X axis
-     * @param qy image of Y axis
-     * @param qz image of Z axis
+     * @param r real coordinate
+     * @param i first imaginary coordinate
+     * @param j second imaginary coordinate
+     * @param k third imaginary coordinate
+     * @param a attitude to be updated
+     * @return <code>a</code> after update
+     * @see #attitude(Attitude)
      */
-    private Versor(Vec3D qx, Vec3D qy, Vec3D qz) {
-        super(fromRotation(qx, qy, qz));
+    public static Attitude attitude(double r, double i, double j, double k, Attitude a) {
+        return a.set(2.0 * (i * j - r * k), r * r - i * i + j * j - k * k, 2.0 * (j * k + r * i),
+                2.0 * (r * j - i * k), 1.0 - 2.0 * (i * i + j * j));
     }
 
     /**
      * Construct versor rotating one pair of unit(!) vectors to another.
+     * Solved in closed form by {@link Davenport}, robust for all orientations.
      *
      * @param fromA source vector A
      * @param fromB source vector B
@@ -231,16 +241,7 @@ public final class Versor extends Vec {
      */
     public static Versor matchingRotation(Vec3D fromA, Vec3D fromB, Vec3D toA,
             Vec3D toB, double a) {
-        double b = 1.0 - a;
-        Vec3D from = new Vec3D(fromA).scale(a).add(new Vec3D(fromB).scale(b))
-                .unit();
-        Vec3D fromN = fromA.cross(fromB).unit();
-        Vec3D fromC = from.cross(fromN);
-        Vec3D to = new Vec3D(toA).scale(a).add(new Vec3D(toB).scale(b)).unit();
-        Vec3D toN = toA.cross(toB).unit();
-        Vec3D toC = to.cross(toN);
-        return new Versor(from, fromN, fromC).inv().mul(
-                new Versor(to, toN, toC));
+        return new Davenport().add(fromA, fromB, toA, toB, a).solve();
     }
 
     /**
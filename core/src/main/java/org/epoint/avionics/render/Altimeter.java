@@ -0,0 +1,125 @@
+package org.epoint.avionics.render;
+
+/**
+ * Altitude tape: a scale moving past a fixed pointer, with the altitude read out below
+ */
+public class Altimeter {
+
+    /**
+     * Ticks visible above and below the pointer
+     */
+    public static final int TICKS = 5;
+    /**
+     * Half width of the tape, in units of its half height
+     */
+    public static final float WIDTH = 0.45f;
+    /**
+     * Offset of the label baselines below their ticks, centering the digits
+     */
+    public static final float LABEL_BASELINE = 0.35f * Palette.TEXT_SIZE;
+
+    /**
+     * @return x coordinate the labels are aligned to on the right
+     */
+    public static float labelX(float x, float s) {
+        return x + 0.4f * WIDTH * s;
+    }
+
+    /**
+     * @param altitude altitude in display units
+     * @param tick interval between ticks in display units
+     * @param y screen y coordinate of the pointer
+     * @param s half height of the tape
+     * @param value altitude of each labeled tick visible
+     * @param offset screen y coordinate of each labeled tick visible
+     * @return number of labeled ticks visible, every other tick
+     */
+    public static int labels(float altitude, float tick, float y, float s, int[] value,
+                             float[] offset) {
+        int n = 0;
+        float spacing = s / TICKS;
+        for(long k = (long) Math.ceil(altitude / tick - TICKS);
+                k <= (long) Math.floor(altitude / tick + TICKS); k++) {
+            if(k % 2 != 0) continue;
+            value[n] = Math.round(k * tick);
+            offset[n++] = y - (k - altitude / tick) * spacing;
+        }
+        return n;
+    }
+
+    /**
+     * @return maximal number of labeled ticks visible
+     */
+    public static int capacity() {
+        return TICKS + 1;
+    }
+
+    /**
+     * @return frame, pointer and ticks, as line segments
+     */
+    public static float[] tape(float altitude, float tick, float x, float y, float s) {
+        float w = WIDTH * s, spacing = s / TICKS, right = x + w, left = x - w;
+        long first = (long) Math.ceil(altitude / tick - TICKS);
+        long last = (long) Math.floor(altitude / tick + TICKS);
+        float[] lines = new float[24 + 4 * (int) (last - first + 1)];
+        float[] frame = {
+                left, y - s, right, y - s,
+                right, y - s, right, y + s,
+                right, y + s, left, y + s,
+                left, y + s, left, y - s,
+                left, y, left + 0.2f * w, y - 0.1f * s,
+                left, y, left + 0.2f * w, y + 0.1f * s
+        };
+        System.arraycopy(frame, 0, lines, 0, frame.length);
+        int n = frame.length;
+        for(long k = first; k <= last; k++) {
+            float ty = y - (k - altitude / tick) * spacing;
+            lines[n++] = right - (k % 2 == 0 ? 0.5f : 0.25f) * w;
+            lines[n++] = ty;
+            lines[n++] = right;
+            lines[n++] = ty;
+        }
+        return lines;
+    }
+
+    /**
+     * @return altitude as read out below the tape
+     */
+    public static String readout(float altitude, String unit) {
+        return Math.round(altitude) + " " + unit;
+    }
+
+    /**
+     * @param b left, top, right and bottom of the area drawn, set on return
+     */
+    public static void bounds(float x, float y, float s, float[] b) {
+        b[0] = x - WIDTH * s;
+        b[1] = y - s - 0.5f * Palette.TEXT_SIZE;
+        b[2] = x + WIDTH * s;
+        b[3] = y + s + 1.5f * Palette.TEXT_SIZE;
+    }
+
+    /**
+     * @param altitude altitude in display units
+     * @param tick interval between ticks in display units
+     * @param unit display unit
+     * @param x center x coordinate
+     * @param y screen y coordinate of the pointer
+     * @param s half height of the tape
+     */
+    public static void draw(RenderTarget t, float altitude, float tick, String unit, float x,
+                            float y, float s) {
+        int[] value = new int[capacity()];
+        float[] offset = new float[value.length];
+        float[] tape = tape(altitude, tick, x, y, s);
+        t.lines(tape, 0, tape.length);
+        t.setStyle(RenderTarget.Style.FILL_AND_STROKE);
+        float lx = labelX(x, s);
+        for(int i = labels(altitude, tick, y, s, value, offset); i-- > 0;)
+            t.text(Integer.toString(value[i]), lx, offset[i] + LABEL_BASELINE,
+                    RenderTarget.Align.RIGHT, RenderTarget.Anchor.BASELINE);
+        t.text(readout(altitude, unit), x, y + s, RenderTarget.Align.CENTER,
+                RenderTarget.Anchor.TOP);
+        t.setStyle(RenderTarget.Style.STROKE);
+    }
+}
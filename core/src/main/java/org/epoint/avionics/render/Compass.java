@@ -0,0 +1,95 @@
+package org.epoint.avionics.render;
+
+/**
+ * Full-circle compass for heading and bearing indication
+ * @author <a href="mailto:nagydani@epoint.org">Daniel A. Nagy</a>
+ */
+public class Compass {
+
+    public static final float TICK_RADIUS = 0.97f;
+    public static final float PLANE_RADIUS = 0.02f;
+    public static final float MARK_RADIUS = 1.05f;
+    public static final float MARK_WIDTH = 0.05f;
+
+    private static final String[] LABEL = {
+            "N", "01", "02", "03", "04", "05", "06", "07", "08",
+            "E", "10", "11", "12", "13", "14", "15", "16", "17",
+            "S", "19", "20", "21", "22", "23", "24", "25", "26",
+            "W", "28", "29", "30", "31", "32", "33", "34", "35"
+    };
+
+    /**
+     * Outline of the plane symbol, in units of the plane radius
+     */
+    public static final float[] PLANE = {
+            0, -3, 1, -1, 5, -1, 5, 1, 1, 1, 0.5f, 4, 2, 4, 2, 5,
+            -2, 5, -2, 4, -0.5f, 4, -1, 1, -5, 1, -5, -1, -1, -1
+    };
+
+    /**
+     * @param labels interval between labels in tens of degrees
+     */
+    public static void draw(RenderTarget t, float bearing, float heading, float x, float y,
+                            float r, int labels) {
+        float r4 = r * PLANE_RADIUS;
+        float[] mark = {
+                x - MARK_WIDTH * r, y - r * MARK_RADIUS,
+                x, y - r,
+                x, y - r,
+                x + MARK_WIDTH * r, y - r * MARK_RADIUS
+        };
+        t.save();
+        t.concat(new float[]{r4, 0, 0, r4, x, y});
+        t.polygon(PLANE, 0, PLANE.length);
+        t.restore();
+        t.save();
+        t.setStyle(RenderTarget.Style.FILL_AND_STROKE);
+        t.concat(Geometry.rotation(new float[6], bearing - heading, x, y));
+        t.text(bearingLabel(bearing), x, y - r * MARK_RADIUS, RenderTarget.Align.CENTER,
+                RenderTarget.Anchor.BOTTOM);
+        t.lines(mark, 0, mark.length);
+        t.concat(Geometry.rotation(new float[6], -bearing, x, y));
+        rose(t, x, y, r, labels);
+        t.restore();
+    }
+
+    /**
+     * @param b left, top, right and bottom of the area drawn, set on return
+     */
+    public static void bounds(float x, float y, float r, float[] b) {
+        float e = r * MARK_RADIUS + 1.5f * Palette.TEXT_SIZE;
+        b[0] = x - e;
+        b[1] = y - e;
+        b[2] = x + e;
+        b[3] = y + e;
+    }
+
+    /**
+     * @return bearing as shown above its mark
+     */
+    public static String bearingLabel(float bearing) {
+        return String.format(" %03d°", (int) Math.floor(0.5 + bearing));
+    }
+
+    /**
+     * Compass rose heading north: circle, ticks and labels. Leaves the style stroking.
+     * @param labels interval between labels in tens of degrees
+     */
+    public static void rose(RenderTarget t, float x, float y, float r, int labels) {
+        float[] tick = {x, y - r, x, y - TICK_RADIUS * r};
+        float[] rotation = Geometry.rotation(new float[6], 10, x, y);
+        t.setStyle(RenderTarget.Style.STROKE);
+        t.circle(x, y, r);
+        t.setStyle(RenderTarget.Style.FILL_AND_STROKE);
+        t.save();
+        for(int i = 0; i < 36; i += 1) {
+            t.lines(tick, 0, tick.length);
+            if(i % labels == 0)
+                t.text(LABEL[i], x, y - TICK_RADIUS * r, RenderTarget.Align.CENTER,
+                        RenderTarget.Anchor.TOP);
+            t.concat(rotation);
+        }
+        t.restore();
+        t.setStyle(RenderTarget.Style.STROKE);
+    }
+}
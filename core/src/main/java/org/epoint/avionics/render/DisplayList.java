@@ -0,0 +1,234 @@
+package org.epoint.avionics.render;
+
+/**
+ * Recorded sequence of drawing primitives, played back to any {@link RenderTarget}. Recording
+ * is done through the target interface itself, so instruments draw the same way whether
+ * recorded or drawn directly. Operations and their parameters are kept in growable primitive
+ * arrays; once these have grown to size, neither recording nor playback allocates.
+ */
+public final class DisplayList implements RenderTarget {
+
+    private static final int SAVE = 0, RESTORE = 1, CONCAT = 2, COLOR = 3, STYLE = 4,
+            ANTI_ALIAS = 5, STROKE_WIDTH = 6, TEXT_SIZE = 7, PAINT = 8, LINES = 9, POLYGON = 10,
+            CIRCLE = 11, ARC = 12, TEXT = 13;
+
+    private static final Style[] STYLES = Style.values();
+    private static final Align[] ALIGNS = Align.values();
+    private static final Anchor[] ANCHORS = Anchor.values();
+
+    /**
+     * Operations, each followed by its integer parameters
+     */
+    private int[] ops = new int[64];
+    private int opCount = 0;
+    private float[] args = new float[256];
+    private int argCount = 0;
+    private String[] texts = new String[16];
+    private int textCount = 0;
+    private final float[] transform = new float[6];
+
+    public void clear() {
+        opCount = argCount = 0;
+        for(int i = 0; i < textCount; i++) texts[i] = null;
+        textCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return opCount == 0;
+    }
+
+    /**
+     * @return number of recorded operations and parameters, a measure of playback cost
+     */
+    public int size() {
+        return opCount + argCount;
+    }
+
+    /**
+     * Draw the recorded primitives.
+     */
+    public void play(RenderTarget t) {
+        int a = 0, s = 0;
+        for(int i = 0; i < opCount; i++) {
+            switch(ops[i]) {
+                case SAVE:
+                    t.save();
+                    break;
+                case RESTORE:
+                    t.restore();
+                    break;
+                case CONCAT:
+                    System.arraycopy(args, a, transform, 0, 6);
+                    a += 6;
+                    t.concat(transform);
+                    break;
+                case COLOR:
+                    t.setColor(ops[++i]);
+                    break;
+                case STYLE:
+                    t.setStyle(STYLES[ops[++i]]);
+                    break;
+                case ANTI_ALIAS:
+                    t.setAntiAlias(ops[++i] != 0);
+                    break;
+                case STROKE_WIDTH:
+                    t.setStrokeWidth(args[a++]);
+                    break;
+                case TEXT_SIZE:
+                    t.setTextSize(args[a++]);
+                    break;
+                case PAINT:
+                    t.paint();
+                    break;
+                case LINES: {
+                    int n = ops[++i];
+                    t.lines(args, a, n);
+                    a += n;
+                    break;
+                }
+                case POLYGON: {
+                    int n = ops[++i];
+                    t.polygon(args, a, n);
+                    a += n;
+                    break;
+                }
+                case CIRCLE:
+                    t.circle(args[a], args[a + 1], args[a + 2]);
+                    a += 3;
+                    break;
+                case ARC:
+                    t.arc(args[a], args[a + 1], args[a + 2], args[a + 3], args[a + 4]);
+                    a += 5;
+                    break;
+                case TEXT:
+                    t.text(texts[s++], args[a], args[a + 1], ALIGNS[ops[i + 1]],
+                            ANCHORS[ops[i + 2]]);
+                    i += 2;
+                    a += 2;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + ops[i]);
+            }
+        }
+    }
+
+    private void op(int o) {
+        if(opCount == ops.length) {
+            int[] n = new int[2 * ops.length];
+            System.arraycopy(ops, 0, n, 0, opCount);
+            ops = n;
+        }
+        ops[opCount++] = o;
+    }
+
+    private void arg(float a) {
+        if(argCount == args.length) {
+            float[] n = new float[2 * args.length];
+            System.arraycopy(args, 0, n, 0, argCount);
+            args = n;
+        }
+        args[argCount++] = a;
+    }
+
+    private void args(float[] pts, int offset, int count) {
+        for(int i = offset; i < offset + count; i++) arg(pts[i]);
+    }
+
+    @Override
+    public void save() {
+        op(SAVE);
+    }
+
+    @Override
+    public void restore() {
+        op(RESTORE);
+    }
+
+    @Override
+    public void concat(float[] t) {
+        op(CONCAT);
+        args(t, 0, 6);
+    }
+
+    @Override
+    public void setColor(int argb) {
+        op(COLOR);
+        op(argb);
+    }
+
+    @Override
+    public void setStyle(Style s) {
+        op(STYLE);
+        op(s.ordinal());
+    }
+
+    @Override
+    public void setAntiAlias(boolean a) {
+        op(ANTI_ALIAS);
+        op(a ? 1 : 0);
+    }
+
+    @Override
+    public void setStrokeWidth(float w) {
+        op(STROKE_WIDTH);
+        arg(w);
+    }
+
+    @Override
+    public void setTextSize(float s) {
+        op(TEXT_SIZE);
+        arg(s);
+    }
+
+    @Override
+    public void paint() {
+        op(PAINT);
+    }
+
+    @Override
+    public void lines(float[] pts, int offset, int count) {
+        op(LINES);
+        op(count);
+        args(pts, offset, count);
+    }
+
+    @Override
+    public void polygon(float[] pts, int offset, int count) {
+        op(POLYGON);
+        op(count);
+        args(pts, offset, count);
+    }
+
+    @Override
+    public void circle(float x, float y, float r) {
+        op(CIRCLE);
+        arg(x);
+        arg(y);
+        arg(r);
+    }
+
+    @Override
+    public void arc(float x, float y, float r, float start, float sweep) {
+        op(ARC);
+        arg(x);
+        arg(y);
+        arg(r);
+        arg(start);
+        arg(sweep);
+    }
+
+    @Override
+    public void text(String s, float x, float y, Align align, Anchor anchor) {
+        op(TEXT);
+        op(align.ordinal());
+        op(anchor.ordinal());
+        arg(x);
+        arg(y);
+        if(textCount == texts.length) {
+            String[] n = new String[2 * texts.length];
+            System.arraycopy(texts, 0, n, 0, textCount);
+            texts = n;
+        }
+        texts[textCount++] = s;
+    }
+}
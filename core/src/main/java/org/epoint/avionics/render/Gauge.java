@@ -0,0 +1,28 @@
+package org.epoint.avionics.render;
+
+/**
+ * Created by nagydani on 2015.08.31..
+ */
+public class Gauge {
+
+    private static final float SCALE_WIDTH = 0.1f;
+    private static final float ANGLE = 120f;
+
+    public static void draw(RenderTarget t, float x, float y, float w, float h) {
+        float r, y2;
+        if(w > 2 * h) {
+            w = h * 2;
+        } else {
+            h = w / 2;
+        }
+        r = 0.9f * h; y2 = y + 0.5f * h;
+        Palette.scale(t);
+        t.setAntiAlias(false);
+        t.setStrokeWidth(SCALE_WIDTH * h);
+        t.setColor(Palette.WARNING);
+        t.arc(x, y2, r, 270f - 0.5f * ANGLE, ANGLE);
+        t.setColor(Palette.SCALE);
+        Compass.draw(t, 0, 0, x, y, x > y ? y * 0.8f : x * 0.8f, 1);
+        t.setStrokeWidth(0);
+    }
+}
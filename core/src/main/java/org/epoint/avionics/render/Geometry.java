@@ -0,0 +1,130 @@
+package org.epoint.avionics.render;
+
+import org.epoint.avionics.math.Attitude;
+
+/**
+ * Screen geometry of the instruments, independent of the graphics API. Screen coordinates are
+ * in pixels, with the origin at the top left corner and y pointing downwards. Affine transforms
+ * are arrays <code>{a, b, c, d, e, f}</code> mapping <code>(x, y)</code> to
+ * <code>(a x + c y + e, b x + d y + f)</code>.
+ */
+public final class Geometry {
+
+    /**
+     * Texture coordinates of the sky and earth texel centers in a texture of two texels, sky
+     * above earth
+     */
+    public static final float SKY_V = 0.25f, EARTH_V = 0.75f;
+
+    private Geometry() {
+    }
+
+    /**
+     * @param m filled with the projection of screen coordinates to clip space, as a 4x4
+     *          column-major matrix
+     * @return m
+     */
+    public static float[] ortho(float[] m, float width, float height) {
+        for(int i = 0; i < 16; i++) m[i] = 0;
+        m[0] = 2 / width;
+        m[5] = -2 / height;
+        m[10] = -1;
+        m[12] = -1;
+        m[13] = 1;
+        m[15] = 1;
+        return m;
+    }
+
+    /**
+     * @param t filled with the rotation by the angle of the given sine and cosine, clockwise
+     *          on screen, around a pivot
+     * @return t
+     */
+    public static float[] rotation(float[] t, float cos, float sin, float px, float py) {
+        t[0] = cos;
+        t[1] = sin;
+        t[2] = -sin;
+        t[3] = cos;
+        t[4] = px - cos * px + sin * py;
+        t[5] = py - sin * px - cos * py;
+        return t;
+    }
+
+    /**
+     * @param degrees clockwise on screen
+     * @see #rotation(float[], float, float, float, float)
+     */
+    public static float[] rotation(float[] t, float degrees, float px, float py) {
+        double a = Math.toRadians(degrees);
+        return rotation(t, (float) Math.cos(a), (float) Math.sin(a), px, py);
+    }
+
+    /**
+     * Square textured quad rotated around its center, as a triangle strip of four vertices.
+     * @param b destination
+     * @param x center x coordinate
+     * @param y center y coordinate
+     * @param r half of the side
+     * @param t rotation
+     * @param u0 texture coordinate of the left side
+     * @param v0 texture coordinate of the top side
+     * @param u1 texture coordinate of the right side
+     * @param v1 texture coordinate of the bottom side
+     */
+    public static void quad(VertexBatch b, float x, float y, float r, float[] t,
+                            float u0, float v0, float u1, float v1) {
+        int from = b.size();
+        b.vertex(x - r, y - r, u0, v0);
+        b.vertex(x - r, y + r, u0, v1);
+        b.vertex(x + r, y - r, u1, v0);
+        b.vertex(x + r, y + r, u1, v1);
+        b.transform(from, t);
+    }
+
+    /**
+     * Sky and earth as a single square, rotated with the horizon and large enough to cover the
+     * screen, as a triangle strip of eight vertices: sky, a band of one pixel across the
+     * horizon, earth. Texture coordinates stay between {@link #SKY_V} and {@link #EARTH_V},
+     * exact at any precision; sampled linearly, the band blends sky into earth. The horizon
+     * divides the screen where the up vector is perpendicular to the line of sight.
+     * @param b destination
+     * @param up attitude
+     * @param left screen left
+     * @param right screen right
+     * @param top screen top
+     * @param bottom screen bottom
+     * @param y screen y coordinate of the line of sight, horizontally centered
+     * @param d focal distance in pixels
+     * @param t rotation of the horizon around the line of sight, filled
+     */
+    public static void horizon(VertexBatch b, Attitude up, float left, float right, float top,
+                               float bottom, float y, float d, float[] t) {
+        float x = 0.5f * (left + right);
+        float w = Math.max(x - left, right - x), h = Math.max(y - top, bottom - y);
+        float reach = (float) Math.sqrt(w * w + h * h) + 1;
+        double ul = up.pitchCos();
+        // offset of the horizon from the line of sight, towards the sky
+        float offset;
+        if(ul > 0) {
+            rotation(t, (float) (up.upY() / ul), (float) (up.upX() / ul), x, y);
+            offset = (float) (up.pitchSin() * d / ul);
+        } else {
+            rotation(t, 1, 0, x, y);
+            offset = up.pitchSin() > 0 ? reach : -reach;
+        }
+        // beyond the screen, the farther the horizon, the less precise the geometry
+        offset = Math.max(-reach, Math.min(reach, offset));
+        float r = reach + Math.abs(offset);
+        float c = y - offset;
+        int from = b.size();
+        b.vertex(x - r, c - r, 0.5f, SKY_V);
+        b.vertex(x + r, c - r, 0.5f, SKY_V);
+        b.vertex(x - r, c - 0.5f, 0.5f, SKY_V);
+        b.vertex(x + r, c - 0.5f, 0.5f, SKY_V);
+        b.vertex(x - r, c + 0.5f, 0.5f, EARTH_V);
+        b.vertex(x + r, c + 0.5f, 0.5f, EARTH_V);
+        b.vertex(x - r, c + r, 0.5f, EARTH_V);
+        b.vertex(x + r, c + r, 0.5f, EARTH_V);
+        b.transform(from, t);
+    }
+}
@@ -0,0 +1,140 @@
+package org.epoint.avionics.render;
+
+/**
+ * Layout of a glyph atlas texture: a grid of equal cells, one per character, the first cell
+ * reserved for an opaque texel under solid geometry. The texture itself is rasterized by the
+ * platform, with each glyph's origin at {@link #originX}, {@link #baseline} within its cell;
+ * text is laid out here, as textured quads.
+ */
+public final class GlyphAtlas {
+
+    private final String chars;
+    private final float[] advance;
+    public final int cellWidth, cellHeight;
+    /**
+     * Glyph origin within its cell, in pixels
+     */
+    public final float originX, baseline;
+    /**
+     * Texture size in pixels, powers of two
+     */
+    public final int width, height;
+    private final int columns;
+
+    /**
+     * @param c characters in the atlas
+     * @param w cell width in pixels, including padding
+     * @param h cell height in pixels, including padding
+     * @param x glyph origin from the left of the cell
+     * @param y baseline from the top of the cell
+     */
+    public GlyphAtlas(String c, int w, int h, float x, float y) {
+        chars = c;
+        advance = new float[c.length()];
+        cellWidth = w;
+        cellHeight = h;
+        originX = x;
+        baseline = y;
+        int cells = c.length() + 1;
+        width = powerOfTwo(w * (int) Math.ceil(Math.sqrt(cells)));
+        columns = width / w;
+        height = powerOfTwo(h * ((cells + columns - 1) / columns));
+    }
+
+    private static int powerOfTwo(int n) {
+        int p = 1;
+        while(p < n) p <<= 1;
+        return p;
+    }
+
+    /**
+     * @return number of cells, the solid one included
+     */
+    public int cells() {
+        return chars.length() + 1;
+    }
+
+    /**
+     * @param cell 0 for the solid cell, <code>1 + </code>{@link #indexOf} for a glyph
+     * @return left of the cell in the texture, in pixels
+     */
+    public int cellX(int cell) {
+        return cell % columns * cellWidth;
+    }
+
+    /**
+     * @param cell 0 for the solid cell, <code>1 + </code>{@link #indexOf} for a glyph
+     * @return top of the cell in the texture, in pixels
+     */
+    public int cellY(int cell) {
+        return cell / columns * cellHeight;
+    }
+
+    /**
+     * @return character in the cell
+     */
+    public char charAt(int cell) {
+        return chars.charAt(cell - 1);
+    }
+
+    /**
+     * @return glyph index of the character, -1 if not in the atlas
+     */
+    public int indexOf(char c) {
+        return chars.indexOf(c);
+    }
+
+    /**
+     * @param c character in the atlas
+     * @param a horizontal advance in pixels
+     */
+    public void setAdvance(char c, float a) {
+        advance[indexOf(c)] = a;
+    }
+
+    /**
+     * @return width of the text in pixels, characters not in the atlas ignored
+     */
+    public float measure(CharSequence s) {
+        float w = 0;
+        for(int i = 0; i < s.length(); i++) {
+            int g = indexOf(s.charAt(i));
+            if(g >= 0) w += advance[g];
+        }
+        return w;
+    }
+
+    /**
+     * Set the batch to sample the middle of the solid cell for solid geometry.
+     */
+    public void solid(VertexBatch b) {
+        b.setSolid((0.5f * cellWidth) / width, (0.5f * cellHeight) / height);
+    }
+
+    /**
+     * Text as textured quads, two triangles each; characters not in the atlas are skipped.
+     * @param b destination
+     * @param s text
+     * @param x anchor x coordinate
+     * @param y baseline y coordinate
+     * @param align fraction of the text width left of the anchor: 0 left, 0.5 center, 1 right
+     */
+    public void text(VertexBatch b, CharSequence s, float x, float y, float align) {
+        x -= align * measure(s) + originX;
+        y -= baseline;
+        for(int i = 0; i < s.length(); i++) {
+            int g = indexOf(s.charAt(i));
+            if(g < 0) continue;
+            float u0 = (float) cellX(g + 1) / width, v0 = (float) cellY(g + 1) / height;
+            float u1 = u0 + (float) cellWidth / width, v1 = v0 + (float) cellHeight / height;
+            float x1 = x + cellWidth, y1 = y + cellHeight;
+            b.vertex(x, y, u0, v0);
+            b.vertex(x, y1, u0, v1);
+            b.vertex(x1, y, u1, v0);
+            b.vertex(x1, y, u1, v0);
+            b.vertex(x, y1, u0, v1);
+            b.vertex(x1, y1, u1, v1);
+            x += advance[g];
+        }
+    }
+}
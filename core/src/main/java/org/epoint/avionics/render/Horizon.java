@@ -0,0 +1,136 @@
+package org.epoint.avionics.render;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.math.Vec2D;
+import org.epoint.avionics.math.Vec3D;
+
+/**
+ * Artificial horizon with pitch ladder
+ * @author <a href="mailto:nagydani@epoint.org">Daniel A. Nagy</a>
+ */
+public class Horizon {
+
+    /**
+     * Full extent of the pitch ladder above and below the nearest mark, in degrees
+     */
+    public static final int PITCH_FOV = 20;
+
+    private static final int[] PITCH = new int[PitchLadder.capacity(PITCH_FOV)];
+    private static final float[] OFFSET = new float[PITCH.length];
+
+    private static int to(float[] p, int n, Vec2D v) {
+        p[n] = (float) v.x();
+        p[n + 1] = (float) v.y();
+        return n + 2;
+    }
+
+    /**
+     * @return pitch mark at the given height, as line segments: across the horizon, only the
+     * ends elsewhere
+     */
+    public static float[] pitchMark(int pitchMark, float pd, float left, float right) {
+        float x = 0.5f * (left + right);
+        float ll = 0.3f * left + 0.7f * x, rr = 0.3f * right + 0.7f * x;
+        float l = 0.1f * left + 0.9f * x, r = 0.1f * right + 0.9f * x;
+        if(pitchMark == 0) return new float[]{ll, pd, rr, pd};
+        return new float[]{
+                ll, pd,
+                l, pd,
+                rr, pd,
+                r, pd
+        };
+    }
+
+    /**
+     * @return fixed plane symbol at the line of sight, as line segments
+     */
+    public static float[] symbol(float left, float right, float y) {
+        float x = 0.5f * (left + right);
+        float ll = 0.3f * left + 0.7f * x, rr = 0.3f * right + 0.7f * x;
+        float l = 0.1f * left + 0.9f * x, r = 0.1f * right + 0.9f * x, h = 0.02f * (right - left);
+        return new float[]{
+                ll, y,
+                l, y,
+                l, y,
+                l, y + h,
+                rr, y,
+                r, y,
+                r, y,
+                r, y + h
+        };
+    }
+
+    /**
+     * @param up attitude
+     * @param y screen y coordinate of the line of sight
+     * @param d focal distance in pixels
+     * @param fov pitch ladder extent in degrees, at most {@link #PITCH_FOV}
+     * @param antiAlias whether the earth is anti-aliased
+     */
+    public static void draw(RenderTarget t, Attitude up, float left, float right, float top,
+                            float bottom, float y, float d, int fov, boolean antiAlias) {
+        float x = 0.5f * (left + right);
+        Vec3D[] c3D= {
+                new Vec3D(left - x, y - top, -d),
+                new Vec3D(right - x, y - top, -d),
+                new Vec3D(right - x, y - bottom, -d),
+                new Vec3D(left - x, y - bottom, -d)
+        };
+        Vec2D[] c2D = {
+                new Vec2D(left, top),
+                new Vec2D(right, top),
+                new Vec2D(right, bottom),
+                new Vec2D(left, bottom)
+        };
+        Vec2D l2D = new Vec2D(c2D[3]);
+        float[] earth = new float[4 * c2D.length];
+        int n = 0;
+        double lDot = up.upDot(c3D[3]);
+        for(int i = 0; i < c3D.length; i++) {
+            double tDot = up.upDot(c3D[i]);
+            if(lDot >= 0) {
+                if(tDot < 0) {
+                    n = to(earth, n, l2D.scale(tDot).add(new Vec2D(c2D[i]).scale(-lDot)).scale(1.0/(tDot - lDot)));
+                    n = to(earth, n, c2D[i]);
+                }
+            } else {
+                if(tDot < 0) {
+                    n = to(earth, n, c2D[i]);
+                } else {
+                    n = to(earth, n, l2D.scale(tDot).add(new Vec2D(c2D[i]).scale(-lDot)).scale(1.0 / (tDot - lDot)));
+                }
+            }
+            l2D = new Vec2D(c2D[i]);
+            lDot = tDot;
+        }
+        t.setColor(Palette.SKY);
+        t.setStyle(RenderTarget.Style.FILL);
+        t.paint();
+        if(n >= 6) {
+            t.setColor(Palette.EARTH);
+            t.setAntiAlias(antiAlias);
+            t.polygon(earth, 0, n);
+        }
+        Palette.scale(t);
+        int marks = PitchLadder.marks(up, y, d, fov, PITCH, OFFSET);
+        if(marks > 0) {
+            double ul = up.pitchCos();
+            t.save();
+            t.setStyle(RenderTarget.Style.FILL_AND_STROKE);
+            t.concat(Geometry.rotation(new float[6], (float) (up.upY() / ul),
+                    (float) (up.upX() / ul), x, y));
+            for(int i = 0; i < marks; i++) {
+                float[] mark = pitchMark(PITCH[i], OFFSET[i], left, right);
+                t.lines(mark, 0, mark.length);
+                if(PITCH[i] != 0)
+                    t.text(Integer.toString(PITCH[i]), x, OFFSET[i], RenderTarget.Align.CENTER,
+                            RenderTarget.Anchor.BASELINE);
+            }
+            t.setStyle(RenderTarget.Style.STROKE);
+            t.restore();
+        }
+        float[] mark = symbol(left, right, y);
+        t.lines(mark, 0, mark.length);
+        t.circle(x, y, 1);
+    }
+}
@@ -0,0 +1,57 @@
+package org.epoint.avionics.render;
+
+/**
+ * Slip indicator
+ */
+public class Inclinometer {
+
+    private static final float SENSITIVITY = 2.0f;
+    private static final float WIDTH = 7f;
+
+    private static float limit(float x, float w) {
+        return x < w ? x > -w ? x : -w : w;
+    }
+
+    /**
+     * @return x coordinate of the ball
+     */
+    public static float ball(float slip, float x, float r) {
+        return x - limit(SENSITIVITY * slip, WIDTH) * r;
+    }
+
+    /**
+     * @return tube outline, as line segments
+     */
+    public static float[] tube(float x, float y, float r) {
+        return new float[]{
+                x - r, y - r,
+                x - r, y + r,
+                x + r, y - r,
+                x + r, y + r
+        };
+    }
+
+    /**
+     * @param b left, top, right and bottom of the area drawn, set on return
+     */
+    public static void bounds(float x, float y, float r, float[] b) {
+        b[0] = x - (WIDTH + 1) * r;
+        b[1] = y - r;
+        b[2] = x + (WIDTH + 1) * r;
+        b[3] = y + r;
+    }
+
+    /**
+     * Draw inclinometer with ball
+     * @param t target
+     * @param slip lateral acceleration in meters per second square, positive to the right
+     * @param x center x coordinate
+     * @param y center y coordinate
+     * @param r ball radius
+     */
+    public static void draw(RenderTarget t, float slip, float x, float y, float r) {
+        float[] tube = tube(x, y, r);
+        t.lines(tube, 0, tube.length);
+        t.circle(ball(slip, x, r), y, r);
+    }
+}
@@ -0,0 +1,41 @@
+package org.epoint.avionics.render;
+
+/**
+ * Instrument panel as a list of tiles, drawn in order.
+ */
+public final class Layout {
+
+    /**
+     * Nanoseconds per millisecond
+     */
+    private static final long MS = 1000000L;
+
+    /**
+     * Portrait panel: horizon above the compass, turn indicator and inclinometer within the
+     * rose, altitude tape at the right. The horizon follows the display; the rose is drawn
+     * again only when heading or bearing changes; the altimeter is sampled at 10 Hz.
+     */
+    public static final Layout DEFAULT = new Layout(
+            new Tile(Tile.Instrument.HORIZON, 0.5f, 0.25f, 1, Tile.DISPLAY_RATE, false),
+            new Tile(Tile.Instrument.COMPASS, 0.5f, 0.75f, 0.24f, Tile.DISPLAY_RATE, true),
+            new Tile(Tile.Instrument.INCLINOMETER, 0.5f, 0.92f, 0.015f, Tile.DISPLAY_RATE,
+                    true),
+            new Tile(Tile.Instrument.TURN_INDICATOR, 0.5f, 0.87f, 0.1f, Tile.DISPLAY_RATE,
+                    true),
+            new Tile(Tile.Instrument.ALTIMETER, 0.87f, 0.25f, 0.15f, 100 * MS, true)
+    );
+
+    private final Tile[] tiles;
+
+    public Layout(Tile... t) {
+        tiles = t.clone();
+    }
+
+    public int size() {
+        return tiles.length;
+    }
+
+    public Tile get(int i) {
+        return tiles[i];
+    }
+}
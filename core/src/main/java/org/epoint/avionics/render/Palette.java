@@ -0,0 +1,27 @@
+package org.epoint.avionics.render;
+
+/**
+ * Colors and paint of the instruments.
+ */
+public final class Palette {
+
+    public static final int SKY = 0xFF0000FF;
+    public static final int EARTH = 0xFF964B00; // brown color
+    public static final int SCALE = 0xFFFFFFFF;
+    public static final int WARNING = 0xFFFF0000;
+    public static final float TEXT_SIZE = 26;
+
+    private Palette() {
+    }
+
+    /**
+     * Set the paint the instruments expect: white anti-aliased hairlines and text.
+     */
+    public static void scale(RenderTarget t) {
+        t.setColor(SCALE);
+        t.setStyle(RenderTarget.Style.STROKE);
+        t.setAntiAlias(true);
+        t.setStrokeWidth(0);
+        t.setTextSize(TEXT_SIZE);
+    }
+}
@@ -0,0 +1,94 @@
+package org.epoint.avionics.render;
+
+import org.epoint.avionics.math.Attitude;
+
+/**
+ * Pitch marks of the artificial horizon, in the screen frame rotated with the horizon.
+ * Positions are found by rotating the pitch vector by the mark spacing, without trigonometry.
+ */
+public final class PitchLadder {
+
+    /**
+     * Spacing of pitch marks in degrees
+     */
+    public static final int TICK = 5;
+    private static final int MARKS = 90 / TICK;
+    private static final double SIN_TICK = Math.sin(Math.toRadians(TICK));
+    private static final double COS_TICK = Math.cos(Math.toRadians(TICK));
+
+    /**
+     * Sines and cosines of pitch marks from -90 to 90 degrees
+     */
+    private static final double[] SIN_MARK = new double[2 * MARKS + 1];
+    private static final double[] COS_MARK = new double[2 * MARKS + 1];
+    /**
+     * Sines of the half-way pitch angles between marks, for finding the nearest mark without
+     * trigonometry
+     */
+    private static final double[] SIN_HALF_MARK = new double[2 * MARKS + 1];
+
+    static {
+        for(int i = -MARKS; i <= MARKS; i++) {
+            double a = Math.toRadians(TICK * i);
+            SIN_MARK[i + MARKS] = Math.sin(a);
+            COS_MARK[i + MARKS] = Math.cos(a);
+            SIN_HALF_MARK[i + MARKS] = Math.sin(a - Math.toRadians(0.5 * TICK));
+        }
+    }
+
+    private PitchLadder() {
+    }
+
+    /**
+     * @param fov extent above and below the nearest mark in degrees
+     * @return number of marks {@link #marks} can return
+     */
+    public static int capacity(int fov) {
+        return 2 * ((fov + TICK - 1) / TICK) - 1;
+    }
+
+    /**
+     * Marks within the field of view: the nearest one first, then those above it, then those
+     * below it.
+     * @param up attitude
+     * @param y screen y coordinate of the horizon center
+     * @param d focal distance in pixels
+     * @param fov extent above and below the nearest mark in degrees
+     * @param pitch filled with the pitch angle of each mark in degrees
+     * @param offset filled with the y coordinate of each mark in the rotated frame
+     * @return number of marks, zero near the vertical where the roll is undefined
+     */
+    public static int marks(Attitude up, float y, float d, int fov, int[] pitch, float[] offset) {
+        double ul = up.pitchCos();
+        if(!(ul > SIN_TICK)) return 0; // prevent gimbal lock
+        double sinPitch = up.pitchSin();
+        int n = 0;
+        while(n < MARKS && sinPitch >= SIN_HALF_MARK[n + 1 + MARKS]) n++;
+        while(n > -MARKS && sinPitch < SIN_HALF_MARK[n + MARKS]) n--;
+        int mark = -TICK * n;
+        // sine and cosine of the angle between the mark and the line of sight
+        double s = sinPitch * COS_MARK[n + MARKS] - ul * SIN_MARK[n + MARKS];
+        double c = ul * COS_MARK[n + MARKS] + sinPitch * SIN_MARK[n + MARKS];
+        pitch[0] = mark;
+        offset[0] = y - (float) (s * d / c);
+        int k = 1;
+        double s1 = s, c1 = c;
+        for(int i = TICK; i < fov && mark - i >= -90; i += TICK) {
+            double t = s1 * COS_TICK - c1 * SIN_TICK;
+            c1 = s1 * SIN_TICK + c1 * COS_TICK;
+            s1 = t;
+            pitch[k] = mark - i;
+            offset[k++] = y - (float) (s1 * d / c1);
+        }
+        s1 = s;
+        c1 = c;
+        for(int i = TICK; i < fov && mark + i <= 90; i += TICK) {
+            double t = s1 * COS_TICK + c1 * SIN_TICK;
+            c1 = c1 * COS_TICK - s1 * SIN_TICK;
+            s1 = t;
+            pitch[k] = mark + i;
+            offset[k++] = y - (float) (s1 * d / c1);
+        }
+        return k;
+    }
+}
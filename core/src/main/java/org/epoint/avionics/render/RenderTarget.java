@@ -0,0 +1,79 @@
+package org.epoint.avionics.render;
+
+/**
+ * Drawing primitives the instruments are made of, independent of the graphics API.
+ * Coordinates are in pixels, with the origin at the top left corner and y pointing downwards;
+ * angles are in degrees, clockwise. Primitives are drawn with the current paint state, which
+ * {@link #save} and {@link #restore} leave alone: they only concern the transform. Arrays
+ * passed in are not retained.
+ */
+public interface RenderTarget {
+
+    enum Style {FILL, STROKE, FILL_AND_STROKE}
+
+    enum Align {LEFT, CENTER, RIGHT}
+
+    /**
+     * What the y coordinate of text is: its baseline, or the top or bottom of the font
+     */
+    enum Anchor {BASELINE, TOP, BOTTOM}
+
+    void save();
+
+    void restore();
+
+    /**
+     * @param t affine transform to apply before the current one
+     * @see Geometry
+     */
+    void concat(float[] t);
+
+    /**
+     * @param argb color, alpha in the most significant byte
+     */
+    void setColor(int argb);
+
+    void setStyle(Style s);
+
+    void setAntiAlias(boolean a);
+
+    /**
+     * @param w stroke width in pixels, zero for hairlines
+     */
+    void setStrokeWidth(float w);
+
+    /**
+     * @param s text size in pixels
+     */
+    void setTextSize(float s);
+
+    /**
+     * Fill the whole target with the current color.
+     */
+    void paint();
+
+    /**
+     * @param pts line segment endpoints, four coordinates per segment
+     * @param offset of the first coordinate
+     * @param count number of coordinates
+     */
+    void lines(float[] pts, int offset, int count);
+
+    /**
+     * @param pts vertices of a closed polygon, two coordinates per vertex
+     * @param offset of the first coordinate
+     * @param count number of coordinates
+     */
+    void polygon(float[] pts, int offset, int count);
+
+    void circle(float x, float y, float r);
+
+    /**
+     * Arc of a circle, not closed.
+     * @param start angle from the positive x axis
+     * @param sweep angle from the start
+     */
+    void arc(float x, float y, float r, float start, float sweep);
+
+    void text(String s, float x, float y, Align align, Anchor anchor);
+}
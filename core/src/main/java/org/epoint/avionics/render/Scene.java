@@ -0,0 +1,55 @@
+package org.epoint.avionics.render;
+
+import java.util.Arrays;
+
+/**
+ * Display list kept together with the state it was recorded for, so that it is only
+ * recorded again when the state changes.
+ * <pre>
+ * if(scene.set(0, heading).set(1, bearing).isStale()) Compass.draw(scene.list, ...);
+ * scene.list.play(target);
+ * </pre>
+ */
+public final class Scene {
+
+    public final DisplayList list = new DisplayList();
+    private final float[] state, next;
+    private boolean valid = false;
+
+    /**
+     * @param n number of state variables
+     */
+    public Scene(int n) {
+        state = new float[n];
+        next = new float[n];
+    }
+
+    /**
+     * @param i state variable
+     * @param v its value for the coming frame
+     * @return this scene
+     */
+    public Scene set(int i, float v) {
+        next[i] = v;
+        return this;
+    }
+
+    /**
+     * @return whether the list must be recorded for the state set; if so, it is cleared and
+     * the state is considered recorded
+     */
+    public boolean isStale() {
+        if(valid && Arrays.equals(state, next)) return false;
+        System.arraycopy(next, 0, state, 0, state.length);
+        list.clear();
+        valid = true;
+        return true;
+    }
+
+    /**
+     * Force recording on the next frame.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+}
@@ -0,0 +1,40 @@
+package org.epoint.avionics.render;
+
+/**
+ * Update times of the tiles of a layout. A tile is due when its period has passed since its
+ * last update; missed updates are not caught up.
+ */
+public final class Schedule {
+
+    private final Layout layout;
+    private final long[] next;
+    private final boolean[] started;
+
+    public Schedule(Layout l) {
+        layout = l;
+        next = new long[l.size()];
+        started = new boolean[l.size()];
+    }
+
+    /**
+     * @param i tile
+     * @param now current time in nanoseconds
+     * @return whether the tile's state is to be sampled; if so, its next update is scheduled
+     */
+    public boolean due(int i, long now) {
+        long period = layout.get(i).period;
+        if(period == Tile.DISPLAY_RATE) return true;
+        if(started[i] && now - next[i] < 0) return false;
+        long n = next[i] + period;
+        next[i] = started[i] && n - now > 0 ? n : now + period;
+        started[i] = true;
+        return true;
+    }
+
+    /**
+     * Make every tile due.
+     */
+    public void reset() {
+        for(int i = 0; i < started.length; i++) started[i] = false;
+    }
+}
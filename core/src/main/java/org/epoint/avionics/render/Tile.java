@@ -0,0 +1,103 @@
+package org.epoint.avionics.render;
+
+/**
+ * Instrument placed on the panel, with its own update rate. Positions are fractions of the
+ * panel width (x) and height (y), so that a layout fits any panel.
+ */
+public final class Tile {
+
+    public enum Instrument {
+        /**
+         * Covers the whole panel; size is the focal distance as a fraction of the panel width
+         */
+        HORIZON,
+        /**
+         * Size is the radius of the rose
+         */
+        COMPASS,
+        /**
+         * Size is the half height of the tape
+         */
+        ALTIMETER,
+        /**
+         * Size is the radius of the scale
+         */
+        TURN_INDICATOR,
+        /**
+         * Size is the radius of the ball
+         */
+        INCLINOMETER
+    }
+
+    /**
+     * Update period of tiles following the display rate
+     */
+    public static final long DISPLAY_RATE = 0;
+
+    /**
+     * Margin in pixels around the area drawn, for anti-aliasing
+     */
+    private static final float MARGIN = 2;
+
+    public final Instrument instrument;
+    /**
+     * Center of the instrument; line of sight for the horizon
+     */
+    public final float x, y;
+    /**
+     * Size of the instrument as a fraction of the panel height, unless noted otherwise
+     */
+    public final float size;
+    /**
+     * Minimal time in nanoseconds between samples of the instrument's state
+     */
+    public final long period;
+    /**
+     * Whether the tile is kept on a surface of its own, drawn again only when its state
+     * changes
+     */
+    public final boolean cached;
+
+    public Tile(Instrument i, float x, float y, float size, long period, boolean cached) {
+        instrument = i;
+        this.x = x;
+        this.y = y;
+        this.size = size;
+        this.period = period;
+        this.cached = cached;
+    }
+
+    /**
+     * @param w panel width in pixels
+     * @param h panel height in pixels
+     * @param b left, top, right and bottom of the area the tile may draw on, in pixels,
+     *          set on return
+     */
+    public void bounds(float w, float h, float[] b) {
+        float x = this.x * w, y = this.y * h, s = size * h;
+        switch(instrument) {
+            case HORIZON:
+                b[0] = 0;
+                b[1] = 0;
+                b[2] = w;
+                b[3] = h;
+                return;
+            case COMPASS:
+                Compass.bounds(x, y, s, b);
+                break;
+            case ALTIMETER:
+                Altimeter.bounds(x, y, s, b);
+                break;
+            case TURN_INDICATOR:
+                TurnIndicator.bounds(x, y, s, b);
+                break;
+            case INCLINOMETER:
+                Inclinometer.bounds(x, y, s, b);
+                break;
+        }
+        b[0] = Math.max(0, (float) Math.floor(b[0] - MARGIN));
+        b[1] = Math.max(0, (float) Math.floor(b[1] - MARGIN));
+        b[2] = Math.min(w, (float) Math.ceil(b[2] + MARGIN));
+        b[3] = Math.min(h, (float) Math.ceil(b[3] + MARGIN));
+    }
+}
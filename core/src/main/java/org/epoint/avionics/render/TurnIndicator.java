@@ -0,0 +1,77 @@
+package org.epoint.avionics.render;
+
+/**
+ * Visualization of the rate of turn
+ * @author <a href="mailto:nagydani@epoint.org">Daniel A. Nagy</a>
+ */
+public class TurnIndicator {
+    /**
+     * Standard ROT, 3 degrees per second, full turn in two minutes
+     */
+    private static final float TWO_MINUTE_TURN = (float)Math.toRadians(3);
+    /**
+     * Degrees to indicate standard ROT
+     */
+    private static final float ANGLE = 15;
+
+    // Derived constants
+    private static final float COS_ANGLE = (float)Math.cos(Math.toRadians(ANGLE));
+    private static final float SIN_ANGLE = (float)Math.sin(Math.toRadians(ANGLE));
+    private static final float SCALE = -ANGLE / TWO_MINUTE_TURN;
+
+    /**
+     * @return scale marks, as line segments
+     */
+    public static float[] marks(float x, float y, float r) {
+        float rr = 0.8f * r;
+        return new float[]{
+                x - r, y,
+                x - rr, y,
+                x + r, y,
+                x + rr , y,
+                x - COS_ANGLE * r, y + SIN_ANGLE * r,
+                x - COS_ANGLE * rr, y + SIN_ANGLE * rr,
+                x + COS_ANGLE * r, y + SIN_ANGLE * r,
+                x + COS_ANGLE * rr, y + SIN_ANGLE * rr,
+        };
+    }
+
+    /**
+     * @return level plane symbol, as line segments
+     */
+    public static float[] symbol(float x, float y, float r) {
+        float rr = 0.8f * r;
+        return new float[]{
+                x + rr, y,
+                x - rr, y,
+                x, y,
+                x, y - 0.1f * r
+        };
+    }
+
+    /**
+     * @return bank of the plane symbol in degrees, clockwise
+     */
+    public static float angle(float rate) {
+        return SCALE * rate;
+    }
+
+    /**
+     * @param b left, top, right and bottom of the area drawn at any rate, set on return
+     */
+    public static void bounds(float x, float y, float r, float[] b) {
+        b[0] = x - r;
+        b[1] = y - r;
+        b[2] = x + r;
+        b[3] = y + r;
+    }
+
+    public static void draw(RenderTarget t, float rate, float x, float y, float r) {
+        float[] marks = marks(x, y, r), symbol = symbol(x, y, r);
+        t.lines(marks, 0, marks.length);
+        t.save();
+        t.concat(Geometry.rotation(new float[6], angle(rate), x, y));
+        t.lines(symbol, 0, symbol.length);
+        t.restore();
+    }
+}
@@ -0,0 +1,124 @@
+package org.epoint.avionics.render;
+
+/**
+ * Growable array of vertices, each a position and a texture coordinate, accumulated over a
+ * frame and handed to the GPU at once. Solid geometry samples a single opaque texel.
+ */
+public final class VertexBatch {
+
+    /**
+     * Floats per vertex: x, y, u, v
+     */
+    public static final int STRIDE = 4;
+
+    private float[] data;
+    private int size = 0;
+    private float solidU = 0, solidV = 0;
+
+    /**
+     * @param capacity initial number of vertices
+     */
+    public VertexBatch(int capacity) {
+        data = new float[STRIDE * capacity];
+    }
+
+    /**
+     * @param u texture coordinate of an opaque texel, used for solid geometry
+     * @param v texture coordinate of an opaque texel, used for solid geometry
+     */
+    public void setSolid(float u, float v) {
+        solidU = u;
+        solidV = v;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return number of vertices
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return backing array, valid up to {@link #size} vertices
+     */
+    public float[] data() {
+        return data;
+    }
+
+    public void vertex(float x, float y, float u, float v) {
+        if(STRIDE * size == data.length) {
+            float[] d = new float[2 * data.length];
+            System.arraycopy(data, 0, d, 0, data.length);
+            data = d;
+        }
+        int o = STRIDE * size++;
+        data[o] = x;
+        data[o + 1] = y;
+        data[o + 2] = u;
+        data[o + 3] = v;
+    }
+
+    /**
+     * Solid line segment.
+     */
+    public void line(float x0, float y0, float x1, float y1) {
+        vertex(x0, y0, solidU, solidV);
+        vertex(x1, y1, solidU, solidV);
+    }
+
+    /**
+     * Solid line segments.
+     * @param pts endpoint coordinates, four per segment, as for <code>Canvas.drawLines</code>
+     */
+    public void lines(float[] pts) {
+        for(int i = 0; i + 3 < pts.length; i += 4) line(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]);
+    }
+
+    /**
+     * Solid polygon outline, as line segments.
+     * @param pts vertex coordinates, two per vertex
+     * @param x translation
+     * @param y translation
+     * @param s scale
+     */
+    public void outline(float[] pts, float x, float y, float s) {
+        int n = pts.length;
+        for(int i = 0; i + 1 < n; i += 2) {
+            int j = (i + 2) % n;
+            line(x + s * pts[i], y + s * pts[i + 1], x + s * pts[j], y + s * pts[j + 1]);
+        }
+    }
+
+    /**
+     * Solid circle, as line segments.
+     * @param n number of segments
+     */
+    public void circle(float x, float y, float r, int n) {
+        float x0 = x + r, y0 = y;
+        for(int i = 1; i <= n; i++) {
+            double a = 2 * Math.PI * i / n;
+            float x1 = x + r * (float) Math.cos(a), y1 = y + r * (float) Math.sin(a);
+            line(x0, y0, x1, y1);
+            x0 = x1;
+            y0 = y1;
+        }
+    }
+
+    /**
+     * Transform the positions of the vertices added since a mark.
+     * @param from vertex count before the vertices to transform
+     * @param t affine transform
+     * @see Geometry#rotation
+     */
+    public void transform(int from, float[] t) {
+        for(int o = STRIDE * from; o < STRIDE * size; o += STRIDE) {
+            float x = data[o], y = data[o + 1];
+            data[o] = t[0] * x + t[2] * y + t[4];
+            data[o + 1] = t[1] * x + t[3] * y + t[5];
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package org.epoint.avionics.sensor;
 
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Created by nagydani on 2015.09.19..
  */
-public class Barometric implements SensorEventListener {
+public class Barometric implements SampleListener {
 
     public interface Listener {
         public void setAltitude(float altitude);
@@ -27,11 +27,11 @@ public class Barometric implements SensorEventListener {
     /**
      * Maximal length of circular buffer
      */
-    static final int BUFFER = 100;
+    final int buffer;
     /**
      * Wrap-around time in nanoseconds
      */
-    static final long TIME = 500000000; // 1/2 second
+    final long wrapTime;
 
     float referencePressure = QNE;
 
@@ -39,34 +39,43 @@ public class Barometric implements SensorEventListener {
     boolean hasVerticalSpeed = false;
     float cPressure;
     long lastTime = 0;
-    float[] pressure = new float[BUFFER];
-    long[] time = new long[BUFFER];
+    final float[] pressure;
+    final long[] time;
     private final Listener listener;
 
     public Barometric(Listener l) {
+        this(l, Tuning.DEFAULT);
+    }
+
+    public Barometric(Listener l, Tuning t) {
         listener = l;
+        buffer = t.barometricBuffer;
+        wrapTime = t.barometricTime;
+        pressure = new float[buffer];
+        time = new long[buffer];
     }
 
     @Override
-    public synchronized void onSensorChanged(SensorEvent event) {
-        if(lastTime == 0 || event.timestamp - lastTime > TIME) {
-            cPressure = event.values[0];
+    public synchronized void onSample(long timestamp, float[] values) {
+        if(lastTime == 0 || timestamp - lastTime > wrapTime) {
+            cPressure = values[0];
         } else {
-            float dT = (float)(event.timestamp - lastTime) / (float)TIME;
+            float dT = (float)(timestamp - lastTime) / (float)wrapTime;
             cPressure *= dT;
-            cPressure += (1.0f - dT) * event.values[0];
+            cPressure += (1.0f - dT) * values[0];
         }
-        lastTime = time[index] = event.timestamp;
+        lastTime = time[index] = timestamp;
+        pressure[index] = cPressure;
         float alt = getAltitude(cPressure);
         listener.setAltitude(alt);
         index++;
-        if(index >= BUFFER || event.timestamp - time[0] > TIME) {
+        if(index >= buffer || timestamp - time[0] > wrapTime) {
             index = 0;
             hasVerticalSpeed = true;
         }
         if(hasVerticalSpeed)
             listener.setVerticalSpeed(1e9f * (alt - getAltitude(pressure[index]))
-                    / (float) (event.timestamp - time[index]));
+                    / (float) (timestamp - time[index]));
     }
 
     private float getAltitude(float measuredPressure) {
@@ -96,8 +105,13 @@ public class Barometric implements SensorEventListener {
         return setReferencePressure(QNE);
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    synchronized void save(DataOutput out) throws IOException {
+        out.writeFloat(referencePressure);
+    }
 
+    void load(DataInput in) throws IOException {
+        float p = in.readFloat();
+        if(!(p > 0) || Float.isInfinite(p)) throw new IOException("Implausible reference pressure");
+        setReferencePressure(p);
     }
 }
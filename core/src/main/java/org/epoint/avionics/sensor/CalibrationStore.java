@@ -0,0 +1,156 @@
+package org.epoint.avionics.sensor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Learned sensor calibration, kept per sensor identity and temperature bucket. Each bucket
+ * holds a weighted mean of the calibration parameters reported at that temperature, favoring
+ * recent sessions; lookups interpolate linearly between the nearest buckets.
+ * <pre>
+ * MAGIC, VERSION, sensor count, then per sensor: identity, bucket count,
+ *        then per bucket: bucket number, weight, parameter count, parameters
+ * CRC32 of the above
+ * </pre>
+ */
+public final class CalibrationStore {
+
+    public static final int MAGIC = 0x41564342; // "AVCB"
+
+    public static final int VERSION = 1;
+
+    /**
+     * Width of a temperature bucket in degrees Celsius
+     */
+    public static final float BUCKET = 5f;
+
+    /**
+     * Weight beyond which older sessions are forgotten
+     */
+    private static final double MAX_WEIGHT = 10;
+
+    private static class Bucket {
+        final double[] values;
+        double weight;
+
+        Bucket(double[] v, double w) {
+            values = v;
+            weight = w;
+        }
+    }
+
+    private final Map<String, TreeMap<Integer, Bucket>> sensors =
+            new HashMap<String, TreeMap<Integer, Bucket>>();
+
+    /**
+     * @param sensor sensor identity
+     * @param temperature temperature in degrees Celsius
+     * @return interpolated parameters, <code>null</code> if none are known
+     */
+    public synchronized double[] get(String sensor, float temperature) {
+        TreeMap<Integer, Bucket> buckets = sensors.get(sensor);
+        if(buckets == null || Float.isNaN(temperature)) return null;
+        float b = temperature / BUCKET;
+        Map.Entry<Integer, Bucket> lo = buckets.floorEntry((int) Math.floor(b));
+        Map.Entry<Integer, Bucket> hi = buckets.ceilingEntry((int) Math.ceil(b));
+        if(lo == null) return hi.getValue().values.clone();
+        if(hi == null || lo.getKey().equals(hi.getKey())) return lo.getValue().values.clone();
+        double[] l = lo.getValue().values, h = hi.getValue().values;
+        if(l.length != h.length) return null;
+        double f = (b - lo.getKey()) / (hi.getKey() - lo.getKey());
+        double[] v = new double[l.length];
+        for(int i = 0; i < v.length; i++) v[i] = l[i] + f * (h[i] - l[i]);
+        return v;
+    }
+
+    /**
+     * Merge parameters into the bucket of the temperature.
+     * @param sensor sensor identity
+     * @param temperature temperature in degrees Celsius, ignored if <code>NaN</code>
+     * @param values parameters, copied
+     * @param weight confidence, relative to other sessions
+     */
+    public synchronized void put(String sensor, float temperature, double[] values,
+                                 double weight) {
+        if(Float.isNaN(temperature) || !(weight > 0)) return;
+        TreeMap<Integer, Bucket> buckets = sensors.get(sensor);
+        if(buckets == null) sensors.put(sensor, buckets = new TreeMap<Integer, Bucket>());
+        int k = Math.round(temperature / BUCKET);
+        Bucket b = buckets.get(k);
+        if(b == null || b.values.length != values.length) {
+            buckets.put(k, new Bucket(values.clone(), Math.min(weight, MAX_WEIGHT)));
+            return;
+        }
+        double w = b.weight + weight, f = weight / w;
+        for(int i = 0; i < values.length; i++) b.values[i] += f * (values[i] - b.values[i]);
+        b.weight = Math.min(w, MAX_WEIGHT);
+    }
+
+    /**
+     * @param o destination, not closed
+     * @throws IOException on write error
+     */
+    public synchronized void write(OutputStream o) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(o, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sensors.size());
+        for(Map.Entry<String, TreeMap<Integer, Bucket>> s : sensors.entrySet()) {
+            out.writeUTF(s.getKey());
+            out.writeInt(s.getValue().size());
+            for(Map.Entry<Integer, Bucket> e : s.getValue().entrySet()) {
+                Bucket b = e.getValue();
+                out.writeInt(e.getKey());
+                out.writeDouble(b.weight);
+                out.writeInt(b.values.length);
+                for(double v : b.values) out.writeDouble(v);
+            }
+        }
+        out.flush();
+        new DataOutputStream(o).writeLong(checked.getChecksum().getValue());
+        o.flush();
+    }
+
+    /**
+     * @param i source, not closed
+     * @return calibration store
+     * @throws IOException on read error, or if not an intact store of this version, e.g. a
+     * sensor without buckets
+     */
+    public static CalibrationStore read(InputStream i) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(i, new CRC32());
+        DataInputStream in = new DataInputStream(checked);
+        if(in.readInt() != MAGIC) throw new IOException("Not a calibration store");
+        if(in.readInt() != VERSION) throw new IOException("Unsupported version");
+        CalibrationStore store = new CalibrationStore();
+        for(int s = in.readInt(); s > 0; s--) {
+            TreeMap<Integer, Bucket> buckets = new TreeMap<Integer, Bucket>();
+            store.sensors.put(in.readUTF(), buckets);
+            int n = in.readInt();
+            // put never leaves a sensor without buckets, and get relies on that
+            if(n < 1) throw new IOException("Corrupt calibration");
+            for(; n > 0; n--) {
+                int k = in.readInt();
+                double w = in.readDouble();
+                int length = in.readInt();
+                if(length < 0 || length > 1 << 10) throw new IOException("Corrupt calibration");
+                double[] v = new double[length];
+                for(int j = 0; j < length; j++) v[j] = in.readDouble();
+                buckets.put(k, new Bucket(v, w));
+            }
+        }
+        long crc = checked.getChecksum().getValue();
+        if(new DataInputStream(i).readLong() != crc) throw new IOException("Corrupt calibration");
+        return store;
+    }
+}
@@ -0,0 +1,121 @@
+package org.epoint.avionics.sensor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot of estimator state for a warm restart: orientation, gyroscope drift, magnetic field
+ * direction and barometric reference pressure. Sensor filters are not kept; they start over.
+ * About a hundred bytes, protected by a CRC; restored only if recent.
+ * <pre>
+ * MAGIC, VERSION, wall clock time, state length, state, CRC32 of state
+ * </pre>
+ */
+public final class Checkpoint {
+
+    public static final int MAGIC = 0x41565343; // "AVSC"
+
+    public static final int VERSION = 1;
+
+    /**
+     * Maximal age in milliseconds of a checkpoint worth restoring
+     */
+    public static final long MAX_AGE = 10 * 60 * 1000;
+
+    /**
+     * Wall clock time of the snapshot in milliseconds
+     */
+    public final long time;
+
+    private final byte[] state;
+
+    private Checkpoint(long t, byte[] s) {
+        time = t;
+        state = s;
+    }
+
+    /**
+     * Take a snapshot. Estimator state must not change meanwhile.
+     * @param time wall clock time in milliseconds
+     * @param i inertial estimator
+     * @param b barometric estimator, <code>null</code> if none
+     * @return snapshot
+     */
+    public static Checkpoint of(long time, Inertial i, Barometric b) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            i.save(out);
+            out.writeBoolean(b != null);
+            if(b != null) b.save(out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return new Checkpoint(time, bytes.toByteArray());
+    }
+
+    /**
+     * @param now wall clock time in milliseconds
+     * @return whether the snapshot is recent enough to restore
+     */
+    public boolean isValid(long now) {
+        return now >= time && now - time <= MAX_AGE;
+    }
+
+    /**
+     * Restore the snapshot.
+     * @param i inertial estimator
+     * @param b barometric estimator, <code>null</code> if none
+     * @throws IOException if the state is implausible
+     */
+    public void restore(Inertial i, Barometric b) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+        i.load(in);
+        if(in.readBoolean() && b != null) b.load(in);
+    }
+
+    /**
+     * @param o destination, not closed
+     * @throws IOException on write error
+     */
+    public void write(OutputStream o) throws IOException {
+        DataOutputStream out = new DataOutputStream(o);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(time);
+        out.writeInt(state.length);
+        out.write(state);
+        out.writeLong(crc(state));
+        out.flush();
+    }
+
+    /**
+     * @param i source, not closed
+     * @return snapshot
+     * @throws IOException on read error, or if not an intact checkpoint of this version
+     */
+    public static Checkpoint read(InputStream i) throws IOException {
+        DataInputStream in = new DataInputStream(i);
+        if(in.readInt() != MAGIC) throw new IOException("Not a checkpoint");
+        if(in.readInt() != VERSION) throw new IOException("Unsupported version");
+        long time = in.readLong();
+        int length = in.readInt();
+        if(length < 0 || length > 1 << 16) throw new IOException("Corrupt checkpoint");
+        byte[] state = new byte[length];
+        in.readFully(state);
+        if(in.readLong() != crc(state)) throw new IOException("Corrupt checkpoint");
+        return new Checkpoint(time, state);
+    }
+
+    private static long crc(byte[] b) {
+        CRC32 crc = new CRC32();
+        crc.update(b, 0, b.length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,129 @@
+package org.epoint.avionics.sensor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Checkpoint}s of a recorded flight by log timestamp, stored beside the log and its
+ * index, so that a replay can start mid-flight with the estimator warmed up. Small enough to
+ * be read whole; a checkpoint cut short at the end is ignored.
+ * <pre>
+ * per checkpoint: log timestamp, checkpoint
+ * </pre>
+ */
+public final class CheckpointLog {
+
+    private final long[] timestamps;
+    private final Checkpoint[] checkpoints;
+
+    /**
+     * @param f checkpoint log
+     * @throws IOException on read error, or if a checkpoint is corrupt
+     */
+    public CheckpointLog(File f) throws IOException {
+        List<Long> t = new ArrayList<Long>();
+        List<Checkpoint> c = new ArrayList<Checkpoint>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+        try {
+            while(true) {
+                long timestamp;
+                try {
+                    timestamp = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                try {
+                    c.add(Checkpoint.read(in));
+                } catch (EOFException truncated) {
+                    break;
+                }
+                t.add(timestamp);
+            }
+        } finally {
+            in.close();
+        }
+        timestamps = new long[t.size()];
+        for(int i = 0; i < timestamps.length; i++) timestamps[i] = t.get(i);
+        checkpoints = c.toArray(new Checkpoint[c.size()]);
+    }
+
+    /**
+     * @return checkpoint log of a sensor log, by naming convention
+     */
+    public static File of(File log) {
+        return new File(log.getPath() + ".ckp");
+    }
+
+    /**
+     * @return number of checkpoints
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * @return log timestamp of a checkpoint in nanoseconds: the state after the record
+     */
+    public long timestamp(int n) {
+        return timestamps[n];
+    }
+
+    /**
+     * @return estimator state of a checkpoint
+     */
+    public Checkpoint get(int n) {
+        return checkpoints[n];
+    }
+
+    /**
+     * @param timestamp time in nanoseconds
+     * @return last checkpoint taken at or before <code>timestamp</code>, -1 if none
+     */
+    public int find(long timestamp) {
+        int lo = -1, hi = timestamps.length - 1;
+        while(lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if(timestamps[mid] <= timestamp) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Appends checkpoints in log order
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        /**
+         * @param f checkpoint log, replaced
+         */
+        public Writer(File f) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+        }
+
+        /**
+         * @param timestamp log timestamp of the last record in the state, in nanoseconds
+         * @param c state
+         */
+        public void write(long timestamp, Checkpoint c) throws IOException {
+            out.writeLong(timestamp);
+            c.write(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
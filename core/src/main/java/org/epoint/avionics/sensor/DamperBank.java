@@ -0,0 +1,202 @@
+package org.epoint.avionics.sensor;
+
+import org.epoint.avionics.math.Vec3D;
+
+/**
+ * Filtered three-axis sensors: exponential smoothing, per-axis variance and stability
+ * detection, computed in place over primitive arrays shared by all channels of the bank.
+ * Channel <code>c</code> occupies elements <code>3c</code> to <code>3c + 2</code> of the
+ * vector arrays. No allocation per sample.
+ */
+public final class DamperBank {
+
+    /**
+     * Filtering time in nanoseconds
+     */
+    private final double[] time;
+    /**
+     * Stabilization radius squared
+     */
+    private final double[] stableRadius2;
+    private final SampleListener[] listeners;
+    private final Channel[] channels;
+    private int size = 0;
+
+    /**
+     * Timestamp of last sensor event
+     */
+    final long[] lastTimestamp;
+    /**
+     * Stable since this timestamp
+     */
+    final long[] firstStableTimestamp;
+    /**
+     * Whether a vector has been sensed
+     */
+    final boolean[] valid;
+    /**
+     * Sensed vectors, with damping
+     */
+    final double[] vector;
+    /**
+     * Per-axis variances, with damping
+     */
+    final double[] variance;
+    /**
+     * Stabilized vectors
+     */
+    final double[] stable;
+
+    /**
+     * @param capacity maximal number of channels
+     */
+    public DamperBank(int capacity) {
+        time = new double[capacity];
+        stableRadius2 = new double[capacity];
+        listeners = new SampleListener[capacity];
+        channels = new Channel[capacity];
+        lastTimestamp = new long[capacity];
+        firstStableTimestamp = new long[capacity];
+        valid = new boolean[capacity];
+        vector = new double[3 * capacity];
+        variance = new double[3 * capacity];
+        stable = new double[3 * capacity];
+    }
+
+    /**
+     * Add a channel.
+     * @param t filtering time in nanoseconds
+     * @param r stability detection radius, zero for none
+     * @param l pass-through listener, or <code>null</code>
+     * @return the new channel
+     */
+    public Channel add(double t, double r, SampleListener l) {
+        if(size == channels.length) throw new IllegalStateException("Bank full");
+        time[size] = t;
+        stableRadius2[size] = r * r;
+        listeners[size] = l;
+        return channels[size] = new Channel(size++);
+    }
+
+    /**
+     * One filtered sensor of the bank
+     */
+    public final class Channel implements SampleListener {
+        /**
+         * Number of this channel
+         */
+        public final int index;
+        /**
+         * Hard- and soft-iron correction: offset, then matrix in row-major order
+         */
+        volatile double[] correction = null;
+
+        private Channel(int i) {
+            index = i;
+        }
+
+        @Override
+        public void onSample(long timestamp, float[] values) {
+            DamperBank.this.onSample(index, timestamp, values);
+        }
+
+        public boolean isValid() {
+            return valid[index];
+        }
+
+        public double x() {
+            return vector[3 * index];
+        }
+
+        public double y() {
+            return vector[3 * index + 1];
+        }
+
+        public double z() {
+            return vector[3 * index + 2];
+        }
+
+        /**
+         * @return copy of the sensed vector
+         */
+        public Vec3D vector() {
+            return new Vec3D(x(), y(), z());
+        }
+
+        /**
+         * @param axis 0, 1 or 2
+         * @return damped variance along the axis
+         */
+        public double variance(int axis) {
+            return variance[3 * index + axis];
+        }
+
+        long firstStableTimestamp() {
+            return firstStableTimestamp[index];
+        }
+
+        void setFirstStableTimestamp(long t) {
+            firstStableTimestamp[index] = t;
+        }
+    }
+
+    private void setStable(int c) {
+        int o = 3 * c;
+        stable[o] = vector[o];
+        stable[o + 1] = vector[o + 1];
+        stable[o + 2] = vector[o + 2];
+        firstStableTimestamp[c] = lastTimestamp[c];
+    }
+
+    /**
+     * @param c channel
+     * @param timestamp time in nanoseconds
+     * @param values sensed vector
+     */
+    public void onSample(int c, long timestamp, float[] values) {
+        int o = 3 * c;
+        double x = values[0], y = values[1], z = values[2];
+        double[] w = channels[c].correction;
+        if(w != null) {
+            double u = x - w[0], v = y - w[1], s = z - w[2];
+            x = w[3] * u + w[4] * v + w[5] * s;
+            y = w[6] * u + w[7] * v + w[8] * s;
+            z = w[9] * u + w[10] * v + w[11] * s;
+        }
+        double t = (double)(timestamp - lastTimestamp[c]) / time[c];
+        if(t >= 1 || t < 0 || !valid[c]) {
+            vector[o] = x;
+            vector[o + 1] = y;
+            vector[o + 2] = z;
+            valid[c] = true;
+            setStable(c);
+        } else {
+            double dx = x - vector[o], dy = y - vector[o + 1], dz = z - vector[o + 2];
+            vector[o] += dx * t;
+            vector[o + 1] += dy * t;
+            vector[o + 2] += dz * t;
+            variance[o] += (dx * dx - variance[o]) * t;
+            variance[o + 1] += (dy * dy - variance[o + 1]) * t;
+            variance[o + 2] += (dz * dz - variance[o + 2]) * t;
+        }
+        lastTimestamp[c] = timestamp;
+        double r2 = stableRadius2[c];
+        if(r2 > 0) {
+            double rx = vector[o] - stable[o], ry = vector[o + 1] - stable[o + 1],
+                    rz = vector[o + 2] - stable[o + 2];
+            if(rx * rx + ry * ry + rz * rz > r2) setStable(c);
+        } else setStable(c);
+        SampleListener l = listeners[c];
+        if(l != null) l.onSample(timestamp, values);
+    }
+
+    /**
+     * Forget a channel, so that it starts over with the next sample as if never sensed.
+     * @param c channel
+     */
+    void clear(int c) {
+        valid[c] = false;
+        lastTimestamp[c] = firstStableTimestamp[c] = 0;
+        for(int i = 3 * c; i < 3 * c + 3; i++) variance[i] = 0;
+    }
+}
@@ -0,0 +1,128 @@
+package org.epoint.avionics.sensor;
+
+/**
+ * Decouple the sensor rate from the consumer's rate. Orientation and rate of turn, which arrive
+ * with every gyroscope event, are either forwarded on every n-th update (decimation) or held as
+ * latest values and forwarded when the consumer calls {@link #flush()} (coalescing). The
+ * angular rate goes along with the orientation. Other, infrequent events are forwarded
+ * immediately.
+ */
+public class Decimator implements Inertial.Listener {
+
+    /**
+     * Decimation value for latest-value coalescing
+     */
+    public static final int COALESCE = 0;
+
+    private final Inertial.Listener listener;
+    private final int decimation;
+
+    private int orientationCount = 0;
+    private int rateOfTurnCount = 0;
+    private final double[] orientation = new double[4];
+    private boolean hasOrientation = false;
+    private float rateOfTurn;
+    private boolean hasRateOfTurn = false;
+    private final float[] angularRate = new float[3];
+    private boolean hasAngularRate = false;
+
+    /**
+     * @param l listener to forward to
+     * @param n forward every <code>n</code>-th update, or {@link #COALESCE}
+     */
+    public Decimator(Inertial.Listener l, int n) {
+        if(n < 0) throw new IllegalArgumentException("Negative decimation");
+        listener = l;
+        decimation = n;
+    }
+
+    /**
+     * Forward the latest orientation and rate of turn, if changed since the last call.
+     * To be called at the consumer's rate.
+     */
+    public synchronized void flush() {
+        forwardOrientation();
+        if(hasRateOfTurn) listener.setRateOfTurn(rateOfTurn);
+        hasRateOfTurn = false;
+    }
+
+    /**
+     * Forward the pending orientation, preceded by the angular rate.
+     */
+    private void forwardOrientation() {
+        if(!hasOrientation) return;
+        if(hasAngularRate)
+            listener.setAngularRate(angularRate[0], angularRate[1], angularRate[2]);
+        listener.setOrientation(orientation[0], orientation[1], orientation[2], orientation[3]);
+        hasOrientation = false;
+        hasAngularRate = false;
+    }
+
+    @Override
+    public void setOrientation(double r, double i, double j, double k) {
+        if(decimation == COALESCE) {
+            synchronized (this) {
+                hold(r, i, j, k);
+            }
+        } else if(++orientationCount >= decimation) {
+            orientationCount = 0;
+            synchronized (this) {
+                hold(r, i, j, k);
+                forwardOrientation();
+            }
+        }
+    }
+
+    private void hold(double r, double i, double j, double k) {
+        orientation[0] = r;
+        orientation[1] = i;
+        orientation[2] = j;
+        orientation[3] = k;
+        hasOrientation = true;
+    }
+
+    @Override
+    public synchronized void setAngularRate(float x, float y, float z) {
+        angularRate[0] = x;
+        angularRate[1] = y;
+        angularRate[2] = z;
+        hasAngularRate = true;
+    }
+
+    @Override
+    public void setRateOfTurn(float r) {
+        if(decimation == COALESCE) {
+            synchronized (this) {
+                rateOfTurn = r;
+                hasRateOfTurn = true;
+            }
+        } else if(++rateOfTurnCount >= decimation) {
+            rateOfTurnCount = 0;
+            listener.setRateOfTurn(r);
+        }
+    }
+
+    /**
+     * Bearing is tracked relative to heading, so pending orientation goes first.
+     */
+    @Override
+    public synchronized void setBearing(float bearing) {
+        forwardOrientation();
+        listener.setBearing(bearing);
+    }
+
+    @Override
+    public void setDebug(String debug) {
+        listener.setDebug(debug);
+    }
+
+    @Override
+    public void setDeclination(float declination) {
+        listener.setDeclination(declination);
+    }
+
+    @Override
+    public void setSlip(float slip) {
+        listener.setSlip(slip);
+    }
+}
@@ -0,0 +1,77 @@
+package org.epoint.avionics.sensor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Pass samples to a listener on another thread, in order and without loss. The leading values
+ * of each sample are copied into a pooled task and run on the executor, which must run tasks
+ * one at a time in submission order: a Handler-backed executor on a device, a single-thread
+ * executor on the JVM. The pool grows while the consumer falls behind and is reused afterwards,
+ * so steady operation allocates nothing.
+ */
+public class Handoff implements SampleListener {
+
+    private final class Task implements Runnable {
+        final float[] values;
+        long timestamp;
+        Task next;
+
+        Task(int n) {
+            values = new float[n];
+        }
+
+        @Override
+        public void run() {
+            listener.onSample(timestamp, values);
+            release(this);
+        }
+    }
+
+    private final SampleListener listener;
+    private final Executor executor;
+    private final int capacity;
+    private Task free = null;
+    private int allocated = 0;
+
+    /**
+     * @param l listener, run on the executor
+     * @param e serial executor
+     * @param n number of values passed on per sample
+     */
+    public Handoff(SampleListener l, Executor e, int n) {
+        listener = l;
+        executor = e;
+        capacity = n;
+    }
+
+    /**
+     * @return number of tasks allocated, the largest backlog so far
+     */
+    public synchronized int getAllocated() {
+        return allocated;
+    }
+
+    private synchronized Task acquire() {
+        Task t = free;
+        if(t == null) {
+            allocated++;
+            return new Task(capacity);
+        }
+        free = t.next;
+        t.next = null;
+        return t;
+    }
+
+    private synchronized void release(Task t) {
+        t.next = free;
+        free = t;
+    }
+
+    @Override
+    public void onSample(long timestamp, float[] values) {
+        Task t = acquire();
+        t.timestamp = timestamp;
+        System.arraycopy(values, 0, t.values, 0, Math.min(values.length, capacity));
+        executor.execute(t);
+    }
+}
@@ -0,0 +1,437 @@
+package org.epoint.avionics.sensor;
+
+import org.epoint.avionics.math.Davenport;
+import org.epoint.avionics.math.Vec2D;
+import org.epoint.avionics.math.Vec3D;
+import org.epoint.avionics.math.Versor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Inertial navigation  augmented by satellite navigation. Not thread-safe: samples and
+ * updates must come from one thread at a time, in order; see {@link Handoff}.
+ * @author <a href="mailto:nagydani@epoint.org">Daniel A. Nagy</a>
+ */
+public class Inertial {
+    /**
+     * Maximal speed for guaranteed on-ground operation in meters per second
+     */
+    private static final float MAX_SPEED = 10f;
+
+    /**
+     * Standard gravity in meters per second squared
+     */
+    public static final float STANDARD_GRAVITY = 9.80665f;
+
+    /**
+     * Maximal disagreement in radians between a restored and the first measured orientation
+     */
+    private static final double RESTORE_TOLERANCE = Math.toRadians(20);
+
+    /**
+     * Rate of turn in radians per second above which the accelerometer is not taken for
+     * down between calibrations
+     */
+    private static final double CORRECTION_TURN = Math.toRadians(2);
+
+    /**
+     * Deviation of the acceleration from standard gravity, as a fraction of it, above which
+     * the accelerometer is not taken for down between calibrations
+     */
+    private static final double CORRECTION_LOAD = 0.05;
+
+    public interface Listener {
+        void setDebug(String debug);
+        /**
+         * Aircraft to world versor coordinates, reported with every gyroscope event. Primitive,
+         * so that no object is created per event; consumers convert at their own rate, e.g.
+         * with <code>Versor.attitude(r, i, j, k, a)</code>.
+         */
+        void setOrientation(double r, double i, double j, double k);
+        void setBearing(float bearing);
+        void setDeclination(float declination);
+        void setSlip(float slip);
+        void setRateOfTurn(float rateOfTurn);
+
+        /**
+         * Filtered angular velocity in radians per second, drift removed, in device
+         * coordinates. Reported before each orientation integrated from it.
+         */
+        void setAngularRate(float x, float y, float z);
+    }
+
+    /**
+     * Arithmetic used for gyroscope integration
+     */
+    public enum Precision {
+        /**
+         * Array-backed {@link Versor}
+         */
+        GENERIC,
+        /**
+         * Field-based {@link org.epoint.avionics.math.DoubleVersor}
+         */
+        DOUBLE,
+        /**
+         * Field-based single precision {@link org.epoint.avionics.math.FloatVersor}
+         */
+        FLOAT
+    }
+
+    private final Listener listener;
+    private final Tuning tuning;
+    private final double maxAngular2;
+
+    public Inertial(Listener l) {
+        this(l, Precision.GENERIC);
+    }
+
+    public Inertial(Listener l, Precision p) {
+        this(l, p, Tuning.DEFAULT);
+    }
+
+    public Inertial(Listener l, Precision p, Tuning t) {
+        listener = l;
+        tuning = t;
+        maxAngular2 = t.maxAngular * t.maxAngular;
+        deviceToWorld = Integrator.create(p);
+        gyroscope = dampers.add(t.gyroscopeTime, 0, integrator);
+        accelerometer = dampers.add(t.accelerometerTime, t.stableRadius, inclinometer);
+        magnetometer = dampers.add(t.magnetometerTime, 0, null);
+    }
+
+    /**
+     * Last calibration at this time
+     */
+    long calibrationTimestamp = 0;
+
+    /**
+     * Number of gyroscope drift measurements
+     */
+    private int calibrations = 0;
+
+    /**
+     * Orientation restored from a {@link Checkpoint}, not yet checked against measurement
+     */
+    boolean restored = false;
+
+    private static final Vec3D GRAVITY = new Vec3D(0, STANDARD_GRAVITY, 0);
+    private static final Vec3D NORTH = new Vec3D(0, 0, -1);
+    Vec3D gravity = GRAVITY;
+    Vec3D magnetism = new Vec3D(0, 0, -1);
+    Vec3D gyroscopeDrift = Vec3D.zero();
+
+    Versor deviceToAircraft = Versor.I;
+    final Integrator deviceToWorld;
+
+    /**
+     * Filtered gyroscope, accelerometer and magnetometer
+     */
+    private final DamperBank dampers = new DamperBank(3);
+
+    public final DamperBank.Channel gyroscope;
+
+    /**
+     * Timestamps of the last integration and inclination steps, zero to start over
+     */
+    private long integrationTimestamp = 0, inclinationTimestamp = 0;
+
+    /**
+     * Coordinates of the current orientation, as reported
+     */
+    private final double[] coordinates = new double[4];
+
+    private void report(Versor v) {
+        listener.setOrientation(v.r(), v.v(1), v.v(2), v.v(3));
+    }
+
+    private final SampleListener integrator = new SampleListener() {
+
+        @Override
+        public void onSample(long timestamp, float[] values) {
+            if(!deviceToWorld.isSet()) return;
+            if(integrationTimestamp != 0) {
+                deviceToWorld.spin(values[0] - gyroscopeDrift.x(),
+                        values[1] - gyroscopeDrift.y(),
+                        values[2] - gyroscopeDrift.z(),
+                        -1e-9 * (double) (timestamp - integrationTimestamp));
+                if(gyroscope.isValid())
+                    listener.setAngularRate((float) (gyroscope.x() - gyroscopeDrift.x()),
+                            (float) (gyroscope.y() - gyroscopeDrift.y()),
+                            (float) (gyroscope.z() - gyroscopeDrift.z()));
+                deviceToWorld.get(coordinates);
+                listener.setOrientation(coordinates[0], coordinates[1], coordinates[2],
+                        coordinates[3]);
+                if(gyroscope.isValid())
+                    listener.setRateOfTurn((float) deviceToWorld.upDot(gyroscope.x(),
+                            gyroscope.y(), gyroscope.z()));
+            }
+            integrationTimestamp = timestamp;
+        }
+    };
+
+    private final SampleListener inclinometer = new SampleListener() {
+
+        private final Davenport davenport = new Davenport();
+        /**
+         * Measured device to world rotation, coordinates
+         */
+        private final double[] measured = new double[4];
+        /**
+         * Integrated device to world rotation, coordinates
+         */
+        private final double[] current = new double[4];
+
+        @Override
+        public void onSample(long timestamp, float[] values) {
+            if(!accelerometer.isValid()) return;
+            if(magnetometer.isValid() && davenport.reset()
+                    .add(accelerometer.vector(), magnetometer.vector(), gravity, NORTH, 1)
+                    .solve(measured)) {
+                boolean set = deviceToWorld.isSet();
+                if(set) deviceToWorld.get(current);
+                if(restored) {
+                    restored = false;
+                    if(set && error().abs() > RESTORE_TOLERANCE) {
+                        // moved while stopped
+                        Versor v = new Versor(measured);
+                        deviceToWorld.set(v);
+                        deviceToWorld.get(current);
+                        report(v);
+                    }
+                    // keep it until stable for a while, not just for this one measurement
+                    accelerometer.setFirstStableTimestamp(timestamp);
+                }
+                if(timestamp - accelerometer.firstStableTimestamp() > tuning.stableTime) {
+                    // calibration
+                    if(set && calibrationTimestamp != 0) {
+                        /**
+                         * Reciprocal value of time in seconds since last recalibration, scaled
+                         */
+                        double dT = tuning.calibrationScale * 1e9
+                                / (timestamp - calibrationTimestamp);
+                        Vec3D measuredDrift = error().scale(dT);
+                        measuredDrift.add(gyroscopeDrift);
+                        if(measuredDrift.dot(measuredDrift) < maxAngular2) {
+                            gyroscopeDrift = measuredDrift;
+                            calibrations++;
+                        }
+                    }
+                    deviceToWorld.set(new Versor(measured));
+                    accelerometer.setFirstStableTimestamp(calibrationTimestamp = timestamp);
+                } else if(set && inclinationTimestamp != 0
+                        && accelerometer.firstStableTimestamp() < timestamp) {
+                    // stable, but not yet for long: correct gradually, as far as level
+                    double f = (double) (timestamp - inclinationTimestamp) / tuning.stableTime
+                            * level();
+                    if(f > 0) {
+                        Vec3D e = error().scale(f);
+                        deviceToWorld.spin(e.x(), e.y(), e.z(), 1);
+                    }
+                }
+            }
+            inclinationTimestamp = timestamp;
+            listener.setSlip((float) accelerometer.x());
+        }
+
+        /**
+         * @return weight of the accelerometer as down between calibrations: 1 when sensing
+         * exactly standard gravity without turning, falling to 0 at {@link #CORRECTION_LOAD}
+         * or {@link #CORRECTION_TURN}
+         */
+        private double level() {
+            if(!gyroscope.isValid()) return 0;
+            double turn = Math.abs(deviceToWorld.upDot(gyroscope.x() - gyroscopeDrift.x(),
+                    gyroscope.y() - gyroscopeDrift.y(), gyroscope.z() - gyroscopeDrift.z()));
+            double ax = accelerometer.x(), ay = accelerometer.y(), az = accelerometer.z();
+            double load = Math.abs(Math.sqrt(ax * ax + ay * ay + az * az) / STANDARD_GRAVITY - 1);
+            return Math.max(0, 1 - turn / CORRECTION_TURN)
+                    * Math.max(0, 1 - load / CORRECTION_LOAD);
+        }
+
+        /**
+         * Rotation from current to measured orientation.
+         * @return rotation vector, shortest way
+         */
+        private Vec3D error() {
+            double mr = measured[0], mi = measured[1], mj = measured[2], mk = measured[3];
+            double cr = current[0], ci = -current[1], cj = -current[2], ck = -current[3];
+            double r = mr * cr - mi * ci - mj * cj - mk * ck;
+            double i = mr * ci + mi * cr + mj * ck - mk * cj;
+            double j = mr * cj + mj * cr + mk * ci - mi * ck;
+            double k = mr * ck + mk * cr + mi * cj - mj * ci;
+            if(r < 0) {
+                r = -r; i = -i; j = -j; k = -k;
+            }
+            double sinHalf = Math.sqrt(i * i + j * j + k * k);
+            if(sinHalf == 0) return Vec3D.zero();
+            double s = 2.0 * Math.atan2(sinHalf, r) / sinHalf;
+            return new Vec3D(i * s, j * s, k * s);
+        }
+    };
+
+    public final DamperBank.Channel accelerometer;
+
+    public final DamperBank.Channel magnetometer;
+
+    private Vec2D lastVelocity;
+    private long lastTrackTimestamp = 0;
+
+    private void setBearing(float bearing) {
+        listener.setBearing(bearing < 0 ? 360f + bearing : bearing );
+    }
+
+    /**
+     * @return current gyroscope drift estimate in radians per second
+     */
+    public double[] getGyroscopeDrift() {
+        Vec3D d = gyroscopeDrift;
+        return new double[]{d.x(), d.y(), d.z()};
+    }
+
+    /**
+     * Seed the gyroscope drift estimate, e.g. from a {@link CalibrationStore}.
+     * @param drift drift in radians per second
+     * @return whether accepted as plausible
+     */
+    public boolean setGyroscopeDrift(double[] drift) {
+        Vec3D d = new Vec3D(drift[0], drift[1], drift[2]);
+        if(!(d.dot(d) < maxAngular2)) return false;
+        gyroscopeDrift = d;
+        return true;
+    }
+
+    /**
+     * @return number of gyroscope drift measurements so far
+     */
+    public int getCalibrations() {
+        return calibrations;
+    }
+
+    /**
+     * @return magnetometer correction, <code>null</code> if none
+     * @see #setMagnetometerCorrection(double[])
+     */
+    public double[] getMagnetometerCorrection() {
+        double[] c = magnetometer.correction;
+        return c == null ? null : c.clone();
+    }
+
+    /**
+     * Correct magnetometer samples for hard- and soft-iron effects as
+     * <code>W (m - b)</code>.
+     * @param c offset <code>b</code>, then matrix <code>W</code> in row-major order;
+     * <code>null</code> for none
+     */
+    public void setMagnetometerCorrection(double[] c) {
+        if(c != null && c.length != 12) throw new IllegalArgumentException("Correction length");
+        magnetometer.correction = c == null ? null : c.clone();
+    }
+
+    /**
+     * Set the local geomagnetic field, as modelled for the current position.
+     * @param north northward component
+     * @param east eastward component
+     * @param down downward component
+     * @param declination magnetic declination in degrees
+     */
+    public void setMagneticField(float north, float east, float down, float declination) {
+        magnetism = new Vec3D(east, -down, -north).unit();
+        listener.setDeclination(declination);
+    }
+
+    /**
+     * Ground track from satellite navigation.
+     * @param timestamp time in nanoseconds
+     * @param speed ground speed in meters per second, <code>NaN</code> if unknown
+     * @param bearing track in degrees, <code>NaN</code> if unknown
+     */
+    public void setTrack(long timestamp, float speed, float bearing) {
+        if(!Float.isNaN(bearing) && speed > tuning.minSpeed) {
+            double b = Math.toRadians(bearing);
+            setBearing(bearing);
+            Vec2D velocity = new Vec2D(speed * Math.sin(b), speed * Math.cos(b));
+            if(lastVelocity != null) {
+                lastVelocity.sub(velocity);
+                lastVelocity.scale(-1e9 / (double) (timestamp - lastTrackTimestamp));
+                gravity = new Vec3D(lastVelocity.x(), STANDARD_GRAVITY, -lastVelocity.y());
+            } else {
+                gravity = GRAVITY;
+            }
+            lastVelocity = velocity;
+        } else {
+            if(lastVelocity != null) {
+                lastVelocity.scale(-1e9 / (double) (timestamp - lastTrackTimestamp));
+                gravity = new Vec3D(lastVelocity.x(), STANDARD_GRAVITY, -lastVelocity.y());
+            } else {
+                gravity = GRAVITY;
+            }
+            lastVelocity = null;
+        }
+        lastTrackTimestamp = timestamp;
+    }
+
+    /**
+     * Write the state worth keeping across a restart.
+     * @param out destination
+     * @throws IOException on write error
+     */
+    void save(DataOutput out) throws IOException {
+        Versor v = deviceToWorld.get();
+        out.writeBoolean(v != null);
+        if(v != null) for(int i = 0; i < 4; i++) out.writeDouble(v.v(i));
+        write(out, gyroscopeDrift);
+        write(out, magnetism);
+    }
+
+    /**
+     * Restore state written by {@link #save(DataOutput)}. The orientation is shown at once and
+     * checked against the first measurement; the sensor filters, integration and drift
+     * estimation start over.
+     * @param in source
+     * @throws IOException on read error or implausible state
+     */
+    void load(DataInput in) throws IOException {
+        Versor v = null;
+        if(in.readBoolean()) {
+            double[] c = new double[4];
+            double n = 0;
+            for(int i = 0; i < 4; i++) {
+                c[i] = in.readDouble();
+                n += c[i] * c[i];
+            }
+            if(!(Math.abs(n - 1) < 1e-6)) throw new IOException("Orientation not a versor");
+            v = new Versor(c);
+        }
+        Vec3D drift = read(in);
+        if(drift.dot(drift) >= maxAngular2) throw new IOException("Gyroscope drift too large");
+        Vec3D field = read(in);
+        // sensed vectors and their timestamps are meaningless across the gap
+        dampers.clear(accelerometer.index);
+        dampers.clear(magnetometer.index);
+        dampers.clear(gyroscope.index);
+        gyroscopeDrift = drift;
+        magnetism = field;
+        integrationTimestamp = inclinationTimestamp = calibrationTimestamp = 0;
+        restored = v != null;
+        if(v != null) {
+            deviceToWorld.set(v);
+            report(v);
+        }
+    }
+
+    private static void write(DataOutput out, Vec3D v) throws IOException {
+        out.writeDouble(v.x());
+        out.writeDouble(v.y());
+        out.writeDouble(v.z());
+    }
+
+    private static Vec3D read(DataInput in) throws IOException {
+        double x = in.readDouble(), y = in.readDouble(), z = in.readDouble();
+        if(Double.isNaN(x + y + z) || Double.isInfinite(x + y + z))
+            throw new IOException("Vector not finite");
+        return new Vec3D(x, y, z);
+    }
+}
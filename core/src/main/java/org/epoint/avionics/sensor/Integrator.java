@@ -0,0 +1,241 @@
+package org.epoint.avionics.sensor;
+
+import org.epoint.avionics.math.DoubleVersor;
+import org.epoint.avionics.math.FloatVersor;
+import org.epoint.avionics.math.Vec3D;
+import org.epoint.avionics.math.Versor;
+
+/**
+ * Gyroscope integration of device orientation in selectable arithmetic. The field-based
+ * integrators track the norm error after each step and renormalize only when it exceeds a
+ * precision-dependent budget.
+ */
+abstract class Integrator {
+
+    /**
+     * @param p arithmetic to use
+     * @return integrator without orientation
+     */
+    static Integrator create(Inertial.Precision p) {
+        switch (p) {
+            case DOUBLE:
+                return new DoubleIntegrator();
+            case FLOAT:
+                return new FloatIntegrator();
+            default:
+                return new GenericIntegrator();
+        }
+    }
+
+    /**
+     * @return current orientation, <code>null</code> if not yet set
+     */
+    abstract Versor get();
+
+    /**
+     * @return whether the orientation is set
+     */
+    abstract boolean isSet();
+
+    /**
+     * Current orientation without allocation. Orientation must be set.
+     * @param q filled with the coordinates r, i, j and k
+     */
+    abstract void get(double[] q);
+
+    /**
+     * @param v new orientation
+     */
+    abstract void set(Versor v);
+
+    /**
+     * Apply rotation given by angular velocity and time. Orientation must be set.
+     * @param x angular velocity around X
+     * @param y angular velocity around Y
+     * @param z angular velocity around Z
+     * @param t time
+     */
+    abstract void spin(double x, double y, double z, double t);
+
+    /**
+     * @param x X coordinate of a vector in device coordinates
+     * @param y Y coordinate of the vector
+     * @param z Z coordinate of the vector
+     * @return inner product of the up vector with the vector
+     */
+    abstract double upDot(double x, double y, double z);
+
+    private static class GenericIntegrator extends Integrator {
+        private Versor orientation = null;
+
+        @Override
+        Versor get() {
+            return orientation;
+        }
+
+        @Override
+        boolean isSet() {
+            return orientation != null;
+        }
+
+        @Override
+        void get(double[] q) {
+            for(int n = 0; n < 4; n++) q[n] = orientation.v(n);
+        }
+
+        @Override
+        void set(Versor v) {
+            orientation = v;
+        }
+
+        @Override
+        void spin(double x, double y, double z, double t) {
+            orientation = new Versor(new Vec3D(x, y, z), t).mul(orientation);
+        }
+
+        @Override
+        double upDot(double x, double y, double z) {
+            return orientation.rot(1).dot(new Vec3D(x, y, z));
+        }
+    }
+
+    private static class DoubleIntegrator extends Integrator {
+        /**
+         * Norm error tolerated before renormalization
+         */
+        private static final double BUDGET = 1e-12;
+
+        /**
+         * Orientation coordinates, updated in place
+         */
+        private double r, i, j, k;
+        private boolean set = false;
+
+        @Override
+        Versor get() {
+            return set ? new DoubleVersor(r, i, j, k).toVersor() : null;
+        }
+
+        @Override
+        boolean isSet() {
+            return set;
+        }
+
+        @Override
+        void get(double[] q) {
+            q[0] = r;
+            q[1] = i;
+            q[2] = j;
+            q[3] = k;
+        }
+
+        @Override
+        void set(Versor v) {
+            r = v.r();
+            i = v.v(1);
+            j = v.v(2);
+            k = v.v(3);
+            set = true;
+        }
+
+        /**
+         * Same arithmetic as <code>DoubleVersor.spin(x, y, z, t).compose(orientation)</code>,
+         * without the intermediate objects.
+         */
+        @Override
+        void spin(double x, double y, double z, double t) {
+            double abs = Math.sqrt(x * x + y * y + z * z);
+            if(abs == 0) return;
+            double a = 0.5 * abs * t;
+            double s = Math.sin(a) / abs;
+            double sr = Math.cos(a), si = x * s, sj = y * s, sk = z * s;
+            double nr = sr * r - si * i - sj * j - sk * k;
+            double ni = sr * i + si * r + sj * k - sk * j;
+            double nj = sr * j + sj * r + sk * i - si * k;
+            double nk = sr * k + sk * r + si * j - sj * i;
+            double e = 1.0 - (nr * nr + ni * ni + nj * nj + nk * nk);
+            double f = Math.abs(e) > BUDGET ? 1.0 + 0.5 * e : 1.0;
+            r = nr * f;
+            i = ni * f;
+            j = nj * f;
+            k = nk * f;
+        }
+
+        @Override
+        double upDot(double x, double y, double z) {
+            return 2.0 * (i * j - r * k) * x + (r * r - i * i + j * j - k * k) * y
+                    + 2.0 * (j * k + r * i) * z;
+        }
+    }
+
+    private static class FloatIntegrator extends Integrator {
+        /**
+         * Norm error tolerated before renormalization
+         */
+        private static final float BUDGET = 1e-6f;
+
+        /**
+         * Orientation coordinates, updated in place
+         */
+        private float r, i, j, k;
+        private boolean set = false;
+
+        @Override
+        Versor get() {
+            return set ? new FloatVersor(r, i, j, k).toVersor() : null;
+        }
+
+        @Override
+        boolean isSet() {
+            return set;
+        }
+
+        @Override
+        void get(double[] q) {
+            q[0] = r;
+            q[1] = i;
+            q[2] = j;
+            q[3] = k;
+        }
+
+        @Override
+        void set(Versor v) {
+            r = (float) v.r();
+            i = (float) v.v(1);
+            j = (float) v.v(2);
+            k = (float) v.v(3);
+            set = true;
+        }
+
+        /**
+         * Same arithmetic as <code>FloatVersor.spin(x, y, z, t).compose(orientation)</code>,
+         * without the intermediate objects.
+         */
+        @Override
+        void spin(double x, double y, double z, double t) {
+            float fx = (float) x, fy = (float) y, fz = (float) z;
+            float abs = (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+            if(abs == 0) return;
+            float a = 0.5f * abs * (float) t;
+            float s = (float) Math.sin(a) / abs;
+            float sr = (float) Math.cos(a), si = fx * s, sj = fy * s, sk = fz * s;
+            float nr = sr * r - si * i - sj * j - sk * k;
+            float ni = sr * i + si * r + sj * k - sk * j;
+            float nj = sr * j + sj * r + sk * i - si * k;
+            float nk = sr * k + sk * r + si * j - sj * i;
+            float e = 1.0f - (nr * nr + ni * ni + nj * nj + nk * nk);
+            float f = Math.abs(e) > BUDGET ? 1.0f + 0.5f * e : 1.0f;
+            r = nr * f;
+            i = ni * f;
+            j = nj * f;
+            k = nk * f;
+        }
+
+        @Override
+        double upDot(double x, double y, double z) {
+            float fx = (float) x, fy = (float) y, fz = (float) z;
+            return 2f * (i * j - r * k) * fx + (r * r - i * i + j * j - k * k) * fy
+                    + 2f * (j * k + r * i) * fz;
+        }
+    }
+}
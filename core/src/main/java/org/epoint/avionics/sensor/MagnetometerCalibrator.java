@@ -0,0 +1,322 @@
+package org.epoint.avionics.sensor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Online hard- and soft-iron calibration of the magnetometer. Raw samples pass through to
+ * {@link Inertial#magnetometer}; on the way, a least-squares fit of the quadric
+ * <pre>
+ * a x&sup2; + b y&sup2; + c z&sup2; + 2d xy + 2e xz + 2f yz + 2g x + 2h y + 2i z = 1
+ * </pre>
+ * is accumulated as its normal equations, in constant time and without allocation per sample.
+ * Every {@link #BLOCK} accepted samples the sums are copied and solved on the executor, and
+ * older samples are partly forgotten. A fit that is an ellipsoid of plausible shape, with small
+ * residual, becomes the magnetometer correction of the estimator.
+ */
+public class MagnetometerCalibrator implements SampleListener {
+
+    /**
+     * Accepted samples between fits
+     */
+    public static final int BLOCK = 200;
+
+    /**
+     * Weight kept of the sums at each fit
+     */
+    private static final double FORGET = 0.95;
+
+    /**
+     * Minimal sample weight for a fit
+     */
+    private static final double MIN_WEIGHT = 400;
+
+    /**
+     * Minimal distance between accepted samples, relative to the field strength
+     */
+    private static final double MIN_SPACING = 0.05;
+
+    /**
+     * Maximal ratio of ellipsoid axes
+     */
+    private static final double MAX_ANISOTROPY = 2;
+
+    /**
+     * Maximal RMS residual of the quadric
+     */
+    private static final double MAX_RESIDUAL = 0.1;
+
+    /**
+     * Number of fit parameters
+     */
+    private static final int N = 9;
+
+    /**
+     * Sums: upper triangle of the normal matrix, right hand side, weight
+     */
+    private static final int SUMS = N * (N + 1) / 2 + N + 1;
+
+    private final Inertial inertial;
+    private final SampleListener magnetometer;
+    private final Executor executor;
+    private final double[] sums = new double[SUMS];
+    private final double[] snapshot = new double[SUMS];
+    private final double[] row = new double[N];
+    private final AtomicBoolean solving = new AtomicBoolean();
+    /**
+     * Normalization of samples, set from the first one
+     */
+    private double scale = 0;
+    private double lastX, lastY, lastZ;
+    private int accepted = 0;
+
+    private volatile int fits = 0;
+    private volatile int illConditioned = 0;
+    private volatile double residual = Double.NaN;
+
+    /**
+     * @param i estimator to calibrate and pass samples through to
+     * @param e executor for solving fits
+     */
+    public MagnetometerCalibrator(Inertial i, Executor e) {
+        this(i, i.magnetometer, e);
+    }
+
+    /**
+     * @param i estimator to calibrate
+     * @param m where samples pass through to on their way to the estimator, such as a
+     *          {@link Handoff} to its thread
+     * @param e executor for solving fits
+     */
+    public MagnetometerCalibrator(Inertial i, SampleListener m, Executor e) {
+        inertial = i;
+        magnetometer = m;
+        executor = e;
+    }
+
+    /**
+     * @return number of fits applied
+     */
+    public int getFits() {
+        return fits;
+    }
+
+    /**
+     * @return number of fits rejected for samples not covering enough orientations
+     */
+    int getIllConditioned() {
+        return illConditioned;
+    }
+
+    /**
+     * @return RMS residual of the last fit applied, <code>NaN</code> if none
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    @Override
+    public void onSample(long timestamp, float[] values) {
+        accumulate(values[0], values[1], values[2]);
+        magnetometer.onSample(timestamp, values);
+    }
+
+    private void accumulate(double x, double y, double z) {
+        if(scale == 0) {
+            scale = Math.sqrt(x * x + y * y + z * z);
+            if(scale == 0 || Double.isNaN(scale) || Double.isInfinite(scale)) {
+                scale = 0;
+                return;
+            }
+        }
+        x /= scale;
+        y /= scale;
+        z /= scale;
+        double dx = x - lastX, dy = y - lastY, dz = z - lastZ;
+        if(dx * dx + dy * dy + dz * dz < MIN_SPACING * MIN_SPACING) return;
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        double[] d = row;
+        d[0] = x * x;
+        d[1] = y * y;
+        d[2] = z * z;
+        d[3] = 2 * x * y;
+        d[4] = 2 * x * z;
+        d[5] = 2 * y * z;
+        d[6] = 2 * x;
+        d[7] = 2 * y;
+        d[8] = 2 * z;
+        int k = 0;
+        for(int i = 0; i < N; i++) {
+            double di = d[i];
+            for(int j = i; j < N; j++) sums[k++] += di * d[j];
+        }
+        for(int i = 0; i < N; i++) sums[k++] += d[i];
+        sums[k]++;
+        if(++accepted % BLOCK == 0) fit();
+    }
+
+    /**
+     * Hand a copy of the sums to the executor, unless still solving the previous one.
+     */
+    private void fit() {
+        if(sums[SUMS - 1] >= MIN_WEIGHT && solving.compareAndSet(false, true)) {
+            System.arraycopy(sums, 0, snapshot, 0, SUMS);
+            final double s = scale;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        solve(snapshot, s);
+                    } finally {
+                        solving.set(false);
+                    }
+                }
+            });
+        }
+        for(int i = 0; i < SUMS; i++) sums[i] *= FORGET;
+    }
+
+    private void solve(double[] s, double scale) {
+        double[][] a = new double[N][N + 1];
+        int k = 0;
+        for(int i = 0; i < N; i++)
+            for(int j = i; j < N; j++) a[i][j] = a[j][i] = s[k++];
+        for(int i = 0; i < N; i++) a[i][N] = s[k++];
+        double weight = s[k];
+        double[] p = gauss(a);
+        if(p == null) {
+            illConditioned++;
+            return;
+        }
+
+        // residual of the quadric, from the sums
+        double r = weight;
+        k = 0;
+        for(int i = 0; i < N; i++) {
+            for(int j = i; j < N; j++) r += (i == j ? 1 : 2) * p[i] * p[j] * s[k++];
+        }
+        for(int i = 0; i < N; i++) r -= 2 * p[i] * s[k++];
+        double rms = Math.sqrt(Math.max(0, r) / weight);
+        if(!(rms < MAX_RESIDUAL)) return;
+
+        // center and shape
+        double[][] m = {{p[0], p[3], p[4]}, {p[3], p[1], p[5]}, {p[4], p[5], p[2]}};
+        double[][] inverse = invert(m);
+        if(inverse == null) return;
+        double[] center = new double[3];
+        // (u - c)' A (u - c) = 1 + c' A c, where A c = -v, so c' A c = -c' v
+        double k1 = 1;
+        for(int i = 0; i < 3; i++) {
+            for(int j = 0; j < 3; j++) center[i] -= inverse[i][j] * p[6 + j];
+            k1 -= center[i] * p[6 + i];
+        }
+        if(!(k1 > 0)) return;
+        for(int i = 0; i < 3; i++) for(int j = 0; j < 3; j++) m[i][j] /= k1;
+        double[][] v = new double[3][3];
+        double[] lambda = eigen(m, v);
+        double min = Math.min(lambda[0], Math.min(lambda[1], lambda[2]));
+        double max = Math.max(lambda[0], Math.max(lambda[1], lambda[2]));
+        if(!(min > 0) || max > min * MAX_ANISOTROPY * MAX_ANISOTROPY) return;
+
+        // W = R sqrt(M), R the geometric mean radius
+        double radius = Math.pow(lambda[0] * lambda[1] * lambda[2], -1.0 / 6);
+        double[] correction = new double[12];
+        for(int i = 0; i < 3; i++) {
+            correction[i] = center[i] * scale;
+            for(int j = 0; j < 3; j++) {
+                double w = 0;
+                for(int e = 0; e < 3; e++) w += v[i][e] * Math.sqrt(lambda[e]) * v[j][e];
+                correction[3 + 3 * i + j] = radius * w;
+            }
+        }
+        inertial.setMagnetometerCorrection(correction);
+        residual = rms;
+        fits++;
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting.
+     * @param a augmented matrix, destroyed
+     * @return solution, <code>null</code> if ill-conditioned
+     */
+    private static double[] gauss(double[][] a) {
+        int n = a.length;
+        double norm = 0;
+        for(double[] r : a) for(int j = 0; j < n; j++) norm = Math.max(norm, Math.abs(r[j]));
+        for(int c = 0; c < n; c++) {
+            int pivot = c;
+            for(int r = c + 1; r < n; r++) if(Math.abs(a[r][c]) > Math.abs(a[pivot][c])) pivot = r;
+            if(!(Math.abs(a[pivot][c]) > 1e-12 * norm)) return null; // orientations not covered
+            double[] t = a[c];
+            a[c] = a[pivot];
+            a[pivot] = t;
+            for(int r = c + 1; r < n; r++) {
+                double f = a[r][c] / a[c][c];
+                for(int j = c; j <= n; j++) a[r][j] -= f * a[c][j];
+            }
+        }
+        double[] x = new double[n];
+        for(int r = n - 1; r >= 0; r--) {
+            double s = a[r][n];
+            for(int j = r + 1; j < n; j++) s -= a[r][j] * x[j];
+            x[r] = s / a[r][r];
+        }
+        return x;
+    }
+
+    private static double[][] invert(double[][] m) {
+        double c00 = m[1][1] * m[2][2] - m[1][2] * m[2][1];
+        double c01 = m[1][2] * m[2][0] - m[1][0] * m[2][2];
+        double c02 = m[1][0] * m[2][1] - m[1][1] * m[2][0];
+        double det = m[0][0] * c00 + m[0][1] * c01 + m[0][2] * c02;
+        if(det == 0 || Double.isNaN(det)) return null;
+        return new double[][]{
+                {c00 / det, (m[0][2] * m[2][1] - m[0][1] * m[2][2]) / det,
+                        (m[0][1] * m[1][2] - m[0][2] * m[1][1]) / det},
+                {c01 / det, (m[0][0] * m[2][2] - m[0][2] * m[2][0]) / det,
+                        (m[0][2] * m[1][0] - m[0][0] * m[1][2]) / det},
+                {c02 / det, (m[0][1] * m[2][0] - m[0][0] * m[2][1]) / det,
+                        (m[0][0] * m[1][1] - m[0][1] * m[1][0]) / det}};
+    }
+
+    /**
+     * Cyclic Jacobi eigendecomposition of a symmetric 3x3 matrix.
+     * @param m matrix, destroyed
+     * @param v filled with eigenvectors as columns
+     * @return eigenvalues
+     */
+    private static double[] eigen(double[][] m, double[][] v) {
+        for(int i = 0; i < 3; i++) for(int j = 0; j < 3; j++) v[i][j] = i == j ? 1 : 0;
+        for(int sweep = 0; sweep < 50; sweep++) {
+            double off = m[0][1] * m[0][1] + m[0][2] * m[0][2] + m[1][2] * m[1][2];
+            if(off < 1e-30) break;
+            for(int p = 0; p < 2; p++) {
+                for(int q = p + 1; q < 3; q++) {
+                    if(m[p][q] == 0) continue;
+                    double theta = (m[q][q] - m[p][p]) / (2 * m[p][q]);
+                    double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if(theta == 0) t = 1;
+                    double c = 1 / Math.sqrt(t * t + 1), s = t * c;
+                    for(int k = 0; k < 3; k++) {
+                        double mkp = m[k][p], mkq = m[k][q];
+                        m[k][p] = c * mkp - s * mkq;
+                        m[k][q] = s * mkp + c * mkq;
+                    }
+                    for(int k = 0; k < 3; k++) {
+                        double mpk = m[p][k], mqk = m[q][k];
+                        m[p][k] = c * mpk - s * mqk;
+                        m[q][k] = s * mpk + c * mqk;
+                    }
+                    for(int k = 0; k < 3; k++) {
+                        double vkp = v[k][p], vkq = v[k][q];
+                        v[k][p] = c * vkp - s * vkq;
+                        v[k][q] = s * vkp + c * vkq;
+                    }
+                }
+            }
+        }
+        return new double[]{m[0][0], m[1][1], m[2][2]};
+    }
+}
@@ -0,0 +1,72 @@
+package org.epoint.avionics.sensor;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.math.DoubleVersor;
+
+/**
+ * Extrapolation of the latest orientation to the time it will be seen, assuming that the
+ * angular velocity stays constant until then. Compensates the latency between fusion and
+ * display. Thread-safe.
+ */
+public final class Predictor {
+
+    /**
+     * Longest extrapolation in seconds; beyond it, the angular velocity cannot be trusted to
+     * stay constant, and sensors may have stopped
+     */
+    public static final double MAX_HORIZON = 0.1;
+
+    private boolean valid = false;
+    private double r, i, j, k;
+    private double x, y, z;
+    private long timestamp;
+
+    /**
+     * Latest orientation, as reported by {@link Inertial.Listener#setOrientation}.
+     * @param r real coordinate
+     * @param i first imaginary coordinate
+     * @param j second imaginary coordinate
+     * @param k third imaginary coordinate
+     * @param t time of arrival in nanoseconds
+     */
+    public synchronized void setOrientation(double r, double i, double j, double k, long t) {
+        this.r = r;
+        this.i = i;
+        this.j = j;
+        this.k = k;
+        timestamp = t;
+        valid = true;
+    }
+
+    /**
+     * @param x angular velocity around X in radians per second, as measured by the gyroscope
+     * @param y angular velocity around Y
+     * @param z angular velocity around Z
+     */
+    public synchronized void setAngularRate(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * @param a attitude to be updated
+     * @param t time to extrapolate to, in nanoseconds on the clock of {@link #setOrientation}
+     * @return <code>a</code> after update, unchanged if there is no orientation yet
+     */
+    public Attitude predict(Attitude a, long t) {
+        DoubleVersor v;
+        double h, x, y, z;
+        synchronized (this) {
+            if(!valid) return a;
+            v = new DoubleVersor(r, i, j, k);
+            h = Math.min(MAX_HORIZON, Math.max(0, 1e-9 * (t - timestamp)));
+            x = this.x;
+            y = this.y;
+            z = this.z;
+        }
+        // same sense of rotation as the gyroscope integration in Inertial
+        if(h > 0) v = DoubleVersor.spin(x, y, z, -h).mul(v);
+        return v.attitude(a);
+    }
+}
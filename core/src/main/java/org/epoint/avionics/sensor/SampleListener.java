@@ -0,0 +1,12 @@
+package org.epoint.avionics.sensor;
+
+/**
+ * Receiver of timestamped sensor samples, independent of the platform's sensor framework.
+ */
+public interface SampleListener {
+    /**
+     * @param timestamp time in nanoseconds
+     * @param values sensor values, not to be retained after returning
+     */
+    void onSample(long timestamp, float[] values);
+}
@@ -0,0 +1,100 @@
+package org.epoint.avionics.sensor;
+
+/**
+ * Tuning constants of {@link Inertial} and {@link Barometric}. Immutable;
+ * {@link #with(String, double)} returns modified copies.
+ */
+public final class Tuning {
+
+    public static final Tuning DEFAULT = new Tuning(Math.toRadians(2), 0.4, (long) 2e9, 0.5f,
+            2e8, 5e8, 5e8, 0.1, 100, 500000000);
+
+    /**
+     * Names accepted by {@link #with(String, double)}
+     */
+    public static final String[] NAMES = {"maxAngular", "calibrationScale", "stableTime",
+            "minSpeed", "accelerometerTime", "magnetometerTime", "gyroscopeTime",
+            "stableRadius", "barometricBuffer", "barometricTime"};
+
+    /**
+     * Maximum angular velocity drift for gyroscopes in rad/sec
+     */
+    public final double maxAngular;
+    /**
+     * Fraction of the drift to be corrected in each calibration.
+     */
+    public final double calibrationScale;
+    /**
+     * Minimum required time in nanoseconds for calibration
+     */
+    public final long stableTime;
+    /**
+     * Minimal meaningful speed in meters per second
+     */
+    public final float minSpeed;
+    /**
+     * Accelerometer filtering time in nanoseconds
+     */
+    public final double accelerometerTime;
+    /**
+     * Magnetometer filtering time in nanoseconds
+     */
+    public final double magnetometerTime;
+    /**
+     * Gyroscope filtering time in nanoseconds
+     */
+    public final double gyroscopeTime;
+    /**
+     * Accelerometer stability detection radius in meters per second squared
+     */
+    public final double stableRadius;
+    /**
+     * Length of the barometric circular buffer
+     */
+    public final int barometricBuffer;
+    /**
+     * Barometric wrap-around time in nanoseconds
+     */
+    public final long barometricTime;
+
+    public Tuning(double maxAngular, double calibrationScale, long stableTime, float minSpeed,
+                  double accelerometerTime, double magnetometerTime, double gyroscopeTime,
+                  double stableRadius, int barometricBuffer, long barometricTime) {
+        if(stableTime <= 0 || barometricBuffer < 1 || barometricTime <= 0)
+            throw new IllegalArgumentException("Non-positive time or buffer length");
+        this.maxAngular = maxAngular;
+        this.calibrationScale = calibrationScale;
+        this.stableTime = stableTime;
+        this.minSpeed = minSpeed;
+        this.accelerometerTime = accelerometerTime;
+        this.magnetometerTime = magnetometerTime;
+        this.gyroscopeTime = gyroscopeTime;
+        this.stableRadius = stableRadius;
+        this.barometricBuffer = barometricBuffer;
+        this.barometricTime = barometricTime;
+    }
+
+    /**
+     * @param name one of {@link #NAMES}
+     * @param value new value, in the units of the named field
+     * @return copy with the named constant replaced
+     */
+    public Tuning with(String name, double value) {
+        double[] v = values();
+        int i = 0;
+        while(!NAMES[i].equals(name))
+            if(++i == NAMES.length) throw new IllegalArgumentException("Unknown constant " + name);
+        v[i] = value;
+        return new Tuning(v[0], v[1], (long) v[2], (float) v[3], v[4], v[5], v[6], v[7],
+                (int) v[8], (long) v[9]);
+    }
+
+    /**
+     * @return all constants in the order of {@link #NAMES}
+     */
+    public double[] values() {
+        return new double[] {maxAngular, calibrationScale, stableTime, minSpeed,
+                accelerometerTime, magnetometerTime, gyroscopeTime, stableRadius,
+                barometricBuffer, barometricTime};
+    }
+}
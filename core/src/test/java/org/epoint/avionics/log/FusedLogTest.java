@@ -0,0 +1,204 @@
+package org.epoint.avionics.log;
+
+import org.epoint.avionics.log.FusedLog.Column;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FusedLogTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Values the delta coding must carry bit for bit
+     */
+    private static final float[] SPECIAL = {0f, -0f, Float.NaN, Float.intBitsToFloat(0x7fc00001),
+            Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MIN_VALUE, -Float.MIN_VALUE,
+            Float.MAX_VALUE, -Float.MAX_VALUE, 1f, -1f};
+
+    private static long[] timestamps(int rows, long seed) {
+        Random random = new Random(seed);
+        long[] t = new long[rows];
+        long now = 1234567890123L;
+        for(int n = 0; n < rows; n++) t[n] = now += 1000000 + random.nextInt(20000000);
+        return t;
+    }
+
+    private static float[][] rows(int rows, long seed) {
+        Random random = new Random(seed);
+        float[][] v = new float[rows][Column.FLOATS];
+        for(int n = 0; n < rows; n++) {
+            for(int c = 0; c < Column.FLOATS; c++) {
+                v[n][c] = n % 97 == c ? SPECIAL[(n / 97) % SPECIAL.length]
+                        : (float) (100 * random.nextGaussian());
+            }
+        }
+        return v;
+    }
+
+    private File write(long[] t, float[][] v) throws IOException {
+        File f = folder.newFile();
+        FusedLog.Writer w = new FusedLog.Writer(f);
+        for(int n = 0; n < t.length; n++) w.write(t[n], v[n]);
+        w.close();
+        return f;
+    }
+
+    private static void assertBits(String message, float expected, float actual) {
+        assertEquals(message, Float.floatToRawIntBits(expected), Float.floatToRawIntBits(actual));
+    }
+
+    @Test
+    public void roundTripsAcrossBlocks() throws IOException {
+        int rows = 2 * FusedLog.BLOCK + 123;
+        long[] t = timestamps(rows, 1);
+        float[][] v = rows(rows, 2);
+        FusedLog.Reader r = new FusedLog.Reader(write(t, v));
+        try {
+            assertEquals(3, r.blocks());
+            long[] times = new long[FusedLog.BLOCK];
+            float[] column = new float[FusedLog.BLOCK];
+            int first = 0;
+            for(int b = 0; b < r.blocks(); b++) {
+                int n = r.rows(b);
+                assertEquals(b < 2 ? FusedLog.BLOCK : 123, n);
+                r.timestamps(b, times);
+                for(int i = 0; i < n; i++) assertEquals(t[first + i], times[i]);
+                assertEquals(t[first], r.timeMin(b));
+                assertEquals(t[first + n - 1], r.timeMax(b));
+                for(Column c : Column.values()) {
+                    if(c == Column.TIMESTAMP) continue;
+                    r.column(b, c, column);
+                    for(int i = 0; i < n; i++)
+                        assertBits(c + " row " + (first + i), v[first + i][c.ordinal() - 1],
+                                column[i]);
+                }
+                first += n;
+            }
+            assertEquals(rows, first);
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void columnsDecodeInAnyOrder() throws IOException {
+        int rows = FusedLog.BLOCK + 10;
+        long[] t = timestamps(rows, 3);
+        float[][] v = rows(rows, 4);
+        FusedLog.Reader r = new FusedLog.Reader(write(t, v));
+        try {
+            float[] column = new float[FusedLog.BLOCK];
+            r.column(1, Column.VERTICAL_SPEED, column);
+            assertBits("last", v[rows - 1][Column.VERTICAL_SPEED.ordinal() - 1], column[9]);
+            r.column(0, Column.R, column);
+            assertBits("first", v[0][0], column[0]);
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void minimaAndMaximaIgnoreNaN() throws IOException {
+        long[] t = {10, 20, 30};
+        float[][] v = new float[3][Column.FLOATS];
+        for(float[] row : v) Arrays.fill(row, Float.NaN);
+        v[0][Column.ALTITUDE.ordinal() - 1] = 5;
+        v[2][Column.ALTITUDE.ordinal() - 1] = -7;
+        FusedLog.Reader r = new FusedLog.Reader(write(t, v));
+        try {
+            assertEquals(-7f, r.min(0, Column.ALTITUDE), 0);
+            assertEquals(5f, r.max(0, Column.ALTITUDE), 0);
+            assertTrue(Float.isNaN(r.min(0, Column.HEADING)));
+            assertTrue(Float.isNaN(r.max(0, Column.HEADING)));
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void findsBlocksByTime() throws IOException {
+        int rows = 3 * FusedLog.BLOCK;
+        long[] t = timestamps(rows, 5);
+        FusedLog.Reader r = new FusedLog.Reader(write(t, rows(rows, 6)));
+        try {
+            assertEquals(0, r.find(Long.MIN_VALUE));
+            assertEquals(0, r.find(t[FusedLog.BLOCK - 1]));
+            assertEquals(1, r.find(t[FusedLog.BLOCK - 1] + 1));
+            assertEquals(2, r.find(t[rows - 1]));
+            assertEquals(3, r.find(t[rows - 1] + 1));
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void emptyLog() throws IOException {
+        FusedLog.Reader r = new FusedLog.Reader(write(new long[0], new float[0][]));
+        try {
+            assertEquals(0, r.blocks());
+            assertEquals(0, r.find(0));
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedLog() throws IOException {
+        File f = write(timestamps(100, 7), rows(100, 8));
+        RandomAccessFile file = new RandomAccessFile(f, "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+        try {
+            new FusedLog.Reader(f).close();
+            fail("truncated log accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        File f = folder.newFile();
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(new byte[64]);
+        } finally {
+            out.close();
+        }
+        try {
+            new FusedLog.Reader(f).close();
+            fail("foreign file accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void timestampsMayGoBackwards() throws IOException {
+        long[] t = {Long.MAX_VALUE / 2, 0, -1, Long.MIN_VALUE / 2, 42};
+        float[][] v = rows(t.length, 9);
+        FusedLog.Reader r = new FusedLog.Reader(write(t, v));
+        try {
+            assertArrayEquals(t, r.timestamps(0, new long[t.length]));
+            assertEquals(Long.MIN_VALUE / 2, r.timeMin(0));
+            assertEquals(Long.MAX_VALUE / 2, r.timeMax(0));
+        } finally {
+            r.close();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.epoint.avionics.log;
+
+import org.epoint.avionics.log.SensorLog.Channel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PackedLogTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Channel[] CHANNELS = Channel.values();
+
+    /**
+     * Record as written, for comparison with what is read back
+     */
+    private static class Record {
+        final Channel channel;
+        final long timestamp;
+        final float[] values;
+
+        Record(Channel c, long t, float... v) {
+            channel = c;
+            timestamp = t;
+            values = v.clone();
+        }
+    }
+
+    private static void write(SensorLog.Output out, List<Record> records) throws IOException {
+        for(Record r : records) out.write(r.channel, r.timestamp, r.values);
+        out.close();
+    }
+
+    private static byte[] pack(List<Record> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new PackedLog.Writer(bytes), records);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Assert that the input holds exactly the records, bit for bit, and close it.
+     */
+    private static void assertRecords(List<Record> expected, SensorLog.Input in)
+            throws IOException {
+        try {
+            for(int n = 0; n < expected.size(); n++) {
+                Record r = expected.get(n);
+                assertTrue("record " + n + " missing", in.next());
+                assertEquals("channel of " + n, r.channel, in.channel());
+                assertEquals("timestamp of " + n, r.timestamp, in.timestamp());
+                float[] v = in.values();
+                for(int i = 0; i < r.values.length; i++)
+                    assertEquals("value " + i + " of " + n, Float.floatToRawIntBits(r.values[i]),
+                            Float.floatToRawIntBits(v[i]));
+            }
+            assertFalse("records beyond the last", in.next());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void assertRoundTrip(List<Record> records) throws IOException {
+        assertRecords(records, new PackedLog.Reader(new ByteArrayInputStream(pack(records))));
+    }
+
+    private static float[] values(Channel c, Random random) {
+        float[] v = new float[c.size];
+        for(int i = 0; i < v.length; i++) v[i] = (float) (10 * random.nextGaussian());
+        return v;
+    }
+
+    /**
+     * Interleaved channels with jittered periods, as recorded; some records share timestamps
+     */
+    private static List<Record> flight(int count, long seed) {
+        return flight(count, seed, true);
+    }
+
+    private static List<Record> flight(int count, long seed, boolean ties) {
+        Random random = new Random(seed);
+        List<Record> records = new ArrayList<Record>();
+        long t = 987654321000L;
+        for(int n = 0; n < count; n++) {
+            Channel c = CHANNELS[random.nextInt(CHANNELS.length)];
+            t += ties && random.nextInt(3) == 0 ? 0 : 1000000 + random.nextInt(50000);
+            records.add(new Record(c, t, values(c, random)));
+        }
+        return records;
+    }
+
+    @Test
+    public void roundTripsInterleavedChannels() throws IOException {
+        assertRoundTrip(flight(3 * PackedLog.BLOCK + 17, 1));
+    }
+
+    @Test
+    public void roundTripsSpecialValues() throws IOException {
+        float[] special = {0f, -0f, Float.NaN, Float.intBitsToFloat(0x7fc00001),
+                Float.intBitsToFloat(0xffffffff), Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.MIN_VALUE, -Float.MIN_VALUE, Float.MIN_NORMAL,
+                Float.MAX_VALUE, -Float.MAX_VALUE, 1f, 1f, Math.nextUp(1f), -1f};
+        List<Record> records = new ArrayList<Record>();
+        long t = 1;
+        // every pair of special values in succession, on each axis
+        for(float a : special) {
+            for(float b : special) {
+                records.add(new Record(Channel.GYROSCOPE, t++, a, b, a));
+                records.add(new Record(Channel.GYROSCOPE, t++, b, a, b));
+            }
+        }
+        assertRoundTrip(records);
+    }
+
+    @Test
+    public void roundTripsEveryTimestampWidth() throws IOException {
+        // deltas of deltas at both ends of each width: 0, 14, 24, 32 and 64 bits
+        long[] dods = {0, 1, -1, (1 << 13) - 1, -(1 << 13), 1 << 13, -(1 << 13) - 1,
+                (1 << 23) - 1, -(1 << 23), 1 << 23, -(1 << 23) - 1,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, 1L << 31, -(1L << 31) - 1,
+                1L << 40, -(1L << 40), Long.MAX_VALUE / 4, Long.MIN_VALUE / 4};
+        List<Record> records = new ArrayList<Record>();
+        long t = 0, delta = 0;
+        for(long dod : dods) {
+            delta += dod;
+            t += delta;
+            records.add(new Record(Channel.PRESSURE, t, 1013.25f));
+        }
+        assertRoundTrip(records);
+    }
+
+    @Test
+    public void roundTripsExtremeTimestamps() throws IOException {
+        List<Record> records = new ArrayList<Record>();
+        long[] times = {Long.MIN_VALUE, Long.MAX_VALUE, 0, Long.MIN_VALUE, -1, Long.MAX_VALUE,
+                Long.MAX_VALUE, 1};
+        for(long t : times) records.add(new Record(Channel.TRACK, t, 1f, 2f));
+        assertRoundTrip(records);
+    }
+
+    @Test
+    public void roundTripsEmptyLog() throws IOException {
+        assertRoundTrip(new ArrayList<Record>());
+    }
+
+    @Test
+    public void flushEndsDecodableBlock() throws IOException {
+        List<Record> records = flight(100, 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PackedLog.Writer w = new PackedLog.Writer(bytes);
+        for(Record r : records) w.write(r.channel, r.timestamp, r.values);
+        w.flush();
+        assertRecords(records,
+                new PackedLog.Reader(new ByteArrayInputStream(bytes.toByteArray())));
+        w.close();
+    }
+
+    @Test
+    public void indexEntersAtAnyBlock() throws IOException {
+        // distinct timestamps tell where each block starts
+        List<Record> records = flight(5 * PackedLog.BLOCK, 3, false);
+        File log = folder.newFile("flight.avsl");
+        File index = PackedLog.Index.of(log);
+        write(new PackedLog.Writer(new FileOutputStream(log), new FileOutputStream(index)),
+                records);
+        File rebuilt = folder.newFile("rebuilt.idx");
+        PackedLog.Index.build(log, rebuilt);
+        assertEquals(index.length(), rebuilt.length());
+
+        PackedLog.Index i = new PackedLog.Index(index);
+        try {
+            assertTrue(i.size() >= 5);
+            int first = 0;
+            for(int b = 0; b < i.size(); b++) {
+                while(records.get(first).timestamp != i.timestamp(b)) first++;
+                assertEquals(b, i.find(i.timestamp(b)));
+                assertRecords(records.subList(first, records.size()),
+                        PackedLog.open(log, i.offset(b)));
+            }
+            assertEquals(0, i.find(Long.MIN_VALUE));
+            assertEquals(i.size() - 1, i.find(Long.MAX_VALUE));
+        } finally {
+            i.close();
+        }
+    }
+
+    @Test
+    public void indexSkipsTruncatedBlock() throws IOException {
+        File log = folder.newFile();
+        write(new PackedLog.Writer(new FileOutputStream(log)), flight(3 * PackedLog.BLOCK, 4));
+        File whole = folder.newFile(), cut = folder.newFile();
+        PackedLog.Index.build(log, whole);
+        RandomAccessFile f = new RandomAccessFile(log, "rw");
+        try {
+            f.setLength(f.length() - 1);
+        } finally {
+            f.close();
+        }
+        PackedLog.Index.build(log, cut);
+        assertEquals(whole.length() - 16, cut.length());
+    }
+
+    @Test
+    public void rejectsTruncatedBlock() throws IOException {
+        byte[] packed = pack(flight(100, 5));
+        byte[] cut = new byte[packed.length - 1];
+        System.arraycopy(packed, 0, cut, 0, cut.length);
+        PackedLog.Reader r = new PackedLog.Reader(new ByteArrayInputStream(cut));
+        try {
+            while(r.next()) ;
+            fail("truncated block accepted");
+        } catch (IOException expected) {
+        } finally {
+            r.close();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.epoint.avionics.log;
+
+import org.epoint.avionics.log.SensorLog.Channel;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RecorderTest {
+
+    private static final long TIMEOUT = 10;
+
+    /**
+     * Output collecting timestamps and first values, held up until opened
+     */
+    private static class Sink implements SensorLog.Output {
+        final List<Long> timestamps = Collections.synchronizedList(new ArrayList<Long>());
+        final List<Float> values = Collections.synchronizedList(new ArrayList<Float>());
+        final CountDownLatch gate;
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile boolean closed = false;
+        volatile IOException failure = null;
+
+        Sink(boolean open) {
+            gate = new CountDownLatch(open ? 0 : 1);
+        }
+
+        @Override
+        public void write(Channel c, long timestamp, float[] v) throws IOException {
+            entered.countDown();
+            try {
+                if(!gate.await(TIMEOUT, TimeUnit.SECONDS)) throw new IOException("Gate shut");
+            } catch (InterruptedException e) {
+                throw new IOException(e.toString());
+            }
+            if(failure != null) throw failure;
+            timestamps.add(timestamp);
+            values.add(v[0]);
+        }
+
+        @Override
+        public void flush() {
+
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static float[] sample(long n) {
+        return new float[]{n, -n, 0.5f * n, 1};
+    }
+
+    @Test
+    public void dropsWhatDoesNotFit() throws Exception {
+        Recorder r = new Recorder(4, Recorder.Policy.DROP);
+        Sink sink = new Sink(false);
+        r.start(sink);
+        for(long n = 0; n < 100; n++) r.record(Channel.GYROSCOPE, n, sample(n));
+        // the slot being written is not free until the write returns
+        assertEquals(96, r.getDropped());
+        assertEquals(4, r.getQueueDepth());
+        sink.gate.countDown();
+        r.stop();
+        assertEquals(4, r.getWritten());
+        assertEquals(0, r.getBlocked());
+        assertEquals(0, r.getQueueDepth());
+        assertEquals(list(0, 1, 2, 3), sink.timestamps);
+        assertEquals(0f, sink.values.get(0), 0);
+        assertEquals(3f, sink.values.get(3), 0);
+        assertTrue(sink.closed);
+        assertFalse(r.isRecording());
+        assertNull(r.getError());
+    }
+
+    @Test
+    public void blocksUntilThereIsRoom() throws Exception {
+        final Recorder r = new Recorder(4, Recorder.Policy.BLOCK);
+        Sink sink = new Sink(false);
+        r.start(sink);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for(long n = 0; n < 100; n++) r.record(Channel.ACCELEROMETER, n, sample(n));
+            }
+        };
+        producer.start();
+        assertTrue(sink.entered.await(TIMEOUT, TimeUnit.SECONDS));
+        // the producer fills the ring, then waits for the writer
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while(r.getQueueDepth() < 4 && System.nanoTime() < deadline) Thread.sleep(1);
+        Thread.sleep(20);
+        assertTrue(producer.isAlive());
+        assertEquals(4, r.getQueueDepth());
+        sink.gate.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(producer.isAlive());
+        r.stop();
+        assertEquals(100, r.getWritten());
+        assertEquals(0, r.getDropped());
+        assertTrue(r.getBlocked() > 0);
+        assertTrue(r.getMaxQueueDepth() <= 4);
+        assertEquals(100, sink.timestamps.size());
+        for(int n = 0; n < 100; n++) {
+            assertEquals(n, (long) sink.timestamps.get(n));
+            assertEquals(n, sink.values.get(n), 0);
+        }
+    }
+
+    @Test
+    public void keepsEachProducerInOrder() throws Exception {
+        final Recorder r = new Recorder(16, Recorder.Policy.BLOCK);
+        Sink sink = new Sink(true);
+        r.start(sink);
+        final int producers = 4, samples = 5000;
+        Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread() {
+                @Override
+                public void run() {
+                    for(long n = 0; n < samples; n++)
+                        r.record(Channel.MAGNETOMETER, n * producers + id, sample(id));
+                }
+            };
+            threads[p].start();
+        }
+        for(Thread t : threads) t.join();
+        r.stop();
+        assertEquals(producers * samples, r.getWritten());
+        assertEquals(0, r.getDropped());
+        long[] last = new long[producers];
+        Arrays.fill(last, -1);
+        for(int n = 0; n < sink.timestamps.size(); n++) {
+            long t = sink.timestamps.get(n);
+            int id = (int) (t % producers);
+            assertEquals("values travel with their timestamp", id, sink.values.get(n), 0);
+            assertTrue("producer " + id + " reordered", t > last[id]);
+            last[id] = t;
+        }
+    }
+
+    @Test
+    public void ignoresSamplesWhenNotRecording() throws Exception {
+        Recorder r = new Recorder(4, Recorder.Policy.BLOCK);
+        r.record(Channel.PRESSURE, 1, sample(1));
+        assertEquals(0, r.getQueueDepth());
+        Sink sink = new Sink(true);
+        r.start(sink);
+        r.record(Channel.PRESSURE, 2, sample(2));
+        r.stop();
+        r.record(Channel.PRESSURE, 3, sample(3));
+        assertEquals(0, r.getQueueDepth());
+        assertEquals(list(2), sink.timestamps);
+    }
+
+    @Test
+    public void restartsAfterWriteError() throws Exception {
+        Recorder r = new Recorder(4, Recorder.Policy.DROP);
+        Sink failing = new Sink(false);
+        failing.failure = new IOException("disk full");
+        r.start(failing);
+        for(long n = 0; n < 3; n++) r.record(Channel.GYROSCOPE, n, sample(n));
+        failing.gate.countDown();
+        r.stop();
+        assertSame(failing.failure, r.getError());
+        assertTrue(failing.closed);
+
+        Sink sink = new Sink(true);
+        r.start(sink);
+        assertNull(r.getError());
+        for(long n = 10; n < 14; n++) r.record(Channel.GYROSCOPE, n, sample(n));
+        r.stop();
+        // what was queued for the failed recording is not written to the next one
+        assertEquals(list(10, 11, 12, 13), sink.timestamps);
+        assertEquals(0, r.getDropped());
+    }
+
+    @Test
+    public void restartsWithoutStopAfterWriteError() throws Exception {
+        Recorder r = new Recorder(4, Recorder.Policy.DROP);
+        Sink failing = new Sink(true);
+        failing.failure = new IOException("disk full");
+        r.start(failing);
+        r.record(Channel.GYROSCOPE, 0, sample(0));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while(r.isRecording() && System.nanoTime() < deadline) Thread.sleep(1);
+        assertFalse(r.isRecording());
+
+        // as the app does when offering to record again
+        Sink sink = new Sink(true);
+        r.start(sink);
+        assertTrue(r.isRecording());
+        assertNull(r.getError());
+        assertTrue(failing.closed);
+        for(long n = 10; n < 14; n++) r.record(Channel.GYROSCOPE, n, sample(n));
+        r.stop();
+        assertEquals(list(10, 11, 12, 13), sink.timestamps);
+        assertTrue(sink.closed);
+    }
+
+    private static List<Long> list(long... values) {
+        List<Long> l = new ArrayList<Long>();
+        for(long v : values) l.add(v);
+        return l;
+    }
+}
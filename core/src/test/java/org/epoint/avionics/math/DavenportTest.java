@@ -0,0 +1,114 @@
+package org.epoint.avionics.math;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DavenportTest {
+
+    private static Versor versor(Random random) {
+        return new Versor(new double[]{random.nextGaussian(), random.nextGaussian(),
+                random.nextGaussian(), random.nextGaussian()});
+    }
+
+    private static Vec3D unit(Random random) {
+        return new Vec3D(random.nextGaussian(), random.nextGaussian(), random.nextGaussian())
+                .unit();
+    }
+
+    /**
+     * @return angle of the rotation between two versors in radians, accurate when small
+     */
+    private static double angle(Versor a, Versor b) {
+        double minus = 0, plus = 0;
+        for(int i = 0; i < 4; i++) {
+            minus += (a.v(i) - b.v(i)) * (a.v(i) - b.v(i));
+            plus += (a.v(i) + b.v(i)) * (a.v(i) + b.v(i));
+        }
+        return 2 * Math.sqrt(Math.min(minus, plus));
+    }
+
+    /**
+     * @return rotation matched from two target vectors and their images under a known one
+     */
+    private static Versor matched(Versor q, Vec3D toA, Vec3D toB, double a) {
+        return Versor.matchingRotation(q.rot(new Vec3D(toA)), q.rot(new Vec3D(toB)), toA, toB, a);
+    }
+
+    @Test
+    public void matchesKnownRotations() {
+        Random random = new Random(1);
+        for(int n = 0; n < 10000; n++) {
+            Versor q = versor(random);
+            Versor s = matched(q, unit(random), unit(random), random.nextDouble());
+            assertEquals(0, angle(q, s), 1e-12);
+        }
+    }
+
+    @Test
+    public void fitsWeightedObservations() {
+        Random random = new Random(2);
+        Davenport d = new Davenport();
+        double[] c = new double[4];
+        for(int n = 0; n < 1000; n++) {
+            Versor q = versor(random);
+            d.reset();
+            for(int i = 0; i < 5; i++) {
+                Vec3D to = unit(random);
+                d.add(random.nextDouble() + 0.1, q.rot(new Vec3D(to)), to);
+            }
+            Versor s = d.solve();
+            assertEquals(0, angle(q, s), 1e-12);
+            assertEquals(true, d.solve(c));
+            assertEquals(0, angle(s, new Versor(c)), 1e-15);
+        }
+    }
+
+    @Test
+    public void matchesHalfTurns() {
+        Random random = new Random(3);
+        Vec3D[] axes = {new Vec3D(1, 0, 0), new Vec3D(0, 1, 0), new Vec3D(0, 0, 1),
+                unit(random), unit(random)};
+        double[] angles = {Math.PI, Math.PI - 1e-9, Math.PI + 1e-9, Math.PI - 1e-3};
+        for(Vec3D axis : axes) {
+            for(double t : angles) {
+                Versor q = new Versor(axis, t);
+                for(int n = 0; n < 100; n++) {
+                    Versor s = matched(q, unit(random), unit(random), random.nextDouble());
+                    assertEquals(0, angle(q, s), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesNearlyParallelObservations() {
+        Random random = new Random(4);
+        for(int n = 0; n < 1000; n++) {
+            Versor q = versor(random);
+            Vec3D a = unit(random);
+            Vec3D b = new Vec3D(a).add(unit(random).scale(1e-3)).unit();
+            assertEquals(0, angle(q, matched(q, a, b, random.nextDouble())), 1e-10);
+        }
+    }
+
+    @Test
+    public void rejectsParallelObservations() {
+        Versor q = new Versor(new Vec3D(1, 2, 3), 0.7);
+        Vec3D to = new Vec3D(0.3, 0.4, -0.2).unit();
+        Vec3D from = q.rot(new Vec3D(to));
+        assertNull(Versor.matchingRotation(from, from, to, to, 0.5));
+        Davenport d = new Davenport().add(1, from, to).add(2, from, to);
+        assertFalse(d.solve(new double[4]));
+        assertNull(d.solve());
+        assertFalse(d.reset().solve(new double[4]));
+        // one more direction determines it
+        assertNotNull(d.add(1, from, to).add(1, q.rot(new Vec3D(0, 0, 1)), new Vec3D(0, 0, 1))
+                .solve());
+    }
+}
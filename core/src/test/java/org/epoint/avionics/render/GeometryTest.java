@@ -0,0 +1,124 @@
+package org.epoint.avionics.render;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.math.Vec3D;
+import org.epoint.avionics.math.Versor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeometryTest {
+
+    static final float LEFT = 0, RIGHT = 480, TOP = 0, BOTTOM = 800, Y = 300, D = 400;
+    static final float X = 0.5f * (LEFT + RIGHT);
+
+    /**
+     * Random attitudes, and the level, upside down and vertical ones
+     */
+    static List<Attitude> attitudes(int count, long seed) {
+        Random random = new Random(seed);
+        List<Attitude> a = new ArrayList<Attitude>();
+        a.add(new Attitude());
+        a.add(new Versor(0, 90, 0).attitude(new Attitude()));
+        a.add(new Versor(0, -90, 0).attitude(new Attitude()));
+        a.add(new Versor(180, 0, 0).attitude(new Attitude()));
+        for(int n = 0; n < count; n++) {
+            double[] q = {random.nextGaussian(), random.nextGaussian(), random.nextGaussian(),
+                    random.nextGaussian()};
+            a.add(new Versor(q).attitude(new Attitude()));
+        }
+        return a;
+    }
+
+    /**
+     * @return elevation in degrees of the line of sight through a screen point, with the
+     * screen mapped to directions as in {@link Horizon#draw}
+     */
+    static double elevation(Attitude up, double px, double py) {
+        Vec3D dir = new Vec3D(px - X, Y - py, -D);
+        Vec3D u = new Vec3D(up.upX(), up.upY(), up.upZ());
+        return Math.toDegrees(Math.atan2(up.upDot(dir), u.cross(dir).abs()));
+    }
+
+    private static float x(VertexBatch b, int i) {
+        return b.data()[i * VertexBatch.STRIDE];
+    }
+
+    private static float y(VertexBatch b, int i) {
+        return b.data()[i * VertexBatch.STRIDE + 1];
+    }
+
+    /**
+     * @return signed distance of a point from the line through two vertices
+     */
+    private static double side(VertexBatch b, int i, int j, double px, double py) {
+        double dx = x(b, j) - x(b, i), dy = y(b, j) - y(b, i);
+        return (dx * (py - y(b, i)) - dy * (px - x(b, i))) / Math.hypot(dx, dy);
+    }
+
+    /**
+     * @return whether a point is on the same side of the line through two vertices as a third
+     */
+    private static boolean beside(VertexBatch b, int i, int j, int k, double px, double py) {
+        return side(b, i, j, px, py) * side(b, i, j, x(b, k), y(b, k)) >= 0;
+    }
+
+    @Test
+    public void horizonDividesTheScreenAsOnCanvas() {
+        float[] t = new float[6];
+        float[][] corners = {{LEFT, TOP}, {RIGHT, TOP}, {RIGHT, BOTTOM}, {LEFT, BOTTOM}};
+        int crossing = 0;
+        for(Attitude up : attitudes(2000, 1)) {
+            VertexBatch b = new VertexBatch(8);
+            Geometry.horizon(b, up, LEFT, RIGHT, TOP, BOTTOM, Y, D, t);
+            assertEquals(8, b.size());
+            for(int i = 0; i < 8; i++) {
+                assertEquals(0.5f, b.data()[i * VertexBatch.STRIDE + 2], 0);
+                assertEquals(i < 4 ? Geometry.SKY_V : Geometry.EARTH_V,
+                        b.data()[i * VertexBatch.STRIDE + 3], 0);
+            }
+            // a band of one pixel, parallel to the sides of the strip
+            assertEquals(1, Math.abs(side(b, 2, 3, x(b, 4), y(b, 4))), 1e-3);
+            assertEquals(1, Math.abs(side(b, 2, 3, x(b, 5), y(b, 5))), 1e-3);
+            assertEquals(0, side(b, 0, 1, x(b, 2), y(b, 2))
+                    - side(b, 0, 1, x(b, 3), y(b, 3)), 1e-3);
+            // the middle of the band is on the horizon, wherever it crosses the screen
+            double hx = 0.25 * (x(b, 2) + x(b, 3) + x(b, 4) + x(b, 5));
+            double hy = 0.25 * (y(b, 2) + y(b, 3) + y(b, 4) + y(b, 5));
+            if(hx >= LEFT && hx <= RIGHT && hy >= TOP && hy <= BOTTOM) {
+                assertEquals(0, elevation(up, hx, hy), 1e-3);
+                crossing++;
+            }
+            for(float[] c : corners) {
+                // covered by the strip
+                assertTrue(beside(b, 0, 1, 6, c[0], c[1]));
+                assertTrue(beside(b, 6, 7, 0, c[0], c[1]));
+                assertTrue(beside(b, 0, 6, 1, c[0], c[1]));
+                assertTrue(beside(b, 1, 7, 0, c[0], c[1]));
+                // sky above the band and earth below it, where the canvas has them
+                double e = elevation(up, c[0], c[1]);
+                if(Math.abs(e) < 0.5) continue;
+                boolean sky = beside(b, 2, 3, 0, c[0], c[1]) && !beside(b, 2, 3, 4, c[0], c[1]);
+                boolean earth = beside(b, 4, 5, 6, c[0], c[1]) && !beside(b, 4, 5, 2, c[0], c[1]);
+                assertEquals("sky at corner", e > 0, sky);
+                assertEquals("earth at corner", e < 0, earth);
+            }
+        }
+        assertTrue(crossing > 100);
+    }
+
+    @Test
+    public void rotationTurnsClockwiseAroundThePivot() {
+        float[] t = Geometry.rotation(new float[6], 90, 10, 20);
+        // right of the pivot to below it, on a screen with y pointing down
+        assertEquals(10, t[0] * 15 + t[2] * 20 + t[4], 1e-5);
+        assertEquals(25, t[1] * 15 + t[3] * 20 + t[5], 1e-5);
+        assertEquals(10, t[0] * 10 + t[2] * 20 + t[4], 1e-5);
+        assertEquals(20, t[1] * 10 + t[3] * 20 + t[5], 1e-5);
+    }
+}
@@ -0,0 +1,90 @@
+package org.epoint.avionics.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GlyphAtlasTest {
+
+    private static final String CHARS = "0123456789-NESW";
+
+    private static GlyphAtlas atlas() {
+        GlyphAtlas a = new GlyphAtlas(CHARS, 12, 20, 1, 15);
+        for(int i = 0; i < CHARS.length(); i++) a.setAdvance(CHARS.charAt(i), 8 + i % 3);
+        return a;
+    }
+
+    @Test
+    public void cellsFitTheTextureWithoutOverlap() {
+        GlyphAtlas a = atlas();
+        assertEquals(CHARS.length() + 1, a.cells());
+        assertEquals(0, a.width & (a.width - 1));
+        assertEquals(0, a.height & (a.height - 1));
+        for(int c = 0; c < a.cells(); c++) {
+            assertTrue(a.cellX(c) >= 0 && a.cellX(c) + a.cellWidth <= a.width);
+            assertTrue(a.cellY(c) >= 0 && a.cellY(c) + a.cellHeight <= a.height);
+            for(int o = 0; o < c; o++) {
+                assertFalse("cells " + o + " and " + c + " overlap",
+                        Math.abs(a.cellX(c) - a.cellX(o)) < a.cellWidth
+                                && Math.abs(a.cellY(c) - a.cellY(o)) < a.cellHeight);
+            }
+            if(c > 0) assertEquals(c - 1, a.indexOf(a.charAt(c)));
+        }
+    }
+
+    @Test
+    public void solidSamplesTheMiddleOfTheFirstCell() {
+        GlyphAtlas a = atlas();
+        VertexBatch b = new VertexBatch(2);
+        a.solid(b);
+        b.line(1, 2, 3, 4);
+        assertEquals(6f / a.width, b.data()[2], 0);
+        assertEquals(10f / a.height, b.data()[3], 0);
+    }
+
+    @Test
+    public void textIsLaidOutFromItsAnchor() {
+        GlyphAtlas a = atlas();
+        VertexBatch b = new VertexBatch(1);
+        String s = "N1x5";
+        // 'x' is not in the atlas and takes no room
+        assertEquals(a.measure("N15"), a.measure(s), 0);
+        float width = a.measure(s);
+        a.text(b, s, 100, 50, 0.5f);
+        assertEquals(18, b.size());
+        float left = 100 - 0.5f * width;
+        float[] v = b.data();
+        for(int q = 0; q < 3; q++) {
+            int g = a.indexOf("N15".charAt(q));
+            float u0 = (float) a.cellX(g + 1) / a.width, v0 = (float) a.cellY(g + 1) / a.height;
+            float u1 = (float) (a.cellX(g + 1) + a.cellWidth) / a.width;
+            float v1 = (float) (a.cellY(g + 1) + a.cellHeight) / a.height;
+            // the glyph origin of the cell on the anchor line, at the baseline
+            assertEquals(left - a.originX, v[q * 6 * VertexBatch.STRIDE], 1e-4);
+            assertEquals(50 - a.baseline, v[q * 6 * VertexBatch.STRIDE + 1], 1e-4);
+            for(int i = q * 6; i < q * 6 + 6; i++) {
+                float x = v[i * VertexBatch.STRIDE], y = v[i * VertexBatch.STRIDE + 1];
+                float u = v[i * VertexBatch.STRIDE + 2], w = v[i * VertexBatch.STRIDE + 3];
+                assertTrue(u == u0 || u == u1);
+                assertTrue(w == v0 || w == v1);
+                assertEquals(u == u0 ? left - a.originX : left - a.originX + a.cellWidth, x, 1e-4);
+                assertEquals(w == v0 ? 50 - a.baseline : 50 - a.baseline + a.cellHeight, y, 1e-4);
+            }
+            left += a.measure(Character.toString("N15".charAt(q)));
+        }
+    }
+
+    @Test
+    public void alignmentShiftsByTheWidth() {
+        GlyphAtlas a = atlas();
+        VertexBatch l = new VertexBatch(6), r = new VertexBatch(6);
+        a.text(l, "42", 0, 0, 0);
+        a.text(r, "42", 0, 0, 1);
+        for(int i = 0; i < l.size(); i++) {
+            assertEquals(l.data()[i * VertexBatch.STRIDE] - a.measure("42"),
+                    r.data()[i * VertexBatch.STRIDE], 1e-4);
+        }
+    }
+}
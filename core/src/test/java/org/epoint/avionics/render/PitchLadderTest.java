@@ -0,0 +1,61 @@
+package org.epoint.avionics.render;
+
+import org.epoint.avionics.math.Attitude;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.epoint.avionics.render.GeometryTest.D;
+import static org.epoint.avionics.render.GeometryTest.X;
+import static org.epoint.avionics.render.GeometryTest.Y;
+import static org.epoint.avionics.render.GeometryTest.attitudes;
+import static org.epoint.avionics.render.GeometryTest.elevation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PitchLadderTest {
+
+    private static final int FOV = Horizon.PITCH_FOV;
+
+    @Test
+    public void marksAreAtTheirPitchAsOnCanvas() {
+        int[] pitch = new int[PitchLadder.capacity(FOV)];
+        float[] offset = new float[pitch.length];
+        float[] t = new float[6];
+        int vertical = 0;
+        for(Attitude up : attitudes(2000, 2)) {
+            int n = PitchLadder.marks(up, Y, D, FOV, pitch, offset);
+            double ul = up.pitchCos();
+            if(ul <= Math.sin(Math.toRadians(PitchLadder.TICK))) {
+                assertEquals("near the vertical", 0, n);
+                vertical++;
+                continue;
+            }
+            // rotated as by the canvas
+            Geometry.rotation(t, (float) (up.upY() / ul), (float) (up.upX() / ul), X, Y);
+            assertTrue("nearest first",
+                    Math.abs(elevation(up, X, Y) - pitch[0]) <= 0.5 * PitchLadder.TICK + 1e-9);
+            Set<Integer> marks = new HashSet<Integer>();
+            for(int i = 0; i < n; i++) {
+                assertTrue("mark " + pitch[i] + " twice", marks.add(pitch[i]));
+                // on the vertical through the line of sight
+                float sx = t[0] * X + t[2] * offset[i] + t[4];
+                float sy = t[1] * X + t[3] * offset[i] + t[5];
+                assertEquals(pitch[i], elevation(up, sx, sy), 1e-3);
+            }
+            for(int m = -90; m <= 90; m += PitchLadder.TICK)
+                assertEquals("mark " + m, Math.abs(m - pitch[0]) < FOV, marks.contains(m));
+        }
+        assertTrue(vertical > 0);
+    }
+
+    @Test
+    public void capacityHoldsEveryMark() {
+        for(int fov = 1; fov <= 90; fov++) {
+            int expected = 0;
+            for(int m = -fov + 1; m < fov; m++) if(m % PitchLadder.TICK == 0) expected++;
+            assertTrue("fov " + fov, PitchLadder.capacity(fov) >= expected);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.epoint.avionics.sensor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CalibrationStoreTest {
+
+    private static final double EPSILON = 1e-12;
+
+    /**
+     * @return store with buckets at 20 and 30 degrees
+     */
+    private static CalibrationStore twoBuckets() {
+        CalibrationStore s = new CalibrationStore();
+        s.put("gyroscope", 20, new double[]{1, 2}, 1);
+        s.put("gyroscope", 30, new double[]{3, 6}, 1);
+        return s;
+    }
+
+    private static byte[] written(CalibrationStore s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        s.write(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static void assertCorrupt(byte[] b) {
+        try {
+            CalibrationStore.read(new ByteArrayInputStream(b));
+            fail("read a corrupt store");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void interpolatesBetweenBuckets() {
+        CalibrationStore s = twoBuckets();
+        assertArrayEquals(new double[]{1, 2}, s.get("gyroscope", 20), EPSILON);
+        assertArrayEquals(new double[]{3, 6}, s.get("gyroscope", 30), EPSILON);
+        assertArrayEquals(new double[]{2, 4}, s.get("gyroscope", 25), EPSILON);
+        assertArrayEquals(new double[]{1.5, 3}, s.get("gyroscope", 22.5f), EPSILON);
+    }
+
+    @Test
+    public void holdsTheNearestBucketOutside() {
+        CalibrationStore s = twoBuckets();
+        assertArrayEquals(new double[]{1, 2}, s.get("gyroscope", -40), EPSILON);
+        assertArrayEquals(new double[]{1, 2}, s.get("gyroscope", 17), EPSILON);
+        assertArrayEquals(new double[]{3, 6}, s.get("gyroscope", 31), EPSILON);
+        assertArrayEquals(new double[]{3, 6}, s.get("gyroscope", 85), EPSILON);
+    }
+
+    @Test
+    public void averagesWithinBucket() {
+        CalibrationStore s = twoBuckets();
+        // 21 degrees rounds to the bucket at 20
+        s.put("gyroscope", 21, new double[]{4, 5}, 2);
+        assertArrayEquals(new double[]{3, 4}, s.get("gyroscope", 20), EPSILON);
+    }
+
+    @Test
+    public void knowsNothingUnknown() {
+        CalibrationStore s = twoBuckets();
+        assertNull(s.get("magnetometer", 20));
+        assertNull(s.get("gyroscope", Float.NaN));
+        s.put("magnetometer", Float.NaN, new double[]{1}, 1);
+        s.put("magnetometer", 20, new double[]{1}, 0);
+        assertNull(s.get("magnetometer", 20));
+    }
+
+    @Test
+    public void doesNotInterpolateMismatchedLengths() {
+        CalibrationStore s = twoBuckets();
+        // replaces the bucket at 30
+        s.put("gyroscope", 30, new double[]{1, 2, 3}, 1);
+        assertNull(s.get("gyroscope", 25));
+        assertArrayEquals(new double[]{1, 2, 3}, s.get("gyroscope", 30), EPSILON);
+        assertArrayEquals(new double[]{1, 2}, s.get("gyroscope", 20), EPSILON);
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        CalibrationStore s = twoBuckets();
+        s.put("magnetometer", -10, new double[]{0.5, -0.25, 7}, 3);
+        CalibrationStore r = CalibrationStore.read(new ByteArrayInputStream(written(s)));
+        for(float t = -20; t <= 40; t += 2.5f) {
+            assertArrayEquals(s.get("gyroscope", t), r.get("gyroscope", t), 0);
+            assertArrayEquals(s.get("magnetometer", t), r.get("magnetometer", t), 0);
+        }
+        // weights survive too
+        s.put("gyroscope", 20, new double[]{0, 0}, 1);
+        r.put("gyroscope", 20, new double[]{0, 0}, 1);
+        assertArrayEquals(s.get("gyroscope", 20), r.get("gyroscope", 20), 0);
+    }
+
+    @Test
+    public void rejectsCorruption() throws IOException {
+        byte[] b = written(twoBuckets());
+        for(int i = 0; i < b.length; i++) {
+            byte[] c = b.clone();
+            c[i] ^= 0x10;
+            assertCorrupt(c);
+        }
+        byte[] truncated = new byte[b.length - 1];
+        System.arraycopy(b, 0, truncated, 0, truncated.length);
+        assertCorrupt(truncated);
+    }
+
+    @Test
+    public void rejectsSensorWithoutBuckets() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CheckedOutputStream checked = new CheckedOutputStream(bytes, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(CalibrationStore.MAGIC);
+        out.writeInt(CalibrationStore.VERSION);
+        out.writeInt(1);
+        out.writeUTF("gyroscope");
+        out.writeInt(0);
+        out.flush();
+        new DataOutputStream(bytes).writeLong(checked.getChecksum().getValue());
+        // would leave get nothing to look up
+        assertCorrupt(bytes.toByteArray());
+    }
+}
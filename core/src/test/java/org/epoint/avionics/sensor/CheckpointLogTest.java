@@ -0,0 +1,107 @@
+package org.epoint.avionics.sensor;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+
+public class CheckpointLogTest {
+
+    static final Inertial.Listener QUIET = new Inertial.Listener() {
+        @Override
+        public void setDebug(String debug) {
+
+        }
+
+        @Override
+        public void setOrientation(double r, double i, double j, double k) {
+
+        }
+
+        @Override
+        public void setBearing(float bearing) {
+
+        }
+
+        @Override
+        public void setDeclination(float declination) {
+
+        }
+
+        @Override
+        public void setSlip(float slip) {
+
+        }
+
+        @Override
+        public void setRateOfTurn(float rateOfTurn) {
+
+        }
+
+        @Override
+        public void setAngularRate(float x, float y, float z) {
+
+        }
+    };
+
+    /**
+     * @return checkpoint log with one checkpoint per timestamp, taken at the timestamp's
+     * millisecond
+     */
+    private static File written(long... timestamps) throws IOException {
+        File f = File.createTempFile("flight", ".ckp");
+        f.deleteOnExit();
+        Inertial inertial = new Inertial(QUIET, Inertial.Precision.DOUBLE, Tuning.DEFAULT);
+        CheckpointLog.Writer w = new CheckpointLog.Writer(f);
+        try {
+            for(long t : timestamps) w.write(t, Checkpoint.of(t / 1000000, inertial, null));
+        } finally {
+            w.close();
+        }
+        return f;
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        CheckpointLog c = new CheckpointLog(written(1000000000L, 61000000000L, 121000000000L));
+        assertEquals(3, c.size());
+        assertEquals(61000000000L, c.timestamp(1));
+        assertEquals(61000L, c.get(1).time);
+        assertEquals(121000L, c.get(2).time);
+    }
+
+    @Test
+    public void findsTheLastCheckpointBefore() throws IOException {
+        CheckpointLog c = new CheckpointLog(written(10, 20, 30));
+        assertEquals(-1, c.find(9));
+        assertEquals(0, c.find(10));
+        assertEquals(0, c.find(19));
+        assertEquals(1, c.find(20));
+        assertEquals(2, c.find(30));
+        assertEquals(2, c.find(Long.MAX_VALUE));
+        assertEquals(-1, new CheckpointLog(written()).find(10));
+    }
+
+    @Test
+    public void ignoresATruncatedTail() throws IOException {
+        File f = written(10, 20, 30);
+        RandomAccessFile r = new RandomAccessFile(f, "rw");
+        try {
+            r.setLength(r.length() - 5);
+        } finally {
+            r.close();
+        }
+        CheckpointLog c = new CheckpointLog(f);
+        assertEquals(2, c.size());
+        assertEquals(1, c.find(30));
+    }
+
+    @Test
+    public void namedBesideTheLog() {
+        assertEquals(new File("logs", "flight.avsl.ckp"),
+                CheckpointLog.of(new File("logs", "flight.avsl")));
+    }
+}
@@ -0,0 +1,137 @@
+package org.epoint.avionics.sensor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class HandoffTest {
+
+    private static final long TIMEOUT = 10;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable r) {
+            r.run();
+        }
+    };
+
+    /**
+     * Listener collecting timestamps, first values and threads
+     */
+    private static class Sink implements SampleListener {
+        final List<Long> timestamps = Collections.synchronizedList(new ArrayList<Long>());
+        final List<Float> values = Collections.synchronizedList(new ArrayList<Float>());
+        volatile Thread thread;
+        volatile int length;
+
+        @Override
+        public void onSample(long timestamp, float[] v) {
+            timestamps.add(timestamp);
+            values.add(v[0]);
+            thread = Thread.currentThread();
+            length = v.length;
+        }
+    }
+
+    private static void drain(ExecutorService e) throws InterruptedException {
+        e.shutdown();
+        assertTrue(e.awaitTermination(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void deliversInOrderOnTheExecutor() throws Exception {
+        ExecutorService fusion = Executors.newSingleThreadExecutor();
+        Sink sink = new Sink();
+        Handoff h = new Handoff(sink, fusion, 3);
+        float[] v = new float[3];
+        int samples = 100000;
+        for(int n = 0; n < samples; n++) {
+            v[0] = n;
+            h.onSample(n, v);
+        }
+        drain(fusion);
+        assertNotSame(Thread.currentThread(), sink.thread);
+        assertEquals(samples, sink.timestamps.size());
+        for(int n = 0; n < samples; n++) {
+            assertEquals(n, (long) sink.timestamps.get(n));
+            // copied when handed off, not when run
+            assertEquals(n, sink.values.get(n), 0);
+        }
+    }
+
+    @Test
+    public void passesTheLeadingValues() {
+        Sink sink = new Sink();
+        new Handoff(sink, DIRECT, 3).onSample(1, new float[]{7, 8, 9, 10});
+        assertEquals(3, sink.length);
+        assertEquals(7f, sink.values.get(0), 0);
+    }
+
+    @Test
+    public void reusesTasksOnceCaughtUp() throws Exception {
+        ExecutorService fusion = Executors.newSingleThreadExecutor();
+        final CountDownLatch gate = new CountDownLatch(1);
+        fusion.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    gate.await(TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Sink sink = new Sink();
+        Handoff h = new Handoff(sink, fusion, 3);
+        float[] v = new float[3];
+        // a backlog of ten while the consumer is held up
+        for(int n = 0; n < 10; n++) h.onSample(n, v);
+        assertEquals(10, h.getAllocated());
+        gate.countDown();
+        final CountDownLatch idle = new CountDownLatch(1);
+        fusion.execute(new Runnable() {
+            @Override
+            public void run() {
+                idle.countDown();
+            }
+        });
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        for(int n = 10; n < 10000; n++) {
+            h.onSample(n, v);
+            if(n % 5 == 0) {
+                final CountDownLatch caught = new CountDownLatch(1);
+                fusion.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        caught.countDown();
+                    }
+                });
+                assertTrue(caught.await(TIMEOUT, TimeUnit.SECONDS));
+            }
+        }
+        drain(fusion);
+        assertEquals(10, h.getAllocated());
+        assertEquals(10000, sink.timestamps.size());
+    }
+
+    @Test
+    public void allocatesOnceOnTheCallingThread() {
+        Sink sink = new Sink();
+        Handoff h = new Handoff(sink, DIRECT, 1);
+        for(int n = 0; n < 1000; n++) h.onSample(n, new float[]{n});
+        assertEquals(1, h.getAllocated());
+        assertEquals(Thread.currentThread(), sink.thread);
+        assertEquals(1000, sink.timestamps.size());
+    }
+}
@@ -0,0 +1,105 @@
+package org.epoint.avionics.sensor;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.epoint.avionics.sensor.CheckpointLogTest.QUIET;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MagnetometerCalibratorTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable r) {
+            r.run();
+        }
+    };
+
+    /**
+     * Field strength in microtesla
+     */
+    private static final double FIELD = 50;
+
+    /**
+     * Soft-iron distortion, symmetric and skewed, and hard-iron offset in microtesla
+     */
+    private static final double[][] SOFT = {{1.2, 0.1, 0.05}, {0.1, 0.9, -0.08},
+            {0.05, -0.08, 1.05}};
+    private static final double[] HARD = {20, -15, 30};
+
+    /**
+     * @return raw sample of a field, as distorted by soft and hard iron
+     */
+    private static float[] raw(double[] h) {
+        float[] m = new float[3];
+        for(int i = 0; i < 3; i++) {
+            double s = HARD[i];
+            for(int j = 0; j < 3; j++) s += SOFT[i][j] * h[j];
+            m[i] = (float) s;
+        }
+        return m;
+    }
+
+    private static double[] direction(Random random) {
+        double x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+        double n = Math.sqrt(x * x + y * y + z * z);
+        return new double[]{FIELD * x / n, FIELD * y / n, FIELD * z / n};
+    }
+
+    /**
+     * @return magnitude of a sample corrected as <code>W (m - b)</code>
+     */
+    private static double corrected(double[] c, float[] m) {
+        double s = 0;
+        for(int i = 0; i < 3; i++) {
+            double w = 0;
+            for(int j = 0; j < 3; j++) w += c[3 + 3 * i + j] * (m[j] - c[j]);
+            s += w * w;
+        }
+        return Math.sqrt(s);
+    }
+
+    @Test
+    public void correctsSkewedOffsetEllipsoid() {
+        Inertial inertial = new Inertial(QUIET);
+        MagnetometerCalibrator calibrator = new MagnetometerCalibrator(inertial, DIRECT);
+        Random random = new Random(1);
+        for(int n = 0; n < 5 * MagnetometerCalibrator.BLOCK; n++)
+            calibrator.onSample(n * 20000000L, raw(direction(random)));
+        assertTrue(calibrator.getFits() > 0);
+        assertEquals(0, calibrator.getIllConditioned());
+        assertTrue(calibrator.getResidual() < 1e-3);
+        double[] c = inertial.getMagnetometerCorrection();
+        assertNotNull(c);
+        for(int i = 0; i < 3; i++) assertEquals(HARD[i], c[i], 1e-3);
+        // constant magnitude, the mean field strength
+        double det = SOFT[0][0] * (SOFT[1][1] * SOFT[2][2] - SOFT[1][2] * SOFT[2][1])
+                - SOFT[0][1] * (SOFT[1][0] * SOFT[2][2] - SOFT[1][2] * SOFT[2][0])
+                + SOFT[0][2] * (SOFT[1][0] * SOFT[2][1] - SOFT[1][1] * SOFT[2][0]);
+        double radius = FIELD * Math.cbrt(det);
+        for(int n = 0; n < 1000; n++)
+            assertEquals(radius, corrected(c, raw(direction(random))), 0.002 * radius);
+    }
+
+    @Test
+    public void rejectsPlanarSweep() {
+        Inertial inertial = new Inertial(QUIET);
+        MagnetometerCalibrator calibrator = new MagnetometerCalibrator(inertial, DIRECT);
+        // turning about one axis only: the field sweeps a cone, its samples a plane
+        double dip = Math.toRadians(60);
+        for(int n = 0; n < 20 * MagnetometerCalibrator.BLOCK; n++) {
+            double heading = 0.1 * n;
+            calibrator.onSample(n * 20000000L, raw(new double[]{
+                    FIELD * Math.cos(dip) * Math.cos(heading),
+                    FIELD * Math.cos(dip) * Math.sin(heading), -FIELD * Math.sin(dip)}));
+        }
+        assertTrue(calibrator.getIllConditioned() > 0);
+        assertEquals(0, calibrator.getFits());
+        assertNull(inertial.getMagnetometerCorrection());
+    }
+}
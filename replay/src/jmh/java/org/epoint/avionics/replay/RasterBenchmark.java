@@ -0,0 +1,81 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.render.DisplayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a full-detail panel frame over the {@link Render} maneuver: recording the display
+ * list, playing a recorded list back to an image, and drawing straight to the image. The
+ * difference between the last two is the overhead of the display list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RasterBenchmark {
+
+    private static final int FRAMES = 36;
+
+    @Param({"720x1280"})
+    public String size;
+
+    private final Render.Frame[] frames = new Render.Frame[FRAMES];
+    private final DisplayList[] lists = new DisplayList[FRAMES];
+    private final DisplayList list = new DisplayList();
+    private Graphics2DTarget target;
+    private float width, height;
+    private int frame = 0;
+
+    @Setup
+    public void setup() {
+        String[] s = size.split("x");
+        int w = Integer.parseInt(s[0]), h = Integer.parseInt(s[1]);
+        width = w;
+        height = h;
+        target = new Graphics2DTarget(new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB));
+        for(int i = 0; i < FRAMES; i++) {
+            frames[i] = new Render.Frame().set(i, FRAMES);
+            lists[i] = new DisplayList();
+            Render.draw(lists[i], frames[i], width, height);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.dispose();
+    }
+
+    private int next() {
+        frame = (frame + 1) % FRAMES;
+        return frame;
+    }
+
+    @Benchmark
+    public DisplayList record() {
+        list.clear();
+        Render.draw(list, frames[next()], width, height);
+        return list;
+    }
+
+    @Benchmark
+    public Graphics2DTarget play() {
+        lists[next()].play(target);
+        return target;
+    }
+
+    @Benchmark
+    public Graphics2DTarget direct() {
+        Render.draw(target, frames[next()], width, height);
+        return target;
+    }
+}
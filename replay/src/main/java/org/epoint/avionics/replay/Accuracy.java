@@ -0,0 +1,168 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.log.SensorLog.Channel;
+import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.Tuning;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accuracy versus cost of the attitude estimation modes. Each {@link Inertial.Precision}
+ * replays the same simulated flights of {@link Trajectory#SCRIPTS}, synthesized once and held
+ * in a {@link Recording}, so that only the estimator is measured. Processor time and
+ * allocation per sample are the best of several repetitions; the errors are deterministic.
+ * Compared to a baseline table, fails if any error grew beyond the tolerance; fails
+ * regardless of the baseline if an error exceeds the ceiling of its trajectory.
+ */
+public class Accuracy {
+
+    private static final String USAGE = "usage: accuracy [-r repetitions] [-seed n] [-o table]"
+            + " [-baseline table [-tolerance fraction]]";
+
+    public static final String HEADER = "trajectory,precision,samples,ns_per_sample,"
+            + "bytes_per_sample,rms_attitude_error_deg,rms_heading_error_deg";
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Absolute error in degrees always tolerated, against rounding differences between
+     * platforms
+     */
+    private static final double SLACK = 0.01;
+
+    /**
+     * Attitude and heading errors in degrees never accepted, by trajectory, so that a
+     * regenerated baseline cannot enshrine a broken estimator
+     */
+    private static final Map<String, double[]> CEILINGS = new HashMap<String, double[]>();
+
+    static {
+        CEILINGS.put("circuit", new double[]{8, 6});
+        CEILINGS.put("steep", new double[]{10, 10});
+        CEILINGS.put("climb", new double[]{5, 3});
+        CEILINGS.put("cruise", new double[]{5, 3});
+    }
+
+    public static void main(String[] args) throws IOException {
+        int repetitions = 5;
+        long seed = 1;
+        double tolerance = 0.05;
+        PrintStream out = System.out;
+        File baseline = null;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if("-r".equals(args[i])) repetitions = Integer.parseInt(args[++i]);
+                else if("-seed".equals(args[i])) seed = Long.parseLong(args[++i]);
+                else if("-o".equals(args[i])) out = new PrintStream(new File(args[++i]));
+                else if("-baseline".equals(args[i])) baseline = new File(args[++i]);
+                else if("-tolerance".equals(args[i]))
+                    tolerance = Double.parseDouble(args[++i]);
+                else throw new IllegalArgumentException(args[i]);
+            }
+        } catch (RuntimeException e) {
+            // missing option argument or unparseable number
+            System.err.println(e.getMessage());
+            repetitions = 0;
+        }
+        if(repetitions < 1 || !(tolerance >= 0)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Map<String, double[]> base = baseline == null ? null : read(baseline);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation =
+                threads instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) threads)
+                        .isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long id = Thread.currentThread().getId();
+
+        out.println(HEADER);
+        int regressions = 0;
+        for(String[] script : Trajectory.SCRIPTS) {
+            Recording recording = new Recording();
+            Summary simulated = new Simulation(script[0], script[1], seed, 1, 1, 60,
+                    Inertial.Precision.DOUBLE, Tuning.DEFAULT).setLog(recording).call();
+            long samples = simulated.records() - simulated.records[Channel.REFERENCE.ordinal()];
+            for(Inertial.Precision p : Inertial.Precision.values()) {
+                Summary s = null;
+                long cpu = Long.MAX_VALUE, bytes = Long.MAX_VALUE;
+                for(int i = 0; i < repetitions; i++) {
+                    long allocated = allocation == null ? 0 : allocation.getThreadAllocatedBytes(id);
+                    s = new Flight(script[0], recording.input(), p, Tuning.DEFAULT).call();
+                    if(allocation != null)
+                        bytes = Math.min(bytes, allocation.getThreadAllocatedBytes(id) - allocated);
+                    cpu = Math.min(cpu, s.cpuTime);
+                }
+                String key = script[0] + ',' + p;
+                out.println(key + ',' + samples
+                        + ',' + (float) ((double) cpu / samples)
+                        + ',' + (allocation == null ? Float.NaN : (float) ((double) bytes / samples))
+                        + ',' + (float) s.attitudeError()
+                        + ',' + (float) s.headingError());
+                double[] b = base == null ? null : base.get(key);
+                if(b != null && (worse(s.attitudeError(), b[0], tolerance)
+                        || worse(s.headingError(), b[1], tolerance))) {
+                    System.err.printf("%s: attitude error %.3f deg, heading error %.3f deg;"
+                                    + " baseline %.3f deg, %.3f deg%n", key, s.attitudeError(),
+                            s.headingError(), b[0], b[1]);
+                    regressions++;
+                }
+                double[] c = CEILINGS.get(script[0]);
+                if(c != null && (worse(s.attitudeError(), c[0], 0)
+                        || worse(s.headingError(), c[1], 0))) {
+                    System.err.printf("%s: attitude error %.3f deg, heading error %.3f deg;"
+                                    + " ceiling %.3f deg, %.3f deg%n", key, s.attitudeError(),
+                            s.headingError(), c[0], c[1]);
+                    regressions++;
+                }
+            }
+        }
+        if(out != System.out) out.close();
+        if(regressions > 0) {
+            System.err.println(regressions
+                    + " configurations less accurate than the baseline or the ceiling");
+            System.exit(1);
+        }
+    }
+
+    private static boolean worse(double error, double baseline, double tolerance) {
+        return !(error <= baseline * (1 + tolerance) + SLACK);
+    }
+
+    /**
+     * @return attitude and heading errors of a table in {@link #HEADER} format, by trajectory
+     * and precision
+     */
+    private static Map<String, double[]> read(File table) throws IOException {
+        Map<String, double[]> errors = new HashMap<String, double[]>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(table),
+                ASCII));
+        try {
+            String line = in.readLine();
+            if(!HEADER.equals(line)) throw new IOException("Not an accuracy table: " + table);
+            while((line = in.readLine()) != null) {
+                String[] f = line.split(",");
+                if(f.length != 7) throw new IOException("Malformed row: " + line);
+                errors.put(f[0] + ',' + f[1], new double[]{Double.parseDouble(f[5]),
+                        Double.parseDouble(f[6])});
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            in.close();
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,271 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.log.SensorLog;
+import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.Tuning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Round-off drift of gyroscope integration over long flights without calibration. Each
+ * {@link Inertial.Precision} is calibrated level, then integrates hours of gyroscope samples,
+ * either synthesized from a seed or the gyroscope records of a log played over and over. The
+ * orientation reported every hour is compared to a reference integrating the same samples in
+ * double precision, normalized exactly at every step; the samples themselves are exact, so
+ * the difference is round-off alone. Fails if any attitude error exceeds a limit.
+ */
+public class Drift {
+
+    private static final String USAGE = "usage: drift [-hours n] [-seed n] [-log file]"
+            + " [-o table] [-limit degrees]";
+
+    public static final String HEADER = "precision,hours,samples,norm_error,attitude_error_deg";
+
+    /**
+     * Synthetic gyroscope rate in hertz and standard deviation of its angular velocity in
+     * radians per second
+     */
+    private static final int RATE = 200;
+    private static final double SIGMA = 0.5;
+
+    private static final long HOUR = 3600000000000L;
+
+    /**
+     * Level calibration before integration, in nanoseconds, longer than the stable time
+     */
+    private static final long CALIBRATION = Tuning.DEFAULT.stableTime + 1000000000L;
+
+    private static final float[] GRAVITY = {0, Inertial.STANDARD_GRAVITY, 0};
+    private static final float[] FIELD = {0, -30, -20};
+
+    /**
+     * Latest orientation reported
+     */
+    private static class Probe implements Inertial.Listener {
+        final double[] q = new double[4];
+        boolean oriented = false;
+
+        @Override
+        public void setDebug(String debug) {
+
+        }
+
+        @Override
+        public void setOrientation(double r, double i, double j, double k) {
+            q[0] = r;
+            q[1] = i;
+            q[2] = j;
+            q[3] = k;
+            oriented = true;
+        }
+
+        @Override
+        public void setBearing(float bearing) {
+
+        }
+
+        @Override
+        public void setDeclination(float declination) {
+
+        }
+
+        @Override
+        public void setSlip(float slip) {
+
+        }
+
+        @Override
+        public void setRateOfTurn(float rateOfTurn) {
+
+        }
+
+        @Override
+        public void setAngularRate(float x, float y, float z) {
+
+        }
+    }
+
+    /**
+     * Gyroscope samples, synthetic or looped from a log
+     */
+    private static class Source {
+        private final Random random;
+        /**
+         * Recorded periods in nanoseconds and angular velocities, three per sample
+         */
+        private final long[] periods;
+        private final float[] rates;
+        private int next = 0;
+
+        Source(long seed) {
+            random = new Random(seed);
+            periods = null;
+            rates = null;
+        }
+
+        Source(File log) throws IOException {
+            random = null;
+            long[] p = new long[1024];
+            float[] r = new float[3 * p.length];
+            int n = 0;
+            long last = Long.MIN_VALUE;
+            SensorLog.Input in = SensorLog.open(log);
+            try {
+                while(in.next()) {
+                    if(in.channel() != SensorLog.Channel.GYROSCOPE) continue;
+                    long t = in.timestamp();
+                    if(last != Long.MIN_VALUE && t > last) {
+                        if(n == p.length) {
+                            p = Arrays.copyOf(p, 2 * n);
+                            r = Arrays.copyOf(r, 6 * n);
+                        }
+                        p[n] = t - last;
+                        System.arraycopy(in.values(), 0, r, 3 * n++, 3);
+                    }
+                    last = t;
+                }
+            } finally {
+                in.close();
+            }
+            if(n == 0) throw new IOException("No gyroscope records: " + log);
+            periods = Arrays.copyOf(p, n);
+            rates = Arrays.copyOf(r, 3 * n);
+        }
+
+        /**
+         * @param v filled with the angular velocity of the next sample
+         * @return time since the previous sample in nanoseconds
+         */
+        long next(float[] v) {
+            if(random != null) {
+                for(int i = 0; i < 3; i++) v[i] = (float) (SIGMA * random.nextGaussian());
+                return 1000000000L / RATE;
+            }
+            System.arraycopy(rates, 3 * next, v, 0, 3);
+            long p = periods[next];
+            next = (next + 1) % periods.length;
+            return p;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int hours = 3;
+        long seed = 1;
+        double limit = Double.POSITIVE_INFINITY;
+        File log = null;
+        PrintStream out = System.out;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if("-hours".equals(args[i])) hours = Integer.parseInt(args[++i]);
+                else if("-seed".equals(args[i])) seed = Long.parseLong(args[++i]);
+                else if("-log".equals(args[i])) log = new File(args[++i]);
+                else if("-o".equals(args[i])) out = new PrintStream(new File(args[++i]));
+                else if("-limit".equals(args[i])) limit = Double.parseDouble(args[++i]);
+                else throw new IllegalArgumentException(args[i]);
+            }
+        } catch (RuntimeException e) {
+            // missing option argument or unparseable number
+            System.err.println(e.getMessage());
+            hours = 0;
+        }
+        if(hours < 1 || !(limit >= 0)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        out.println(HEADER);
+        int regressions = 0;
+        for(Inertial.Precision p : Inertial.Precision.values()) {
+            double error = run(p, log == null ? new Source(seed) : new Source(log), hours, out);
+            if(!(error <= limit)) {
+                System.err.printf("%s: attitude error %.3g deg after %d hours, limit %.3g deg%n",
+                        p, error, hours, limit);
+                regressions++;
+            }
+        }
+        if(out != System.out) out.close();
+        if(regressions > 0) {
+            System.err.println(regressions + " precisions drift beyond the limit");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Calibrate, then integrate, reporting every hour.
+     * @return attitude error at the end, in degrees
+     */
+    private static double run(Inertial.Precision p, Source source, int hours, PrintStream out) {
+        Probe probe = new Probe();
+        Inertial inertial = new Inertial(probe, p, Tuning.DEFAULT);
+        float[] v = new float[3];
+        long t = 0;
+        for(int n = 0; t < CALIBRATION; n++) {
+            t += 1000000000L / RATE;
+            inertial.gyroscope.onSample(t, v);
+            if(n % 2 == 0) {
+                inertial.accelerometer.onSample(t, GRAVITY);
+                inertial.magnetometer.onSample(t, FIELD);
+            }
+        }
+        if(!probe.oriented) throw new IllegalStateException("Not calibrated");
+        double[] reference = probe.q.clone();
+        normalize(reference);
+        long samples = 0, start = t, end = start + hours * HOUR, hour = start + HOUR;
+        double error = 0;
+        while(t < end) {
+            long period = source.next(v);
+            t += period;
+            inertial.gyroscope.onSample(t, v);
+            spin(reference, v[0], v[1], v[2], -1e-9 * (double) period);
+            samples++;
+            if(t >= hour || t >= end) {
+                double[] q = probe.q;
+                double norm = q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3];
+                error = Math.toDegrees(angle(reference, q));
+                out.println(p + "," + (float) ((double) (t - start) / HOUR) + ',' + samples
+                        + ',' + (float) (1 - norm) + ',' + (float) error);
+                hour += HOUR;
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Rotate as the integrators do, then normalize exactly.
+     * @param q versor coordinates, updated
+     */
+    private static void spin(double[] q, double x, double y, double z, double t) {
+        double abs = Math.sqrt(x * x + y * y + z * z);
+        if(abs == 0) return;
+        double a = 0.5 * abs * t;
+        double s = Math.sin(a) / abs;
+        double sr = Math.cos(a), si = x * s, sj = y * s, sk = z * s;
+        double r = q[0], i = q[1], j = q[2], k = q[3];
+        q[0] = sr * r - si * i - sj * j - sk * k;
+        q[1] = sr * i + si * r + sj * k - sk * j;
+        q[2] = sr * j + sj * r + sk * i - si * k;
+        q[3] = sr * k + sk * r + si * j - sj * i;
+        normalize(q);
+    }
+
+    private static void normalize(double[] q) {
+        double n = Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+        for(int i = 0; i < 4; i++) q[i] /= n;
+    }
+
+    /**
+     * @return angle of the rotation between two versors, in radians, regardless of their norm
+     */
+    private static double angle(double[] a, double[] b) {
+        // conjugate of a times b
+        double r = a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3];
+        double i = a[0] * b[1] - b[0] * a[1] - (a[2] * b[3] - a[3] * b[2]);
+        double j = a[0] * b[2] - b[0] * a[2] - (a[3] * b[1] - a[1] * b[3]);
+        double k = a[0] * b[3] - b[0] * a[3] - (a[1] * b[2] - a[2] * b[1]);
+        return 2 * Math.atan2(Math.sqrt(i * i + j * j + k * k), Math.abs(r));
+    }
+}
@@ -0,0 +1,357 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.log.FusedLog;
+import org.epoint.avionics.log.PackedLog;
+import org.epoint.avionics.log.SensorLog;
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.math.Versor;
+import org.epoint.avionics.sensor.Barometric;
+import org.epoint.avionics.sensor.Checkpoint;
+import org.epoint.avionics.sensor.CheckpointLog;
+import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.SampleListener;
+import org.epoint.avionics.sensor.Tuning;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+
+/**
+ * Replay of a single recorded flight through a fresh estimator, writing the fused state at
+ * a fixed period and comparing it to recorded ground truth, if any. Runs entirely on the
+ * calling thread; flights share no state.
+ */
+public class Flight implements Callable<Summary>, Inertial.Listener, Barometric.Listener {
+
+    public static final String HEADER = "timestamp,r,i,j,k,heading,rate_of_turn,slip,bearing,"
+            + "declination,altitude,vertical_speed";
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Fused output format
+     */
+    public enum Format {
+        CSV(".fused.csv"),
+        /**
+         * {@link FusedLog}
+         */
+        COLUMNAR(".fused.avfc");
+
+        /**
+         * File name suffix
+         */
+        public final String suffix;
+
+        private Format(String s) {
+            suffix = s;
+        }
+    }
+
+    private final String name;
+    private final File log;
+    private final SensorLog.Input source;
+    private final File output;
+    private final Format format;
+    private final long period;
+    private final Inertial.Precision precision;
+    private final Tuning tuning;
+
+    /**
+     * Start of output relative to the first record, and estimator warm-up before it, in
+     * nanoseconds
+     */
+    private long from = 0, warmup = 0;
+    /**
+     * Log time between stored checkpoints in nanoseconds, 0 for none
+     */
+    private long checkpointPeriod = 0;
+    /**
+     * Timestamp of the checkpoint the estimator was restored from, if any
+     */
+    private long restored;
+    /**
+     * Whether the current record is past the warm-up
+     */
+    private boolean observed;
+
+    private Summary summary;
+    private final Attitude attitude = new Attitude();
+    private final StringBuilder row = new StringBuilder(160);
+    private final float[] values = new float[FusedLog.Column.FLOATS];
+    /**
+     * Latest aircraft to world versor coordinates, valid if <code>oriented</code>
+     */
+    private final double[] orientation = new double[4];
+    private boolean oriented;
+    private float rateOfTurn, slip, bearing, declination, altitude = Float.NaN, verticalSpeed;
+
+    /**
+     * @param l recorded sensor log
+     * @param o fused output, <code>null</code> for statistics only
+     * @param f format of the fused output
+     * @param p output period in nanoseconds
+     * @param precision arithmetic for gyroscope integration
+     * @param tuning estimator constants
+     */
+    public Flight(File l, File o, Format f, long p, Inertial.Precision precision, Tuning tuning) {
+        this(l.getName(), l, null, o, f, p, precision, tuning);
+    }
+
+    /**
+     * Replay records at hand, e.g. a {@link Recording}, for statistics only. Single use.
+     * @param name flight name in the summary
+     * @param in records, closed at the end
+     * @param precision arithmetic for gyroscope integration
+     * @param tuning estimator constants
+     */
+    public Flight(String name, SensorLog.Input in, Inertial.Precision precision, Tuning tuning) {
+        this(name, null, in, null, null, 0, precision, tuning);
+    }
+
+    private Flight(String n, File l, SensorLog.Input in, File o, Format f, long p,
+                   Inertial.Precision precision, Tuning tuning) {
+        name = n;
+        log = l;
+        source = in;
+        output = o;
+        format = f;
+        period = p;
+        this.precision = precision;
+        this.tuning = tuning;
+    }
+
+    /**
+     * Replay only part of the flight. Packed logs are entered through their index, which is
+     * built if missing; the estimator runs unobserved for <code>w</code> before <code>f</code>.
+     * If a {@link CheckpointLog} lies beside the log, the estimator is restored from the last
+     * checkpoint before the warm-up and runs unobserved from there instead.
+     * @param f start of output in nanoseconds after the first record
+     * @param w warm-up time in nanoseconds
+     * @return this
+     */
+    public Flight setWindow(long f, long w) {
+        from = f;
+        warmup = w;
+        return this;
+    }
+
+    /**
+     * Store the estimator state beside the log, for replaying part of it later. Only replays
+     * of a whole log file store checkpoints.
+     * @param p log time between checkpoints in nanoseconds, 0 for none
+     * @return this
+     * @see #setWindow
+     */
+    public Flight setCheckpoints(long p) {
+        checkpointPeriod = p;
+        return this;
+    }
+
+    /**
+     * Open the log, positioned at or before the warm-up, restoring the estimators from the
+     * checkpoint before it, if any.
+     * @param times filled with the first timestamp of the log, if known
+     */
+    private SensorLog.Input open(long[] times, Inertial inertial, Barometric barometric)
+            throws IOException {
+        if(source != null) return source;
+        SensorLog.Input in = SensorLog.open(log);
+        if(from == 0 || !(in instanceof PackedLog.Reader)) return in;
+        in.close();
+        File index = PackedLog.Index.of(log);
+        if(!index.exists()) PackedLog.Index.build(log, index);
+        PackedLog.Index i = new PackedLog.Index(index);
+        try {
+            if(i.size() == 0) return SensorLog.open(log);
+            times[0] = i.timestamp(0);
+            long start = times[0] + from - warmup;
+            File checkpoints = CheckpointLog.of(log);
+            if(checkpoints.exists()) {
+                CheckpointLog c = new CheckpointLog(checkpoints);
+                int n = c.find(start);
+                if(n >= 0) {
+                    c.get(n).restore(inertial, barometric);
+                    start = restored = c.timestamp(n);
+                }
+            }
+            return PackedLog.open(log, i.offset(i.find(start)));
+        } finally {
+            i.close();
+        }
+    }
+
+    @Override
+    public Summary call() throws IOException {
+        summary = new Summary(name);
+        oriented = false;
+        altitude = Float.NaN;
+        Inertial inertial = new Inertial(this, precision, tuning);
+        SampleListener accelerometer = inertial.accelerometer;
+        SampleListener magnetometer = inertial.magnetometer;
+        SampleListener gyroscope = inertial.gyroscope;
+        Barometric barometric = new Barometric(this, tuning);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpu = threads.isCurrentThreadCpuTimeSupported();
+        long start = cpu ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+        long[] first = {Long.MIN_VALUE};
+        restored = Long.MIN_VALUE;
+        SensorLog.Input in = open(first, inertial, barometric);
+        Writer out = null;
+        FusedLog.Writer columns = null;
+        CheckpointLog.Writer checkpoints = null;
+        try {
+            if(checkpointPeriod > 0 && log != null && from == 0)
+                checkpoints = new CheckpointLog.Writer(CheckpointLog.of(log));
+            if(output != null && format == Format.CSV) {
+                out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), ASCII));
+                out.write(HEADER);
+                out.write('\n');
+            } else if(output != null) {
+                columns = new FusedLog.Writer(output);
+            }
+            long next = Long.MIN_VALUE, checkpoint = checkpointPeriod;
+            while(in.next()) {
+                long t = in.timestamp();
+                float[] v = in.values();
+                if(first[0] == Long.MIN_VALUE) first[0] = t;
+                // a checkpoint holds the records up to its timestamp
+                if(restored != Long.MIN_VALUE ? t <= restored : t - first[0] < from - warmup)
+                    continue;
+                observed = t - first[0] >= from;
+                if(observed) summary.record(in.channel(), t);
+                else if(in.channel() == SensorLog.Channel.REFERENCE) continue;
+                switch(in.channel()) {
+                    case ACCELEROMETER: accelerometer.onSample(t, v); break;
+                    case MAGNETOMETER: magnetometer.onSample(t, v); break;
+                    case GYROSCOPE: gyroscope.onSample(t, v); break;
+                    case PRESSURE: barometric.onSample(t, v); break;
+                    case FIELD: inertial.setMagneticField(v[0], v[1], v[2], v[3]); break;
+                    case TRACK: inertial.setTrack(t, v[0], v[1]); break;
+                    case REFERENCE: compare(v); break;
+                }
+                if(observed && output != null && oriented && t >= next) {
+                    fill();
+                    if(out != null) write(out, t);
+                    else columns.write(t, values);
+                    next = t + period;
+                }
+                if(checkpoints != null && oriented && t - first[0] >= checkpoint) {
+                    checkpoints.write(t, Checkpoint.of(t / 1000000, inertial, barometric));
+                    checkpoint = t - first[0] + checkpointPeriod;
+                }
+            }
+        } finally {
+            in.close();
+            if(out != null) out.close();
+            if(columns != null) columns.close();
+            if(checkpoints != null) checkpoints.close();
+        }
+        summary.cpuTime = (cpu ? threads.getCurrentThreadCpuTime() : System.nanoTime()) - start;
+        return summary;
+    }
+
+    /**
+     * Accumulate the errors of the latest estimate versus ground truth.
+     * @param reference versor coordinates and altitude
+     */
+    private void compare(float[] reference) {
+        if(oriented) {
+            double dot = 0;
+            for(int i = 0; i < 4; i++) dot += orientation[i] * reference[i];
+            summary.attitudeError(2 * Math.acos(Math.min(1, Math.abs(dot))));
+            float r = reference[0], i = reference[1], j = reference[2], k = reference[3];
+            double e = heading()
+                    - Math.toDegrees(Math.atan2(2 * (r * j - i * k), 1 - 2 * (i * i + j * j)));
+            summary.headingError(Math.toRadians(e - 360 * Math.floor(e / 360 + 0.5)));
+        }
+        if(!Float.isNaN(altitude) && !Float.isInfinite(altitude))
+            summary.altitudeError(altitude - reference[4]);
+    }
+
+    /**
+     * Collect the current state in {@link FusedLog.Column} order.
+     */
+    private void fill() {
+        for(int i = 0; i < 4; i++) values[i] = (float) orientation[i];
+        values[4] = (float) heading();
+        values[5] = rateOfTurn;
+        values[6] = slip;
+        values[7] = bearing;
+        values[8] = declination;
+        values[9] = altitude;
+        values[10] = verticalSpeed;
+    }
+
+    private double heading() {
+        return Versor.attitude(orientation[0], orientation[1], orientation[2], orientation[3],
+                attitude).heading();
+    }
+
+    private void write(Writer out, long timestamp) throws IOException {
+        row.setLength(0);
+        row.append(timestamp);
+        for(float v : values) row.append(',').append(v);
+        out.append(row.append('\n'));
+    }
+
+    @Override
+    public void setDebug(String debug) {
+
+    }
+
+    @Override
+    public void setOrientation(double r, double i, double j, double k) {
+        orientation[0] = r;
+        orientation[1] = i;
+        orientation[2] = j;
+        orientation[3] = k;
+        oriented = true;
+    }
+
+    @Override
+    public void setAngularRate(float x, float y, float z) {
+
+    }
+
+    @Override
+    public void setBearing(float b) {
+        bearing = b;
+    }
+
+    @Override
+    public void setDeclination(float d) {
+        declination = d;
+    }
+
+    @Override
+    public void setSlip(float s) {
+        slip = s;
+        if(observed) summary.slip(s);
+    }
+
+    @Override
+    public void setRateOfTurn(float r) {
+        rateOfTurn = r;
+        if(observed) summary.rateOfTurn(r);
+    }
+
+    @Override
+    public void setAltitude(float a) {
+        altitude = a;
+        if(observed) summary.altitude(a);
+    }
+
+    @Override
+    public void setVerticalSpeed(float v) {
+        verticalSpeed = v;
+        if(observed) summary.verticalSpeed(v);
+    }
+}
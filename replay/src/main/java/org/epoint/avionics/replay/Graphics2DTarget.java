@@ -0,0 +1,184 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.render.RenderTarget;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Playback of drawing primitives on a {@link BufferedImage} with Java2D, for rendering the
+ * instruments without a device.
+ */
+public class Graphics2DTarget implements RenderTarget {
+
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 1);
+    private static final BasicStroke HAIRLINE = new BasicStroke(1);
+
+    private final Graphics2D g;
+    private final int width, height;
+    private final boolean glyphs;
+    private final Deque<AffineTransform> saved = new ArrayDeque<AffineTransform>();
+    private final AffineTransform identity = new AffineTransform();
+    private final AffineTransform transform = new AffineTransform();
+    private final Path2D.Float path = new Path2D.Float();
+    private final Ellipse2D.Float ellipse = new Ellipse2D.Float();
+    private final Arc2D.Float arc = new Arc2D.Float();
+    private Style style = Style.FILL;
+    private int color = 0xFF000000;
+    private float textSize = 0;
+    private boolean hairline;
+    private FontMetrics metrics;
+
+    public Graphics2DTarget(BufferedImage image) {
+        this(image, true);
+    }
+
+    /**
+     * @param glyphs whether text is drawn; glyphs depend on the fonts of the platform
+     */
+    public Graphics2DTarget(BufferedImage image, boolean glyphs) {
+        this.glyphs = glyphs;
+        g = image.createGraphics();
+        width = image.getWidth();
+        height = image.getHeight();
+        g.setColor(new Color(color));
+        setTextSize(12);
+        setAntiAlias(false);
+        setStrokeWidth(0);
+    }
+
+    public void dispose() {
+        g.dispose();
+    }
+
+    @Override
+    public void save() {
+        saved.push(g.getTransform());
+    }
+
+    @Override
+    public void restore() {
+        g.setTransform(saved.pop());
+    }
+
+    @Override
+    public void concat(float[] t) {
+        transform.setTransform(t[0], t[1], t[2], t[3], t[4], t[5]);
+        g.transform(transform);
+    }
+
+    @Override
+    public void setColor(int argb) {
+        if(argb == color) return;
+        color = argb;
+        g.setColor(new Color(argb, true));
+    }
+
+    @Override
+    public void setStyle(Style s) {
+        style = s;
+    }
+
+    @Override
+    public void setAntiAlias(boolean a) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                a ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                a ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+    }
+
+    @Override
+    public void setStrokeWidth(float w) {
+        hairline = w == 0;
+        g.setStroke(hairline ? HAIRLINE
+                : new BasicStroke(w, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
+    }
+
+    @Override
+    public void setTextSize(float s) {
+        if(s == textSize) return;
+        textSize = s;
+        g.setFont(FONT.deriveFont(s));
+        metrics = g.getFontMetrics();
+    }
+
+    @Override
+    public void paint() {
+        AffineTransform t = g.getTransform();
+        g.setTransform(identity);
+        g.fillRect(0, 0, width, height);
+        g.setTransform(t);
+    }
+
+    /**
+     * Stroke width zero means one pixel regardless of the transform, as on Android
+     */
+    private void draw(Shape s) {
+        if(!hairline) {
+            g.draw(s);
+            return;
+        }
+        AffineTransform t = g.getTransform();
+        g.setTransform(identity);
+        g.draw(t.createTransformedShape(s));
+        g.setTransform(t);
+    }
+
+    @Override
+    public void lines(float[] pts, int offset, int count) {
+        path.reset();
+        for(int i = offset; i + 3 < offset + count; i += 4) {
+            path.moveTo(pts[i], pts[i + 1]);
+            path.lineTo(pts[i + 2], pts[i + 3]);
+        }
+        draw(path);
+    }
+
+    @Override
+    public void polygon(float[] pts, int offset, int count) {
+        path.reset();
+        path.moveTo(pts[offset], pts[offset + 1]);
+        for(int i = offset + 2; i + 1 < offset + count; i += 2) path.lineTo(pts[i], pts[i + 1]);
+        path.closePath();
+        if(style != Style.STROKE) g.fill(path);
+        if(style != Style.FILL) draw(path);
+    }
+
+    @Override
+    public void circle(float x, float y, float r) {
+        ellipse.setFrame(x - r, y - r, 2 * r, 2 * r);
+        if(style != Style.STROKE) g.fill(ellipse);
+        if(style != Style.FILL) draw(ellipse);
+    }
+
+    @Override
+    public void arc(float x, float y, float r, float start, float sweep) {
+        // Java2D angles are counterclockwise on screen
+        arc.setArc(x - r, y - r, 2 * r, 2 * r, -start, -sweep, Arc2D.OPEN);
+        draw(arc);
+    }
+
+    @Override
+    public void text(String s, float x, float y, Align align, Anchor anchor) {
+        if(!glyphs) return;
+        if(align != Align.LEFT) {
+            int w = metrics.stringWidth(s);
+            x -= align == Align.CENTER ? 0.5f * w : w;
+        }
+        if(anchor == Anchor.TOP) y += metrics.getMaxAscent();
+        else if(anchor == Anchor.BOTTOM) y -= metrics.getMaxDescent();
+        g.drawString(s, x, y);
+    }
+}
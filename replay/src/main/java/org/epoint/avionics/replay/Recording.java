@@ -0,0 +1,115 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.log.SensorLog;
+import org.epoint.avionics.log.SensorLog.Channel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sensor log held in memory as flat primitive arrays, to be replayed any number of times
+ * without decoding cost.
+ */
+public class Recording implements SensorLog.Output {
+
+    private static final Channel[] CHANNELS = Channel.values();
+
+    private byte[] channels = new byte[1024];
+    private long[] timestamps = new long[1024];
+    private float[] values = new float[4096];
+    private int size = 0, length = 0;
+
+    /**
+     * Decode a recorded log.
+     * @param log text or packed log file
+     * @return all its records
+     * @throws IOException on read error or malformed record
+     */
+    public static Recording of(File log) throws IOException {
+        Recording r = new Recording();
+        SensorLog.Input in = SensorLog.open(log);
+        try {
+            while(in.next()) r.write(in.channel(), in.timestamp(), in.values());
+        } finally {
+            in.close();
+        }
+        return r;
+    }
+
+    @Override
+    public void write(Channel c, long timestamp, float[] v) {
+        if(size == channels.length) {
+            channels = Arrays.copyOf(channels, 2 * size);
+            timestamps = Arrays.copyOf(timestamps, 2 * size);
+        }
+        if(length + c.size > values.length)
+            values = Arrays.copyOf(values, Math.max(2 * values.length, length + c.size));
+        channels[size] = (byte) c.ordinal();
+        timestamps[size++] = timestamp;
+        System.arraycopy(v, 0, values, length, c.size);
+        length += c.size;
+    }
+
+    /**
+     * @return number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return reader positioned before the first record
+     */
+    public SensorLog.Input input() {
+        return new SensorLog.Input() {
+
+            private final float[][] current = new float[CHANNELS.length][];
+            private int index = -1, offset = 0;
+            private Channel channel;
+
+            {
+                for(Channel c : CHANNELS) current[c.ordinal()] = new float[c.size];
+            }
+
+            @Override
+            public boolean next() {
+                if(index >= 0) offset += channel.size;
+                if(++index >= size) return false;
+                channel = CHANNELS[channels[index]];
+                System.arraycopy(values, offset, current[channel.ordinal()], 0, channel.size);
+                return true;
+            }
+
+            @Override
+            public Channel channel() {
+                return channel;
+            }
+
+            @Override
+            public long timestamp() {
+                return timestamps[index];
+            }
+
+            @Override
+            public float[] values() {
+                return current[channel.ordinal()];
+            }
+
+            @Override
+            public void close() {
+
+            }
+        };
+    }
+
+    @Override
+    public void flush() {
+
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
@@ -0,0 +1,215 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.math.Vec3D;
+import org.epoint.avionics.math.Versor;
+import org.epoint.avionics.render.Altimeter;
+import org.epoint.avionics.render.Compass;
+import org.epoint.avionics.render.DisplayList;
+import org.epoint.avionics.render.Horizon;
+import org.epoint.avionics.render.Inclinometer;
+import org.epoint.avionics.render.Layout;
+import org.epoint.avionics.render.Palette;
+import org.epoint.avionics.render.RenderTarget;
+import org.epoint.avionics.render.Tile;
+import org.epoint.avionics.render.TurnIndicator;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Headless rendering of the instrument panel over a scripted maneuver: rolls, pitch changes,
+ * a full turn, slip and a climb. Every frame is recorded as a display list and played back to
+ * an image; a checksum of each image is printed, for comparing renderings between builds, and
+ * the mean recording and playback times are reported at the end. Compared to golden images,
+ * as written with <code>-o</code>, fails if too many pixels of any frame differ. Antialiasing
+ * varies between platforms, so checksums alone cannot tell a regression; text, which varies
+ * with the fonts, can be left out.
+ */
+public class Render {
+
+    private static final String USAGE = "usage: render [-size WIDTHxHEIGHT] [-frames n]"
+            + " [-notext] [-o directory] [-golden directory [-tolerance fraction]]";
+
+    private static final String HEADER = "frame,operations,crc32";
+
+    /**
+     * Largest difference of a color component from the golden image still considered equal
+     */
+    private static final int DELTA = 48;
+
+    private static final float ALTITUDE_TICK = 50;
+    private static final String ALTITUDE_UNIT = "ft";
+
+    private static final Vec3D X = new Vec3D(1, 0, 0), Y = new Vec3D(0, 1, 0),
+            Z = new Vec3D(0, 0, 1);
+
+    private static Versor rotation(Vec3D axis, double degrees) {
+        return new Versor(axis, Math.toRadians(degrees));
+    }
+
+    /**
+     * Instrument state of a frame of the maneuver
+     */
+    public static class Frame {
+        public final Attitude attitude = new Attitude();
+        public float heading, bearing, slip, rate, altitude;
+
+        /**
+         * @param i frame
+         * @param n frames in the maneuver
+         * @return this frame, set to frame <code>i</code> of <code>n</code>
+         */
+        public Frame set(int i, int n) {
+            double phase = 2 * Math.PI * i / n;
+            rotation(Z, 30 * Math.sin(phase)).mul(rotation(X, 15 * Math.sin(2 * phase)))
+                    .mul(rotation(Y, 360.0 * i / n)).attitude(attitude);
+            heading = (float) attitude.heading();
+            bearing = 45;
+            slip = (float) (0.5 * Math.sin(3 * phase));
+            rate = (float) Math.toRadians(3 * Math.sin(phase));
+            altitude = (float) (1500 + 200 * Math.sin(phase));
+            return this;
+        }
+    }
+
+    /**
+     * Full-detail panel, laid out as on the device.
+     */
+    public static void draw(RenderTarget t, Frame f, float w, float h) {
+        Layout layout = Layout.DEFAULT;
+        for(int i = 0; i < layout.size(); i++) {
+            Tile tile = layout.get(i);
+            float x = tile.x * w, y = tile.y * h, s = tile.size * h;
+            if(tile.instrument != Tile.Instrument.HORIZON) Palette.scale(t);
+            switch(tile.instrument) {
+                case HORIZON:
+                    Horizon.draw(t, f.attitude, 0, w, 0, h, y, tile.size * w, Horizon.PITCH_FOV,
+                            true);
+                    break;
+                case COMPASS:
+                    Compass.draw(t, f.bearing, f.heading, x, y, s, 1);
+                    break;
+                case ALTIMETER:
+                    Altimeter.draw(t, f.altitude, ALTITUDE_TICK, ALTITUDE_UNIT, x, y, s);
+                    break;
+                case TURN_INDICATOR:
+                    TurnIndicator.draw(t, f.rate, x, y, s);
+                    break;
+                case INCLINOMETER:
+                    Inclinometer.draw(t, f.slip, x, y, s);
+                    break;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int width = 720, height = 1280, frames = 360;
+        double tolerance = 0.0002;
+        boolean text = true;
+        File directory = null, golden = null;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if("-size".equals(args[i])) {
+                    String[] s = args[++i].split("x");
+                    width = Integer.parseInt(s[0]);
+                    height = Integer.parseInt(s[1]);
+                } else if("-frames".equals(args[i])) frames = Integer.parseInt(args[++i]);
+                else if("-notext".equals(args[i])) text = false;
+                else if("-o".equals(args[i])) directory = new File(args[++i]);
+                else if("-golden".equals(args[i])) golden = new File(args[++i]);
+                else if("-tolerance".equals(args[i]))
+                    tolerance = Double.parseDouble(args[++i]);
+                else throw new IllegalArgumentException(args[i]);
+            }
+        } catch (RuntimeException e) {
+            // missing option argument, unparseable number or unknown option
+            frames = 0;
+        }
+        if(width < 1 || height < 1 || frames < 1 || !(tolerance >= 0)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Cannot create " + directory);
+            System.exit(1);
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Graphics2DTarget target = new Graphics2DTarget(image, text);
+        DisplayList list = new DisplayList();
+        Frame frame = new Frame();
+        CRC32 crc = new CRC32();
+        long record = 0, play = 0;
+        int regressions = 0;
+        System.out.println(HEADER);
+        for(int i = 0; i < frames; i++) {
+            frame.set(i, frames);
+            long t0 = System.nanoTime();
+            list.clear();
+            draw(list, frame, width, height);
+            long t1 = System.nanoTime();
+            list.play(target);
+            long t2 = System.nanoTime();
+            record += t1 - t0;
+            play += t2 - t1;
+            crc.reset();
+            for(int p : pixels) {
+                crc.update(p >>> 24);
+                crc.update(p >>> 16);
+                crc.update(p >>> 8);
+                crc.update(p);
+            }
+            System.out.println(i + "," + list.size() + "," + Long.toHexString(crc.getValue()));
+            if(directory != null)
+                ImageIO.write(image, "png", new File(directory, String.format("%05d.png", i)));
+            if(golden != null) {
+                File f = new File(golden, String.format("%05d.png", i));
+                double d = differing(pixels, width, height, f);
+                if(d > tolerance) {
+                    System.err.println(String.format("%s: %.2f%% of the pixels differ", f,
+                            100 * d));
+                    regressions++;
+                }
+            }
+        }
+        target.dispose();
+        System.err.println(String.format("%d frames %dx%d: record %.1f us, play %.1f us",
+                frames, width, height, 1e-3 * record / frames, 1e-3 * play / frames));
+        if(regressions > 0) {
+            System.err.println(regressions + " frames differ from the golden images");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param pixels ARGB, row by row
+     * @param golden image of the same size
+     * @return fraction of the pixels with any color component differing by more than
+     * {@link #DELTA}, 1 if the golden image is missing or of another size
+     */
+    private static double differing(int[] pixels, int width, int height, File golden)
+            throws IOException {
+        BufferedImage g = golden.isFile() ? ImageIO.read(golden) : null;
+        if(g == null || g.getWidth() != width || g.getHeight() != height) return 1;
+        int[] expected = g.getRGB(0, 0, width, height, null, 0, width);
+        int n = 0;
+        for(int i = 0; i < pixels.length; i++) {
+            int p = pixels[i], e = expected[i];
+            for(int shift = 0; shift < 32; shift += 8) {
+                if(Math.abs((p >>> shift & 0xff) - (e >>> shift & 0xff)) > DELTA) {
+                    n++;
+                    break;
+                }
+            }
+        }
+        return (double) n / pixels.length;
+    }
+}
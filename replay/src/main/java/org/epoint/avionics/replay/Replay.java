@@ -0,0 +1,111 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.Tuning;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch replay of recorded flights. Each log is an independent task on a fixed pool of worker
+ * threads; the bounded queue makes the submitting thread help out instead of queueing
+ * every flight up front.
+ */
+public class Replay {
+
+    private static final String USAGE = "usage: replay [-j threads] [-o directory] [-p period_ms]"
+            + " [-precision GENERIC|DOUBLE|FLOAT] [-format CSV|COLUMNAR]"
+            + " [-from seconds [-warmup seconds]] [-checkpoints seconds] log...";
+
+    private static final String SUMMARY = "summary.csv";
+
+    public static void main(String[] args) throws InterruptedException, FileNotFoundException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        File directory = null;
+        long period = 20000000;
+        Inertial.Precision precision = Inertial.Precision.DOUBLE;
+        Flight.Format format = Flight.Format.CSV;
+        double from = 0, warmup = 10, checkpoints = 0;
+        List<File> logs = new ArrayList<File>();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if("-j".equals(args[i])) threads = Integer.parseInt(args[++i]);
+                else if("-o".equals(args[i])) directory = new File(args[++i]);
+                else if("-p".equals(args[i])) period = Long.parseLong(args[++i]) * 1000000;
+                else if("-precision".equals(args[i]))
+                    precision = Inertial.Precision.valueOf(args[++i]);
+                else if("-format".equals(args[i])) format = Flight.Format.valueOf(args[++i]);
+                else if("-from".equals(args[i])) from = Double.parseDouble(args[++i]);
+                else if("-warmup".equals(args[i])) warmup = Double.parseDouble(args[++i]);
+                else if("-checkpoints".equals(args[i]))
+                    checkpoints = Double.parseDouble(args[++i]);
+                else if(args[i].startsWith("-")) throw new IllegalArgumentException(args[i]);
+                else logs.add(new File(args[i]));
+            }
+        } catch (RuntimeException e) {
+            // missing option argument, unparseable number or unknown name
+            logs.clear();
+        }
+        if(logs.isEmpty() || threads < 1 || period < 0 || !(from >= 0) || !(warmup >= 0)
+                || !(checkpoints >= 0)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Cannot create " + directory);
+            System.exit(1);
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        long start = System.nanoTime();
+        List<Future<Summary>> flights = new ArrayList<Future<Summary>>(logs.size());
+        for(File log : logs) {
+            File output = directory == null ? null : new File(directory, fused(log, format));
+            flights.add(pool.submit(new Flight(log, output, format, period, precision,
+                    Tuning.DEFAULT).setWindow((long) (from * 1e9), (long) (warmup * 1e9))
+                    .setCheckpoints((long) (checkpoints * 1e9))));
+        }
+        pool.shutdown();
+
+        PrintStream summary = directory == null ? null
+                : new PrintStream(new File(directory, SUMMARY));
+        System.out.println(Summary.HEADER);
+        if(summary != null) summary.println(Summary.HEADER);
+        long records = 0, cpuTime = 0;
+        int failed = 0;
+        for(int i = 0; i < flights.size(); i++) {
+            try {
+                Summary s = flights.get(i).get();
+                records += s.records();
+                cpuTime += s.cpuTime;
+                System.out.println(s);
+                if(summary != null) summary.println(s);
+            } catch (ExecutionException e) {
+                failed++;
+                System.err.println(logs.get(i) + ": " + e.getCause());
+            }
+        }
+        if(summary != null) summary.close();
+        double wall = 1e-9 * (System.nanoTime() - start);
+        System.err.printf("%d flights (%d failed), %d records in %.3f s on %d threads:"
+                        + " %.0f records/s, %.3f s processor time%n",
+                logs.size(), failed, records, wall, threads, records / wall, 1e-9 * cpuTime);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static String fused(File log, Flight.Format format) {
+        String name = log.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + format.suffix;
+    }
+}
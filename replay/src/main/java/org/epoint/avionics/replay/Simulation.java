@@ -0,0 +1,627 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.log.PackedLog;
+import org.epoint.avionics.log.SensorLog;
+import org.epoint.avionics.log.SensorLog.Channel;
+import org.epoint.avionics.math.Attitude;
+import org.epoint.avionics.math.Vec3D;
+import org.epoint.avionics.math.Versor;
+import org.epoint.avionics.render.Layout;
+import org.epoint.avionics.render.Schedule;
+import org.epoint.avionics.render.Tile;
+import org.epoint.avionics.sensor.Barometric;
+import org.epoint.avionics.sensor.Handoff;
+import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.Predictor;
+import org.epoint.avionics.sensor.SampleListener;
+import org.epoint.avionics.sensor.Tuning;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event simulation of a flight: sensor samples synthesized from a {@link Trajectory}
+ * with noise, bias and timing jitter drive a fresh estimator and the render {@link Schedule}
+ * in virtual time, as fast as the processor allows. Estimates are compared to the true path;
+ * the synthesized records can be saved as a {@link PackedLog} for {@link Replay} and
+ * {@link Sweep}. Runs on the calling thread, or, as on a device, estimates on a fusion
+ * executor fed through {@link Handoff}s while the calling thread only synthesizes samples.
+ * <p>
+ * The geomagnetic field has no declination, so magnetic and true headings coincide.
+ */
+public class Simulation implements Callable<Summary>, Inertial.Listener, Barometric.Listener {
+
+    private static final String USAGE = "usage: simulate [-script name|legs] [-seed n]"
+            + " [-precision GENERIC|DOUBLE|FLOAT] [-noise scale] [-turbulence scale]"
+            + " [-fps n] [-fusion] [-o log]";
+
+    /**
+     * Nominal sampling periods by {@link Channel} in nanoseconds; the field is sent once
+     */
+    private static final long[] PERIOD = {10000000, 20000000, 5000000, 40000000, 0,
+            1000000000, 100000000};
+    /**
+     * Sampling period jitter, as a fraction of the period
+     */
+    private static final double JITTER = 0.1;
+    /**
+     * Virtual time of the first sample in nanoseconds; zero timestamps mean none to estimators
+     */
+    private static final long EPOCH = 1000000000;
+
+    /**
+     * Geomagnetic field north, east and down in microtesla, and declination in degrees
+     */
+    private static final float[] FIELD = {20, 0, 45, 0};
+
+    /**
+     * Noise standard deviation and per-axis bias at unit noise scale: gyroscope in radians per
+     * second, accelerometer in meters per second squared, magnetometer in microtesla
+     */
+    private static final double GYROSCOPE_NOISE = 0.005, ACCELEROMETER_NOISE = 0.05,
+            MAGNETOMETER_NOISE = 0.4;
+    private static final double[] GYROSCOPE_BIAS = {0.004, -0.003, 0.002},
+            ACCELEROMETER_BIAS = {0.03, -0.02, 0.02}, MAGNETOMETER_BIAS = {0.5, -0.3, 0.4};
+    /**
+     * Pressure noise in hectopascal, ground speed noise in meters per second and track noise
+     * in degrees, at unit noise scale
+     */
+    private static final double PRESSURE_NOISE = 0.02, SPEED_NOISE = 0.3, TRACK_NOISE = 1;
+
+    /**
+     * Atmosphere of {@link Barometric}: scale height in meters and sea-level pressure in
+     * hectopascal
+     */
+    private static final double SCALE_HEIGHT = 8400, QNE = 1013.25;
+
+    private static final double CRUISE = 50, ELEVATION = 100;
+
+    /**
+     * Samples queued for the fusion executor before the calling thread waits
+     */
+    private static final int BACKLOG = 256;
+
+    /**
+     * Runs tasks on the calling thread
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable r) {
+            r.run();
+        }
+    };
+
+    private final String name;
+    private final String script;
+    private final long seed;
+    private final double noise, turbulence;
+    private final long framePeriod;
+    private final Inertial.Precision precision;
+    private final Tuning tuning;
+    private SensorLog.Output log;
+    private Executor fusion = null;
+
+    private Summary summary;
+    /**
+     * Latest estimated aircraft to world versor coordinates, valid if <code>oriented</code>
+     */
+    private final double[] orientation = new double[4];
+    private boolean oriented;
+    private float altitude;
+    private long now;
+    private final Predictor predictor = new Predictor();
+    private final Attitude attitude = new Attitude(), truth = new Attitude();
+
+    /**
+     * Displayed horizon, extrapolated and as estimated, at the time of the next frame
+     */
+    private final Attitude predicted = new Attitude(), estimated = new Attitude();
+    private double predictedError2 = 0, estimatedError2 = 0;
+    private long frames = 0;
+    private final long[] updates = new long[Layout.DEFAULT.size()];
+    /**
+     * Processor time of the calling and the fusion thread in nanoseconds
+     */
+    private long callerTime, fusionTime;
+
+    /**
+     * @param name flight name in the summary
+     * @param script trajectory legs, see {@link Trajectory}
+     * @param seed seed of turbulence, noise and jitter
+     * @param noise scale of sensor noise and bias, 0 for ideal sensors
+     * @param turbulence turbulence intensity, 0 for calm air
+     * @param fps display frame rate
+     * @param precision arithmetic for gyroscope integration
+     * @param tuning estimator constants
+     */
+    public Simulation(String name, String script, long seed, double noise, double turbulence,
+                      int fps, Inertial.Precision precision, Tuning tuning) {
+        this.name = name;
+        this.script = script;
+        this.seed = seed;
+        this.noise = noise;
+        this.turbulence = turbulence;
+        framePeriod = 1000000000L / fps;
+        this.precision = precision;
+        this.tuning = tuning;
+    }
+
+    /**
+     * Save the synthesized records, including ground truth.
+     * @param o sensor log, not closed
+     * @return this
+     */
+    public Simulation setLog(SensorLog.Output o) {
+        log = o;
+        return this;
+    }
+
+    /**
+     * Estimate on a serial executor, as the fusion thread of a device, instead of the calling
+     * thread. Results do not depend on the executor.
+     * @param e serial executor, <code>null</code> for the calling thread
+     * @return this
+     * @see #fusionExecutor
+     */
+    public Simulation setExecutor(Executor e) {
+        fusion = e;
+        return this;
+    }
+
+    /**
+     * @return single high-priority thread running tasks in order, making the submitting thread
+     * wait while {@link #BACKLOG} tasks are queued, as sensor events arrive no faster than
+     * consumed on a device
+     */
+    public static ThreadPoolExecutor fusionExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(BACKLOG), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Fusion");
+                t.setPriority(Thread.MAX_PRIORITY);
+                t.setDaemon(true);
+                return t;
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+                if(e.isShutdown()) throw new RejectedExecutionException("Shut down");
+                try {
+                    e.getQueue().put(r);
+                } catch (InterruptedException x) {
+                    throw new RejectedExecutionException(x);
+                }
+            }
+        });
+    }
+
+    /**
+     * Estimator input of a channel, run on the fusion executor
+     */
+    private SampleListener consumer(final Channel channel, final Inertial inertial,
+                                    final Barometric barometric) {
+        return new SampleListener() {
+            @Override
+            public void onSample(long t, float[] v) {
+                now = t;
+                switch(channel) {
+                    case ACCELEROMETER: inertial.accelerometer.onSample(t, v); break;
+                    case MAGNETOMETER: inertial.magnetometer.onSample(t, v); break;
+                    case GYROSCOPE: inertial.gyroscope.onSample(t, v); break;
+                    case PRESSURE: barometric.onSample(t, v); break;
+                    case FIELD: inertial.setMagneticField(v[0], v[1], v[2], v[3]); break;
+                    case TRACK: inertial.setTrack(t, v[0], v[1]); break;
+                    case REFERENCE: compare(v); break;
+                }
+                summary.record(channel, t);
+            }
+        };
+    }
+
+    /**
+     * Display frames, with the true versor coordinates, run on the fusion executor
+     */
+    private SampleListener display(final Schedule schedule) {
+        return new SampleListener() {
+            @Override
+            public void onSample(long t, float[] v) {
+                now = t;
+                frame(schedule, v);
+            }
+        };
+    }
+
+    /**
+     * Processor time of the current thread, wall time if not supported
+     */
+    private static long time(ThreadMXBean threads) {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime()
+                : System.nanoTime();
+    }
+
+    /**
+     * Run a task on the executor and wait for it, and for all submitted before it.
+     */
+    private static void await(Executor e, final Runnable r) throws IOException {
+        final CountDownLatch done = new CountDownLatch(1);
+        e.execute(new Runnable() {
+            @Override
+            public void run() {
+                r.run();
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException x) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public Summary call() throws IOException {
+        summary = new Summary(name);
+        oriented = false;
+        altitude = Float.NaN;
+        frames = 0;
+        Random random = new Random(seed);
+        Trajectory path = new Trajectory(script, CRUISE, ELEVATION, turbulence,
+                new Random(~seed));
+        Inertial inertial = new Inertial(this, precision, tuning);
+        Barometric barometric = new Barometric(this, tuning);
+        Channel[] channels = Channel.values();
+        Executor executor = fusion == null ? DIRECT : fusion;
+        Handoff[] handoffs = new Handoff[channels.length];
+        float[][] values = new float[channels.length][];
+        for(Channel c : channels) {
+            values[c.ordinal()] = new float[c.size];
+            handoffs[c.ordinal()] = new Handoff(consumer(c, inertial, barometric), executor,
+                    c.size);
+        }
+        Handoff display = new Handoff(display(new Schedule(Layout.DEFAULT)), executor, 4);
+        float[] truth = new float[4];
+        long[] next = new long[channels.length];
+        Arrays.fill(next, EPOCH);
+        long nextFrame = EPOCH, end = EPOCH + path.duration();
+        Versor last = null;
+        long lastGyroscope = 0;
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long[] fusionStart = {0};
+        if(fusion != null) {
+            await(fusion, new Runnable() {
+                @Override
+                public void run() {
+                    fusionStart[0] = time(threads);
+                }
+            });
+        }
+        long start = time(threads);
+        while(true) {
+            int c = -1;
+            long t = nextFrame;
+            for(int i = 0; i < next.length; i++) {
+                if(next[i] - t < 0) {
+                    t = next[i];
+                    c = i;
+                }
+            }
+            if(t > end) break;
+            path.advance(t - EPOCH);
+            if(c < 0) {
+                Versor q = path.orientation();
+                for(int i = 0; i < 4; i++) truth[i] = (float) q.v(i);
+                display.onSample(t, truth);
+                nextFrame += framePeriod;
+                continue;
+            }
+            Channel channel = channels[c];
+            float[] v = values[c];
+            next[c] = PERIOD[c] == 0 ? Long.MAX_VALUE
+                    : t + (long) (PERIOD[c] * (1 + JITTER * (2 * random.nextDouble() - 1)));
+            Versor q = path.orientation();
+            switch(channel) {
+                case ACCELEROMETER:
+                    sense(v, q, path.specificForce(), ACCELEROMETER_NOISE, ACCELEROMETER_BIAS,
+                            random);
+                    break;
+                case MAGNETOMETER:
+                    sense(v, q, new Vec3D(FIELD[1], -FIELD[2], -FIELD[0]), MAGNETOMETER_NOISE,
+                            MAGNETOMETER_BIAS, random);
+                    break;
+                case GYROSCOPE:
+                    if(last == null) rate(v, q, q, 1);
+                    else rate(v, q, last, 1e-9 * (t - lastGyroscope));
+                    for(int i = 0; i < 3; i++)
+                        v[i] += (float) (noise * (GYROSCOPE_BIAS[i]
+                                + GYROSCOPE_NOISE * random.nextGaussian()));
+                    last = q;
+                    lastGyroscope = t;
+                    break;
+                case PRESSURE:
+                    v[0] = (float) (QNE * Math.exp(-path.altitude() / SCALE_HEIGHT)
+                            + noise * PRESSURE_NOISE * random.nextGaussian());
+                    break;
+                case FIELD:
+                    System.arraycopy(FIELD, 0, v, 0, v.length);
+                    break;
+                case TRACK:
+                    v[0] = (float) Math.abs(path.speed()
+                            + noise * SPEED_NOISE * random.nextGaussian());
+                    v[1] = (float) ((path.track() + noise * TRACK_NOISE * random.nextGaussian()
+                            + 360) % 360);
+                    break;
+                case REFERENCE:
+                    for(int i = 0; i < 4; i++) v[i] = (float) q.v(i);
+                    v[4] = (float) path.altitude();
+                    break;
+            }
+            handoffs[c].onSample(t, v);
+            if(log != null) log.write(channel, t, v);
+        }
+        callerTime = time(threads) - start;
+        fusionTime = 0;
+        if(fusion != null) {
+            await(fusion, new Runnable() {
+                @Override
+                public void run() {
+                    fusionTime = time(threads) - fusionStart[0];
+                }
+            });
+        }
+        summary.cpuTime = callerTime + fusionTime;
+        return summary;
+    }
+
+    /**
+     * Sensor reading of a world vector: in device coordinates, with bias and noise.
+     */
+    private void sense(float[] v, Versor deviceToWorld, Vec3D world, double sigma, double[] bias,
+                       Random random) {
+        Vec3D d = deviceToWorld.rot(world);
+        for(int i = 0; i < 3; i++)
+            v[i] = (float) (d.v(i) + noise * (bias[i] + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * Mean angular velocity between two orientations, in the sense integrated by
+     * {@link Inertial}: <code>to = new Versor(w, -dt).mul(from)</code>.
+     */
+    private static void rate(float[] w, Versor to, Versor from, double dt) {
+        Versor d = to.mul(from.inv());
+        double r = d.r(), sinHalf = d.i().abs();
+        double s = sinHalf == 0 ? 0 : -2 * Math.atan2(sinHalf, Math.abs(r)) / sinHalf / dt;
+        if(r < 0) s = -s;
+        for(int i = 0; i < 3; i++) w[i] = (float) (d.v(i + 1) * s);
+    }
+
+    /**
+     * A display frame: score the horizon shown since the previous frame, then sample the tiles
+     * due, extrapolating the horizon to the next frame.
+     */
+    private void frame(Schedule schedule, float[] q) {
+        Versor.attitude(q[0], q[1], q[2], q[3], truth);
+        if(frames++ > 0 && oriented) {
+            predictedError2 += square(horizonError(predicted, truth));
+            estimatedError2 += square(horizonError(estimated, truth));
+        }
+        for(int i = 0; i < updates.length; i++) {
+            if(!schedule.due(i, now)) continue;
+            updates[i]++;
+            if(Layout.DEFAULT.get(i).instrument == Tile.Instrument.HORIZON) {
+                predictor.predict(predicted, now + framePeriod);
+                if(oriented) estimate(estimated);
+            }
+        }
+    }
+
+    private static double square(double x) {
+        return x * x;
+    }
+
+    /**
+     * @return angle between the up directions of two attitudes in radians
+     */
+    private static double horizonError(Attitude a, Attitude b) {
+        double dot = a.upX() * b.upX() + a.upY() * b.upY() + a.upZ() * b.upZ();
+        return Math.acos(Math.max(-1, Math.min(1, dot)));
+    }
+
+    private Attitude estimate(Attitude a) {
+        return Versor.attitude(orientation[0], orientation[1], orientation[2], orientation[3], a);
+    }
+
+    /**
+     * @param reference true versor coordinates and altitude
+     */
+    private void compare(float[] reference) {
+        if(oriented) {
+            double dot = 0;
+            for(int i = 0; i < 4; i++) dot += orientation[i] * reference[i];
+            summary.attitudeError(2 * Math.acos(Math.min(1, Math.abs(dot))));
+            double e = estimate(attitude).heading() - Versor.attitude(reference[0], reference[1],
+                    reference[2], reference[3], truth).heading();
+            summary.headingError(Math.toRadians(e - 360 * Math.floor(e / 360 + 0.5)));
+        }
+        if(!Float.isNaN(altitude) && !Float.isInfinite(altitude))
+            summary.altitudeError(altitude - reference[4]);
+    }
+
+    /**
+     * @return root mean square error of the displayed horizon in degrees, with and without
+     * extrapolation to the time it is seen
+     */
+    public double[] horizonError() {
+        long n = Math.max(1, frames - 1);
+        return new double[]{Math.toDegrees(Math.sqrt(predictedError2 / n)),
+                Math.toDegrees(Math.sqrt(estimatedError2 / n))};
+    }
+
+    /**
+     * @return display frames simulated
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return updates per tile of {@link Layout#DEFAULT}
+     */
+    public long[] getUpdates() {
+        return updates.clone();
+    }
+
+    /**
+     * @return processor time of the calling thread in nanoseconds: synthesis, and estimation
+     * unless on an executor
+     */
+    public long getCallerTime() {
+        return callerTime;
+    }
+
+    /**
+     * @return processor time of the fusion executor in nanoseconds, 0 if none
+     */
+    public long getFusionTime() {
+        return fusionTime;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String script = Trajectory.CIRCUIT, name = "circuit";
+        long seed = 1;
+        double noise = 1, turbulence = 1;
+        int fps = 60;
+        Inertial.Precision precision = Inertial.Precision.DOUBLE;
+        File output = null;
+        boolean threaded = false;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if("-script".equals(args[i])) {
+                    name = args[++i];
+                    script = Trajectory.script(name);
+                    if(script == null) script = name;
+                }
+                else if("-seed".equals(args[i])) seed = Long.parseLong(args[++i]);
+                else if("-precision".equals(args[i]))
+                    precision = Inertial.Precision.valueOf(args[++i]);
+                else if("-noise".equals(args[i])) noise = Double.parseDouble(args[++i]);
+                else if("-turbulence".equals(args[i]))
+                    turbulence = Double.parseDouble(args[++i]);
+                else if("-fps".equals(args[i])) fps = Integer.parseInt(args[++i]);
+                else if("-fusion".equals(args[i])) threaded = true;
+                else if("-o".equals(args[i])) output = new File(args[++i]);
+                else throw new IllegalArgumentException(args[i]);
+            }
+            new Trajectory(script, CRUISE, ELEVATION, 0, null);
+        } catch (RuntimeException e) {
+            // missing option argument, unparseable number, unknown name or malformed script
+            System.err.println(e.getMessage());
+            fps = 0;
+        }
+        if(fps < 1 || !(noise >= 0) || !(turbulence >= 0)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Simulation s = new Simulation(name, script, seed, noise, turbulence, fps, precision,
+                Tuning.DEFAULT);
+        ThreadPoolExecutor fusion = threaded ? fusionExecutor() : null;
+        PackedLog.Writer log = output == null ? null
+                : new PackedLog.Writer(new BufferedOutputStream(new FileOutputStream(output)));
+        Summary summary;
+        try {
+            summary = s.setLog(log).setExecutor(fusion).call();
+        } finally {
+            if(log != null) log.close();
+            if(fusion != null) fusion.shutdown();
+        }
+        System.out.println(Summary.HEADER);
+        System.out.println(summary);
+
+        double cpu = 1e-9 * summary.cpuTime;
+        System.err.printf("%d records in %.3f s of processor time: %.0f ns per record,"
+                        + " %.0f times real time%n", summary.records(), cpu,
+                1e9 * cpu / summary.records(), summary.duration() / cpu);
+        if(fusion != null)
+            System.err.printf("calling thread %.3f s, fusion thread %.3f s: %.3f%% of a core"
+                            + " in flight%n", 1e-9 * s.getCallerTime(), 1e-9 * s.getFusionTime(),
+                    1e-7 * s.getFusionTime() / summary.duration());
+        double[] horizon = s.horizonError();
+        System.err.printf("%d frames: horizon error %.3f deg extrapolated, %.3f deg as"
+                + " estimated%n", s.getFrames(), horizon[0], horizon[1]);
+        long[] updates = s.getUpdates();
+        StringBuilder b = new StringBuilder("tile updates per second:");
+        for(int i = 0; i < updates.length; i++)
+            b.append(String.format(" %s %.1f", Layout.DEFAULT.get(i).instrument,
+                    updates[i] / summary.duration()));
+        System.err.println(b);
+    }
+
+    @Override
+    public void setDebug(String debug) {
+
+    }
+
+    @Override
+    public void setOrientation(double r, double i, double j, double k) {
+        orientation[0] = r;
+        orientation[1] = i;
+        orientation[2] = j;
+        orientation[3] = k;
+        oriented = true;
+        predictor.setOrientation(r, i, j, k, now);
+    }
+
+    @Override
+    public void setAngularRate(float x, float y, float z) {
+        predictor.setAngularRate(x, y, z);
+    }
+
+    @Override
+    public void setBearing(float b) {
+
+    }
+
+    @Override
+    public void setDeclination(float d) {
+
+    }
+
+    @Override
+    public void setSlip(float s) {
+        summary.slip(s);
+    }
+
+    @Override
+    public void setRateOfTurn(float r) {
+        summary.rateOfTurn(r);
+    }
+
+    @Override
+    public void setAltitude(float a) {
+        altitude = a;
+        summary.altitude(a);
+    }
+
+    @Override
+    public void setVerticalSpeed(float v) {
+        summary.verticalSpeed(v);
+    }
+}
@@ -0,0 +1,178 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.log.SensorLog.Channel;
+
+/**
+ * Summary statistics of a replayed flight
+ */
+public class Summary {
+
+    public static final String HEADER = "flight,records,accelerometer,magnetometer,gyroscope,"
+            + "pressure,field,track,reference,duration_s,cpu_ms,max_rate_of_turn_dps,"
+            + "max_slip_mps2,min_altitude_m,max_altitude_m,max_vertical_speed_mps,"
+            + "rms_attitude_error_deg,rms_heading_error_deg,rms_altitude_error_m";
+
+    public final String flight;
+    /**
+     * Number of records per channel
+     */
+    public final long[] records = new long[Channel.values().length];
+    private long count = 0;
+    /**
+     * First and last timestamp in nanoseconds
+     */
+    public long firstTimestamp = 0, lastTimestamp = 0;
+    /**
+     * Processor time spent on the flight in nanoseconds
+     */
+    public long cpuTime = 0;
+    /**
+     * Maximal absolute rate of turn in radians per second
+     */
+    public float maxRateOfTurn = 0;
+    /**
+     * Maximal absolute lateral acceleration in meters per second squared
+     */
+    public float maxSlip = 0;
+    /**
+     * Altitude range in meters
+     */
+    public float minAltitude = Float.NaN, maxAltitude = Float.NaN;
+    /**
+     * Maximal absolute vertical speed in meters per second
+     */
+    public float maxVerticalSpeed = 0;
+    /**
+     * Sums of squared errors versus ground truth, in radians squared and meters squared
+     */
+    private double attitudeError2 = 0, headingError2 = 0, altitudeError2 = 0;
+    private long attitudeErrors = 0, headingErrors = 0, altitudeErrors = 0;
+
+    public Summary(String f) {
+        flight = f;
+    }
+
+    public long records() {
+        return count;
+    }
+
+    /**
+     * @return recorded time in seconds
+     */
+    public double duration() {
+        return 1e-9 * (lastTimestamp - firstTimestamp);
+    }
+
+    /**
+     * @return root mean square attitude error in degrees, <code>NaN</code> without ground truth
+     */
+    public double attitudeError() {
+        return Math.toDegrees(Math.sqrt(attitudeError2 / attitudeErrors));
+    }
+
+    /**
+     * @return root mean square heading error in degrees, <code>NaN</code> without ground truth
+     */
+    public double headingError() {
+        return Math.toDegrees(Math.sqrt(headingError2 / headingErrors));
+    }
+
+    /**
+     * @return root mean square altitude error in meters, <code>NaN</code> without ground truth
+     */
+    public double altitudeError() {
+        return Math.sqrt(altitudeError2 / altitudeErrors);
+    }
+
+    /**
+     * Pool the statistics of another flight into this one.
+     * @param o other summary
+     * @return this
+     */
+    public Summary merge(Summary o) {
+        for(int i = 0; i < records.length; i++) records[i] += o.records[i];
+        count += o.count;
+        cpuTime += o.cpuTime;
+        maxRateOfTurn = Math.max(maxRateOfTurn, o.maxRateOfTurn);
+        maxSlip = Math.max(maxSlip, o.maxSlip);
+        maxVerticalSpeed = Math.max(maxVerticalSpeed, o.maxVerticalSpeed);
+        if(!Float.isNaN(o.minAltitude)) altitude(o.minAltitude);
+        if(!Float.isNaN(o.maxAltitude)) altitude(o.maxAltitude);
+        attitudeError2 += o.attitudeError2;
+        attitudeErrors += o.attitudeErrors;
+        headingError2 += o.headingError2;
+        headingErrors += o.headingErrors;
+        altitudeError2 += o.altitudeError2;
+        altitudeErrors += o.altitudeErrors;
+        return this;
+    }
+
+    void record(Channel c, long timestamp) {
+        if(count++ == 0) firstTimestamp = timestamp;
+        lastTimestamp = timestamp;
+        records[c.ordinal()]++;
+    }
+
+    void rateOfTurn(float r) {
+        maxRateOfTurn = Math.max(maxRateOfTurn, Math.abs(r));
+    }
+
+    void slip(float s) {
+        maxSlip = Math.max(maxSlip, Math.abs(s));
+    }
+
+    void altitude(float a) {
+        if(Float.isInfinite(a) || Float.isNaN(a)) return;
+        if(!(a >= minAltitude)) minAltitude = a;
+        if(!(a <= maxAltitude)) maxAltitude = a;
+    }
+
+    /**
+     * @param e attitude error in radians
+     */
+    void attitudeError(double e) {
+        attitudeError2 += e * e;
+        attitudeErrors++;
+    }
+
+    /**
+     * @param e heading error in radians
+     */
+    void headingError(double e) {
+        headingError2 += e * e;
+        headingErrors++;
+    }
+
+    /**
+     * @param e altitude error in meters
+     */
+    void altitudeError(double e) {
+        altitudeError2 += e * e;
+        altitudeErrors++;
+    }
+
+    void verticalSpeed(float v) {
+        if(Float.isInfinite(v)) return;
+        maxVerticalSpeed = Math.max(maxVerticalSpeed, Math.abs(v));
+    }
+
+    /**
+     * @return CSV row matching {@link #HEADER}
+     */
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(flight).append(',').append(records());
+        for(long r : records) b.append(',').append(r);
+        return b.append(',').append((float) duration())
+                .append(',').append(cpuTime / 1000000)
+                .append(',').append((float) Math.toDegrees(maxRateOfTurn))
+                .append(',').append(maxSlip)
+                .append(',').append(minAltitude)
+                .append(',').append(maxAltitude)
+                .append(',').append(maxVerticalSpeed)
+                .append(',').append((float) attitudeError())
+                .append(',').append((float) headingError())
+                .append(',').append((float) altitudeError())
+                .toString();
+    }
+}
@@ -0,0 +1,208 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.sensor.Inertial;
+import org.epoint.avionics.sensor.Tuning;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parameter sweep over a grid of {@link Tuning} constants. Each log is decoded once into a
+ * {@link Recording}, then every configuration is replayed over every recording; the
+ * (configuration, log) pairs are split recursively on a fork-join pool and the results are
+ * pooled per configuration.
+ */
+public class Sweep {
+
+    private static final String USAGE = "usage: sweep [-j threads] [-o file]"
+            + " [-precision GENERIC|DOUBLE|FLOAT] [-g name=value,value...]... log...";
+
+    private static final String HEADER = "records,cpu_ms,ns_per_record,rms_attitude_error_deg,"
+            + "rms_altitude_error_m";
+
+    /**
+     * Replays of the pairs with indices from <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive); pair <code>n</code> is configuration <code>n / logs.length</code> over log
+     * <code>n % logs.length</code>. Each pair writes only its own result or error slot; pairs
+     * of logs that could not be decoded are skipped.
+     */
+    private static class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Tuning[] tunings;
+        private final File[] logs;
+        private final Recording[] recordings;
+        private final Inertial.Precision precision;
+        private final Summary[][] results;
+        private final Exception[][] errors;
+        private final int from, to;
+
+        Task(Tuning[] t, File[] l, Recording[] d, Inertial.Precision p, Summary[][] r,
+             Exception[][] e, int f, int n) {
+            tunings = t;
+            logs = l;
+            recordings = d;
+            precision = p;
+            results = r;
+            errors = e;
+            from = f;
+            to = n;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new Task(tunings, logs, recordings, precision, results, errors, from, mid),
+                        new Task(tunings, logs, recordings, precision, results, errors, mid, to));
+                return;
+            }
+            int c = from / logs.length, l = from % logs.length;
+            if(recordings[l] == null) return;
+            try {
+                results[c][l] = new Flight(logs[l].getName(), recordings[l].input(), precision,
+                        tunings[c]).call();
+            } catch (IOException | RuntimeException e) {
+                // a configuration the estimator cannot run with
+                errors[c][l] = e;
+            }
+        }
+    }
+
+    /**
+     * Decoding of the logs with indices from <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive). A log that cannot be decoded fails every configuration over it.
+     */
+    private static class Decode extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final File[] logs;
+        private final Recording[] recordings;
+        private final Exception[][] errors;
+        private final int from, to;
+
+        Decode(File[] l, Recording[] d, Exception[][] e, int f, int n) {
+            logs = l;
+            recordings = d;
+            errors = e;
+            from = f;
+            to = n;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Decode(logs, recordings, errors, from, mid),
+                        new Decode(logs, recordings, errors, mid, to));
+                return;
+            }
+            try {
+                recordings[from] = Recording.of(logs[from]);
+            } catch (IOException e) {
+                for(Exception[] c : errors) c[from] = e;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        PrintStream out = System.out;
+        Inertial.Precision precision = Inertial.Precision.DOUBLE;
+        List<String> names = new ArrayList<String>();
+        List<Tuning> grid = new ArrayList<Tuning>();
+        grid.add(Tuning.DEFAULT);
+        List<File> logs = new ArrayList<File>();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if("-j".equals(args[i])) threads = Integer.parseInt(args[++i]);
+                else if("-o".equals(args[i])) out = new PrintStream(new File(args[++i]));
+                else if("-precision".equals(args[i]))
+                    precision = Inertial.Precision.valueOf(args[++i]);
+                else if("-g".equals(args[i])) {
+                    String[] axis = args[++i].split("=", 2);
+                    List<Tuning> product = new ArrayList<Tuning>();
+                    for(Tuning t : grid)
+                        for(String v : axis[1].split(","))
+                            product.add(t.with(axis[0], Double.parseDouble(v)));
+                    grid = product;
+                    names.add(axis[0]);
+                }
+                else if(args[i].startsWith("-")) throw new IllegalArgumentException(args[i]);
+                else logs.add(new File(args[i]));
+            }
+        } catch (RuntimeException e) {
+            // missing option argument, unparseable number or unknown name
+            System.err.println(e.getMessage());
+            logs.clear();
+        }
+        if(logs.isEmpty() || threads < 1) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Tuning[] tunings = grid.toArray(new Tuning[grid.size()]);
+        File[] files = logs.toArray(new File[logs.size()]);
+        Summary[][] results = new Summary[tunings.length][files.length];
+        Exception[][] errors = new Exception[tunings.length][files.length];
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Recording[] recordings = new Recording[files.length];
+        pool.invoke(new Decode(files, recordings, errors, 0, files.length));
+        pool.invoke(new Task(tunings, files, recordings, precision, results, errors,
+                0, tunings.length * files.length));
+        double wall = 1e-9 * (System.nanoTime() - start);
+        boolean[] failed = new boolean[tunings.length];
+        for(int c = 0; c < tunings.length; c++) {
+            for(int l = 0; l < files.length; l++) {
+                if(errors[c][l] == null) continue;
+                failed[c] = true;
+                System.err.println(files[l] + " (configuration " + (c + 1) + "): " + errors[c][l]);
+            }
+        }
+
+        StringBuilder header = new StringBuilder();
+        for(String name : names) header.append(name).append(',');
+        out.println(header.append(HEADER));
+        int best = -1;
+        double bestError = Double.POSITIVE_INFINITY;
+        for(int c = 0; c < tunings.length; c++) {
+            Summary s = new Summary(null);
+            for(Summary r : results[c]) if(r != null) s.merge(r);
+            StringBuilder row = new StringBuilder();
+            double[] values = tunings[c].values();
+            for(String name : names) row.append(values[index(name)]).append(',');
+            out.println(row.append(s.records())
+                    .append(',').append(s.cpuTime / 1000000)
+                    .append(',').append(s.records() == 0 ? 0 : s.cpuTime / s.records())
+                    .append(',').append((float) s.attitudeError())
+                    .append(',').append((float) s.altitudeError()));
+            if(!failed[c] && s.attitudeError() < bestError) {
+                bestError = s.attitudeError();
+                best = c;
+            }
+        }
+        if(out != System.out) out.close();
+        System.err.printf("%d configurations over %d logs in %.3f s on %d threads%n",
+                tunings.length, files.length, wall, threads);
+        if(best >= 0) {
+            StringBuilder b = new StringBuilder("lowest attitude error:");
+            double[] values = tunings[best].values();
+            for(String name : names)
+                b.append(' ').append(name).append('=').append(values[index(name)]);
+            System.err.println(b.append(String.format(" (%.3f deg)", bestError)));
+        }
+    }
+
+    private static int index(String name) {
+        for(int i = 0; i < Tuning.NAMES.length; i++) if(Tuning.NAMES[i].equals(name)) return i;
+        return -1;
+    }
+}
@@ -0,0 +1,240 @@
+package org.epoint.avionics.replay;
+
+import org.epoint.avionics.math.Vec3D;
+import org.epoint.avionics.math.Versor;
+import org.epoint.avionics.sensor.Inertial;
+
+import java.util.Random;
+
+/**
+ * Scripted flight path: true attitude, altitude and acceleration of the aircraft, advanced in
+ * virtual time. Turn rate, climb rate and speed follow the legs of the script with first-order
+ * lag, starting at cruise speed unless on the ground; turns are coordinated. Turbulence perturbs the attitude and the vertical speed around
+ * the scripted path.
+ * <p>
+ * World coordinates are those of {@link Inertial}: X east, Y up, Z south.
+ */
+public class Trajectory {
+
+    /**
+     * Traffic pattern after a minute on the ground: climb-out, four standard-rate turns,
+     * descent and a level run.
+     */
+    public static final String CIRCUIT = "ground:60,level:20,climb:60@3,turn:30@3,level:30,"
+            + "turn:30@3,level:60,turn:30@3,climb:60@-3,turn:30@3,level:60";
+
+    /**
+     * Script names and the maneuvers they describe
+     */
+    public static final String[][] SCRIPTS = {
+            {"circuit", CIRCUIT},
+            {"steep", "ground:60,level:20,turn:120@-9,turn:120@9,level:30"},
+            {"climb", "ground:60,level:20,climb:120@5,level:30,climb:120@-5,level:30"},
+            {"cruise", "ground:60,level:600"}
+    };
+
+    /**
+     * Leg kinds of the script
+     */
+    public enum Kind {
+        /**
+         * Parked, no turbulence
+         */
+        GROUND,
+        /**
+         * Straight and level at cruise speed
+         */
+        LEVEL,
+        /**
+         * Level turn, rate in degrees per second, positive to the right
+         */
+        TURN,
+        /**
+         * Straight climb, rate in meters per second, negative to descend
+         */
+        CLIMB
+    }
+
+    /**
+     * Time constants of turn rate, climb rate and speed changes, in seconds
+     */
+    private static final double TURN_TIME = 2, CLIMB_TIME = 3, SPEED_TIME = 10;
+    /**
+     * Correlation times of turbulent angular rates and vertical gusts, and decay time of the
+     * resulting deviations, in seconds
+     */
+    private static final double GUST_TIME = 0.5, DEVIATION_TIME = 3;
+    /**
+     * Time in seconds to recover turbulent altitude excursions, as a pilot would
+     */
+    private static final double RECOVERY_TIME = 10;
+    /**
+     * Standard deviation of roll, pitch and yaw rates at unit turbulence in radians per second,
+     * and of vertical gust acceleration in meters per second squared
+     */
+    private static final double[] GUST = {Math.toRadians(4), Math.toRadians(2), Math.toRadians(1),
+            1};
+
+    private static final Vec3D X = new Vec3D(1, 0, 0), Y = new Vec3D(0, 1, 0),
+            Z = new Vec3D(0, 0, 1);
+
+    private final Kind[] kinds;
+    private final double[] durations, values;
+    private final double cruise;
+    private final double turbulence;
+    private final Random random;
+
+    private int leg = 0;
+    private double elapsed = 0;
+    private long timestamp = 0;
+
+    /**
+     * Scripted path state: heading in radians, turn rate in radians per second, climb rate
+     * and speed in meters per second, altitude in meters
+     */
+    private double heading = 0, turnRate = 0, climbRate = 0, speed = 0, altitude;
+    /**
+     * Path acceleration along track and upwards, in meters per second squared
+     */
+    private double alongTrack = 0, upwards = 0;
+    /**
+     * Turbulent roll, pitch and yaw rates, vertical gust acceleration, and the deviations
+     * they caused
+     */
+    private final double[] gust = new double[4], deviation = new double[4];
+    /**
+     * Altitude deviation from the scripted path in meters, and its rate in meters per second
+     */
+    private double excursion = 0, rise = 0;
+
+    /**
+     * @param script comma-separated legs of the form <code>kind:seconds[@rate]</code>,
+     * e.g. {@link #CIRCUIT}
+     * @param cruise cruise speed in meters per second
+     * @param altitude initial altitude in meters
+     * @param turbulence turbulence intensity, 0 for calm air
+     * @param random source of turbulence
+     * @throws IllegalArgumentException on malformed script
+     */
+    public Trajectory(String script, double cruise, double altitude, double turbulence,
+                      Random random) {
+        String[] legs = script.split(",");
+        kinds = new Kind[legs.length];
+        durations = new double[legs.length];
+        values = new double[legs.length];
+        for(int i = 0; i < legs.length; i++) {
+            String[] leg = legs[i].trim().split("[:@]");
+            if(leg.length < 2 || leg.length > 3)
+                throw new IllegalArgumentException("Malformed leg " + legs[i]);
+            kinds[i] = Kind.valueOf(leg[0].toUpperCase());
+            durations[i] = Double.parseDouble(leg[1]);
+            values[i] = leg.length == 3 ? Double.parseDouble(leg[2]) : 0;
+            if(!(durations[i] >= 0)) throw new IllegalArgumentException("Negative duration");
+        }
+        this.cruise = cruise;
+        this.altitude = altitude;
+        if(kinds[0] != Kind.GROUND) speed = cruise;
+        this.turbulence = turbulence;
+        this.random = random;
+    }
+
+    /**
+     * @param name one of {@link #SCRIPTS}
+     * @return the named script, <code>null</code> if there is none
+     */
+    public static String script(String name) {
+        for(String[] s : SCRIPTS) if(s[0].equals(name)) return s[1];
+        return null;
+    }
+
+    /**
+     * @return total duration of the script in nanoseconds
+     */
+    public long duration() {
+        double d = 0;
+        for(double l : durations) d += l;
+        return (long) (d * 1e9);
+    }
+
+    /**
+     * Advance the path. The last leg is held beyond the end of the script.
+     * @param t virtual time in nanoseconds, not before the previous one
+     */
+    public void advance(long t) {
+        double dt = 1e-9 * (t - timestamp);
+        timestamp = t;
+        if(dt <= 0) return;
+        elapsed += dt;
+        while(leg < kinds.length && elapsed >= durations[leg]) elapsed -= durations[leg++];
+        Kind k = kinds[Math.min(leg, kinds.length - 1)];
+        double v = values[Math.min(leg, kinds.length - 1)];
+
+        double targetSpeed = k == Kind.GROUND ? 0 : cruise;
+        double dv = (targetSpeed - speed) * -Math.expm1(-dt / SPEED_TIME);
+        double dc = ((k == Kind.CLIMB ? v : 0) - climbRate) * -Math.expm1(-dt / CLIMB_TIME);
+        turnRate += ((k == Kind.TURN ? Math.toRadians(v) : 0) - turnRate)
+                * -Math.expm1(-dt / TURN_TIME);
+        speed += dv;
+        climbRate += dc;
+        alongTrack = dv / dt;
+        upwards = dc / dt;
+        heading += turnRate * dt;
+
+        // turbulence scales with airspeed and is absent on the ground
+        double intensity = turbulence * Math.min(1, speed / cruise);
+        double diffusion = Math.sqrt(2 * dt / GUST_TIME);
+        for(int i = 0; i < gust.length; i++) {
+            gust[i] += -gust[i] * dt / GUST_TIME
+                    + intensity * GUST[i] * diffusion * random.nextGaussian();
+            deviation[i] += (gust[i] - deviation[i] / DEVIATION_TIME) * dt;
+        }
+        rise = deviation[3] - excursion / RECOVERY_TIME;
+        upwards += gust[3] - deviation[3] / DEVIATION_TIME - rise / RECOVERY_TIME;
+        excursion += rise * dt;
+        altitude += (climbRate + rise) * dt;
+    }
+
+    /**
+     * @return true aircraft to world rotation
+     */
+    public Versor orientation() {
+        double bank = Math.atan2(speed * turnRate, Inertial.STANDARD_GRAVITY);
+        double pitch = speed > 0 ? Math.atan2(climbRate + rise, speed) : 0;
+        return new Versor(Z, bank + deviation[0]).mul(new Versor(X, pitch + deviation[1]))
+                .mul(new Versor(Y, heading + deviation[2]));
+    }
+
+    /**
+     * @return specific force in world coordinates: acceleration plus the upward reaction to
+     * gravity, as sensed by an accelerometer, in meters per second squared
+     */
+    public Vec3D specificForce() {
+        double s = Math.sin(heading), c = Math.cos(heading);
+        double centripetal = speed * turnRate;
+        return new Vec3D(alongTrack * s + centripetal * c,
+                upwards + Inertial.STANDARD_GRAVITY,
+                -alongTrack * c + centripetal * s);
+    }
+
+    /**
+     * @return ground speed in meters per second
+     */
+    public double speed() {
+        return speed;
+    }
+
+    /**
+     * @return true track in degrees
+     */
+    public double track() {
+        double t = Math.toDegrees(heading) % 360;
+        return t < 0 ? t + 360 : t;
+    }
+
+    /**
+     * @return altitude in meters
+     */
+    public double altitude() {
+        return altitude;
+    }
+}